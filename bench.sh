@@ -0,0 +1,2 @@
+#! /bin/sh
+java -Xmx512M -cp .:lib/ECLA.jar:lib/DTNConsoleConnection.jar benchmark.BenchmarkRunner $*
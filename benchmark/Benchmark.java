@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+/**
+ * Superclass of the benchmarks run by {@link BenchmarkRunner}. A benchmark
+ * measures one operation of a hot path of the simulator. The fixture is
+ * created in {@link #setUp()} and possibly renewed before each measurement
+ * iteration in {@link #setUpIteration()}; only the calls of {@link #run()}
+ * are timed.
+ */
+public abstract class Benchmark {
+	private String name;
+
+	/**
+	 * Constructor.
+	 * @param name Name of the benchmark (including the parameters, if any)
+	 */
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the benchmark
+	 * @return The name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Creates the fixture of the benchmark. Called once before the warmup.
+	 */
+	public void setUp() {}
+
+	/**
+	 * Prepares the fixture for the next (warmup or measurement) iteration.
+	 * Not included in the measured time.
+	 */
+	public void setUpIteration() {}
+
+	/**
+	 * Runs the measured operation once
+	 * @return A value computed from the result of the operation. The runner
+	 * consumes the values so that the operation can't be optimized away.
+	 */
+	public abstract long run();
+
+	/**
+	 * Returns the number of operations run in each iteration. By default,
+	 * the operations are run until the iteration time has passed, but
+	 * benchmarks whose operations depend on the state left by the previous
+	 * operations (e.g., simulation updates) can fix the work done per
+	 * iteration.
+	 * @return The number of operations per iteration, or 0 for time based
+	 * iterations
+	 */
+	public int getOperationsPerIteration() {
+		return 0;
+	}
+
+	/**
+	 * Releases the fixture. Called after the measurement.
+	 */
+	public void tearDown() {}
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <P>
+ * Runs the benchmarks of the simulator's hot paths and reports the mean
+ * time per operation. Every benchmark is first run for a number of warmup
+ * iterations (to let the JIT compiler settle) and then for the measurement
+ * iterations. The reported error is the standard deviation of the
+ * iteration means.
+ * </P><P>
+ * The results can be written to a file (<CODE>-o</CODE>) and compared to
+ * the results of an earlier run (<CODE>-b</CODE>), e.g., to the tracked
+ * baseline <CODE>benchmark/baseline.txt</CODE>, to see whether a change
+ * made the hot paths faster or slower. Results are comparable only when
+ * measured on the same machine.
+ * </P><P>
+ * Usage: <CODE>BenchmarkRunner [-w warmupIterations] [-i iterations]
+ * [-t iterationMillis] [-o resultFile] [-b baselineFile] [-l]
+ * [namePart ...]</CODE><BR>
+ * If name parts are given, only the benchmarks whose name contains any of
+ * them are run. Option <CODE>-l</CODE> lists the benchmarks.
+ * </P>
+ */
+public class BenchmarkRunner {
+	/** Default number of warmup iterations */
+	public static final int DEF_WARMUP_ITERATIONS = 3;
+	/** Default number of measurement iterations */
+	public static final int DEF_ITERATIONS = 5;
+	/** Default length of a time based iteration (milliseconds) */
+	public static final int DEF_ITERATION_MILLIS = 1000;
+	/** Comment prefix of the result files */
+	public static final String COMMENT_PREFIX = "#";
+
+	/** values returned by the operations; read in the end so that the
+	 * JIT compiler can't remove the operations */
+	private static long sink;
+
+	private int nrofWarmupIterations = DEF_WARMUP_ITERATIONS;
+	private int nrofIterations = DEF_ITERATIONS;
+	private long iterationNanos = DEF_ITERATION_MILLIS * 1000000L;
+
+	/**
+	 * Returns all the benchmarks
+	 * @return The benchmarks
+	 */
+	public static List<Benchmark> getBenchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (int nrofHosts : new int[] {500, 2000, 8000}) {
+			benchmarks.add(new NearInterfacesBenchmark(
+					NearInterfacesBenchmark.CONNECTIVITY_GRID, nrofHosts));
+			benchmarks.add(new NearInterfacesBenchmark(
+					NearInterfacesBenchmark.SPATIAL_HASH_GRID, nrofHosts));
+		}
+		benchmarks.add(new PathFinderBenchmark());
+		for (int nrofHosts : new int[] {50, 200}) {
+			benchmarks.add(new MaxPropDijkstraBenchmark(nrofHosts));
+		}
+		benchmarks.add(new EventsReaderBenchmark(
+				EventsReaderBenchmark.STANDARD));
+		benchmarks.add(new EventsReaderBenchmark(
+				EventsReaderBenchmark.SCANNER));
+		benchmarks.add(new MessageReplicateBenchmark());
+		for (int nrofMessages : new int[] {100, 1000}) {
+			benchmarks.add(new BufferEvictionBenchmark(nrofMessages));
+		}
+		benchmarks.add(new DecisionEngineBenchmark(
+				DecisionEngineBenchmark.BUBBLE_RAP));
+		benchmarks.add(new DecisionEngineBenchmark(
+				DecisionEngineBenchmark.FUZZY));
+		benchmarks.add(new WorldUpdateBenchmark());
+		return benchmarks;
+	}
+
+	/**
+	 * Measures a benchmark
+	 * @param b The benchmark
+	 * @return Mean nanoseconds per operation and its standard deviation
+	 */
+	public double[] measure(Benchmark b) {
+		b.setUp();
+		for (int i=0; i<nrofWarmupIterations; i++) {
+			runIteration(b);
+		}
+		double[] nsPerOp = new double[nrofIterations];
+		for (int i=0; i<nrofIterations; i++) {
+			nsPerOp[i] = runIteration(b);
+		}
+		b.tearDown();
+
+		double mean = 0;
+		for (double d : nsPerOp) {
+			mean += d;
+		}
+		mean /= nrofIterations;
+		double var = 0;
+		for (double d : nsPerOp) {
+			var += (d - mean) * (d - mean);
+		}
+		double sd = nrofIterations > 1 ?
+				Math.sqrt(var / (nrofIterations - 1)) : 0;
+		return new double[] {mean, sd};
+	}
+
+	/**
+	 * Runs one iteration of a benchmark
+	 * @param b The benchmark
+	 * @return Mean nanoseconds per operation in the iteration
+	 */
+	private double runIteration(Benchmark b) {
+		b.setUpIteration();
+		long result = 0;
+		int fixedOps = b.getOperationsPerIteration();
+		if (fixedOps > 0) {
+			long start = System.nanoTime();
+			for (int i=0; i<fixedOps; i++) {
+				result += b.run();
+			}
+			long time = System.nanoTime() - start;
+			sink += result;
+			return (double)time / fixedOps;
+		}
+
+		/* run the operations in batches so that reading the clock doesn't
+		 * dominate short operations */
+		long nrofOps = 0;
+		long time = 0;
+		int batch = 1;
+		while (time < iterationNanos) {
+			long start = System.nanoTime();
+			for (int i=0; i<batch; i++) {
+				result += b.run();
+			}
+			long batchTime = System.nanoTime() - start;
+			time += batchTime;
+			nrofOps += batch;
+			if (batchTime < iterationNanos / 100 && batch < (1 << 24)) {
+				batch *= 2;
+			}
+		}
+		sink += result;
+		return (double)time / nrofOps;
+	}
+
+	/**
+	 * Reads the results of an earlier run
+	 * @param file The result file
+	 * @return Mean nanoseconds per operation for each benchmark name
+	 * @throws IOException if the file can't be read
+	 */
+	public static Map<String, Double> readResults(File file)
+			throws IOException {
+		Map<String, Double> results = new HashMap<String, Double>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith(COMMENT_PREFIX)) {
+				continue;
+			}
+			String[] parts = line.split("\\s+");
+			results.put(parts[0], Double.parseDouble(parts[1]));
+		}
+		in.close();
+		return results;
+	}
+
+	/**
+	 * Formats a result line
+	 * @param name Name of the benchmark
+	 * @param result Mean nanoseconds per operation and standard deviation
+	 * @return The line
+	 */
+	private static String format(String name, double[] result) {
+		return String.format("%-50s %14.1f %12.1f", name, result[0],
+				result[1]);
+	}
+
+	private static void usage(String error) {
+		System.err.println(error);
+		System.err.println("Usage: BenchmarkRunner [-w warmupIterations] " +
+				"[-i iterations] [-t iterationMillis] [-o resultFile] " +
+				"[-b baselineFile] [-l] [namePart ...]");
+		System.exit(-1);
+	}
+
+	/**
+	 * Runs the benchmarks
+	 * @param args Command line arguments (see the class description)
+	 * @throws IOException if a result file can't be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		/* set US locale to parse decimals in consistent way */
+		java.util.Locale.setDefault(java.util.Locale.US);
+
+		BenchmarkRunner runner = new BenchmarkRunner();
+		File resultFile = null;
+		Map<String, Double> baseline = null;
+		List<String> nameParts = new ArrayList<String>();
+		boolean listOnly = false;
+
+		for (int i=0; i<args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-l")) {
+				listOnly = true;
+			}
+			else if (arg.startsWith("-")) {
+				if (i + 1 >= args.length) {
+					usage("Missing value for option " + arg);
+				}
+				String value = args[++i];
+				if (arg.equals("-w")) {
+					runner.nrofWarmupIterations = Integer.parseInt(value);
+				}
+				else if (arg.equals("-i")) {
+					runner.nrofIterations = Integer.parseInt(value);
+				}
+				else if (arg.equals("-t")) {
+					runner.iterationNanos = Long.parseLong(value) * 1000000L;
+				}
+				else if (arg.equals("-o")) {
+					resultFile = new File(value);
+				}
+				else if (arg.equals("-b")) {
+					baseline = readResults(new File(value));
+				}
+				else {
+					usage("Unknown option " + arg);
+				}
+			}
+			else {
+				nameParts.add(arg);
+			}
+		}
+		if (runner.nrofIterations < 1) {
+			usage("At least one measurement iteration is needed");
+		}
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (Benchmark b : getBenchmarks()) {
+			boolean selected = nameParts.isEmpty();
+			for (String part : nameParts) {
+				selected |= b.getName().contains(part);
+			}
+			if (selected) {
+				benchmarks.add(b);
+			}
+		}
+		if (listOnly) {
+			for (Benchmark b : benchmarks) {
+				System.out.println(b.getName());
+			}
+			return;
+		}
+
+		String header = String.format("%-50s %14s %12s", "benchmark",
+				"ns/op", "sd");
+		System.out.println(header + (baseline != null ? "   change" : ""));
+		PrintWriter out = null;
+		if (resultFile != null) {
+			out = new PrintWriter(new FileWriter(resultFile));
+			out.println(COMMENT_PREFIX + " java " +
+					System.getProperty("java.version") + ", " +
+					System.getProperty("os.arch") + ", " +
+					Runtime.getRuntime().availableProcessors() + " cpu(s); " +
+					runner.nrofWarmupIterations + " warmup and " +
+					runner.nrofIterations + " measurement iterations");
+			out.println(COMMENT_PREFIX + " " + header);
+		}
+
+		for (Benchmark b : benchmarks) {
+			double[] result = runner.measure(b);
+			String line = format(b.getName(), result);
+			if (out != null) {
+				out.println(line);
+				out.flush();
+			}
+			if (baseline != null && baseline.containsKey(b.getName())) {
+				double base = baseline.get(b.getName());
+				line += String.format(" %+7.1f%%",
+						100 * (result[0] - base) / base);
+			}
+			System.out.println(line);
+		}
+		if (out != null) {
+			out.close();
+		}
+		if (sink == 42) {
+			System.out.println(); // practically never; uses the sink
+		}
+	}
+}
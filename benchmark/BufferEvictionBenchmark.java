@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.EventQueueHandler;
+
+import java.util.List;
+
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import ui.DTNSimUI;
+import core.DTNHost;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Benchmark for the buffer management of {@link ActiveRouter}s. The buffer
+ * of an epidemic router is full and one operation creates a new message
+ * to it, which makes the router drop the message chosen by its drop
+ * policy. The buffer size is varied with the number of messages that fit
+ * into it.
+ */
+public class BufferEvictionBenchmark extends Benchmark {
+	/** Size of the messages (bytes) */
+	public static final int MESSAGE_SIZE = 1000;
+
+	private int nrofMessages;
+	private ScenarioFixture fixture;
+	private DTNHost host;
+	private DTNHost destination;
+	private int nextId;
+
+	/**
+	 * Constructor.
+	 * @param nrofMessages How many messages fit into the buffer
+	 */
+	public BufferEvictionBenchmark(int nrofMessages) {
+		super("ActiveRouter.createNewMessage:buffered=" + nrofMessages);
+		this.nrofMessages = nrofMessages;
+	}
+
+	@Override
+	public void setUp() {
+		String groupNs = SimScenario.GROUP_NS + ".";
+		fixture = new ScenarioFixture(
+				new String[] {WorldUpdateBenchmark.SETTINGS_FILE},
+				ScenarioFixture.setting(groupNs + SimScenario.NROF_HOSTS_S, 2),
+				ScenarioFixture.setting(groupNs + SimScenario.ROUTER_S,
+						EpidemicRouter.class.getSimpleName()),
+				ScenarioFixture.setting(groupNs + MessageRouter.B_SIZE_S,
+						nrofMessages * MESSAGE_SIZE),
+				ScenarioFixture.setting(EventQueueHandler.SETTINGS_NAMESPACE +
+						"." + EventQueueHandler.NROF_SETTING, 0),
+				ScenarioFixture.setting(DTNSimUI.MM_WARMUP_S, 0));
+		List<DTNHost> hosts = fixture.getWorld().getHosts();
+		host = hosts.get(0);
+		destination = hosts.get(1);
+
+		nextId = 0;
+		for (int i=0; i<nrofMessages; i++) {
+			run();
+		}
+	}
+
+	@Override
+	public long run() {
+		host.createNewMessage(new Message(host, destination,
+				"B" + nextId++, MESSAGE_SIZE));
+		return host.getNrofMessages();
+	}
+
+	@Override
+	public void tearDown() {
+		fixture.close();
+	}
+}
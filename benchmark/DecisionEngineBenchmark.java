@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import routing.DecisionEngineRouter;
+
+/**
+ * Benchmark for {@link DecisionEngineRouter} with a given decision engine
+ * in a contact trace scenario (<CODE>benchmark/haggle_settings.txt</CODE>).
+ * One operation is a world update. Every iteration starts from a new
+ * simulation just before the trace's first contacts and runs the same
+ * number of updates, so the iterations do the same work.
+ */
+public class DecisionEngineBenchmark extends Benchmark {
+	/** Settings file of the scenario */
+	public static final String SETTINGS_FILE = "benchmark/haggle_settings.txt";
+	/** Class name of the Distributed BubbleRap decision engine */
+	public static final String BUBBLE_RAP = "community.DistributedBubbleRap";
+	/** Class name of the fuzzy decision engine */
+	public static final String FUZZY = "fuzzy.FuzzyBasedRouter";
+	/** Simulation time where the measured updates start */
+	public static final double START_TIME = 20000;
+	/** Number of updates (simulated seconds) per iteration */
+	public static final int NROF_UPDATES = 10000;
+
+	private String engine;
+	private ScenarioFixture fixture;
+
+	/**
+	 * Constructor.
+	 * @param engine Class name of the decision engine (as in the settings)
+	 */
+	public DecisionEngineBenchmark(String engine) {
+		super("World.update:haggle/" +
+				engine.substring(engine.lastIndexOf('.') + 1));
+		this.engine = engine;
+	}
+
+	@Override
+	public void setUpIteration() {
+		if (fixture != null) {
+			fixture.close();
+		}
+		fixture = new ScenarioFixture(new String[] {SETTINGS_FILE},
+				ScenarioFixture.setting(DecisionEngineRouter.PUBSUB_NS + "." +
+						DecisionEngineRouter.ENGINE_SETTING, engine));
+		fixture.runUntil(START_TIME);
+	}
+
+	@Override
+	public long run() {
+		fixture.getWorld().update();
+		return 0;
+	}
+
+	@Override
+	public int getOperationsPerIteration() {
+		return NROF_UPDATES;
+	}
+
+	@Override
+	public void tearDown() {
+		fixture.close();
+		fixture = null;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.ExternalEventsReader;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Benchmark for parsing external events files. One operation reads all the
+ * events of the Haggle3 Infocom5 contact trace in batches of the external
+ * events queue's default preload size, either with
+ * {@link StandardEventsReader} or with the {@link ScannerEventsReader}
+ * reference implementation.
+ */
+public class EventsReaderBenchmark extends Benchmark {
+	/** The parsed events file */
+	public static final String EVENTS_FILE = "Haggle3-Infocom5.csv";
+	/** Reader type for the standard events reader */
+	public static final int STANDARD = 0;
+	/** Reader type for the Scanner based reference reader */
+	public static final int SCANNER = 1;
+
+	private int readerType;
+	private File eventsFile;
+
+	/**
+	 * Constructor.
+	 * @param readerType Type of the measured reader ({@link #STANDARD} or
+	 * {@link #SCANNER})
+	 */
+	public EventsReaderBenchmark(int readerType) {
+		super((readerType == SCANNER ? "ScannerEventsReader" :
+			"StandardEventsReader") + ".readEvents:Haggle3-Infocom5");
+		this.readerType = readerType;
+	}
+
+	@Override
+	public void setUp() {
+		eventsFile = new File(EVENTS_FILE);
+	}
+
+	@Override
+	public long run() {
+		ExternalEventsReader reader;
+		if (readerType == SCANNER) {
+			reader = new ScannerEventsReader(eventsFile);
+		}
+		else {
+			reader = new StandardEventsReader(eventsFile);
+		}
+		long nrofEvents = 0;
+		List<ExternalEvent> events;
+		do {
+			events = reader.readEvents(
+					ExternalEventsQueue.DEFAULT_NROF_PRELOAD);
+			nrofEvents += events.size();
+		} while (events.size() > 0);
+		reader.close();
+		return nrofEvents;
+	}
+}
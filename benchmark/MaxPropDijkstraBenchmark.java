@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Benchmark for MaxProp's path cost calculation. Every host has met a
+ * number of random hosts and one operation is a
+ * {@link MaxPropDijkstra#getCosts(Integer, Set)} call from the next host to
+ * a set of random destinations (like the destinations of the messages in a
+ * MaxProp router's buffer).
+ */
+public class MaxPropDijkstraBenchmark extends Benchmark {
+	/** How many meetings every host has had */
+	public static final int NROF_MEETINGS = 20;
+	/** How many destinations the costs are calculated to */
+	public static final int NROF_TARGETS = 20;
+
+	private int nrofHosts;
+	private MaxPropDijkstra dijkstra;
+	private Set<Integer> targets;
+	private int next;
+
+	/**
+	 * Constructor.
+	 * @param nrofHosts Number of hosts
+	 */
+	public MaxPropDijkstraBenchmark(int nrofHosts) {
+		super("MaxPropDijkstra.getCosts:hosts=" + nrofHosts);
+		this.nrofHosts = nrofHosts;
+	}
+
+	@Override
+	public void setUp() {
+		Random rng = new Random(1);
+		Map<Integer, MeetingProbabilitySet> probs =
+			new HashMap<Integer, MeetingProbabilitySet>();
+		for (int i=0; i<nrofHosts; i++) {
+			MeetingProbabilitySet set = new MeetingProbabilitySet(
+					MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0);
+			for (int j=0; j<NROF_MEETINGS; j++) {
+				set.updateMeetingProbFor(rng.nextInt(nrofHosts));
+			}
+			probs.put(i, set);
+		}
+		dijkstra = new MaxPropDijkstra(probs);
+
+		targets = new HashSet<Integer>();
+		while (targets.size() < NROF_TARGETS) {
+			targets.add(rng.nextInt(nrofHosts));
+		}
+		next = 0;
+	}
+
+	@Override
+	public long run() {
+		int from = next;
+		next = (next + 1) % nrofHosts;
+		return dijkstra.getCosts(from, targets).size();
+	}
+}
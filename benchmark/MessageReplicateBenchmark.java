@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.EventQueueHandler;
+
+import java.util.List;
+
+import ui.DTNSimUI;
+import core.DTNHost;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Benchmark for copying messages. One operation is a
+ * {@link Message#replicate()} call for a message that has been relayed by
+ * two hosts and has two properties (as messages that routers annotate).
+ */
+public class MessageReplicateBenchmark extends Benchmark {
+	private ScenarioFixture fixture;
+	private Message message;
+
+	/**
+	 * Constructor.
+	 */
+	public MessageReplicateBenchmark() {
+		super("Message.replicate");
+	}
+
+	@Override
+	public void setUp() {
+		fixture = new ScenarioFixture(
+				new String[] {WorldUpdateBenchmark.SETTINGS_FILE},
+				ScenarioFixture.setting(SimScenario.GROUP_NS + "." +
+						SimScenario.NROF_HOSTS_S, 4),
+				ScenarioFixture.setting(EventQueueHandler.SETTINGS_NAMESPACE +
+						"." + EventQueueHandler.NROF_SETTING, 0),
+				ScenarioFixture.setting(DTNSimUI.MM_WARMUP_S, 0));
+		List<DTNHost> hosts = fixture.getWorld().getHosts();
+
+		message = new Message(hosts.get(0), hosts.get(3), "M1", 100000);
+		message.addNodeOnPath(hosts.get(0));
+		message.addNodeOnPath(hosts.get(1));
+		message.addNodeOnPath(hosts.get(2));
+		message.addProperty("copies", 8);
+		message.addProperty("utility", 0.5);
+	}
+
+	@Override
+	public long run() {
+		return message.replicate().getUniqueId();
+	}
+
+	@Override
+	public void tearDown() {
+		fixture.close();
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.EventQueueHandler;
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.SpatialHashGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ui.DTNSimUI;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Benchmark for the neighbor queries of the connectivity optimizers. The
+ * hosts of the default scenario are placed randomly in the world (the
+ * initial locations of the random waypoint movement) and one operation is
+ * a {@link ConnectivityOptimizer#getNearInterfaces(NetworkInterface)} query
+ * for the next host. The density is varied with the number of hosts.
+ */
+public class NearInterfacesBenchmark extends Benchmark {
+	/** Name of the connectivity grid optimizer */
+	public static final String CONNECTIVITY_GRID =
+		World.DEF_CONNECTIVITY_OPTIMIZER;
+	/** Name of the spatial hash grid optimizer */
+	public static final String SPATIAL_HASH_GRID =
+		World.SPATIAL_HASH_OPTIMIZER;
+
+	private String optimizerName;
+	private int nrofHosts;
+	private ScenarioFixture fixture;
+	private ConnectivityOptimizer optimizer;
+	private List<NetworkInterface> interfaces;
+	private int next;
+
+	/**
+	 * Constructor.
+	 * @param optimizerName Name of the connectivity optimizer
+	 * @param nrofHosts Number of hosts in the world
+	 */
+	public NearInterfacesBenchmark(String optimizerName, int nrofHosts) {
+		super(optimizerName + ".getNearInterfaces:hosts=" + nrofHosts);
+		this.optimizerName = optimizerName;
+		this.nrofHosts = nrofHosts;
+	}
+
+	@Override
+	public void setUp() {
+		fixture = new ScenarioFixture(
+				new String[] {WorldUpdateBenchmark.SETTINGS_FILE},
+				ScenarioFixture.setting(World.SETTINGS_NS + "." +
+						World.CONNECTIVITY_OPTIMIZER_S, optimizerName),
+				ScenarioFixture.setting(SimScenario.GROUP_NS + "." +
+						SimScenario.NROF_HOSTS_S, nrofHosts),
+				ScenarioFixture.setting(EventQueueHandler.SETTINGS_NAMESPACE +
+						"." + EventQueueHandler.NROF_SETTING, 0),
+				ScenarioFixture.setting(DTNSimUI.MM_WARMUP_S, 0));
+
+		interfaces = new ArrayList<NetworkInterface>();
+		for (DTNHost host : fixture.getWorld().getHosts()) {
+			interfaces.addAll(host.getInterfaces());
+		}
+		/* the factories return the optimizer created for the interfaces */
+		NetworkInterface ni = interfaces.get(0);
+		int key = ni.getInterfaceType().hashCode();
+		if (optimizerName.equals(SPATIAL_HASH_GRID)) {
+			optimizer = SpatialHashGrid.SpatialHashGridFactory(key,
+					ni.getTransmitRange());
+		}
+		else {
+			optimizer = ConnectivityGrid.ConnectivityGridFactory(key,
+					ni.getTransmitRange());
+		}
+		next = 0;
+	}
+
+	@Override
+	public long run() {
+		NetworkInterface ni = interfaces.get(next);
+		next = (next + 1) % interfaces.size();
+		return optimizer.getNearInterfaces(ni).size();
+	}
+
+	@Override
+	public void tearDown() {
+		fixture.close();
+	}
+}
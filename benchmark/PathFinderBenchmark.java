@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import core.SimError;
+
+/**
+ * Benchmark for the shortest path search of the map based movement models.
+ * The map is the Helsinki map of the default scenario and one operation is
+ * a {@link DijkstraPathFinder#getShortestPath(MapNode, MapNode)} call
+ * between two random map nodes.
+ */
+public class PathFinderBenchmark extends Benchmark {
+	/** The map files of the default scenario */
+	public static final String[] MAP_FILES = {"data/roads.wkt",
+		"data/main_roads.wkt", "data/pedestrian_paths.wkt", "data/shops.wkt"};
+	/** Number of different node pairs the operations go through */
+	public static final int NROF_PAIRS = 1024;
+
+	private DijkstraPathFinder pathFinder;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	/**
+	 * Constructor.
+	 */
+	public PathFinderBenchmark() {
+		super("DijkstraPathFinder.getShortestPath:helsinki");
+	}
+
+	@Override
+	public void setUp() {
+		WKTMapReader reader = new WKTMapReader(true);
+		try {
+			for (int i=0; i<MAP_FILES.length; i++) {
+				reader.addPaths(new File(MAP_FILES[i]), i + 1);
+			}
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+		List<MapNode> nodes = reader.getMap().getNodes();
+
+		Random rng = new Random(1);
+		from = new MapNode[NROF_PAIRS];
+		to = new MapNode[NROF_PAIRS];
+		for (int i=0; i<NROF_PAIRS; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		pathFinder = new DijkstraPathFinder(null);
+		next = 0;
+	}
+
+	@Override
+	public long run() {
+		int i = next;
+		next = (next + 1) % NROF_PAIRS;
+		return pathFinder.getShortestPath(from[i], to[i]).size();
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.ExternalEventsReader;
+import input.MessageCreateEvent;
+import input.MessageDeleteEvent;
+import input.MessageRelayEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+
+import core.SimError;
+
+/**
+ * The {@link Scanner} based implementation of {@link StandardEventsReader}
+ * that the simulator used before the byte buffer tokenizer. Parses the same
+ * format and creates the same events; kept only as the reference of
+ * {@link EventsReaderBenchmark} so that the speed-up of the tokenizer can be
+ * reproduced.
+ */
+public class ScannerEventsReader implements ExternalEventsReader {
+	private Scanner scanner;
+	
+	/**
+	 * Constructor.
+	 * @param eventsFile The events file to read
+	 */
+	public ScannerEventsReader(File eventsFile) {
+		try {
+			this.scanner = new Scanner(eventsFile);
+		} catch (FileNotFoundException e) {
+			throw new SimError(e.getMessage(),e);
+		}
+	}
+	
+	
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		int eventsRead = 0;
+		// skip empty and comment lines
+		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
+
+		while (eventsRead < nrof && scanner.hasNextLine()) {
+			String line = scanner.nextLine();
+			Scanner lineScan = new Scanner(line);
+			if (skipPattern.matcher(line).matches()) {
+				// skip empty and comment lines
+				continue;
+			}
+			
+			double time;
+			String action;
+			String msgId;
+			int hostAddr;
+			int host2Addr;
+					
+			try {
+				time = lineScan.nextDouble();
+				action = lineScan.next();		
+			
+				if (action.equals(StandardEventsReader.DROP)) {
+					msgId = lineScan.next();
+					hostAddr = getHostAddress(lineScan.next());
+					events.add(new MessageDeleteEvent(hostAddr, msgId,
+							time, true));
+				}
+				else if (action.equals(StandardEventsReader.REMOVE)) {
+					msgId = lineScan.next();
+					hostAddr = getHostAddress(lineScan.next());
+					events.add(new MessageDeleteEvent(hostAddr, msgId,
+							time, false));
+				}
+				else if (action.equals(StandardEventsReader.CONNECTION)) {
+					String connEventType;
+					boolean isUp;
+					hostAddr = getHostAddress(lineScan.next());
+					host2Addr = getHostAddress(lineScan.next());
+					connEventType = lineScan.next();
+					
+					String interfaceId = null;
+					if (lineScan.hasNext()) {
+						interfaceId = lineScan.next();
+					}	
+					
+					if (connEventType.equalsIgnoreCase(
+							StandardEventsReader.CONNECTION_UP)) {
+						isUp = true;
+					}
+					else if (connEventType.equalsIgnoreCase(
+							StandardEventsReader.CONNECTION_DOWN)) {
+						isUp = false;
+					}
+					else {
+						throw new SimError("Unknown up/down value '" + 
+								connEventType + "'");
+					}
+					
+					ConnectionEvent ce = new ConnectionEvent(hostAddr, 
+							host2Addr, interfaceId, isUp, time);
+					
+					events.add(ce);
+				}
+				else {
+					msgId = lineScan.next();
+					hostAddr = getHostAddress(lineScan.next());
+				
+					host2Addr = getHostAddress(lineScan.next());
+				
+					if (action.equals(StandardEventsReader.CREATE)){
+						int size = lineScan.nextInt();
+						int respSize = 0;
+						if (lineScan.hasNextInt()) {
+							respSize = lineScan.nextInt();
+						}
+						events.add(new MessageCreateEvent(hostAddr, host2Addr,
+								msgId, size, respSize, time));
+					}
+					else {
+						int stage = -1;
+						if (action.equals(StandardEventsReader.SEND)) {
+							stage = MessageRelayEvent.SENDING;
+						}
+						else if (action.equals(StandardEventsReader.DELIVERED)) {
+							stage = MessageRelayEvent.TRANSFERRED;
+						}
+						else if (action.equals(StandardEventsReader.ABORT)) {
+							stage = MessageRelayEvent.ABORTED;
+						}
+						else {
+							throw new SimError("Unknown action '" + action + 
+								"' in external events");
+						}
+						events.add(new MessageRelayEvent(hostAddr, host2Addr,
+								msgId, time, stage));
+					}						
+				}
+				// discard the newline in the end
+				if (lineScan.hasNextLine()) {
+					lineScan.nextLine();
+				}
+				eventsRead++;
+			} catch (Exception e) {
+				throw new SimError("Can't parse external event " + 
+						(eventsRead+1) + " from '" + line + "'", e);
+			}
+		}
+		
+		return events;
+	}
+
+	/**
+	 * Parses a host address from a hostId string (the numeric part after
+	 * optional non-numeric part).
+	 * @param hostId The id to parse the address from
+	 * @return The address
+	 * @throws SimError if no address could be parsed from the id
+	 */
+	private int getHostAddress(String hostId) {
+		String addressPart = "";
+		if (hostId.matches("^\\d+$")) {
+			addressPart = hostId; // host id is only the address
+		}
+		else if (hostId.matches("^\\D+\\d+$")) {
+			String [] parts = hostId.split("\\D");
+			addressPart = parts[parts.length-1]; // last occurence is the addr
+		}
+		else {
+			throw new SimError("Invalid host ID '" + hostId + "'");
+		}
+		
+		return Integer.parseInt(addressPart);
+	}
+	
+	public void close() {
+		this.scanner.close();
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import core.DTNSim;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+import core.SimScenario;
+import core.World;
+import ui.DTNSimUI;
+
+/**
+ * Simulation model created from settings files for the benchmarks. The
+ * model is created the same way as in a batch run (without reports): the
+ * settings are read, the static state of the simulator is reset and the
+ * movement models are warmed up.
+ */
+public class ScenarioFixture {
+	private SimScenario scen;
+	private World world;
+
+	/**
+	 * Creates the simulation model.
+	 * @param settingsFiles The settings files to read (in the order of
+	 * precedence, as on the command line). As always, the values of
+	 * <CODE>default_settings.txt</CODE> are used for the settings that the
+	 * files don't define.
+	 * @param overrides Settings that override the values of the files, in
+	 * "key = value" format
+	 */
+	public ScenarioFixture(String[] settingsFiles, String ... overrides) {
+		Settings.init(settingsFiles[0]);
+		for (int i=1; i<settingsFiles.length; i++) {
+			Settings.addSettings(settingsFiles[i]);
+		}
+		if (overrides.length > 0) {
+			Settings.addSettings(writeOverrides(overrides));
+		}
+		DTNSim.resetForNextRun();
+
+		Settings s = new Settings();
+		double warmupTime = 0;
+		if (s.contains(DTNSimUI.MM_WARMUP_S)) {
+			warmupTime = s.getDouble(DTNSimUI.MM_WARMUP_S);
+			if (warmupTime > 0) {
+				SimClock.getInstance().setTime(-warmupTime);
+			}
+		}
+		this.scen = SimScenario.getInstance();
+		this.world = scen.getWorld();
+		world.warmupMovementModel(warmupTime);
+	}
+
+	/**
+	 * Returns a setting in the format of the overrides
+	 * @param key Full key of the setting (including the namespace)
+	 * @param value Value of the setting
+	 * @return The setting as "key = value"
+	 */
+	public static String setting(String key, Object value) {
+		return key + " = " + value;
+	}
+
+	/**
+	 * Writes the overriding settings to a temporary settings file
+	 * @param overrides The settings
+	 * @return Path of the file
+	 */
+	private static String writeOverrides(String[] overrides) {
+		try {
+			File f = File.createTempFile("benchmark", ".txt");
+			f.deleteOnExit();
+			PrintWriter out = new PrintWriter(new FileWriter(f));
+			for (String setting : overrides) {
+				out.println(setting);
+			}
+			out.close();
+			return f.getAbsolutePath();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the scenario
+	 * @return The scenario
+	 */
+	public SimScenario getScenario() {
+		return this.scen;
+	}
+
+	/**
+	 * Returns the world
+	 * @return The world
+	 */
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * Updates the world until the given simulation time
+	 * @param time The time
+	 */
+	public void runUntil(double time) {
+		while (SimClock.getTime() < time) {
+			world.update();
+		}
+	}
+
+	/**
+	 * Releases the resources of the model
+	 */
+	public void close() {
+		world.shutdown();
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import core.World;
+
+/**
+ * End-to-end benchmark of the simulation loop in the default scenario
+ * (<CODE>default_settings.txt</CODE> with the fixes of
+ * <CODE>benchmark/world_settings.txt</CODE>). One operation is a
+ * {@link World#update()}. Every iteration starts from a new simulation and
+ * runs the same number of updates, so the iterations do the same work.
+ */
+public class WorldUpdateBenchmark extends Benchmark {
+	/** Settings file of the scenario */
+	public static final String SETTINGS_FILE = "benchmark/world_settings.txt";
+	/** Number of updates (simulated seconds) per iteration */
+	public static final int NROF_UPDATES = 3600;
+
+	private ScenarioFixture fixture;
+
+	/**
+	 * Constructor.
+	 */
+	public WorldUpdateBenchmark() {
+		super("World.update:default_settings");
+	}
+
+	@Override
+	public void setUpIteration() {
+		if (fixture != null) {
+			fixture.close();
+		}
+		fixture = new ScenarioFixture(new String[] {SETTINGS_FILE});
+	}
+
+	@Override
+	public long run() {
+		fixture.getWorld().update();
+		return 0;
+	}
+
+	@Override
+	public int getOperationsPerIteration() {
+		return NROF_UPDATES;
+	}
+
+	@Override
+	public void tearDown() {
+		fixture.close();
+		fixture = null;
+	}
+}
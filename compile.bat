@@ -5,4 +5,5 @@ javac -extdirs lib/ routing/*.java
 javac -extdirs lib/ gui/*.java
 javac -extdirs lib/ input/*.java
 javac -extdirs lib/ applications/*.java
-javac -extdirs lib/ interfaces/*.java
\ No newline at end of file
+javac -extdirs lib/ interfaces/*.java
+javac -extdirs lib/ benchmark/*.java
\ No newline at end of file
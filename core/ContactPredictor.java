@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Predicts when the next contact (link-up) can happen between the hosts of
+ * the world. Hosts move along straight path segments with constant speed
+ * so the distance between two hosts is known until either of them reaches
+ * its next waypoint (or stops waiting, or its activeness changes). The
+ * prediction is valid only until the first such movement change, so the
+ * returned time is the earliest of all the movement changes and all the
+ * link-ups that happen before them.
+ */
+public class ContactPredictor {
+	/** how much (meters) the range is shortened when solving the contact
+	 * time so that the hosts are surely within range at the returned time */
+	public static final double RANGE_EPSILON = 1e-6;
+
+	/**
+	 * Returns the next time when a new contact may come up or the movement
+	 * of some host changes (whichever comes first).
+	 * @param hosts The hosts of the world
+	 * @param maxTime The maximum time that is returned
+	 * @return The time of the next contact or movement change,
+	 * at most maxTime. The current time is returned if some (active) hosts
+	 * are within range of each other already.
+	 */
+	public double nextChangeTime(List<DTNHost> hosts, double maxTime) {
+		double now = SimClock.getTime();
+		double limit = maxTime;
+		int n = hosts.size();
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] vx = new double[n];
+		double[] vy = new double[n];
+		boolean[] active = new boolean[n];
+
+		for (int i=0; i<n; i++) {
+			DTNHost h = hosts.get(i);
+			limit = Math.min(limit, h.getMovementChangeTime());
+			if (limit <= now) {
+				return now;
+			}
+			Coord loc = h.getLocation();
+			Coord v = h.getVelocity();
+			x[i] = loc.getX();
+			y[i] = loc.getY();
+			vx[i] = v.getX();
+			vy[i] = v.getY();
+			active[i] = h.isActive();
+		}
+
+		for (int i=0; i<n; i++) {
+			if (!active[i]) {
+				continue; // inactive hosts can't connect
+			}
+			DTNHost h1 = hosts.get(i);
+			for (int j=i+1; j<n; j++) {
+				if (!active[j]) {
+					continue;
+				}
+				double range = getRange(h1, hosts.get(j));
+				if (range < 0) {
+					continue; // no common interfaces
+				}
+				double t = contactTime(x[j] - x[i], y[j] - y[i],
+						vx[j] - vx[i], vy[j] - vy[i], range - RANGE_EPSILON);
+				if (now + t < limit) {
+					limit = now + t;
+					if (limit <= now) {
+						return now;
+					}
+				}
+			}
+		}
+
+		return limit;
+	}
+
+	/**
+	 * Returns how long it takes until two hosts are within the given range
+	 * from each other when their relative position and velocity are given
+	 * @param dx Relative x coordinate of the second host
+	 * @param dy Relative y coordinate of the second host
+	 * @param dvx Relative x velocity of the second host
+	 * @param dvy Relative y velocity of the second host
+	 * @param range The range
+	 * @return The time (0 if the hosts are within range now) or
+	 * Double.MAX_VALUE if the hosts won't get within range
+	 */
+	private double contactTime(double dx, double dy, double dvx, double dvy,
+			double range) {
+		double c = dx*dx + dy*dy - range*range;
+		if (c <= 0) {
+			return 0; // within range already
+		}
+		double a = dvx*dvx + dvy*dvy;
+		double b = 2 * (dx*dvx + dy*dvy);
+		if (a == 0 || b >= 0) {
+			return Double.MAX_VALUE; // not approaching
+		}
+		double disc = b*b - 4*a*c;
+		if (disc < 0) {
+			return Double.MAX_VALUE; // passes by without contact
+		}
+		return (-b - Math.sqrt(disc)) / (2*a);
+	}
+
+	/**
+	 * Returns the range in which the hosts can connect, i.e., the largest
+	 * range of all the interface pairs of the same type
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @return The range or -1 if the hosts have no interfaces of same type
+	 */
+	private double getRange(DTNHost h1, DTNHost h2) {
+		double range = -1;
+		for (NetworkInterface i1 : h1.getInterfaces()) {
+			for (NetworkInterface i2 : h2.getInterfaces()) {
+				if (!i1.getInterfaceType().equals(i2.getInterfaceType())) {
+					continue;
+				}
+				double r = Math.min(i1.getTransmitRange(),
+						i2.getTransmitRange());
+				if (r > range) {
+					range = r;
+				}
+			}
+		}
+		return range;
+	}
+}
@@ -96,7 +96,7 @@ public class Coord implements Cloneable, Comparable<Coord> {
 			clone = (Coord) super.clone();
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
-			System.exit(-1);
+			DTNSim.exit(-1);
 		}
 		return clone;
 	}
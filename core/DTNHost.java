@@ -21,6 +21,9 @@ import routing.RoutingInfo;
 public class DTNHost implements Comparable<DTNHost> {
 
     private static int nextAddress = 0;
+    /** profiling span of the network interface updates */
+    private static final SimProfiler.Span INTERFACE_UPDATE_SPAN
+            = SimProfiler.span("NetworkInterface.update");
     private int address;
 
     private Coord location; 	// where is the host
@@ -201,6 +204,61 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.location;
     }
 
+    /**
+     * Returns the current velocity (m/s on both axes) of this host. The
+     * velocity is zero if the host is inactive, waiting, or has no
+     * destination.
+     *
+     * @return The velocity
+     */
+    public Coord getVelocity() {
+        if (!isActive() || SimClock.getTime() < this.nextTimeToMove
+                || this.destination == null) {
+            return new Coord(0, 0);
+        }
+
+        double distance = this.location.distance(this.destination);
+        if (distance == 0) {
+            return new Coord(0, 0);
+        }
+        return new Coord(
+                this.speed * (this.destination.getX() - this.location.getX())
+                / distance,
+                this.speed * (this.destination.getY() - this.location.getY())
+                / distance);
+    }
+
+    /**
+     * Returns the sim time until which the velocity returned by
+     * {@link #getVelocity()} stays valid, i.e., the time when the host reaches
+     * its current destination, stops waiting, or becomes active or inactive.
+     *
+     * @return The time when the movement of the host may change next
+     */
+    public double getMovementChangeTime() {
+        double now = SimClock.getTime();
+        double changeTime = this.movement.nextActivenessChange();
+
+        if (!isActive()) {
+            return changeTime;
+        }
+        if (now < this.nextTimeToMove) {
+            return Math.min(changeTime, this.nextTimeToMove);
+        }
+        if (this.destination == null) {
+            return now; // needs a new waypoint right away
+        }
+
+        double distance = this.location.distance(this.destination);
+        if (distance == 0) {
+            return now;
+        }
+        if (this.speed > 0) {
+            changeTime = Math.min(changeTime, now + distance / this.speed);
+        }
+        return changeTime;
+    }
+
     /**
      * Returns the Path this node is currently traveling or null if no path is
      * in use at the moment.
@@ -285,7 +343,7 @@ public class DTNHost implements Comparable<DTNHost> {
             ni = net.get(interfaceNo - 1);
         } catch (IndexOutOfBoundsException ex) {
             System.out.println("No such interface: " + interfaceNo);
-            System.exit(0);
+            DTNSim.exit(0);
         }
         return ni;
     }
@@ -352,11 +410,17 @@ public class DTNHost implements Comparable<DTNHost> {
         }
 
         if (simulateConnections) {
+            long start = SimProfiler.start();
             for (NetworkInterface i : net) {
                 i.update();
             }
+            INTERFACE_UPDATE_SPAN.end(start, net.size());
         }
+        long start = SimProfiler.start();
         this.router.update();
+        if (start != 0) {
+            this.router.getUpdateSpan().end(start);
+        }
     }
 
     /**
@@ -400,6 +464,46 @@ public class DTNHost implements Comparable<DTNHost> {
         this.location.translate(dx, dy);
     }
 
+    /**
+     * Moves the node towards its current destination if it can be done without
+     * reaching the destination, i.e., without asking the movement model for
+     * the next waypoint. Nodes that are inactive or waiting are left as they
+     * are. The state of the node is not changed if false is returned, so
+     * {@link #move(double)} can be called afterwards with the same result as
+     * if this method had not been called at all.
+     *
+     * @param timeIncrement How long time the node moves
+     * @return True if the move was done (or nothing had to be done), false if
+     * the node needs a new waypoint and must be moved with
+     * {@link #move(double)}
+     */
+    public boolean moveWithinSegment(double timeIncrement) {
+        double possibleMovement;
+        double distance;
+        double dx, dy;
+
+        if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
+            return true;
+        }
+        if (this.destination == null) {
+            return false;
+        }
+
+        possibleMovement = timeIncrement * speed;
+        distance = this.location.distance(this.destination);
+
+        if (possibleMovement >= distance) {
+            return false;
+        }
+
+        dx = (possibleMovement / distance) * (this.destination.getX()
+                - this.location.getX());
+        dy = (possibleMovement / distance) * (this.destination.getY()
+                - this.location.getY());
+        this.location.translate(dx, dy);
+        return true;
+    }
+
     /**
      * Sets the next destination and speed to correspond the next waypoint on
      * the path.
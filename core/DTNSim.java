@@ -5,9 +5,17 @@
 package core;
 import gui.DTNSimGUI;
 
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import ui.DTNSimTextUI;
 
@@ -18,14 +26,24 @@ public class DTNSim {
 	/** If this option ({@value}) is given to program, batch mode and
 	 * Text UI are used*/
 	public static final String BATCH_MODE_FLAG = "-b";
+	/** If this option ({@value}) follows the number of runs in the batch 
+	 * mode, the runs are executed in parallel. The option must be followed 
+	 * by the number of concurrent runs. */
+	public static final String PARALLEL_RUNS_FLAG = "-p";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
 	public static final String RESET_METHOD_NAME = "reset";
+	/** Name of the method that runs a single isolated batch run
+	 * @see #runIsolated(String[], int, int) */
+	private static final String ISOLATED_RUN_METHOD_NAME = "runIsolated";
 	/** List of class names that should be reset between batch runs */
 	private static List<Class<?>> resetList = new ArrayList<Class<?>>();
+	/** Is this copy of the simulator classes running an isolated run
+	 * @see #exit(int) */
+	private static boolean isolatedRun = false;
 	
 	/**
 	 * Starts the user interface with given arguments.
@@ -34,7 +52,10 @@ public class DTNSim {
 	 * or a with a combination of starting run and the number of runs, 
 	 * delimited with a {@value #RANGE_DELIMETER}. Different settings from run
 	 * arrays are used for different runs (see 
-	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
+	 * {@link Settings#setRunIndex(int)}). The number of runs can be followed
+	 * by {@link #PARALLEL_RUNS_FLAG} and the number of runs to execute
+	 * concurrently (see {@link #runInParallel(String[], int, int[], int)}).
+	 * Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
 	 * @param args Command line arguments
@@ -45,6 +66,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofParallelRuns = 1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -58,6 +80,11 @@ public class DTNSim {
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                    if (args.length > 2 && args[2].equals(PARALLEL_RUNS_FLAG)) {
+                        nrofParallelRuns = parseNrofParallelRuns(
+                                args.length > 3 ? args[3] : null);
+                        firstConfIndex = 4;
+                    }
                 }
 			}
 			else { /* GUI mode */				
@@ -74,6 +101,12 @@ public class DTNSim {
 			confFiles = new String[] {null};
 		}
 		
+		if (batchMode && nrofParallelRuns > 1) {
+			runInParallel(confFiles, firstConfIndex, nrofRuns, 
+					nrofParallelRuns);
+			return;
+		}
+		
 		initSettings(confFiles, firstConfIndex);
 		
 		if (batchMode) {
@@ -93,6 +126,163 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs batch mode runs concurrently. Every run is executed in its own
+	 * class loader that loads the simulator classes again from the class path.
+	 * This way all static state (e.g., {@link SimClock}, {@link Settings} and
+	 * the random number generators) is separate for each run and no resetting
+	 * between the runs is needed. Output of the runs is the same as in the
+	 * serial batch mode. A run that fails (e.g., because of an error in
+	 * the settings) is reported and the other runs continue.
+	 * @param confFiles The command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 * @param nrofRuns The first and (last_run_index - 1) in an array
+	 * @param nrofParallelRuns How many runs to execute at the same time
+	 */
+	private static void runInParallel(final String[] confFiles, 
+			final int firstConfIndex, int[] nrofRuns, int nrofParallelRuns) {
+		final URL[] classPath = getClassPathUrls();
+		final int lastRun = nrofRuns[1];
+		long startTime = System.currentTimeMillis();
+		ExecutorService executor = 
+			Executors.newFixedThreadPool(nrofParallelRuns);
+
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final int runIndex = i;
+			executor.execute(new Runnable() {
+				public void run() {
+					print("Run " + (runIndex+1) + "/" + lastRun);
+					runInClassLoader(classPath, confFiles, firstConfIndex,
+							runIndex);
+				}
+			});
+		}
+
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				/* wait until all runs are done */
+			}
+		} catch (InterruptedException e) {
+			System.err.println("Interrupted while waiting for the runs");
+			executor.shutdownNow();
+		}
+
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		print("---\nAll done in " + String.format("%.2f", duration) + "s");
+	}
+
+	/**
+	 * Runs a single batch run using a new class loader.
+	 * @param classPath Where the new class loader loads the classes from
+	 * @param confFiles The command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 * @param runIndex Index of the run
+	 */
+	private static void runInClassLoader(URL[] classPath, String[] confFiles,
+			int firstConfIndex, int runIndex) {
+		/* parent is the parent of the system class loader so that the 
+		 * simulator classes are not shared with the other runs */
+		URLClassLoader loader = new URLClassLoader(classPath, 
+				ClassLoader.getSystemClassLoader().getParent());
+		Thread.currentThread().setContextClassLoader(loader);
+
+		try {
+			Class<?> c = loader.loadClass(DTNSim.class.getName());
+			Method m = c.getMethod(ISOLATED_RUN_METHOD_NAME, String[].class,
+					int.class, int.class);
+			m.invoke(null, confFiles, firstConfIndex, runIndex);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause.getClass().getName().equals(
+					RunExitError.class.getName())) {
+				/* the reason was already printed before exit(int) */
+				System.err.println("Run " + (runIndex+1) + " failed: " + 
+						cause.getMessage());
+			}
+			else {
+				System.err.println("Run " + (runIndex+1) + " failed");
+				cause.printStackTrace();
+			}
+		} catch (Exception e) {
+			System.err.println("Can't start run " + (runIndex+1));
+			e.printStackTrace();
+		} finally {
+			try {
+				loader.close();
+			} catch (java.io.IOException e) {
+				/* nothing to do; the loader is not used anymore */
+			}
+		}
+	}
+
+	/**
+	 * Runs a single batch mode run. This method is called using reflection in
+	 * a class loader of its own (see 
+	 * {@link #runInParallel(String[], int, int[], int)}) and should not be
+	 * called otherwise.
+	 * @param confFiles The command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 * @param runIndex Index of the run
+	 */
+	public static void runIsolated(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		isolatedRun = true;
+		initSettings(confFiles, firstConfIndex);
+		Settings.setRunIndex(runIndex);
+		new DTNSimTextUI().start();
+	}
+
+	/**
+	 * Exits the simulator after an error that prevents running the
+	 * simulation. In an isolated run (see 
+	 * {@link #runIsolated(String[], int, int)}) the JVM is shared with the
+	 * other parallel runs, so instead of calling {@link System#exit(int)} 
+	 * a {@link RunExitError} is thrown and only this run fails.
+	 * @param status The exit status
+	 */
+	public static void exit(int status) {
+		if (isolatedRun) {
+			throw new RunExitError(status);
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Error that ends an isolated run instead of exiting the JVM
+	 * @see DTNSim#exit(int)
+	 */
+	public static class RunExitError extends Error {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor.
+		 * @param status The exit status the run would have exited with
+		 */
+		public RunExitError(int status) {
+			super("exit status " + status);
+		}
+	}
+
+	/**
+	 * Returns the class path of the simulator as URLs
+	 * @return The class path entries as URLs
+	 */
+	private static URL[] getClassPathUrls() {
+		String[] entries = System.getProperty("java.class.path").split(
+				File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		try {
+			for (int i=0; i<entries.length; i++) {
+				urls[i] = new File(entries[i]).toURI().toURL();
+			}
+		} catch (MalformedURLException e) {
+			System.err.println("Invalid class path: " + e.getMessage());
+			System.exit(-1);
+		}
+		return urls;
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -119,13 +309,13 @@ public class DTNSim {
 				/* was not a numeric value */
 				System.err.println("Failed to load settings: " + er);
 				System.err.println("Caught at " + er.getStackTrace()[0]);			
-				System.exit(-1);
+				exit(-1);
 			}
 			System.err.println("Warning: using deprecated way of " + 
 					"expressing run indexes. Run index should be the " + 
 					"first option, or right after -b option (optionally " +
 					"as a range of start and end values).");
-			System.exit(-1);
+			exit(-1);
 		}
 	}
 	
@@ -148,21 +338,23 @@ public class DTNSim {
 		} catch (ClassNotFoundException e) {
 			System.err.println("Can't register class " + className + 
 					" for resetting; class not found");
-			System.exit(-1);
+			exit(-1);
 					
 		}
 		catch (NoSuchMethodException e) {
 			System.err.println("Can't register class " + className + 
 			" for resetting; class doesn't contain resetting method");
-			System.exit(-1);
+			exit(-1);
 		}
 		resetList.add(c);
 	}
 	
 	/**
-	 * Resets all registered classes.
+	 * Resets all registered classes. Must be called before a new simulation
+	 * model is created in the same JVM (e.g., between batch runs or
+	 * benchmark fixtures).
 	 */
-	private static void resetForNextRun() {
+	public static void resetForNextRun() {
 		for (Class<?> c : resetList) {
 			try {
 				Method m = c.getMethod(RESET_METHOD_NAME);
@@ -170,7 +362,7 @@ public class DTNSim {
 			} catch (Exception e) {
 				System.err.println("Failed to reset class " + c.getName());
 				e.printStackTrace();
-				System.exit(-1);
+				exit(-1);
 			}
 		}
 	}
@@ -216,6 +408,35 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of concurrent runs from a command line argument
+	 * @param arg The argument to parse (null if it was missing)
+	 * @return The number of concurrent runs
+	 */
+	private static int parseNrofParallelRuns(String arg) {
+		int val = 0;
+		if (arg == null) {
+			System.err.println("Missing argument for number of parallel " +
+					"runs (option " + PARALLEL_RUNS_FLAG + ")");
+			System.exit(-1);
+		}
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of parallel runs");
+			System.exit(-1);
+		}
+
+		if (val < 1) {
+			System.err.println("Number of parallel runs can't be smaller " +
+					"than 1");
+			System.exit(-1);
+		}
+
+		return val;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
@@ -12,7 +12,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-import net.sourceforge.jFuzzyLogic.FIS;
 
 
 /**
@@ -64,6 +63,11 @@ public class Message implements Comparable<Message> {
      * Initial TTL of the message
      */
     private int initTtl;
+    /**
+     * Number of copies of the message the holder may still hand out in
+     * multi-copy routing (e.g., Spray and Wait)
+     */
+    private int copies;
     /*Ini aku nambah untuk kebutuhan Urgensi dan Security*/
     private int urgency;
     private int security;
@@ -124,6 +128,7 @@ public class Message implements Comparable<Message> {
         this.timeCreated = SimClock.getTime();
         this.timeReceived = this.timeCreated;
         this.initTtl = INFINITE_TTL;
+        this.copies = 1;
         this.responseSize = 0;
         this.requestMsg = null;
         this.properties = null;
@@ -272,6 +277,35 @@ public class Message implements Comparable<Message> {
         this.initTtl = ttl;
     }
 
+    /**
+     * Returns the initial TTL (minutes) of the message or
+     * {@link #INFINITE_TTL} if the TTL is infinite
+     *
+     * @return The initial TTL (minutes)
+     */
+    public int getInitTtl() {
+        return this.initTtl;
+    }
+
+    /**
+     * Returns the number of copies of this message the holder may still hand
+     * out. Routers that don't limit the number of copies leave this to 1.
+     *
+     * @return The number of copies
+     */
+    public int getCopies() {
+        return this.copies;
+    }
+
+    /**
+     * Sets the number of copies of this message the holder may still hand out
+     *
+     * @param copies The number of copies
+     */
+    public void setCopies(int copies) {
+        this.copies = copies;
+    }
+
     /**
      * Sets the time when this message was received.
      *
@@ -369,6 +403,7 @@ public class Message implements Comparable<Message> {
         this.responseSize = m.responseSize;
         this.requestMsg = m.requestMsg;
         this.initTtl = m.initTtl;
+        this.copies = m.copies;
         this.appID = m.appID;
 
         if (m.properties != null) {
@@ -6,6 +6,7 @@ package core;
 
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.SpatialHashGrid;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +37,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_DOWN = 2;
 	private static int nextAddress = 0;
 	private static Random rng;
+	/** should the spatial hash grid be used instead of ConnectivityGrid */
+	private static boolean useSpatialHash;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -61,6 +64,23 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public static void reset() {
 		nextAddress = 0;
 		rng = new Random(0);
+
+		Settings s = new Settings(World.SETTINGS_NS);
+		String optimizerName = World.DEF_CONNECTIVITY_OPTIMIZER;
+		if (s.contains(World.CONNECTIVITY_OPTIMIZER_S)) {
+			optimizerName = s.getSetting(World.CONNECTIVITY_OPTIMIZER_S);
+		}
+		if (optimizerName.equals(World.SPATIAL_HASH_OPTIMIZER)) {
+			useSpatialHash = true;
+		}
+		else if (optimizerName.equals(World.DEF_CONNECTIVITY_OPTIMIZER)) {
+			useSpatialHash = false;
+		}
+		else {
+			throw new SettingsError("Unknown connectivity optimizer '" +
+					optimizerName + "' for " + World.SETTINGS_NS + "." +
+					World.CONNECTIVITY_OPTIMIZER_S);
+		}
 	}
 	
 	/**
@@ -124,8 +144,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		comBus.subscribe(RANGE_ID, this);
 		comBus.subscribe(SPEED_ID, this);
 		
-		optimizer = ConnectivityGrid.ConnectivityGridFactory(
-				this.interfacetype.hashCode(), transmitRange);
+		if (useSpatialHash) {
+			optimizer = SpatialHashGrid.SpatialHashGridFactory(
+					this.interfacetype.hashCode(), transmitRange);
+		}
+		else {
+			optimizer = ConnectivityGrid.ConnectivityGridFactory(
+					this.interfacetype.hashCode(), transmitRange);
+		}
 		optimizer.addInterface(this);		
 	}
 
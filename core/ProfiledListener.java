@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Listener that passes all the callbacks to another listener (typically a
+ * report) and measures the time spent in them as one {@link SimProfiler}
+ * span per listener class. Only the callbacks of the listener interfaces
+ * that the wrapped listener implements may be called.
+ */
+public class ProfiledListener implements MessageListener, ConnectionListener,
+	MovementListener, UpdateListener, ApplicationListener {
+	private Object listener;
+	private SimProfiler.Span span;
+
+	/**
+	 * Constructor.
+	 * @param listener The listener whose callbacks are measured
+	 */
+	public ProfiledListener(Object listener) {
+		this.listener = listener;
+		this.span = SimProfiler.span(listener.getClass().getSimpleName() +
+				".callbacks");
+	}
+
+	public void newMessage(Message m) {
+		long start = SimProfiler.start();
+		((MessageListener)listener).newMessage(m);
+		span.end(start);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		long start = SimProfiler.start();
+		((MessageListener)listener).messageTransferStarted(m, from, to);
+		span.end(start);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		long start = SimProfiler.start();
+		((MessageListener)listener).messageDeleted(m, where, dropped);
+		span.end(start);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		long start = SimProfiler.start();
+		((MessageListener)listener).messageTransferAborted(m, from, to);
+		span.end(start);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		long start = SimProfiler.start();
+		((MessageListener)listener).messageTransferred(m, from, to,
+				firstDelivery);
+		span.end(start);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		long start = SimProfiler.start();
+		((ConnectionListener)listener).hostsConnected(host1, host2);
+		span.end(start);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		long start = SimProfiler.start();
+		((ConnectionListener)listener).hostsDisconnected(host1, host2);
+		span.end(start);
+	}
+
+	public void newDestination(DTNHost host, Coord destination,
+			double speed) {
+		long start = SimProfiler.start();
+		((MovementListener)listener).newDestination(host, destination, speed);
+		span.end(start);
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		long start = SimProfiler.start();
+		((MovementListener)listener).initialLocation(host, location);
+		span.end(start);
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		long start = SimProfiler.start();
+		((UpdateListener)listener).updated(hosts);
+		span.end(start);
+	}
+
+	public void gotEvent(String event, Object params, Application app,
+			DTNHost host) {
+		long start = SimProfiler.start();
+		((ApplicationListener)listener).gotEvent(event, params, app, host);
+		span.end(start);
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <P>
+ * Lightweight profiler for the simulation loop. The hot paths of the
+ * simulator (world and host updates, host movement, network interface
+ * updates, connectivity optimizer queries, router updates and report
+ * callbacks) are measured as named {@link Span}s that count the calls and
+ * sum the wall clock time (<CODE>System.nanoTime()</CODE>) spent in them.
+ * The processed external events are counted too. Spans can be nested,
+ * e.g., the time of the router updates is included in the world update
+ * time.
+ * </P><P>
+ * The profiler is disabled by default and it is enabled with the
+ * {@link #ENABLED_S} setting. When disabled, the measuring costs a static
+ * boolean check per span. The aggregates can be written with
+ * {@link report.ProfilingReport} and the text UI shows the live rates.
+ * </P><P>
+ * Usage in the measured code:<BR>
+ * <CODE>long start = SimProfiler.start();<BR>
+ * ... <BR>
+ * SPAN.end(start);</CODE>
+ * </P>
+ */
+public class SimProfiler {
+	/** Namespace of the profiler settings ({@value}) */
+	public static final String PROFILER_NS = "Profiler";
+	/** Profiling enabled -setting id ({@value}). Boolean valued. Default is
+	 * false. */
+	public static final String ENABLED_S = "enabled";
+	/** Live output interval -setting id ({@value}). How often (wall clock
+	 * seconds) the text UI prints the live rates when profiling is
+	 * enabled. Default is the text UI's normal update interval. */
+	public static final String LIVE_INTERVAL_S = "liveInterval";
+
+	private static boolean enabled;
+	private static long startNanos;
+	private static long nrofEvents;
+	/** all spans in the order they were created */
+	private static List<Span> spans = new ArrayList<Span>();
+	private static Map<String, Span> spansByName =
+		new HashMap<String, Span>();
+
+	static {
+		DTNSim.registerForReset(SimProfiler.class.getCanonicalName());
+		reset();
+	}
+
+	private SimProfiler() {}
+
+	/**
+	 * Enables or disables the profiler according to the settings and starts
+	 * the wall clock of the run
+	 */
+	public static void init() {
+		Settings s = new Settings(PROFILER_NS);
+		enabled = s.contains(ENABLED_S) && s.getBoolean(ENABLED_S);
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Returns true if profiling is enabled
+	 * @return True if profiling is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the start time of a span
+	 * @return The current value of <CODE>System.nanoTime()</CODE>, or 0
+	 * if profiling is disabled
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Returns a span with the given name. The span is created if it doesn't
+	 * exist yet.
+	 * @param name Name of the span
+	 * @return The span
+	 */
+	public static Span span(String name) {
+		Span span = spansByName.get(name);
+		if (span == null) {
+			span = new Span(name);
+			spansByName.put(name, span);
+			spans.add(span);
+		}
+		return span;
+	}
+
+	/**
+	 * Returns all the spans in the order they were created
+	 * @return The spans
+	 */
+	public static List<Span> getSpans() {
+		return spans;
+	}
+
+	/**
+	 * Counts a processed (external) event
+	 */
+	public static void countEvent() {
+		if (enabled) {
+			nrofEvents++;
+		}
+	}
+
+	/**
+	 * Returns the number of processed events
+	 * @return The number of events
+	 */
+	public static long getNrofEvents() {
+		return nrofEvents;
+	}
+
+	/**
+	 * Returns the wall clock time since the profiler was initialized
+	 * @return The time in nanoseconds
+	 */
+	public static long getWallNanos() {
+		return System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Resets the static fields of the class. The spans are kept but their
+	 * counters are zeroed.
+	 */
+	public static void reset() {
+		enabled = false;
+		nrofEvents = 0;
+		startNanos = System.nanoTime();
+		for (Span span : spans) {
+			span.clear();
+		}
+	}
+
+	/**
+	 * Named measurement point that counts the calls and the time spent in
+	 * them
+	 */
+	public static class Span {
+		private final String name;
+		private long calls;
+		private long nanos;
+		private long maxNanos;
+
+		private Span(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Ends a call of the span
+		 * @param start The start time returned by {@link SimProfiler#start()}
+		 */
+		public void end(long start) {
+			if (start == 0) {
+				return; // profiling is disabled
+			}
+			long duration = System.nanoTime() - start;
+			calls++;
+			nanos += duration;
+			if (duration > maxNanos) {
+				maxNanos = duration;
+			}
+		}
+
+		/**
+		 * Ends a measurement that covered several calls (e.g., a loop)
+		 * @param start The start time returned by {@link SimProfiler#start()}
+		 * @param nrofCalls The number of calls
+		 */
+		public void end(long start, int nrofCalls) {
+			if (start == 0) {
+				return;
+			}
+			long duration = System.nanoTime() - start;
+			calls += nrofCalls;
+			nanos += duration;
+			if (nrofCalls > 0 && duration / nrofCalls > maxNanos) {
+				maxNanos = duration / nrofCalls;
+			}
+		}
+
+		private void clear() {
+			calls = 0;
+			nanos = 0;
+			maxNanos = 0;
+		}
+
+		/**
+		 * Returns the name of the span
+		 * @return The name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the number of calls
+		 * @return The number of calls
+		 */
+		public long getCalls() {
+			return calls;
+		}
+
+		/**
+		 * Returns the total time of the calls
+		 * @return The time in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * Returns the time of the longest call (or the longest average of
+		 * the calls measured together)
+		 * @return The time in nanoseconds
+		 */
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+	}
+}
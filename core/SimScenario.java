@@ -133,6 +133,7 @@ public class SimScenario implements Serializable {
 	 * Creates a scenario based on Settings object.
 	 */
 	protected SimScenario() {
+		SimProfiler.init();
 		Settings s = new Settings(SCENARIO_NS);
 		nrofGroups = s.getInt(NROF_GROUPS_S);
 
@@ -386,7 +387,7 @@ public class SimScenario implements Serializable {
 					// Failed to create an application for this group
 					System.err.println("Failed to setup an application: " + se);
 					System.err.println("Caught at " + se.getStackTrace()[0]);
-					System.exit(-1);
+					DTNSim.exit(-1);
 				}
 			}
 
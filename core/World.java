@@ -4,6 +4,7 @@
  */
 package core;
 
+import input.ConnectionEvent;
 import input.EventQueue;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
@@ -13,6 +14,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -37,11 +40,83 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should the side effect free parts of the update step be run in parallel
+	 * -setting id ({@value}). Boolean (true/false) variable. If enabled, the
+	 * hosts that don't need a new waypoint are moved concurrently using a
+	 * fork-join pool; everything that uses the movement models' random number
+	 * generator, or informs listeners, is still done in the same order as
+	 * in the serial mode, so the results are identical. Default is
+	 * {@link #DEF_PARALLEL_UPDATES}.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+	/**
+	 * Number of worker threads for the parallel updates -setting id 
+	 * ({@value}). Integer value. Default is the number of available
+	 * processors. Used only if {@link #PARALLEL_UPDATES_S} is enabled.
+	 */
+	public static final String NROF_THREADS_S = "nrofThreads";
+	/**
+	 * Should the idle periods be skipped using contact prediction -setting
+	 * id ({@value}). Boolean (true/false) variable. If enabled and no
+	 * connections are up, the next time when a contact can come up is
+	 * predicted from the hosts' current path segments (see
+	 * {@link ContactPredictor}) and the world jumps directly to that time
+	 * (or to the next event, or to the time when some host's movement
+	 * changes) instead of advancing one update interval at a time. The
+	 * contacts that come up after a jump are timed exactly instead of at
+	 * update interval boundaries. While connections are up, the normal
+	 * updates are used. Default is {@link #DEF_EVENT_DRIVEN_CONTACTS}.
+	 */
+	public static final String EVENT_DRIVEN_CONTACTS_S = "eventDrivenContacts";
+	/**
+	 * Trace replay mode -setting id ({@value}). Boolean (true/false) 
+	 * variable. Meant for contact trace driven simulations where connections
+	 * are not simulated (Scenario.simulateConnections = false). If enabled,
+	 * hosts are not moved at all, all events with the same time are
+	 * processed before updating the hosts, and only the end points of
+	 * connection events and the hosts that have connections are updated 
+	 * (instead of all hosts after every event and update interval). 
+	 * Default is {@link #DEF_TRACE_REPLAY}.
+	 * @see input.ContactTraceQueue
+	 */
+	public static final String TRACE_REPLAY_S = "traceReplay";
+	/**
+	 * Connectivity optimizer -setting id ({@value}). Name of the class (in
+	 * the interfaces package) that is used for finding the interfaces that
+	 * may be in range of each other. Supported values are
+	 * {@value #DEF_CONNECTIVITY_OPTIMIZER} (default) and
+	 * {@value #SPATIAL_HASH_OPTIMIZER}.
+	 * @see interfaces.SpatialHashGrid
+	 */
+	public static final String CONNECTIVITY_OPTIMIZER_S =
+		"connectivityOptimizer";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should the update step be partly run in parallel -setting's default
+	 * value ({@value}) */
+	public static final boolean DEF_PARALLEL_UPDATES = false;
+	/** should the idle periods be skipped -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_EVENT_DRIVEN_CONTACTS = false;
+	/** trace replay mode -setting's default value ({@value}) */
+	public static final boolean DEF_TRACE_REPLAY = false;
+	/** default connectivity optimizer ({@value}) */
+	public static final String DEF_CONNECTIVITY_OPTIMIZER = "ConnectivityGrid";
+	/** name of the spatial hash connectivity optimizer ({@value}) */
+	public static final String SPATIAL_HASH_OPTIMIZER = "SpatialHashGrid";
+	/** how many hosts are moved by a single parallel task at minimum */
+	private static final int MOVE_TASK_THRESHOLD = 64;
+	/** profiling spans (see {@link SimProfiler}) */
+	private static final SimProfiler.Span UPDATE_SPAN =
+		SimProfiler.span("World.update");
+	private static final SimProfiler.Span UPDATE_HOSTS_SPAN =
+		SimProfiler.span("World.updateHosts");
+	private static final SimProfiler.Span MOVE_SPAN =
+		SimProfiler.span("DTNHost.move");
 
 	private int sizeX;
 	private int sizeY;
@@ -64,6 +139,15 @@ public class World {
 
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
+	/** pool for the parallel updates (null if parallel updates are off) */
+	private ForkJoinPool updatePool;
+	/** contact predictor for skipping idle periods (null if not in use) */
+	private ContactPredictor contactPredictor;
+	/** the time after which idle periods are not skipped */
+	private double endTime;
+	/** woken up hosts (by address) in the trace replay mode or null if the
+	 * mode is off */
+	private boolean[] wokenUp;
 
 	/**
 	 * Constructor.
@@ -117,6 +201,53 @@ public class World {
 			throw new SettingsError("Too small value (" + conCellSizeMult +
 					") for " + SETTINGS_NS + "." + CELL_SIZE_MULT_S);
 		}
+
+		boolean parallelUpdates = DEF_PARALLEL_UPDATES;
+		if (s.contains(PARALLEL_UPDATES_S)) {
+			parallelUpdates = s.getBoolean(PARALLEL_UPDATES_S);
+		}
+		if (parallelUpdates) {
+			int nrofThreads = Runtime.getRuntime().availableProcessors();
+			if (s.contains(NROF_THREADS_S)) {
+				nrofThreads = s.getInt(NROF_THREADS_S);
+			}
+			if (nrofThreads < 1) {
+				throw new SettingsError("Too small value (" + nrofThreads +
+						") for " + SETTINGS_NS + "." + NROF_THREADS_S);
+			}
+			this.updatePool = new ForkJoinPool(nrofThreads);
+		}
+		else { // null pointer means "don't parallelize"
+			this.updatePool = null;
+		}
+
+		boolean eventDriven = DEF_EVENT_DRIVEN_CONTACTS;
+		if (s.contains(EVENT_DRIVEN_CONTACTS_S)) {
+			eventDriven = s.getBoolean(EVENT_DRIVEN_CONTACTS_S);
+		}
+		if (eventDriven) {
+			this.contactPredictor = new ContactPredictor();
+			this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S);
+		}
+		else { // null pointer means "don't skip"
+			this.contactPredictor = null;
+		}
+
+		boolean traceReplay = DEF_TRACE_REPLAY;
+		if (s.contains(TRACE_REPLAY_S)) {
+			traceReplay = s.getBoolean(TRACE_REPLAY_S);
+		}
+		if (traceReplay) {
+			if (this.simulateConnections) {
+				throw new SettingsError(SETTINGS_NS + "." + TRACE_REPLAY_S +
+						" can't be used with simulated connections");
+			}
+			this.wokenUp = new boolean[this.hosts.size()];
+		}
+		else { // null pointer means "not in trace replay mode"
+			this.wokenUp = null;
+		}
 	}
 
 	/**
@@ -167,6 +298,23 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
+		long start = SimProfiler.start();
+		if (this.wokenUp != null) {
+			replayUpdate();
+		}
+		else if (this.contactPredictor == null || !skipIdlePeriod()) {
+			intervalUpdate();
+		}
+		UPDATE_SPAN.end(start);
+	}
+
+	/**
+	 * Normal update: runs the events that are due before the next update
+	 * interval and updates the hosts after every event, and then moves and
+	 * updates the hosts for the interval.
+	 */
+	private void intervalUpdate() {
+
 		double runUntil = SimClock.getTime() + this.updateInterval;
 
 		setNextEventQueue();
@@ -176,6 +324,7 @@ public class World {
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
 			ee.processEvent(this);
+			SimProfiler.countEvent();
 			updateHosts(); // update all hosts after every event
 			setNextEventQueue();
 		}
@@ -191,18 +340,113 @@ public class World {
 		}
 	}
 
+	/**
+	 * Update of the trace replay mode. Runs all external events that are due
+	 * before the next update interval without moving the hosts. Events with
+	 * the same time are processed together and after them only the woken up
+	 * hosts are updated (see {@link #updateHosts(boolean)}).
+	 */
+	private void replayUpdate() {
+		double runUntil = SimClock.getTime() + this.updateInterval;
+
+		setNextEventQueue();
+
+		while (this.nextQueueEventTime <= runUntil) {
+			double eventTime = this.nextQueueEventTime;
+			simClock.setTime(eventTime);
+			while (this.nextQueueEventTime == eventTime) {
+				ExternalEvent ee = this.nextEventQueue.nextEvent();
+				ee.processEvent(this);
+				SimProfiler.countEvent();
+				if (ee instanceof ConnectionEvent) {
+					ConnectionEvent ce = (ConnectionEvent)ee;
+					this.wokenUp[ce.getFromAddr()] = true;
+					this.wokenUp[ce.getToAddr()] = true;
+				}
+				setNextEventQueue();
+			}
+			updateHosts(true);
+		}
+
+		simClock.setTime(runUntil);
+		updateHosts(true);
+
+		for (UpdateListener ul : this.updateListeners) {
+			ul.updated(this.hosts);
+		}
+	}
+
+	/**
+	 * Moves the hosts directly to the next time when a contact may come up,
+	 * an event is due, or some host's movement changes, if that is further
+	 * away than one update interval and there are no connections up.
+	 * @return True if the idle period was skipped, false if the world should
+	 * be updated normally
+	 */
+	private boolean skipIdlePeriod() {
+		double now = SimClock.getTime();
+		double runUntil = now + this.updateInterval;
+
+		setNextEventQueue();
+		double limit = Math.min(this.nextQueueEventTime, this.endTime);
+		if (limit <= runUntil) {
+			return false;
+		}
+
+		for (int i=0, n = hosts.size(); i<n; i++) {
+			for (NetworkInterface ni : hosts.get(i).getInterfaces()) {
+				if (ni.getConnections().size() > 0) {
+					return false; // transfers need the normal updates
+				}
+			}
+		}
+
+		if (simulateConnections) {
+			limit = this.contactPredictor.nextChangeTime(this.hosts, limit);
+			if (limit <= runUntil) {
+				return false;
+			}
+		}
+
+		moveHosts(limit - now);
+		simClock.setTime(limit);
+
+		updateHosts();
+
+		for (UpdateListener ul : this.updateListeners) {
+			ul.updated(this.hosts);
+		}
+		return true;
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		updateHosts(false);
+	}
+
+	/**
+	 * Updates all hosts or only the woken up hosts. Woken up hosts are the
+	 * hosts that have connections and the hosts that have been marked in 
+	 * the wokenUp array (the marks are cleared here). If update order 
+	 * randomizing is on (updateOrder array is defined), the calls are made
+	 * in random order.
+	 * @param wokenUpOnly If true, only the woken up hosts are updated
+	 */
+	private void updateHosts(boolean wokenUpOnly) {
+		long start = SimProfiler.start();
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				DTNHost host = hosts.get(i);
+				if (!wokenUpOnly || isWokenUp(host)) {
+					host.update(simulateConnections);
+				}
 			}
 		}
 		else { // update order randomizing is on
@@ -214,9 +458,32 @@ public class World {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				DTNHost host = this.updateOrder.get(i);
+				if (!wokenUpOnly || isWokenUp(host)) {
+					host.update(simulateConnections);
+				}
 			}			
 		}
+		UPDATE_HOSTS_SPAN.end(start);
+	}
+
+	/**
+	 * Returns true if the host has been woken up (and clears the mark) or
+	 * if it has connections
+	 * @param host The host to check
+	 * @return True if the host should be updated in the trace replay mode
+	 */
+	private boolean isWokenUp(DTNHost host) {
+		if (this.wokenUp[host.getAddress()]) {
+			this.wokenUp[host.getAddress()] = false;
+			return true;
+		}
+		for (NetworkInterface ni : host.getInterfaces()) {
+			if (ni.getConnections().size() > 0) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -224,10 +491,84 @@ public class World {
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
-		for (int i=0,n = hosts.size(); i<n; i++) {
-			DTNHost host = hosts.get(i);
-			host.move(timeIncrement);			
-		}		
+		long start = SimProfiler.start();
+		if (this.updatePool != null) {
+			moveHostsInParallel(timeIncrement);
+		}
+		else {
+			for (int i=0,n = hosts.size(); i<n; i++) {
+				DTNHost host = hosts.get(i);
+				host.move(timeIncrement);			
+			}
+		}
+		MOVE_SPAN.end(start, hosts.size());
+	}
+
+	/**
+	 * Moves all hosts in the world for a given amount of time using the
+	 * update pool. Hosts that stay on their current path segment are moved 
+	 * in parallel. The rest need new waypoints from their movement models 
+	 * (which share a random number generator and inform movement listeners)
+	 * so they are moved afterwards in the same order as in 
+	 * {@link #moveHosts(double)}.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(double timeIncrement) {
+		int n = hosts.size();
+		boolean[] moved = new boolean[n];
+
+		this.updatePool.invoke(new MoveTask(hosts, moved, 0, n, timeIncrement));
+
+		for (int i=0; i<n; i++) {
+			if (!moved[i]) {
+				hosts.get(i).move(timeIncrement);
+			}
+		}
+	}
+
+	/**
+	 * Fork-join task that moves a range of hosts that don't need a new
+	 * waypoint (see {@link DTNHost#moveWithinSegment(double)}).
+	 */
+	private static class MoveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private List<DTNHost> hosts;
+		private boolean[] moved;
+		private int start;
+		private int end;
+		private double timeIncrement;
+
+		/**
+		 * Constructor.
+		 * @param hosts All hosts of the world
+		 * @param moved Array where the success of the move is stored for
+		 * each host (by the index of the host)
+		 * @param start Index of the first host to move
+		 * @param end Index of the last host to move + 1
+		 * @param timeIncrement The time how long the nodes should move
+		 */
+		public MoveTask(List<DTNHost> hosts, boolean[] moved, int start, 
+				int end, double timeIncrement) {
+			this.hosts = hosts;
+			this.moved = moved;
+			this.start = start;
+			this.end = end;
+			this.timeIncrement = timeIncrement;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= MOVE_TASK_THRESHOLD) {
+				for (int i=start; i<end; i++) {
+					moved[i] = hosts.get(i).moveWithinSegment(timeIncrement);
+				}
+				return;
+			}
+
+			int middle = (start + end) >>> 1;
+			invokeAll(new MoveTask(hosts, moved, start, middle, timeIncrement),
+					new MoveTask(hosts, moved, middle, end, timeIncrement));
+		}
 	}
 
 	/**
@@ -237,6 +578,17 @@ public class World {
 		this.isCancelled = true;
 	}
 
+	/**
+	 * Releases the worker threads of the parallel updates (if any). The world
+	 * can still be updated after this but all updates are done serially.
+	 */
+	public void shutdown() {
+		if (this.updatePool != null) {
+			this.updatePool.shutdown();
+			this.updatePool = null;
+		}
+	}
+
 	/**
 	 * Returns the hosts in a list
 	 * @return the hosts in a list
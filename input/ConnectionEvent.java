@@ -46,6 +46,38 @@ public class ConnectionEvent extends ExternalEvent {
 		from.forceConnection(to, interfaceId, this.isUp);
 	}
 	
+	/**
+	 * Returns the address of the node the (dis)connection is from
+	 * @return The address of the node
+	 */
+	public int getFromAddr() {
+		return this.fromAddr;
+	}
+
+	/**
+	 * Returns the address of the node the (dis)connection is to
+	 * @return The address of the node
+	 */
+	public int getToAddr() {
+		return this.toAddr;
+	}
+
+	/**
+	 * Returns true if this is a "connection up" event
+	 * @return true if this is a "connection up" event
+	 */
+	public boolean isUp() {
+		return this.isUp;
+	}
+
+	/**
+	 * Returns the interface id of the event (or null if not defined)
+	 * @return The interface id
+	 */
+	public String getInterfaceId() {
+		return this.interfaceId;
+	}
+
 	@Override
 	public String toString() {
 		return "CONN " + (isUp ? "up" : "down") + " @" + this.time + " " + 
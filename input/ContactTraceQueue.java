@@ -0,0 +1,199 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import core.Settings;
+
+/**
+ * <P>
+ * Event queue for replaying contact traces. The whole trace is read when
+ * the queue is created and the connection events are stored in a compact
+ * columnar table (time, host addresses, up/down and interface) instead of
+ * event objects. Other events of the trace (if any) are kept as such and
+ * returned in the same order as they were in the file.
+ * </P><P>
+ * The events file can be in any format that {@link ExternalEventsQueue}
+ * supports. This queue is meant to be used with the trace replay mode
+ * of the world (see {@link core.World#TRACE_REPLAY_S}).
+ * </P>
+ */
+public class ContactTraceQueue implements EventQueue {
+	/** path of the trace file -setting id ({@value})*/
+	public static final String PATH_SETTING = ExternalEventsQueue.PATH_SETTING;
+	/** how many events are read from the file at a time */
+	private static final int READ_CHUNK_SIZE = 10000;
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	/* the contact table; one index per connection event */
+	private double[] times;
+	private int[] fromAddrs;
+	private int[] toAddrs;
+	private boolean[] ups;
+	/** index of the interface id in interfaceIds (-1 for null) */
+	private int[] interfaces;
+	private int nrofContacts;
+	private int nextContact;
+	
+	/** names of the interfaces used in the trace */
+	private List<String> interfaceIds;
+	
+	/** other than connection events */
+	private List<ExternalEvent> otherEvents;
+	/** number of connection events before each of the other events */
+	private List<Integer> otherPositions;
+	private int nextOther;
+	
+	/**
+	 * Creates a new queue based on the given settings. The path setting 
+	 * ({@link #PATH_SETTING}) supports value filling.
+	 * @param s The settings
+	 */
+	public ContactTraceQueue(Settings s) {
+		this(s.valueFillString(s.getSetting(PATH_SETTING)));
+	}
+	
+	/**
+	 * Creates a new queue from a file
+	 * @param filePath Path to the file where the events are read from
+	 */
+	public ContactTraceQueue(String filePath) {
+		this.times = new double[INITIAL_CAPACITY];
+		this.fromAddrs = new int[INITIAL_CAPACITY];
+		this.toAddrs = new int[INITIAL_CAPACITY];
+		this.ups = new boolean[INITIAL_CAPACITY];
+		this.interfaces = new int[INITIAL_CAPACITY];
+		this.interfaceIds = new ArrayList<String>();
+		this.otherEvents = new ArrayList<ExternalEvent>();
+		this.otherPositions = new ArrayList<Integer>();
+		
+		File eventsFile = new File(filePath);
+		ExternalEventsReader reader;
+		if (MappedContactTraceReader.isContactTraceFile(eventsFile)) {
+			reader = new MappedContactTraceReader(eventsFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+			reader = new BinaryEventsReader(eventsFile);
+		}
+		else {
+			reader = new StandardEventsReader(eventsFile);
+		}
+		
+		List<ExternalEvent> events = reader.readEvents(READ_CHUNK_SIZE);
+		while (events.size() > 0) {
+			for (ExternalEvent ee : events) {
+				if (ee instanceof ConnectionEvent) {
+					addContact((ConnectionEvent)ee);
+				}
+				else {
+					otherEvents.add(ee);
+					otherPositions.add(nrofContacts);
+				}
+			}
+			events = reader.readEvents(READ_CHUNK_SIZE);
+		}
+		reader.close();
+		
+		this.nextContact = 0;
+		this.nextOther = 0;
+	}
+	
+	/**
+	 * Adds a connection event to the contact table
+	 * @param ce The event to add
+	 */
+	private void addContact(ConnectionEvent ce) {
+		if (nrofContacts == times.length) {
+			int newSize = times.length * 2;
+			times = Arrays.copyOf(times, newSize);
+			fromAddrs = Arrays.copyOf(fromAddrs, newSize);
+			toAddrs = Arrays.copyOf(toAddrs, newSize);
+			ups = Arrays.copyOf(ups, newSize);
+			interfaces = Arrays.copyOf(interfaces, newSize);
+		}
+		
+		int interfaceIndex = -1;
+		if (ce.getInterfaceId() != null) {
+			interfaceIndex = interfaceIds.indexOf(ce.getInterfaceId());
+			if (interfaceIndex == -1) {
+				interfaceIds.add(ce.getInterfaceId());
+				interfaceIndex = interfaceIds.size() - 1;
+			}
+		}
+		
+		times[nrofContacts] = ce.getTime();
+		fromAddrs[nrofContacts] = ce.getFromAddr();
+		toAddrs[nrofContacts] = ce.getToAddr();
+		ups[nrofContacts] = ce.isUp();
+		interfaces[nrofContacts] = interfaceIndex;
+		nrofContacts++;
+	}
+	
+	/**
+	 * Returns true if the next event is one of the other events (instead of
+	 * a connection event)
+	 */
+	private boolean isOtherNext() {
+		if (nextOther >= otherEvents.size()) {
+			return false;
+		}
+		if (nextContact >= nrofContacts) {
+			return true;
+		}
+		double otherTime = otherEvents.get(nextOther).getTime();
+		if (otherTime != times[nextContact]) {
+			return otherTime < times[nextContact];
+		}
+		/* same time -> the one that was first in the file */
+		return otherPositions.get(nextOther) <= nextContact;
+	}
+	
+	/**
+	 * Returns next event's time or Double.MAX_VALUE if there are no 
+	 * events left 
+	 * @return Next event's time
+	 */
+	public double nextEventsTime() {
+		if (isOtherNext()) {
+			return otherEvents.get(nextOther).getTime();
+		}
+		if (nextContact < nrofContacts) {
+			return times[nextContact];
+		}
+		return Double.MAX_VALUE;
+	}
+	
+	/**
+	 * Returns the next event in the queue or ExternalEvent with time of 
+	 * double.MAX_VALUE if there are no events left
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (isOtherNext()) {
+			return otherEvents.get(nextOther++);
+		}
+		if (nextContact >= nrofContacts) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		
+		int i = nextContact++;
+		String interfaceId = interfaces[i] == -1 ? null :
+			interfaceIds.get(interfaces[i]);
+		return new ConnectionEvent(fromAddrs[i], toAddrs[i], interfaceId, 
+				ups[i], times[i]);
+	}
+	
+	/**
+	 * Returns the number of connection events in the trace
+	 * @return The number of connection events
+	 */
+	public int getNrofContacts() {
+		return this.nrofContacts;
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Writes connection events to a binary contact trace file that can be read
+ * with {@link MappedContactTraceReader}. Can be also run from the command
+ * line to convert standard (text) or binary external events files to the
+ * binary contact trace format:<BR>
+ * <CODE>java input.ContactTraceWriter &lt;input file&gt; 
+ * &lt;output file&gt;</CODE>
+ * </P><P>
+ * File format (all values big endian):<BR>
+ * Header ({@value #HEADER_SIZE} bytes): magic (int), version (int), number
+ * of records (long), index stride (int), reserved (int), offset of the time
+ * index (long), offset of the interface table (long).<BR>
+ * Records ({@value #RECORD_SIZE} bytes each, ordered by time): time
+ * (double), from address (int), to address (int), flags (int; lowest bit
+ * is 1 for "up" events and the rest of the bits are the index of the 
+ * interface id in the interface table + 1, or 0 if no interface id was
+ * given).<BR>
+ * Time index: time (double) of every index stride'th record.<BR>
+ * Interface table: number of interface ids (int) and the ids (modified 
+ * UTF-8 strings).
+ * </P>
+ */
+public class ContactTraceWriter {
+	/** magic number in the beginning of the file */
+	public static final int MAGIC = 0x4F4E4543;
+	/** version of the file format */
+	public static final int VERSION = 1;
+	/** size of the header (bytes) */
+	public static final int HEADER_SIZE = 40;
+	/** size of one record (bytes) */
+	public static final int RECORD_SIZE = 20;
+	/** default number of records per time index entry */
+	public static final int DEF_INDEX_STRIDE = 4096;
+	/** how many events are read at a time when converting */
+	private static final int READ_CHUNK_SIZE = 10000;
+
+	private File traceFile;
+	private DataOutputStream out;
+	private int indexStride;
+	private long nrofRecords;
+	private double lastTime;
+	private List<Double> index;
+	private List<String> interfaceIds;
+
+	/**
+	 * Creates a new writer
+	 * @param traceFile The file to write to
+	 */
+	public ContactTraceWriter(File traceFile) {
+		this.traceFile = traceFile;
+		this.indexStride = DEF_INDEX_STRIDE;
+		this.nrofRecords = 0;
+		this.lastTime = -Double.MAX_VALUE;
+		this.index = new ArrayList<Double>();
+		this.interfaceIds = new ArrayList<String>();
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(traceFile)));
+			/* header is written when closing */
+			out.write(new byte[HEADER_SIZE]);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Writes a connection event
+	 * @param ce The event
+	 * @throws SimError if the event is earlier than the previous event
+	 */
+	public void write(ConnectionEvent ce) {
+		if (ce.getTime() < lastTime) {
+			throw new SimError("Events are not in time order: " + ce +
+					" after an event at " + lastTime);
+		}
+
+		int flags = ce.isUp() ? 1 : 0;
+		if (ce.getInterfaceId() != null) {
+			int i = interfaceIds.indexOf(ce.getInterfaceId());
+			if (i == -1) {
+				interfaceIds.add(ce.getInterfaceId());
+				i = interfaceIds.size() - 1;
+			}
+			flags |= (i + 1) << 1;
+		}
+
+		if (nrofRecords % indexStride == 0) {
+			index.add(ce.getTime());
+		}
+
+		try {
+			out.writeDouble(ce.getTime());
+			out.writeInt(ce.getFromAddr());
+			out.writeInt(ce.getToAddr());
+			out.writeInt(flags);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		this.lastTime = ce.getTime();
+		this.nrofRecords++;
+	}
+
+	/**
+	 * Writes the time index and the interface table and the header, and
+	 * closes the file
+	 */
+	public void close() {
+		try {
+			long indexOffset = HEADER_SIZE + nrofRecords * RECORD_SIZE;
+			for (double time : index) {
+				out.writeDouble(time);
+			}
+			long interfacesOffset = indexOffset + index.size() * 8L;
+			out.writeInt(interfaceIds.size());
+			for (String id : interfaceIds) {
+				out.writeUTF(id);
+			}
+			out.close();
+
+			RandomAccessFile raf = new RandomAccessFile(traceFile, "rw");
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeLong(nrofRecords);
+			raf.writeInt(indexStride);
+			raf.writeInt(0);
+			raf.writeLong(indexOffset);
+			raf.writeLong(interfacesOffset);
+			raf.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Returns the number of records written so far
+	 * @return The number of records
+	 */
+	public long getNrofRecords() {
+		return this.nrofRecords;
+	}
+
+	/**
+	 * Converts an external events file to a binary contact trace file
+	 * @param inFile The file to convert (standard or binary external events
+	 * file)
+	 * @param outFile The binary contact trace file to create
+	 * @return The number of converted events
+	 * @throws SimError if the input file contains other than connection
+	 * events or they are not in time order
+	 */
+	public static long convert(File inFile, File outFile) {
+		ExternalEventsReader reader;
+		if (BinaryEventsReader.isBinaryEeFile(inFile)) {
+			reader = new BinaryEventsReader(inFile);
+		}
+		else {
+			reader = new StandardEventsReader(inFile);
+		}
+
+		ContactTraceWriter writer = new ContactTraceWriter(outFile);
+		List<ExternalEvent> events = reader.readEvents(READ_CHUNK_SIZE);
+		while (events.size() > 0) {
+			for (ExternalEvent ee : events) {
+				if (!(ee instanceof ConnectionEvent)) {
+					throw new SimError("Only connection events can be " +
+							"stored to contact traces, found " + ee);
+				}
+				writer.write((ConnectionEvent)ee);
+			}
+			events = reader.readEvents(READ_CHUNK_SIZE);
+		}
+		reader.close();
+		writer.close();
+
+		return writer.getNrofRecords();
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: ContactTraceWriter <input file> " +
+					"<output file>");
+			System.exit(-1);
+		}
+		long nrof = convert(new File(args[0]), new File(args[1]));
+		System.out.println("Converted " + nrof + " events");
+	}
+}
@@ -27,10 +27,12 @@ import core.Settings;
  * or<br>
  * <code>Events2.class = RandomMessageGenerator</code>
  * <p>
- * External event files are used when the variable <code>PATH_SETTING</code>
- * is used to define the path to the event file and event generator class 
- * is loaded when the name of the class is defined with 
- * <code>CLASS_SETTING</code>. 
+ * Event queue classes are loaded when the name of the class is defined with
+ * <code>CLASS_SETTING</code>. The class gets the settings of its namespace,
+ * so queues that read a file (e.g. ExternalEventsQueue and
+ * ContactTraceQueue) find the path from <code>PATH_SETTING</code>. If only
+ * the path (or the path and a class that is not an event queue) is defined,
+ * the events are read from the file with an ExternalEventsQueue.
  */
 public class EventQueueHandler  {
 	/** Event queue settings main namespace ({@value})*/
@@ -62,8 +64,18 @@ public class EventQueueHandler  {
 
 		for (int i=1; i <= nrof; i++) {
 			Settings s = new Settings(SETTINGS_NAMESPACE + i);
+			String className = null;
+			if (s.contains(CLASS_SETTING)) {
+				className = CLASS_PACKAGE + "." + s.getSetting(CLASS_SETTING);
+			}
 
-			if (s.contains(PATH_SETTING)) { // external events file
+			if (className != null && (!s.contains(PATH_SETTING) ||
+					isEventQueueClass(className))) { // event queue class
+				EventQueue eq = (EventQueue)s.createIntializedObject(className);
+				
+				queues.add(eq);
+			}
+			else if (s.contains(PATH_SETTING)) { // external events file
 				int preload = 0;
 				String path = "";
 				if (s.contains(PRELOAD_SETTING)) {
@@ -71,18 +83,33 @@ public class EventQueueHandler  {
 				}
 				path = s.getSetting(PATH_SETTING);
 
-				queues.add(new ExternalEventsQueue(path, preload));
-			}
-			else if (s.contains(CLASS_SETTING)) { // event generator class
-				String className = CLASS_PACKAGE + "." + 
-					s.getSetting(CLASS_SETTING);
-				EventQueue eq = (EventQueue)s.createIntializedObject(className);
-				
-				queues.add(eq);
+				ExternalEventsQueue eeq = new ExternalEventsQueue(path, preload);
+				if (s.contains(ExternalEventsQueue.PREFETCH_SETTING) &&
+						s.getBoolean(ExternalEventsQueue.PREFETCH_SETTING)) {
+					eeq.startPrefetching();
+				}
+				if (s.contains(ExternalEventsQueue.START_TIME_SETTING)) {
+					eeq.skipUntil(s.getDouble(
+							ExternalEventsQueue.START_TIME_SETTING));
+				}
+				queues.add(eeq);
 			}
 		}
 	}
 	
+	/**
+	 * Returns true if the class exists and implements {@link EventQueue}
+	 * @param className Full name of the class
+	 * @return True if the class is an event queue class
+	 */
+	private static boolean isEventQueueClass(String className) {
+		try {
+			return EventQueue.class.isAssignableFrom(Class.forName(className));
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+	
 	/** 
 	 * Returns all the loaded event queues
 	 * @return all the loaded event queues
@@ -8,6 +8,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import core.DTNSim;
 import core.Settings;
 
 /**
@@ -22,6 +23,14 @@ public class ExternalEventsQueue implements EventQueue {
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
 	
+	/** start time -setting id ({@value}). Events before this time are
+	 * skipped. With binary contact trace files the first event is found 
+	 * using the time index of the file. Default = 0 (no events skipped) */
+	public static final String START_TIME_SETTING = "startTime";
+	/** prefetch -setting id ({@value}). If true, the next chunk of events
+	 * is read in a background thread while the current one is processed.
+	 * Default = false */
+	public static final String PREFETCH_SETTING = "prefetch";
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
 	
@@ -31,6 +40,18 @@ public class ExternalEventsQueue implements EventQueue {
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	/** reader of binary contact traces (null if other type of file) */
+	private MappedContactTraceReader mappedReader;
+	/** background reader of the event chunks (null if not prefetching) */
+	private Prefetcher<List<ExternalEvent>> prefetcher;
+	
+	/** queues that have a background reader running */
+	private static List<ExternalEventsQueue> prefetchingQueues;
+	
+	static {
+		DTNSim.registerForReset(ExternalEventsQueue.class.getCanonicalName());
+		reset();
+	}
 	
 	/**
 	 * Creates a new Queue from a file
@@ -60,6 +81,12 @@ public class ExternalEventsQueue implements EventQueue {
 		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
+        if (s.contains(PREFETCH_SETTING) && s.getBoolean(PREFETCH_SETTING)) {
+        	startPrefetching();
+        }
+        if (s.contains(START_TIME_SETTING)) {
+        	skipUntil(s.getDouble(START_TIME_SETTING));
+        }
     }
 
 	/**
@@ -77,7 +104,15 @@ public class ExternalEventsQueue implements EventQueue {
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
 		
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+		if (MappedContactTraceReader.isContactTraceFile(eventsFile)) {
+			/* records are read directly from the mapped file */
+			this.mappedReader = new MappedContactTraceReader(eventsFile);
+			this.reader = this.mappedReader;
+			this.queue = new ArrayList<ExternalEvent>(0);
+			this.nextEventIndex = 0;
+			return;
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
@@ -88,12 +123,42 @@ public class ExternalEventsQueue implements EventQueue {
 		this.nextEventIndex = 0;
 	}
 	
+	/**
+	 * Starts reading the events in a background thread. After this, the 
+	 * next chunk of events (see {@link #setNrofPreload(int)}) is read while
+	 * the events of the current chunk are processed. The order of the events
+	 * doesn't change. Does nothing for binary contact trace files since they
+	 * are not parsed.
+	 */
+	public void startPrefetching() {
+		if (mappedReader != null || prefetcher != null || allEventsRead) {
+			return;
+		}
+		final int chunkSize = this.nrofPreload;
+		/* one chunk waits in the queue while the next one is being read */
+		this.prefetcher = new Prefetcher<List<ExternalEvent>>(
+				"EventPrefetcher-" + eventsFile.getName(), 1) {
+			protected List<ExternalEvent> fetch() {
+				List<ExternalEvent> events = reader.readEvents(chunkSize);
+				if (events.size() == 0) {
+					return null;
+				}
+				return events;
+			}
+		};
+		prefetcher.start();
+		prefetchingQueues.add(this);
+	}
+	
 	/**
 	 * Returns next event's time or Double.MAX_VALUE if there are no 
 	 * events left 
 	 * @return Next event's time
 	 */
 	public double nextEventsTime() {
+		if (mappedReader != null) {
+			return mappedReader.peekTime();
+		}
 		if (eventsLeftInBuffer() <= 0 ) {
 			// in case user request time of an event that doesn't exist
 			return Double.MAX_VALUE;
@@ -109,6 +174,10 @@ public class ExternalEventsQueue implements EventQueue {
 	 * @return The next event
 	 */
 	public ExternalEvent nextEvent() {
+		if (mappedReader != null) {
+			ExternalEvent ee = mappedReader.next();
+			return ee != null ? ee : new ExternalEvent(Double.MAX_VALUE);
+		}
 		if (queue.size() == 0) { // no more events
 			return new ExternalEvent(Double.MAX_VALUE);
 		}
@@ -130,6 +199,10 @@ public class ExternalEventsQueue implements EventQueue {
 	 * @return The amount of events left or 0 there aren't any events
 	 */
 	public int eventsLeftInBuffer() {
+		if (mappedReader != null) {
+			return (int)Math.min(Integer.MAX_VALUE,
+					mappedReader.getNrofRecordsLeft());
+		}
 		if (queue == null || queue.size() == 0) {
 			return 0;
 		}
@@ -139,6 +212,20 @@ public class ExternalEventsQueue implements EventQueue {
 	}
 		
 	
+	/**
+	 * Skips all events that are before the given time
+	 * @param time The time of the first event that is not skipped
+	 */
+	public void skipUntil(double time) {
+		if (mappedReader != null) {
+			mappedReader.seek(time);
+			return;
+		}
+		while (nextEventsTime() < time) {
+			nextEvent();
+		}
+	}
+
 	/**
 	 * Read some events from the external events reader
 	 * @param nrof Maximum number of events to read
@@ -150,6 +237,18 @@ public class ExternalEventsQueue implements EventQueue {
 			return new ArrayList<ExternalEvent>(0);
 		}
 		
+		if (prefetcher != null) {
+			List<ExternalEvent> events = prefetcher.next();
+			if (events == null) {
+				prefetcher.close();
+				prefetchingQueues.remove(this);
+				reader.close();
+				allEventsRead = true;
+				return new ArrayList<ExternalEvent>(0);
+			}
+			return events;
+		}
+		
 		List<ExternalEvent> events = reader.readEvents(nrof);
 		
 		if (nrof > 0 && events.size() == 0) {
@@ -160,4 +259,35 @@ public class ExternalEventsQueue implements EventQueue {
 		return events;
 	}
 	
+	/**
+	 * Stops reading events and closes the events file. No events are 
+	 * returned after this.
+	 */
+	public void close() {
+		if (prefetcher != null) {
+			prefetcher.close();
+			prefetchingQueues.remove(this);
+		}
+		if (!allEventsRead) {
+			reader.close();
+			allEventsRead = true;
+		}
+		this.mappedReader = null;
+		this.queue = new ArrayList<ExternalEvent>(0);
+		this.nextEventIndex = 0;
+	}
+	
+	/**
+	 * Stops the background readers of all queues (between batch runs)
+	 */
+	public static void reset() {
+		if (prefetchingQueues != null) {
+			for (ExternalEventsQueue eeq : 
+					new ArrayList<ExternalEventsQueue>(prefetchingQueues)) {
+				eeq.close();
+			}
+		}
+		prefetchingQueues = new ArrayList<ExternalEventsQueue>();
+	}
+	
 }
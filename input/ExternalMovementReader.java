@@ -40,6 +40,10 @@ public class ExternalMovementReader {
 	public static final String COMMENT_PREFIX = "#";
 	private Scanner scanner;
 	private double lastTimeStamp = -1;
+	/** time stamp of the latest movements read from the file */
+	private double readTimeStamp = -1;
+	/** background reader of the time instances (null if not prefetching) */
+	private Prefetcher<Tuple<Double, List<Tuple<String, Coord>>>> prefetcher;
 	private String lastLine;
 	private double minTime;
 	private double maxTime;
@@ -92,12 +96,57 @@ public class ExternalMovementReader {
 		this.normalize = normalize;
 	}
 	
+	/**
+	 * Starts reading the movements in a background thread. After this, the
+	 * next time instances are read while the simulation processes the
+	 * current ones. The returned movements are the same as without 
+	 * prefetching.
+	 * @param nrofInstances Maximum number of time instances to read ahead
+	 */
+	public void startPrefetching(int nrofInstances) {
+		if (prefetcher != null) {
+			return;
+		}
+		this.prefetcher = 
+			new Prefetcher<Tuple<Double, List<Tuple<String, Coord>>>>(
+					"MovementPrefetcher", nrofInstances) {
+			protected Tuple<Double, List<Tuple<String, Coord>>> fetch() {
+				List<Tuple<String, Coord>> moves = readMovements();
+				if (moves.size() == 0) {
+					return null;
+				}
+				return new Tuple<Double, List<Tuple<String, Coord>>>(
+						readTimeStamp, moves);
+			}
+		};
+		prefetcher.start();
+	}
+	
 	/**
 	 * Reads all new id-coordinate tuples that belong to the same time instance
 	 * @return A list of tuples or empty list if there were no more moves
 	 * @throws SettingError if an invalid line was read
 	 */
 	public List<Tuple<String, Coord>> readNextMovements() {
+		if (prefetcher == null) {
+			List<Tuple<String, Coord>> moves = readMovements();
+			lastTimeStamp = readTimeStamp;
+			return moves;
+		}
+		
+		Tuple<Double, List<Tuple<String, Coord>>> instance = prefetcher.next();
+		if (instance == null) {
+			return new ArrayList<Tuple<String, Coord>>();
+		}
+		lastTimeStamp = instance.getKey();
+		return instance.getValue();
+	}
+	
+	/**
+	 * Reads the tuples of the next time instance from the file
+	 * @return A list of tuples or empty list if there were no more moves
+	 */
+	private List<Tuple<String, Coord>> readMovements() {
 		ArrayList<Tuple<String, Coord>> moves = 
 			new ArrayList<Tuple<String, Coord>>();
 		
@@ -117,9 +166,9 @@ public class ExternalMovementReader {
 			y -= minY;
 		}
 		
-		lastTimeStamp = time;
+		readTimeStamp = time;
 		
-		while (scanner.hasNextLine() && lastTimeStamp == time) {
+		while (scanner.hasNextLine() && readTimeStamp == time) {
 			lastLine = scanner.nextLine();
 			
 			if (lastLine.trim().length() == 0 || 
@@ -155,6 +204,16 @@ public class ExternalMovementReader {
 		return moves;
 	}
 	
+	/**
+	 * Stops reading (and the background thread, if any) and closes the file
+	 */
+	public void close() {
+		if (prefetcher != null) {
+			prefetcher.close();
+		}
+		scanner.close();
+	}
+	
 	/**
 	 * Returns the time stamp where the last moves read with 
 	 * {@link #readNextMovements()} belong to.
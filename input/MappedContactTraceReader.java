@@ -0,0 +1,246 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Reads connection events from a binary contact trace file (see
+ * {@link ContactTraceWriter} for the format) through memory mapped buffers.
+ * Records have fixed size so any record can be read directly without
+ * parsing the ones before it, and the time index of the file is used for
+ * seeking to a given sim time (see {@link #seek(double)}).
+ * </P><P>
+ * Besides the {@link ExternalEventsReader} interface, the records can be
+ * accessed one by one with {@link #peekTime()} and {@link #next()}, which
+ * is what {@link ExternalEventsQueue} uses so that no events are buffered.
+ * </P>
+ */
+public class MappedContactTraceReader implements ExternalEventsReader {
+	/** Extension of binary contact trace files ({@value}) */
+	public static final String CONTACT_TRACE_EXT = ".bct";
+	/** max number of records in one mapped segment */
+	private static final int RECORDS_PER_SEGMENT =
+		Integer.MAX_VALUE / ContactTraceWriter.RECORD_SIZE;
+
+	private RandomAccessFile file;
+	private MappedByteBuffer[] segments;
+	private long nrofRecords;
+	private long nextRecord;
+	private int indexStride;
+	private double[] index;
+	private String[] interfaceIds;
+
+	/**
+	 * Constructor.
+	 * @param traceFile The file where the events are read
+	 */
+	public MappedContactTraceReader(File traceFile) {
+		try {
+			this.file = new RandomAccessFile(traceFile, "r");
+			if (file.readInt() != ContactTraceWriter.MAGIC) {
+				throw new SimError("Invalid binary contact trace file: " +
+						traceFile.getAbsolutePath());
+			}
+			int version = file.readInt();
+			if (version != ContactTraceWriter.VERSION) {
+				throw new SimError("Unsupported binary contact trace " +
+						"version " + version + " in " +
+						traceFile.getAbsolutePath());
+			}
+			this.nrofRecords = file.readLong();
+			this.indexStride = file.readInt();
+			file.readInt(); // reserved
+			long indexOffset = file.readLong();
+			long interfacesOffset = file.readLong();
+
+			mapRecords();
+			readIndex(indexOffset);
+			readInterfaceIds(interfacesOffset);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		this.nextRecord = 0;
+	}
+
+	private void mapRecords() throws IOException {
+		FileChannel channel = file.getChannel();
+		int nrofSegments = (int)((nrofRecords + RECORDS_PER_SEGMENT - 1) /
+				RECORDS_PER_SEGMENT);
+		this.segments = new MappedByteBuffer[nrofSegments];
+		for (int i=0; i<nrofSegments; i++) {
+			long first = (long)i * RECORDS_PER_SEGMENT;
+			long count = Math.min(RECORDS_PER_SEGMENT, nrofRecords - first);
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+					ContactTraceWriter.HEADER_SIZE +
+					first * ContactTraceWriter.RECORD_SIZE,
+					count * ContactTraceWriter.RECORD_SIZE);
+		}
+	}
+
+	private void readIndex(long offset) throws IOException {
+		int nrofEntries = (int)((nrofRecords + indexStride - 1) / indexStride);
+		this.index = new double[nrofEntries];
+		file.getChannel().map(FileChannel.MapMode.READ_ONLY, offset,
+				nrofEntries * 8L).asDoubleBuffer().get(index);
+	}
+
+	private void readInterfaceIds(long offset) throws IOException {
+		file.seek(offset);
+		int nrof = file.readInt();
+		this.interfaceIds = new String[nrof];
+		for (int i=0; i<nrof; i++) {
+			interfaceIds[i] = file.readUTF();
+		}
+	}
+
+	/**
+	 * Checks if the given file is a binary contact trace file
+	 * @param file The file to check
+	 * @return True if the file has the contact trace extension
+	 */
+	public static boolean isContactTraceFile(File file) {
+		return file.getName().endsWith(CONTACT_TRACE_EXT);
+	}
+
+	/**
+	 * Returns the segment that contains the record
+	 */
+	private MappedByteBuffer segment(long record) {
+		return segments[(int)(record / RECORDS_PER_SEGMENT)];
+	}
+
+	/**
+	 * Returns the position of the record in its segment
+	 */
+	private int position(long record) {
+		return (int)(record % RECORDS_PER_SEGMENT) *
+			ContactTraceWriter.RECORD_SIZE;
+	}
+
+	/**
+	 * Returns the time of a record
+	 * @param record Index of the record
+	 * @return The time
+	 */
+	private double getTime(long record) {
+		return segment(record).getDouble(position(record));
+	}
+
+	/**
+	 * Returns the total number of records in the file
+	 * @return The number of records
+	 */
+	public long getNrofRecords() {
+		return this.nrofRecords;
+	}
+
+	/**
+	 * Returns the number of records that haven't been read yet
+	 * @return The number of records left
+	 */
+	public long getNrofRecordsLeft() {
+		return this.nrofRecords - this.nextRecord;
+	}
+
+	/**
+	 * Moves the read position to the first record whose time is equal to or
+	 * larger than the given time. The time index is used for finding the
+	 * right block of records and the record is searched from the block with
+	 * binary search so only a few records are accessed.
+	 * @param time The time to seek to
+	 */
+	public void seek(double time) {
+		/* last index entry with time < the time */
+		int lo = 0;
+		int hi = index.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (index[mid] < time) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		long first = Math.max(0, (long)(lo - 1) * indexStride);
+		long last = Math.min(nrofRecords, (long)lo * indexStride);
+
+		/* first record in [first, last) with time >= the time */
+		while (first < last) {
+			long mid = (first + last) >>> 1;
+			if (getTime(mid) < time) {
+				first = mid + 1;
+			}
+			else {
+				last = mid;
+			}
+		}
+		this.nextRecord = first;
+	}
+
+	/**
+	 * Returns the time of the next record or Double.MAX_VALUE if there are
+	 * no records left
+	 * @return The time of the next record
+	 */
+	public double peekTime() {
+		if (nextRecord >= nrofRecords) {
+			return Double.MAX_VALUE;
+		}
+		return getTime(nextRecord);
+	}
+
+	/**
+	 * Returns the next record as a connection event and moves to the next
+	 * record
+	 * @return The next event or null if there are no records left
+	 */
+	public ConnectionEvent next() {
+		if (nextRecord >= nrofRecords) {
+			return null;
+		}
+		MappedByteBuffer b = segment(nextRecord);
+		int pos = position(nextRecord);
+		nextRecord++;
+
+		double time = b.getDouble(pos);
+		int from = b.getInt(pos + 8);
+		int to = b.getInt(pos + 12);
+		int flags = b.getInt(pos + 16);
+		int interfaceIndex = (flags >>> 1) - 1;
+		String interfaceId = interfaceIndex < 0 ? null :
+			interfaceIds[interfaceIndex];
+
+		return new ConnectionEvent(from, to, interfaceId, (flags & 1) != 0,
+				time);
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		int count = (int)Math.min(nrof, getNrofRecordsLeft());
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(count);
+		for (int i=0; i<count; i++) {
+			events.add(next());
+		}
+		return events;
+	}
+
+	public void close() {
+		try {
+			this.file.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+}
@@ -29,6 +29,30 @@ public abstract class MessageEvent extends ExternalEvent {
 		this.id = id;
 	}
 	
+	/**
+	 * Returns the address of the node the message is from
+	 * @return The address of the node
+	 */
+	public int getFromAddr() {
+		return this.fromAddr;
+	}
+
+	/**
+	 * Returns the address of the node the message is to
+	 * @return The address of the node
+	 */
+	public int getToAddr() {
+		return this.toAddr;
+	}
+
+	/**
+	 * Returns the identifier of the message
+	 * @return The identifier of the message
+	 */
+	public String getId() {
+		return this.id;
+	}
+
 	@Override
 	public String toString() {
 		return "MSG @" + this.time + " " + id;
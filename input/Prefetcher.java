@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Reads items (e.g., chunks of events) ahead of time in a background
+ * thread. The items are read with {@link #fetch()} one after another and
+ * put to a bounded queue from where the simulation thread takes them in the
+ * same order with {@link #next()}. At most <CODE>capacity</CODE> items
+ * wait in the queue (and one more can be under reading) so the memory use
+ * stays bounded.
+ * </P><P>
+ * Everything that {@link #fetch()} uses is accessed only by the background
+ * thread after {@link #start()} so the subclasses need no synchronization.
+ * Exceptions thrown by fetch are passed to the simulation thread and
+ * re-thrown by {@link #next()}.
+ * </P>
+ * @param <T> Type of the items
+ */
+public abstract class Prefetcher<T> implements Runnable {
+	/** marker for the end of the items */
+	private static final Object END = new Object();
+
+	private BlockingQueue<Object> queue;
+	private Thread thread;
+	private volatile boolean closed;
+	private boolean ended;
+
+	/**
+	 * Constructor.
+	 * @param name Name of the background thread
+	 * @param capacity Maximum number of items that are read ahead
+	 */
+	public Prefetcher(String name, int capacity) {
+		this.queue = new ArrayBlockingQueue<Object>(Math.max(capacity, 1));
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+		this.closed = false;
+		this.ended = false;
+	}
+
+	/**
+	 * Starts reading the items in the background
+	 */
+	public void start() {
+		this.thread.start();
+	}
+
+	/**
+	 * Reads the next item. Called from the background thread.
+	 * @return The next item or null if there are no more items
+	 */
+	protected abstract T fetch();
+
+	public void run() {
+		try {
+			while (!closed) {
+				T item = fetch();
+				if (item == null) {
+					queue.put(END);
+					return;
+				}
+				queue.put(item);
+			}
+		} catch (InterruptedException e) {
+			return; // closed
+		} catch (Throwable t) {
+			if (closed) {
+				return; // e.g. reading was interrupted by close()
+			}
+			try {
+				queue.put(t);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the next item. Blocks until the item has been read.
+	 * @return The next item or null if there are no more items
+	 * @throws SimError if the reading thread was interrupted. Exceptions
+	 * thrown while reading the item are re-thrown as is.
+	 */
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (ended || closed) {
+			return null;
+		}
+
+		Object o;
+		try {
+			o = queue.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while waiting for input", e);
+		}
+
+		if (o == END) {
+			ended = true;
+			return null;
+		}
+		if (o instanceof Throwable) {
+			ended = true;
+			if (o instanceof RuntimeException) {
+				throw (RuntimeException)o;
+			}
+			if (o instanceof Error) {
+				throw (Error)o;
+			}
+			throw new SimError((Exception)o);
+		}
+		return (T)o;
+	}
+
+	/**
+	 * Stops the background thread and waits until it has finished. After
+	 * this, {@link #next()} returns null.
+	 */
+	public void close() {
+		this.closed = true;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		queue.clear();
+	}
+}
@@ -5,11 +5,14 @@
 package input;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.util.NoSuchElementException;
 
 import core.SimError;
 
@@ -61,108 +64,126 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */ 
 	public static final String ALL_MESSAGES_ID = "*";
 	
-	private Scanner scanner;
+	/** size of the read buffer (bytes) */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** largest integer that can be stored in a double exactly (2^53) */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** exactly representable powers of ten */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4,
+		1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+		1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	
+	private InputStream in;
+	private byte[] buffer;
+	private int bufferPos;
+	private int bufferEnd;
+	/** was the previous line terminated with '\r' (so '\n' is skipped) */
+	private boolean skipLf;
+	
+	/* the current line and the tokenizer's position in it */
+	private byte[] line;
+	private int lineLength;
+	private int pos;
+	private int tokenStart;
+	private int tokenEnd;
 	
 	public StandardEventsReader(File eventsFile){
 		try {
-			this.scanner = new Scanner(eventsFile);
+			this.in = new FileInputStream(eventsFile);
 		} catch (FileNotFoundException e) {
 			throw new SimError(e.getMessage(),e);
 		}
+		this.buffer = new byte[BUFFER_SIZE];
+		this.line = new byte[256];
 	}
 	
 	
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 
-		while (eventsRead < nrof && scanner.hasNextLine()) {
-			String line = scanner.nextLine();
-			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
+		while (eventsRead < nrof && readLine()) {
+			if (isSkippedLine()) {
 				// skip empty and comment lines
 				continue;
 			}
 			
 			double time;
-			String action;
-			String msgId;
 			int hostAddr;
 			int host2Addr;
+			String msgId;
 					
 			try {
-				time = lineScan.nextDouble();
-				action = lineScan.next();		
+				pos = 0;
+				time = nextDouble();
+				nextToken();
 			
-				if (action.equals(DROP)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
+				if (tokenEquals(DROP)) {
+					msgId = nextString();
+					hostAddr = nextHostAddress();
 					events.add(new MessageDeleteEvent(hostAddr, msgId,
 							time, true));
 				}
-				else if (action.equals(REMOVE)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
+				else if (tokenEquals(REMOVE)) {
+					msgId = nextString();
+					hostAddr = nextHostAddress();
 					events.add(new MessageDeleteEvent(hostAddr, msgId,
 							time, false));
 				}
-				else if (action.equals(CONNECTION)) {
-					String connEventType;
+				else if (tokenEquals(CONNECTION)) {
 					boolean isUp;
-					hostAddr = getHostAddress(lineScan.next());
-					host2Addr = getHostAddress(lineScan.next());
-					connEventType = lineScan.next();
-					
-					String interfaceId = null;
-					if (lineScan.hasNext()) {
-						interfaceId = lineScan.next();
-					}	
+					hostAddr = nextHostAddress();
+					host2Addr = nextHostAddress();
+					nextToken();
 					
-					if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
+					if (tokenEqualsIgnoreCase(CONNECTION_UP)) {
 						isUp = true;
 					}
-					else if (connEventType.equalsIgnoreCase(CONNECTION_DOWN)) {
+					else if (tokenEqualsIgnoreCase(CONNECTION_DOWN)) {
 						isUp = false;
 					}
 					else {
 						throw new SimError("Unknown up/down value '" + 
-								connEventType + "'");
+								tokenString() + "'");
 					}
 					
-					ConnectionEvent ce = new ConnectionEvent(hostAddr, 
-							host2Addr, interfaceId, isUp, time);
+					String interfaceId = null;
+					if (hasNextToken()) {
+						interfaceId = nextString();
+					}	
 					
-					events.add(ce);
+					events.add(new ConnectionEvent(hostAddr, 
+							host2Addr, interfaceId, isUp, time));
 				}
 				else {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-				
-					host2Addr = getHostAddress(lineScan.next());
+					boolean create = tokenEquals(CREATE);
+					int stage = -1;
+					if (tokenEquals(SEND)) {
+						stage = MessageRelayEvent.SENDING;
+					}
+					else if (tokenEquals(DELIVERED)) {
+						stage = MessageRelayEvent.TRANSFERRED;
+					}
+					else if (tokenEquals(ABORT)) {
+						stage = MessageRelayEvent.ABORTED;
+					}
+					String action = tokenString();
+					
+					msgId = nextString();
+					hostAddr = nextHostAddress();
+					host2Addr = nextHostAddress();
 				
-					if (action.equals(CREATE)){
-						int size = lineScan.nextInt();
+					if (create){
+						int size = nextInt();
 						int respSize = 0;
-						if (lineScan.hasNextInt()) {
-							respSize = lineScan.nextInt();
+						if (hasNextToken() && tokenIsInt(peekToken())) {
+							respSize = nextInt();
 						}
 						events.add(new MessageCreateEvent(hostAddr, host2Addr,
 								msgId, size, respSize, time));
 					}
 					else {
-						int stage = -1;
-						if (action.equals(SEND)) {
-							stage = MessageRelayEvent.SENDING;
-						}
-						else if (action.equals(DELIVERED)) {
-							stage = MessageRelayEvent.TRANSFERRED;
-						}
-						else if (action.equals(ABORT)) {
-							stage = MessageRelayEvent.ABORTED;
-						}
-						else {
+						if (stage == -1) {
 							throw new SimError("Unknown action '" + action + 
 								"' in external events");
 						}
@@ -170,45 +191,290 @@ public class StandardEventsReader implements ExternalEventsReader {
 								msgId, time, stage));
 					}						
 				}
-				// discard the newline in the end
-				if (lineScan.hasNextLine()) {
-					lineScan.nextLine(); // TODO: test
-				}
+				// rest of the line is ignored
 				eventsRead++;
 			} catch (Exception e) {
 				throw new SimError("Can't parse external event " + 
-						(eventsRead+1) + " from '" + line + "'", e);
+						(eventsRead+1) + " from '" + 
+						new String(line, 0, lineLength) + "'", e);
 			}
 		}
 		
 		return events;
 	}
+	
+	/**
+	 * Reads the next line to the line buffer
+	 * @return True if a line was read, false if the end of the file was
+	 * reached
+	 */
+	private boolean readLine() {
+		lineLength = 0;
+		boolean readSomething = false;
+		
+		while (true) {
+			if (bufferPos == bufferEnd) {
+				try {
+					bufferEnd = in.read(buffer, 0, buffer.length);
+				} catch (IOException e) {
+					throw new SimError(e);
+				}
+				bufferPos = 0;
+				if (bufferEnd <= 0) {
+					bufferEnd = 0;
+					return readSomething;
+				}
+			}
+			
+			byte b = buffer[bufferPos++];
+			if (skipLf) {
+				skipLf = false;
+				if (b == '\n') {
+					continue; // second half of "\r\n"
+				}
+			}
+			if (b == '\n') {
+				return true;
+			}
+			if (b == '\r') {
+				skipLf = true;
+				return true;
+			}
+			
+			if (lineLength == line.length) {
+				line = Arrays.copyOf(line, line.length * 2);
+			}
+			line[lineLength++] = b;
+			readSomething = true;
+		}
+	}
+	
+	/**
+	 * Returns true if the current line is empty, contains only white space,
+	 * or is a comment line (starts with '#')
+	 */
+	private boolean isSkippedLine() {
+		if (lineLength > 0 && line[0] == '#') {
+			return true;
+		}
+		for (int i=0; i<lineLength; i++) {
+			if (!isWhitespace(line[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+	}
+	
+	/**
+	 * Returns true if there's another token in the current line
+	 */
+	private boolean hasNextToken() {
+		int i = pos;
+		while (i < lineLength && isWhitespace(line[i])) {
+			i++;
+		}
+		return i < lineLength;
+	}
+	
+	/**
+	 * Moves to the next token of the line (sets tokenStart and tokenEnd)
+	 * @throws NoSuchElementException if there are no more tokens
+	 */
+	private void nextToken() {
+		while (pos < lineLength && isWhitespace(line[pos])) {
+			pos++;
+		}
+		if (pos == lineLength) {
+			throw new NoSuchElementException();
+		}
+		tokenStart = pos;
+		while (pos < lineLength && !isWhitespace(line[pos])) {
+			pos++;
+		}
+		tokenEnd = pos;
+	}
+	
+	/**
+	 * Returns the end index of the next token without consuming it (the
+	 * start index is stored to tokenStart)
+	 */
+	private int peekToken() {
+		int oldPos = pos;
+		nextToken();
+		int end = tokenEnd;
+		pos = oldPos;
+		return end;
+	}
+	
+	private boolean tokenEquals(String s) {
+		int len = tokenEnd - tokenStart;
+		if (len != s.length()) {
+			return false;
+		}
+		for (int i=0; i<len; i++) {
+			if (line[tokenStart + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean tokenEqualsIgnoreCase(String s) {
+		int len = tokenEnd - tokenStart;
+		if (len != s.length()) {
+			return false;
+		}
+		for (int i=0; i<len; i++) {
+			if (Character.toLowerCase((char)line[tokenStart + i]) != 
+				Character.toLowerCase(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private String tokenString() {
+		return new String(line, tokenStart, tokenEnd - tokenStart);
+	}
+	
+	private String nextString() {
+		nextToken();
+		return tokenString();
+	}
+	
+	/**
+	 * Returns true if the token that ends at the given index (and starts at
+	 * tokenStart) is a valid integer
+	 */
+	private boolean tokenIsInt(int end) {
+		int i = tokenStart;
+		if (i < end && (line[i] == '-' || line[i] == '+')) {
+			i++;
+		}
+		if (i == end) {
+			return false;
+		}
+		for (int j=i; j<end; j++) {
+			if (line[j] < '0' || line[j] > '9') {
+				return false;
+			}
+		}
+		if (end - i > 9) { /* may not fit to an int */
+			try {
+				Integer.parseInt(new String(line, tokenStart, end - tokenStart));
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private int nextInt() {
+		nextToken();
+		if (tokenEnd - tokenStart > 9 || !tokenIsInt(tokenEnd)) {
+			return Integer.parseInt(tokenString());
+		}
+		int i = tokenStart;
+		boolean negative = line[i] == '-';
+		if (line[i] == '-' || line[i] == '+') {
+			i++;
+		}
+		int value = 0;
+		for (; i<tokenEnd; i++) {
+			value = value * 10 + (line[i] - '0');
+		}
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Parses the next token as a double. Plain decimal numbers whose 
+	 * digits fit exactly to a double are parsed directly (the result is
+	 * then the same as with {@link Double#parseDouble(String)}); other 
+	 * formats are passed to Double.parseDouble.
+	 */
+	private double nextDouble() {
+		nextToken();
+		int i = tokenStart;
+		boolean negative = false;
+		if (line[i] == '-' || line[i] == '+') {
+			negative = line[i] == '-';
+			i++;
+		}
+		
+		long mantissa = 0;
+		int decimals = 0;
+		boolean dot = false;
+		int digits = 0;
+		for (; i<tokenEnd; i++) {
+			byte b = line[i];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (dot) {
+					decimals++;
+				}
+				if (mantissa >= MAX_EXACT_MANTISSA) {
+					break; // too many digits for the fast path
+				}
+			}
+			else if (b == '.' && !dot) {
+				dot = true;
+			}
+			else {
+				break; // exponent or something else
+			}
+		}
+		
+		if (i != tokenEnd || digits == 0 || 
+				decimals >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(tokenString());
+		}
+		
+		double value = mantissa / POWERS_OF_TEN[decimals];
+		return negative ? -value : value;
+	}
 
 	/**
-	 * Parses a host address from a hostId string (the numeric part after
-	 * optional non-numeric part).
-	 * @param hostId The id to parse the address from
+	 * Parses a host address from the next token (a hostId string). The 
+	 * address is the numeric part after optional non-numeric part.
 	 * @return The address
 	 * @throws SimError if no address could be parsed from the id
 	 */
-	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
+	private int nextHostAddress() {
+		nextToken();
+		int i = tokenStart;
+		while (i < tokenEnd && (line[i] < '0' || line[i] > '9')) {
+			i++;
+		}
+		int digitsStart = i;
+		while (i < tokenEnd && line[i] >= '0' && line[i] <= '9') {
+			i++;
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
+		if (digitsStart == tokenEnd || i != tokenEnd) {
+			throw new SimError("Invalid host ID '" + tokenString() + "'");
 		}
-		else {
-			throw new SimError("Invalid host ID '" + hostId + "'");
+		if (tokenEnd - digitsStart > 9) {
+			return Integer.parseInt(new String(line, digitsStart, 
+					tokenEnd - digitsStart));
 		}
 		
-		return Integer.parseInt(addressPart);
+		int address = 0;
+		for (i = digitsStart; i < tokenEnd; i++) {
+			address = address * 10 + (line[i] - '0');
+		}
+		return address;
 	}
 	
 	public void close() {
-		this.scanner.close();
+		try {
+			this.in.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
 	}
 
 }
@@ -14,6 +14,7 @@ import core.Coord;
 import core.DTNSim;
 import core.NetworkInterface;
 import core.Settings;
+import core.SimProfiler;
 
 /**
  * <P>
@@ -47,6 +48,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	private static int worldSizeY;
 
 	static HashMap<Integer,ConnectivityGrid> gridobjects;
+	/** profiling span of the near interface queries */
+	private static final SimProfiler.Span NEAR_SPAN =
+		SimProfiler.span("ConnectivityGrid.getNearInterfaces");
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
@@ -204,6 +208,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
+		long start = SimProfiler.start();
 		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
 		ni.clear();
 
@@ -215,6 +220,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 				ni.addAll(neighbors[i].getInterfaces());
 			}
 		}
+		NEAR_SPAN.end(start);
 		return ni;
 	}
 
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+import movement.MovementModel;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimProfiler;
+
+/**
+ * <P>
+ * Flat spatial hash alternative to {@link ConnectivityGrid}. Instead of
+ * keeping a list of interfaces per cell and moving the interfaces between
+ * the lists, this optimizer keeps the interfaces in one array that is
+ * sorted by cell (with a counting sort) and an array that tells where each
+ * cell's interfaces start. The arrays are rebuilt only when some interface
+ * is found to have changed its cell, i.e., at most about once per update
+ * step since all nodes are moved before their connections are updated.
+ * </P>
+ * <P>
+ * Neighbor queries iterate the index ranges of the 3x3 cells around the
+ * interface and fill one reused list so no objects are created per query.
+ * <strong>Note:</strong> the collection returned by
+ * {@link #getNearInterfaces(NetworkInterface)} is valid only until the next
+ * call of the method. Locations outside the world are clamped to the edge
+ * cells.
+ * </P>
+ */
+public class SpatialHashGrid extends ConnectivityOptimizer {
+	private static final int INITIAL_CAPACITY = 64;
+	/** profiling span of the near interface queries */
+	private static final SimProfiler.Span NEAR_SPAN =
+		SimProfiler.span("SpatialHashGrid.getNearInterfaces");
+
+	private int cellSize;
+	private int rows;
+	private int cols;
+	private static int worldSizeX;
+	private static int worldSizeY;
+
+	/** all interfaces, index is the interface's index in the other arrays */
+	private NetworkInterface[] interfaces;
+	private int nrofInterfaces;
+	private HashMap<NetworkInterface, Integer> indexes;
+	/** cell of each interface at the time of the last rebuild */
+	private int[] cellOf;
+	/** interface indexes sorted by cell */
+	private int[] sorted;
+	/** start index (in sorted) of each cell, one extra element at the end */
+	private int[] cellStart;
+	/** true if the arrays don't match the interfaces' cells anymore */
+	private boolean dirty;
+	/** list that is reused for the results of neighbor queries */
+	private ArrayList<NetworkInterface> near;
+
+	static HashMap<Integer, SpatialHashGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(SpatialHashGrid.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer, SpatialHashGrid>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldSizeX = worldSize[0];
+		worldSizeY = worldSize[1];
+	}
+
+	/**
+	 * Creates a new spatial hash grid
+	 * @param cellSize Cell's edge's length (must be at least as large as the
+	 * largest radio range)
+	 */
+	private SpatialHashGrid(int cellSize) {
+		this.cellSize = cellSize;
+		this.rows = worldSizeY/cellSize + 1;
+		this.cols = worldSizeX/cellSize + 1;
+		this.interfaces = new NetworkInterface[INITIAL_CAPACITY];
+		this.cellOf = new int[INITIAL_CAPACITY];
+		this.sorted = new int[INITIAL_CAPACITY];
+		this.cellStart = new int[rows * cols + 1];
+		this.nrofInterfaces = 0;
+		this.indexes = new HashMap<NetworkInterface, Integer>();
+		this.near = new ArrayList<NetworkInterface>();
+		this.dirty = true;
+	}
+
+	/**
+	 * Returns a spatial hash grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param cellSize Cell's edge's length (must be at least as large as the
+	 * largest radio range)
+	 * @return The spatial hash grid object for a specific interface
+	 */
+	public static SpatialHashGrid SpatialHashGridFactory(int key,
+			double cellSize) {
+		SpatialHashGrid grid = gridobjects.get(key);
+		if (grid == null) {
+			grid = new SpatialHashGrid((int)Math.ceil(cellSize));
+			gridobjects.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Adds a network interface to the grid (unless it is already present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (indexes.containsKey(ni)) {
+			return;
+		}
+		if (nrofInterfaces == interfaces.length) {
+			int newSize = interfaces.length * 2;
+			NetworkInterface[] newInterfaces = new NetworkInterface[newSize];
+			System.arraycopy(interfaces, 0, newInterfaces, 0, nrofInterfaces);
+			this.interfaces = newInterfaces;
+			this.cellOf = new int[newSize];
+			this.sorted = new int[newSize];
+		}
+		indexes.put(ni, nrofInterfaces);
+		interfaces[nrofInterfaces++] = ni;
+		this.dirty = true;
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks if the interface has moved to another cell since the last
+	 * rebuild and, if so, marks the grid to be rebuilt before the next query
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		if (dirty) {
+			return; // will be rebuilt anyway
+		}
+		Integer index = indexes.get(ni);
+		if (index != null && cellFromCoord(ni.getLocation()) != cellOf[index]) {
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Returns all interfaces using the same technology and channel that are in
+	 * the same or neighboring cells. The returned collection is reused and
+	 * is valid only until the next call of this method.
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf) {
+		long start = SimProfiler.start();
+		near.clear();
+		if (!indexes.containsKey(netinterf)) {
+			NEAR_SPAN.end(start);
+			return near;
+		}
+		if (dirty) {
+			rebuild();
+		}
+
+		Coord c = netinterf.getLocation();
+		int row = rowFromCoord(c);
+		int col = colFromCoord(c);
+		int firstRow = Math.max(row - 1, 0);
+		int lastRow = Math.min(row + 1, rows - 1);
+		int firstCol = Math.max(col - 1, 0);
+		int lastCol = Math.min(col + 1, cols - 1);
+
+		for (int r = firstRow; r <= lastRow; r++) {
+			/* cells of adjacent columns are consecutive in sorted */
+			int end = cellStart[r * cols + lastCol + 1];
+			for (int i = cellStart[r * cols + firstCol]; i < end; i++) {
+				near.add(interfaces[sorted[i]]);
+			}
+		}
+		NEAR_SPAN.end(start);
+		return near;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return Collections.unmodifiableCollection(indexes.keySet());
+	}
+
+	/**
+	 * Sorts the interfaces by their current cell using counting sort
+	 */
+	private void rebuild() {
+		int nrofCells = cellStart.length - 1;
+		Arrays.fill(cellStart, 0);
+
+		for (int i = 0; i < nrofInterfaces; i++) {
+			int cell = cellFromCoord(interfaces[i].getLocation());
+			cellOf[i] = cell;
+			cellStart[cell + 1]++;
+		}
+		for (int cell = 0; cell < nrofCells; cell++) {
+			cellStart[cell + 1] += cellStart[cell];
+		}
+		/* place interfaces using cellStart[cell] as the insert position and
+		 * shift the positions back afterwards */
+		for (int i = 0; i < nrofInterfaces; i++) {
+			sorted[cellStart[cellOf[i]]++] = i;
+		}
+		for (int cell = nrofCells; cell > 0; cell--) {
+			cellStart[cell] = cellStart[cell - 1];
+		}
+		cellStart[0] = 0;
+
+		this.dirty = false;
+	}
+
+	private int rowFromCoord(Coord c) {
+		int row = (int)(c.getY() / cellSize);
+		return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+	}
+
+	private int colFromCoord(Coord c) {
+		int col = (int)(c.getX() / cellSize);
+		return col < 0 ? 0 : (col >= cols ? cols - 1 : col);
+	}
+
+	private int cellFromCoord(Coord c) {
+		return rowFromCoord(c) * cols + colFromCoord(c);
+	}
+
+	/**
+	 * Returns a string representation of the object
+	 * @return a string representation of the object
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
+}
@@ -94,6 +94,28 @@ public class ActivenessHandler {
 		return curRange.isInRange(time);
 	}
 
+	/**
+	 * Returns the next sim time when the activeness of the node may change
+	 * @return The time of the next change or Double.MAX_VALUE if the
+	 * activeness doesn't change anymore
+	 */
+	public double nextChangeTime() {
+		if (this.activeTimes == null || this.curRange == null) {
+			return Double.MAX_VALUE;
+		}
+		
+		double time = SimClock.getTime();
+		if (time < this.curRange.start) {
+			return this.curRange.start;
+		}
+		if (!this.curRange.isOut(time)) {
+			return this.curRange.end;
+		}
+		
+		TimeRange next = activeTimes.peek();
+		return next == null ? Double.MAX_VALUE : next.start;
+	}
+
 	/**
 	 * Class for handling time ranges
 	 */
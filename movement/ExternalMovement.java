@@ -28,6 +28,10 @@ public class ExternalMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** prefetch -setting id ({@value}). If true, the location data is read
+	 * ahead in a background thread (at most two preload runs' worth of
+	 * time instances). Default = false */
+	public static final String PREFETCH_S = "prefetch";
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
@@ -83,11 +87,6 @@ public class ExternalMovement extends MovementModel {
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
 			reader = new ExternalMovementReader(inputFileName);
 			
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
-			samplingInterval = -1;
-			lastPreloadTime = -1;
-			
 			s.setNameSpace(EXTERNAL_MOVEMENT_NS);
 			if (s.contains(NROF_PRELOAD_S)) {
 				nrofPreload = s.getInt(NROF_PRELOAD_S);
@@ -95,6 +94,14 @@ public class ExternalMovement extends MovementModel {
 					nrofPreload = 1;
 				}
 			}
+			if (s.contains(PREFETCH_S) && s.getBoolean(PREFETCH_S)) {
+				reader.startPrefetching((int)(2 * nrofPreload));
+			}
+			
+			initLocations = reader.readNextMovements();
+			initTime = reader.getLastTimeStamp();
+			samplingInterval = -1;
+			lastPreloadTime = -1;
 		}
 	}
 	
@@ -270,6 +277,10 @@ public class ExternalMovement extends MovementModel {
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
+		if (reader != null) {
+			reader.close();
+			reader = null;
+		}
 		idMapping = null;
 	}
 
@@ -211,6 +211,18 @@ public abstract class MovementModel {
 		return ah.isActive();
 	}
 		
+	/**
+	 * Returns the next sim time when the activeness of the node may change
+	 * @return The time of the next change or Double.MAX_VALUE if the
+	 * activeness doesn't change anymore
+	 */
+	public double nextActivenessChange() {
+		if (ah == null) {
+			return Double.MAX_VALUE;
+		}
+		return ah.nextChangeTime();
+	}
+		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
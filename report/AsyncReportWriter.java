@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Formatter;
+import java.util.concurrent.locks.LockSupport;
+
+import core.SimError;
+
+/**
+ * Writes report records in a background thread. The report (simulation)
+ * thread fills records in a ring buffer and the writer thread formats the
+ * published records and writes them in large blocks. The buffer is shared
+ * by exactly one report thread and the writer thread without locks: the
+ * report thread only advances the count of published records and the writer
+ * thread only the count of written records. The writer thread sleeps while
+ * the buffer is less than half full, so that it is woken up rarely and
+ * writes many records at a time. If the buffer is full, the report thread
+ * waits until the writer has caught up.
+ */
+public class AsyncReportWriter {
+	/** Default capacity of the buffer in records ({@value}) */
+	public static final int DEF_CAPACITY = 4096;
+	/** How long the report thread sleeps when the buffer is full (ns) */
+	private static final long FULL_WAIT_NANOS = 100000;
+	/** Maximum time the records wait in a buffer that is not half full (ns) */
+	private static final long IDLE_WAIT_NANOS = 100000000;
+	/** Size of the blocks the writer thread writes (characters) */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private final ReportRecord[] records;
+	private final int mask;
+	/** number of records published (advanced only by the report thread) */
+	private volatile long published;
+	/** number of records written (advanced only by the writer thread) */
+	private volatile long written;
+	private volatile boolean closed;
+	/** is the writer thread sleeping (until the buffer is half full) */
+	private volatile boolean sleeping;
+	/** the error that stopped the writer thread (e.g., an IOException or a
+	 * RuntimeException from formatting a record) */
+	private volatile Throwable error;
+	private final Writer writer;
+	private final Thread thread;
+
+	/**
+	 * Creates a new writer and starts its writer thread
+	 * @param writer The writer the text is written to. Closed when this
+	 * writer is closed.
+	 * @param capacity Minimum capacity of the buffer in records (rounded
+	 * up to the next power of two)
+	 * @param name Name of the writer thread
+	 */
+	public AsyncReportWriter(Writer writer, int capacity, String name) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.records = new ReportRecord[size];
+		for (int i=0; i<size; i++) {
+			records[i] = new ReportRecord();
+		}
+		this.mask = size - 1;
+		this.writer = writer;
+
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				writeRecords();
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Returns the record that is published next. The record must be
+	 * published with {@link #publish()} before claiming another record;
+	 * claiming again without publishing returns the same record.
+	 * @param prefix Prefix of the record
+	 * @return An empty record
+	 * @throws SimError if the writer is closed or writing failed (errors
+	 * of the writer thread are rethrown as such)
+	 */
+	public ReportRecord claim(String prefix) {
+		checkError();
+		if (closed) {
+			throw new SimError("Report output is already closed");
+		}
+		while (published - written >= records.length) {
+			LockSupport.unpark(thread);
+			LockSupport.parkNanos(FULL_WAIT_NANOS); // buffer full
+			checkError();
+		}
+
+		ReportRecord r = records[(int)published & mask];
+		r.clear(prefix);
+		return r;
+	}
+
+	/**
+	 * Publishes the claimed record for writing
+	 */
+	public void publish() {
+		published++; // only this thread writes the count
+		if (sleeping && published - written >= records.length / 2) {
+			sleeping = false;
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Writes all the published records, closes the underlying writer and
+	 * stops the writer thread
+	 * @throws SimError if writing failed (errors of the writer thread are
+	 * rethrown as such)
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		checkError();
+	}
+
+	private void checkError() {
+		if (error instanceof Error) {
+			throw (Error)error;
+		}
+		if (error != null) {
+			throw new SimError("Couldn't write report output: " +
+					error.getMessage(), (Exception)error);
+		}
+	}
+
+	/**
+	 * Main loop of the writer thread
+	 */
+	private void writeRecords() {
+		StringBuilder sb = new StringBuilder(BLOCK_SIZE + 1024);
+		Formatter formatter = new Formatter(sb);
+		char[] block = new char[BLOCK_SIZE + 1024];
+		String lineSeparator = System.lineSeparator();
+
+		try {
+			while (true) {
+				long end = published;
+				if (written == end) {
+					if (closed) {
+						if (written == published) {
+							break;
+						}
+						continue;
+					}
+					sleeping = true;
+					if (written == published && !closed) {
+						LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+					}
+					sleeping = false;
+					continue;
+				}
+
+				for (long i = written; i < end; i++) {
+					records[(int)i & mask].appendTo(sb, formatter);
+					sb.append(lineSeparator);
+					written = i + 1;
+					if (sb.length() >= BLOCK_SIZE) {
+						block = writeBlock(sb, block);
+					}
+				}
+			}
+			writeBlock(sb, block);
+			writer.close();
+		} catch (Throwable t) {
+			/* any error must be reported, or the report thread would wait
+			 * for a dead writer forever */
+			error = t;
+			try {
+				writer.close();
+			} catch (IOException e2) {
+				// already failed, report the first error
+			}
+		}
+	}
+
+	/**
+	 * Writes the contents of the builder and empties the builder
+	 * @return The (possibly grown) character block
+	 */
+	private char[] writeBlock(StringBuilder sb, char[] block)
+			throws IOException {
+		int len = sb.length();
+		if (len > block.length) {
+			block = new char[len];
+		}
+		sb.getChars(0, len, block, 0);
+		writer.write(block, 0, len);
+		sb.setLength(0);
+		return block;
+	}
+}
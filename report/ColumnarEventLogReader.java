@@ -0,0 +1,371 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import core.SimError;
+
+/**
+ * Reads columnar event logs written by {@link ColumnarEventLogReport} (see
+ * it for the file format). The chunks are memory mapped when they are
+ * requested, so only the chunks that are needed for a query are read from
+ * the file. Use {@link #firstChunk(double)} and the chunks' time limits for
+ * skipping the chunks that are outside a time range.
+ */
+public class ColumnarEventLogReader {
+	private RandomAccessFile file;
+	private File logFile;
+	private long nrofEvents;
+	private int nrofChunks;
+	private long[] chunkOffsets;
+	private int[] chunkSizes;
+	private double[] chunkMinTimes;
+	private double[] chunkMaxTimes;
+	private String scenarioName;
+	private String[] hostNames;
+	private String[] messageIds;
+	private byte[] messageFlags;
+	private double[] requestCreationTimes;
+
+	/**
+	 * Constructor.
+	 * @param logFile The event log file to read
+	 */
+	public ColumnarEventLogReader(File logFile) {
+		this.logFile = logFile;
+		try {
+			this.file = new RandomAccessFile(logFile, "r");
+			if (file.length() < ColumnarEventLogReport.HEADER_SIZE ||
+					file.readInt() != ColumnarEventLogReport.MAGIC) {
+				throw new SimError("Invalid columnar event log file: " +
+						logFile.getAbsolutePath());
+			}
+			int version = file.readInt();
+			if (version != ColumnarEventLogReport.VERSION) {
+				throw new SimError("Unsupported columnar event log version " +
+						version + " in " + logFile.getAbsolutePath());
+			}
+			this.nrofEvents = file.readLong();
+			file.readInt(); // chunk size
+			this.nrofChunks = file.readInt();
+			long indexOffset = file.readLong();
+			long hostsOffset = file.readLong();
+			long messagesOffset = file.readLong();
+
+			readChunkIndex(indexOffset);
+			readHostTable(hostsOffset);
+			readMessageTable(messagesOffset);
+		} catch (IOException e) {
+			throw new SimError("Couldn't read event log " +
+					logFile.getAbsolutePath(), e);
+		}
+	}
+
+	private void readChunkIndex(long offset) throws IOException {
+		ByteBuffer b = file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+				offset, (long)nrofChunks *
+				ColumnarEventLogReport.CHUNK_INDEX_ENTRY_SIZE);
+		this.chunkOffsets = new long[nrofChunks];
+		this.chunkSizes = new int[nrofChunks];
+		this.chunkMinTimes = new double[nrofChunks];
+		this.chunkMaxTimes = new double[nrofChunks];
+		for (int i=0; i<nrofChunks; i++) {
+			chunkOffsets[i] = b.getLong();
+			chunkSizes[i] = b.getInt();
+			b.getInt(); // reserved
+			chunkMinTimes[i] = b.getDouble();
+			chunkMaxTimes[i] = b.getDouble();
+		}
+	}
+
+	private void readHostTable(long offset) throws IOException {
+		file.seek(offset);
+		this.scenarioName = file.readUTF();
+		int nrof = file.readInt();
+		this.hostNames = new String[nrof];
+		for (int i=0; i<nrof; i++) {
+			hostNames[i] = file.readUTF();
+		}
+	}
+
+	private void readMessageTable(long offset) throws IOException {
+		/* through a buffered stream; the table can have millions of ids */
+		file.seek(offset);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file.getFD()), 1 << 16));
+		int nrof = in.readInt();
+		this.messageIds = new String[nrof];
+		this.messageFlags = new byte[nrof];
+		this.requestCreationTimes = new double[nrof];
+		for (int i=0; i<nrof; i++) {
+			messageIds[i] = in.readUTF();
+			messageFlags[i] = in.readByte();
+			requestCreationTimes[i] = in.readDouble();
+		}
+	}
+
+	/**
+	 * Returns the total number of events in the log
+	 * @return The number of events
+	 */
+	public long getNrofEvents() {
+		return this.nrofEvents;
+	}
+
+	/**
+	 * Returns the number of chunks in the log
+	 * @return The number of chunks
+	 */
+	public int getNrofChunks() {
+		return this.nrofChunks;
+	}
+
+	/**
+	 * Returns the time of the first event of a chunk
+	 * @param chunk Index of the chunk
+	 * @return The smallest time in the chunk
+	 */
+	public double getChunkMinTime(int chunk) {
+		return chunkMinTimes[chunk];
+	}
+
+	/**
+	 * Returns the time of the last event of a chunk
+	 * @param chunk Index of the chunk
+	 * @return The largest time in the chunk
+	 */
+	public double getChunkMaxTime(int chunk) {
+		return chunkMaxTimes[chunk];
+	}
+
+	/**
+	 * Returns the index of the first chunk that has events at or after the
+	 * given time
+	 * @param time The time
+	 * @return Index of the chunk or the number of chunks if there are no
+	 * such chunks
+	 */
+	public int firstChunk(double time) {
+		int lo = 0;
+		int hi = nrofChunks;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (chunkMaxTimes[mid] < time) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Maps a chunk to memory
+	 * @param chunk Index of the chunk
+	 * @return The chunk
+	 */
+	public Chunk getChunk(int chunk) {
+		int n = chunkSizes[chunk];
+		try {
+			MappedByteBuffer b = file.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, chunkOffsets[chunk],
+					ColumnarEventLogReport.chunkBytes(n));
+			return new Chunk(b, n);
+		} catch (IOException e) {
+			throw new SimError("Couldn't read event log " +
+					logFile.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Returns the name of the scenario the log was written in
+	 * @return The scenario name
+	 */
+	public String getScenarioName() {
+		return this.scenarioName;
+	}
+
+	/**
+	 * Returns the number of host addresses in the host table
+	 * @return The number of hosts
+	 */
+	public int getNrofHosts() {
+		return this.hostNames.length;
+	}
+
+	/**
+	 * Returns the name of a host
+	 * @param address Address of the host
+	 * @return The name of the host
+	 */
+	public String getHostName(int address) {
+		return this.hostNames[address];
+	}
+
+	/**
+	 * Returns the number of messages in the message table
+	 * @return The number of messages
+	 */
+	public int getNrofMessages() {
+		return this.messageIds.length;
+	}
+
+	/**
+	 * Returns the id of a message
+	 * @param message Index of the message
+	 * @return The message id
+	 */
+	public String getMessageId(int message) {
+		return this.messageIds[message];
+	}
+
+	/**
+	 * Returns the flags of a message (see
+	 * {@link ColumnarEventLogReport#MSG_RESPONSE_REQUESTED} and
+	 * {@link ColumnarEventLogReport#MSG_RESPONSE})
+	 * @param message Index of the message
+	 * @return The flags
+	 */
+	public int getMessageFlags(int message) {
+		return this.messageFlags[message];
+	}
+
+	/**
+	 * Returns the creation time of the request a response message is a
+	 * response to
+	 * @param message Index of the message
+	 * @return The creation time or NaN if the message isn't a response
+	 */
+	public double getRequestCreationTime(int message) {
+		return this.requestCreationTimes[message];
+	}
+
+	/**
+	 * Closes the log file
+	 */
+	public void close() {
+		try {
+			this.file.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Columns of one memory mapped chunk
+	 */
+	public static class Chunk {
+		private int nrofEvents;
+		private DoubleBuffer times;
+		private IntBuffer hosts1;
+		private IntBuffer hosts2;
+		private IntBuffer messages;
+		private ByteBuffer types;
+
+		private Chunk(MappedByteBuffer b, int n) {
+			this.nrofEvents = n;
+			b.limit(n * 8);
+			this.times = b.slice().asDoubleBuffer();
+			this.hosts1 = column(b, n * 8, n * 4).asIntBuffer();
+			this.hosts2 = column(b, n * 12, n * 4).asIntBuffer();
+			this.messages = column(b, n * 16, n * 4).asIntBuffer();
+			this.types = column(b, n * 20, n);
+		}
+
+		private static ByteBuffer column(MappedByteBuffer b, int offset,
+				int length) {
+			b.limit(offset + length);
+			b.position(offset);
+			return b.slice();
+		}
+
+		/**
+		 * Returns the number of events in the chunk
+		 * @return The number of events
+		 */
+		public int getNrofEvents() {
+			return this.nrofEvents;
+		}
+
+		/**
+		 * Returns the index of the first event at or after the given time
+		 * @param time The time
+		 * @return Index of the event or the number of events if there are
+		 * no such events
+		 */
+		public int firstEvent(double time) {
+			int lo = 0;
+			int hi = nrofEvents;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (times.get(mid) < time) {
+					lo = mid + 1;
+				}
+				else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+
+		/**
+		 * Returns the time of an event
+		 * @param event Index of the event in the chunk
+		 * @return The time
+		 */
+		public double getTime(int event) {
+			return times.get(event);
+		}
+
+		/**
+		 * Returns the type of an event (one of the <CODE>TYPE_</CODE>
+		 * constants of {@link ColumnarEventLogReport})
+		 * @param event Index of the event in the chunk
+		 * @return The type
+		 */
+		public int getType(int event) {
+			return types.get(event);
+		}
+
+		/**
+		 * Returns the address of the (first) host of an event
+		 * @param event Index of the event in the chunk
+		 * @return The address or -1 if the event has no host
+		 */
+		public int getHost1(int event) {
+			return hosts1.get(event);
+		}
+
+		/**
+		 * Returns the address of the second host of an event
+		 * @param event Index of the event in the chunk
+		 * @return The address or -1 if the event has no second host
+		 */
+		public int getHost2(int event) {
+			return hosts2.get(event);
+		}
+
+		/**
+		 * Returns the message index of an event
+		 * @param event Index of the event in the chunk
+		 * @return The index or -1 if the event has no message
+		 */
+		public int getMessage(int event) {
+			return messages.get(event);
+		}
+	}
+}
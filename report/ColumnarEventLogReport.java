@@ -0,0 +1,420 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * <P>
+ * Binary alternative for {@link EventLogReport}. The same events are written
+ * to a columnar event log file that can be queried with
+ * {@link EventLogQuery} (and read with {@link ColumnarEventLogReader})
+ * without parsing any text. The report's normal (text) output only tells
+ * the name of the log file and the number of events and chunks.
+ * </P><P>
+ * The events are written in chunks of (at most) {@link #CHUNK_SIZE_S}
+ * events. Each chunk stores the columns of its events one after another
+ * and the chunk index at the end of the file has the smallest and largest
+ * time of each chunk, so queries for a time range can skip the chunks that
+ * are outside the range.
+ * </P><P>
+ * File format (all values big endian):<BR>
+ * Header ({@value #HEADER_SIZE} bytes): magic (int), version (int), number
+ * of events (long), chunk size (int), number of chunks (int), offset of the
+ * chunk index (long), offset of the host table (long), offset of the
+ * message table (long).<BR>
+ * Chunks (n events each, padded to a multiple of 8 bytes): times (n
+ * doubles), first hosts (n ints), second hosts (n ints), messages (n ints)
+ * and event types (n bytes, see the <CODE>TYPE_</CODE> constants). Hosts
+ * are host addresses and messages indexes to the message table; -1 is used
+ * if the event has no (second) host or message.<BR>
+ * Chunk index ({@value #CHUNK_INDEX_ENTRY_SIZE} bytes per chunk): offset
+ * (long), number of events (int), reserved (int), smallest time (double),
+ * largest time (double).<BR>
+ * Host table: scenario name (modified UTF-8 string), number of hosts (int)
+ * and the name of each host by address (strings).<BR>
+ * Message table: number of messages (int) and for each message its id
+ * (string), flags (byte; {@link #MSG_RESPONSE_REQUESTED} and
+ * {@link #MSG_RESPONSE}) and the creation time of the request if the
+ * message is a response (double; NaN for other messages).
+ * </P>
+ */
+public class ColumnarEventLogReport extends Report
+	implements ConnectionListener, MessageListener {
+	/** Event log file -setting id ({@value}). Path of the binary log file.
+	 * Default is the report directory + scenario name + report class name +
+	 * {@value #LOG_SUFFIX}. */
+	public static final String LOG_FILE_S = "logFile";
+	/** Chunk size -setting id ({@value}). Maximum number of events in one
+	 * chunk. Default is {@value #DEF_CHUNK_SIZE}. */
+	public static final String CHUNK_SIZE_S = "chunkSize";
+	/** Default chunk size */
+	public static final int DEF_CHUNK_SIZE = 65536;
+	/** Suffix of the default log file name ({@value}) */
+	public static final String LOG_SUFFIX = ".cel";
+
+	/** magic number in the beginning of the file */
+	public static final int MAGIC = 0x4F4E4545;
+	/** version of the file format */
+	public static final int VERSION = 1;
+	/** size of the header (bytes) */
+	public static final int HEADER_SIZE = 48;
+	/** size of one event's columns in a chunk (bytes) */
+	public static final int EVENT_SIZE = 8 + 4 + 4 + 4 + 1;
+	/** size of one chunk index entry (bytes) */
+	public static final int CHUNK_INDEX_ENTRY_SIZE = 32;
+
+	/** Event type of message creation ("C") */
+	public static final byte TYPE_CREATE = 0;
+	/** Event type of message transfer start ("S") */
+	public static final byte TYPE_SEND = 1;
+	/** Event type of message relayed ("DE" with "R") */
+	public static final byte TYPE_RELAYED = 2;
+	/** Event type of message delivered ("DE" with "D") */
+	public static final byte TYPE_DELIVERED = 3;
+	/** Event type of message delivered again ("DE" with "A") */
+	public static final byte TYPE_DELIVERED_AGAIN = 4;
+	/** Event type of message transfer aborted ("A") */
+	public static final byte TYPE_ABORT = 5;
+	/** Event type of message dropped ("DR") */
+	public static final byte TYPE_DROP = 6;
+	/** Event type of message removed ("R") */
+	public static final byte TYPE_REMOVE = 7;
+	/** Event type of connection up ("CONN" with "up") */
+	public static final byte TYPE_CONN_UP = 8;
+	/** Event type of connection down ("CONN" with "down") */
+	public static final byte TYPE_CONN_DOWN = 9;
+	/** Names of the event types (as in {@link EventLogReport}) by type */
+	public static final String[] TYPE_NAMES = {"C", "S", "DE R", "DE D",
+		"DE A", "A", "DR", "R", "CONN up", "CONN down"};
+
+	/** Message flag: the message requests a response */
+	public static final int MSG_RESPONSE_REQUESTED = 1;
+	/** Message flag: the message is a response */
+	public static final int MSG_RESPONSE = 2;
+
+	private File logFile;
+	private FileChannel channel;
+	private int chunkSize;
+
+	/* columns of the current chunk */
+	private double[] times;
+	private int[] hosts1;
+	private int[] hosts2;
+	private int[] messages;
+	private byte[] types;
+	private int nrofBuffered;
+	private ByteBuffer chunkBuffer;
+
+	private long nrofEvents;
+	private long position;
+	private double lastTime;
+	/** offset and number of events of each chunk */
+	private List<long[]> chunkIndex;
+	/** smallest and largest time of each chunk */
+	private List<double[]> chunkTimes;
+	private List<String> hostNames;
+	private Map<String, Integer> messageIndexes;
+	/** message table entries of the messages seen so far */
+	private ByteArrayOutputStream messageTableBytes;
+	private DataOutputStream messageTable;
+
+	/**
+	 * Constructor.
+	 */
+	public ColumnarEventLogReport() {
+		Settings s = getSettings();
+		if (s.contains(LOG_FILE_S)) {
+			this.logFile = new File(s.valueFillString(
+					s.getSetting(LOG_FILE_S)));
+		}
+		else {
+			Settings reportSettings = new Settings();
+			String outDir = reportSettings.getSetting(REPORTDIR_SETTING);
+			if (!outDir.endsWith("/")) {
+				outDir += "/";
+			}
+			this.logFile = new File(outDir + getScenarioName() + "_" +
+					getClass().getSimpleName() + LOG_SUFFIX);
+		}
+		if (s.contains(CHUNK_SIZE_S)) {
+			this.chunkSize = s.getInt(CHUNK_SIZE_S);
+		}
+		else {
+			this.chunkSize = DEF_CHUNK_SIZE;
+		}
+		if (chunkSize < 1) {
+			throw new SettingsError("Invalid " + CHUNK_SIZE_S + " value " +
+					chunkSize);
+		}
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.times = new double[chunkSize];
+		this.hosts1 = new int[chunkSize];
+		this.hosts2 = new int[chunkSize];
+		this.messages = new int[chunkSize];
+		this.types = new byte[chunkSize];
+		this.chunkBuffer = ByteBuffer.allocate(chunkBytes(chunkSize));
+		this.nrofBuffered = 0;
+		this.nrofEvents = 0;
+		this.position = HEADER_SIZE; // header is written when closing
+		this.lastTime = 0;
+		this.chunkIndex = new ArrayList<long[]>();
+		this.chunkTimes = new ArrayList<double[]>();
+		this.hostNames = new ArrayList<String>();
+		this.messageIndexes = new HashMap<String, Integer>();
+		this.messageTableBytes = new ByteArrayOutputStream();
+		this.messageTable = new DataOutputStream(messageTableBytes);
+
+		try {
+			RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+			raf.setLength(0);
+			this.channel = raf.getChannel();
+			channel.position(HEADER_SIZE);
+		} catch (IOException e) {
+			throw new SimError("Couldn't open file '" +
+					logFile.getAbsolutePath() + "' for event log\n" +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the size of a chunk (including the padding) in bytes
+	 * @param nrofEvents Number of events in the chunk
+	 * @return The size of the chunk
+	 */
+	public static int chunkBytes(int nrofEvents) {
+		return (nrofEvents * EVENT_SIZE + 7) & ~7;
+	}
+
+	/**
+	 * Adds an event to the current chunk and writes the chunk if it is full
+	 */
+	private void addEvent(byte type, DTNHost host1, DTNHost host2,
+			Message m) {
+		int i = nrofBuffered++;
+		lastTime = getSimTime();
+		times[i] = lastTime;
+		types[i] = type;
+		hosts1[i] = hostIndex(host1);
+		hosts2[i] = hostIndex(host2);
+		messages[i] = m == null ? -1 : messageIndex(m);
+		nrofEvents++;
+
+		if (nrofBuffered == chunkSize) {
+			writeChunk();
+		}
+	}
+
+	/**
+	 * Returns the address of a host (and stores the host's name)
+	 */
+	private int hostIndex(DTNHost host) {
+		if (host == null) {
+			return -1;
+		}
+		int address = host.getAddress();
+		while (hostNames.size() <= address) {
+			hostNames.add("");
+		}
+		if (hostNames.get(address).length() == 0) {
+			hostNames.set(address, host.toString());
+		}
+		return address;
+	}
+
+	/**
+	 * Returns the index of a message in the message table (and adds the
+	 * message to the table if it isn't there yet)
+	 */
+	private int messageIndex(Message m) {
+		Integer index = messageIndexes.get(m.getId());
+		if (index == null) {
+			index = messageIndexes.size();
+			messageIndexes.put(m.getId(), index);
+
+			int flags = 0;
+			if (m.getResponseSize() > 0) {
+				flags |= MSG_RESPONSE_REQUESTED;
+			}
+			if (m.isResponse()) {
+				flags |= MSG_RESPONSE;
+			}
+			try {
+				messageTable.writeUTF(m.getId());
+				messageTable.writeByte(flags);
+				messageTable.writeDouble(m.isResponse() ?
+						m.getRequest().getCreationTime() : Double.NaN);
+			} catch (IOException e) {
+				throw new SimError(e); // can't happen with a byte array
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the buffered events as a new chunk
+	 */
+	private void writeChunk() {
+		int n = nrofBuffered;
+		if (n == 0) {
+			return;
+		}
+		ByteBuffer b = this.chunkBuffer;
+		b.clear();
+		b.asDoubleBuffer().put(times, 0, n);
+		b.position(n * 8);
+		b.asIntBuffer().put(hosts1, 0, n);
+		b.position(n * 12);
+		b.asIntBuffer().put(hosts2, 0, n);
+		b.position(n * 16);
+		b.asIntBuffer().put(messages, 0, n);
+		b.position(n * 20);
+		b.put(types, 0, n);
+		b.position(0);
+		b.limit(chunkBytes(n));
+
+		writeFully(b);
+		chunkIndex.add(new long[] {position, n});
+		chunkTimes.add(new double[] {times[0], times[n - 1]});
+		position += b.limit();
+		nrofBuffered = 0;
+	}
+
+	private void writeFully(ByteBuffer b) {
+		try {
+			while (b.hasRemaining()) {
+				channel.write(b);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write event log " +
+					logFile.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Writes the last chunk, the chunk index, the host and message tables
+	 * and the header, and closes the log file
+	 */
+	private void closeLog() {
+		writeChunk();
+		try {
+			long indexOffset = position;
+			ByteBuffer b = ByteBuffer.allocate(chunkIndex.size() *
+					CHUNK_INDEX_ENTRY_SIZE);
+			for (int i=0, n=chunkIndex.size(); i<n; i++) {
+				b.putLong(chunkIndex.get(i)[0]);
+				b.putInt((int)chunkIndex.get(i)[1]);
+				b.putInt(0);
+				b.putDouble(chunkTimes.get(i)[0]);
+				b.putDouble(chunkTimes.get(i)[1]);
+			}
+			b.flip();
+			writeFully(b);
+
+			ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+			DataOutputStream tables = new DataOutputStream(tableBytes);
+			tables.writeUTF(getScenarioName());
+			tables.writeInt(hostNames.size());
+			for (String name : hostNames) {
+				tables.writeUTF(name);
+			}
+			long hostsOffset = indexOffset + b.limit();
+			long messagesOffset = hostsOffset + tables.size();
+			tables.writeInt(messageIndexes.size());
+			messageTableBytes.writeTo(tables);
+			tables.flush();
+			writeFully(ByteBuffer.wrap(tableBytes.toByteArray()));
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(nrofEvents);
+			header.putInt(chunkSize);
+			header.putInt(chunkIndex.size());
+			header.putLong(indexOffset);
+			header.putLong(hostsOffset);
+			header.putLong(messagesOffset);
+			header.flip();
+			channel.position(0);
+			writeFully(header);
+			channel.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write event log " +
+					logFile.getAbsolutePath(), e);
+		}
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		addEvent(TYPE_CONN_UP, host1, host2, null);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		addEvent(TYPE_CONN_DOWN, host1, host2, null);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		addEvent(dropped ? TYPE_DROP : TYPE_REMOVE, where, null, m);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		byte type;
+		if (firstDelivery) {
+			type = TYPE_DELIVERED;
+		}
+		else if (to == m.getTo()) {
+			type = TYPE_DELIVERED_AGAIN;
+		}
+		else {
+			type = TYPE_RELAYED;
+		}
+		addEvent(type, from, to, m);
+	}
+
+	public void newMessage(Message m) {
+		addEvent(TYPE_CREATE, m.getFrom(), null, m);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		addEvent(TYPE_ABORT, from, to, m);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		addEvent(TYPE_SEND, from, to, m);
+	}
+
+	@Override
+	public void done() {
+		closeLog();
+		write("# columnar event log " + logFile.getPath());
+		write("events: " + nrofEvents);
+		write("chunks: " + chunkIndex.size());
+		write("last_time: " + format(lastTime));
+		super.done();
+	}
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import report.ColumnarEventLogReader.Chunk;
+import report.stats.Histogram;
+import report.stats.RunningStats;
+import report.stats.SampleQuantiles;
+import core.SimError;
+
+/**
+ * <P>
+ * Command line tool for computing statistics from columnar event logs (see
+ * {@link ColumnarEventLogReport}) without parsing text reports. The logs are
+ * scanned through memory mapped chunks and the chunks outside the requested
+ * time range are skipped.
+ * </P><P>
+ * Usage:<BR>
+ * <CODE>java report.EventLogQuery &lt;command&gt; [options] &lt;log
+ * files&gt;</CODE><BR>
+ * Commands:<BR>
+ * <CODE>stats</CODE> prints the statistics of {@link MessageStatsReport}
+ * for each log. With <CODE>-stat &lt;name&gt;</CODE> only the value of the
+ * given statistic is printed, labeled with the part of the file name that
+ * the <CODE>-label &lt;regex&gt;</CODE> captures (default
+ * <CODE>([^_]*)_</CODE>), i.e., the values file of
+ * <CODE>toolkit/getStats.pl</CODE>.<BR>
+ * <CODE>cdf</CODE> prints the cumulative distribution of the message
+ * delays (delay and probability per line) like
+ * <CODE>toolkit/ccdfPlotter.pl -index 0</CODE> does for a
+ * {@link MessageDelayReport}. Use <CODE>-comp</CODE> for the complementary
+ * distribution and <CODE>-total &lt;n&gt;</CODE> for comparing against a
+ * given total instead of the number of delivered messages.<BR>
+ * <CODE>count</CODE> prints the number of events of each type.<BR>
+ * All commands accept <CODE>-from &lt;time&gt;</CODE> and <CODE>-to
+ * &lt;time&gt;</CODE> for limiting the query to a time range. Like with the
+ * reports' warm up period, messages created before the start of the range
+ * are left out of the message statistics.
+ * </P>
+ */
+public class EventLogQuery {
+	/** Default label regular expression ({@value}) */
+	public static final String DEF_LABEL_RE = "([^_]*)_";
+	private static final String USAGE = "Usage: EventLogQuery " +
+		"stats|cdf|count [-from <time>] [-to <time>] [-stat <name>] " +
+		"[-label <regex>] [-comp] [-total <n>] <log files>";
+
+	private double from;
+	private double to;
+	private PrintStream out;
+
+	/**
+	 * Creates a query for the given time range
+	 * @param from Start of the time range
+	 * @param to End of the time range
+	 * @param out Where the results are printed
+	 */
+	public EventLogQuery(double from, double to, PrintStream out) {
+		this.from = from;
+		this.to = to;
+		this.out = out;
+	}
+
+	/**
+	 * Scans the events of a log that are in the time range
+	 * @param log The log to scan
+	 * @param visitor Visitor that is given the events
+	 */
+	private void scan(ColumnarEventLogReader log, EventVisitor visitor) {
+		for (int c = log.firstChunk(from); c < log.getNrofChunks(); c++) {
+			if (log.getChunkMinTime(c) > to) {
+				break;
+			}
+			Chunk chunk = log.getChunk(c);
+			int n = chunk.getNrofEvents();
+			int first = log.getChunkMinTime(c) < from ?
+					chunk.firstEvent(from) : 0;
+			boolean checkEnd = log.getChunkMaxTime(c) > to;
+			for (int i = first; i < n; i++) {
+				if (checkEnd && chunk.getTime(i) > to) {
+					return;
+				}
+				visitor.visit(chunk, i);
+			}
+		}
+	}
+
+	/**
+	 * Computes the message statistics of a log
+	 * @param log The log
+	 * @return The statistics
+	 */
+	public MessageStats getMessageStats(ColumnarEventLogReader log) {
+		MessageStats stats = new MessageStats(log);
+		scan(log, stats);
+		return stats;
+	}
+
+	/**
+	 * Prints all the message statistics of a log
+	 * @param log The log
+	 */
+	public void printStats(ColumnarEventLogReader log) {
+		MessageStats stats = getMessageStats(log);
+		out.println("Message stats for scenario " + log.getScenarioName());
+		out.println("sim_time: " + format(stats.lastTime));
+		for (String name : MessageStats.NAMES) {
+			out.println(name + ": " + stats.getValue(name));
+		}
+	}
+
+	/**
+	 * Prints one statistic of each log with a label parsed from the log's
+	 * file name
+	 * @param logFiles The log files
+	 * @param stat Name of the statistic
+	 * @param labelRe Regular expression whose capture groups are the label
+	 */
+	public void printStat(List<File> logFiles, String stat, String labelRe) {
+		if (!Arrays.asList(MessageStats.NAMES).contains(stat)) {
+			throw new SimError("Unknown statistic " + stat);
+		}
+		Pattern labelPattern = Pattern.compile(labelRe);
+		for (File f : logFiles) {
+			Matcher m = labelPattern.matcher(f.getPath());
+			if (!m.find() || m.groupCount() == 0) {
+				throw new SimError("Can't extract labels using '" + labelRe +
+						"' from " + f.getPath());
+			}
+			StringBuilder label = new StringBuilder(m.group(1));
+			for (int i=2; i<=m.groupCount(); i++) {
+				label.append(' ').append(m.group(i));
+			}
+
+			ColumnarEventLogReader log = new ColumnarEventLogReader(f);
+			out.println("\"" + label + "\" " +
+					getMessageStats(log).getValue(stat));
+			log.close();
+		}
+	}
+
+	/**
+	 * Prints the (complementary) cumulative distribution of message delays
+	 * @param log The log
+	 * @param complementary If true, 1 - P(X &lt;= x) is printed
+	 * @param total The total the cumulative counts are compared to, or -1
+	 * to use the number of delivered messages
+	 */
+	public void printDelayCdf(ColumnarEventLogReader log,
+			boolean complementary, long total) {
+		SampleQuantiles delays = getMessageStats(log).latencies;
+		if (total < 0) {
+			total = delays.getCount();
+		}
+		for (int i=0; i<delays.getCount(); i++) {
+			double p = (i + 1.0) / total;
+			out.println(format(delays.get(i)) + " " +
+					format(complementary ? 1 - p : p));
+		}
+	}
+
+	/**
+	 * Prints the number of events of each type
+	 * @param log The log
+	 */
+	public void printCounts(ColumnarEventLogReader log) {
+		final long[] counts =
+			new long[ColumnarEventLogReport.TYPE_NAMES.length];
+		scan(log, new EventVisitor() {
+			public void visit(Chunk chunk, int event) {
+				counts[chunk.getType(event)]++;
+			}
+		});
+		for (int i=0; i<counts.length; i++) {
+			out.println(ColumnarEventLogReport.TYPE_NAMES[i] + ": " +
+					counts[i]);
+		}
+	}
+
+	private static String format(double value) {
+		return String.format("%." + Report.DEF_PRECISION + "f", value);
+	}
+
+	/**
+	 * Interface for the events of a scan
+	 */
+	private interface EventVisitor {
+		/**
+		 * Called for each event
+		 * @param chunk The chunk of the event
+		 * @param event Index of the event in the chunk
+		 */
+		public void visit(Chunk chunk, int event);
+	}
+
+	/**
+	 * Same message statistics as {@link MessageStatsReport} computes. The
+	 * hop count and receive time of each message copy are kept in an open
+	 * addressing table so that the hop counts and buffer times can be
+	 * followed from host to host.
+	 */
+	public static class MessageStats implements EventVisitor {
+		/** Names of the statistics in the order they are printed */
+		public static final String[] NAMES = {"created", "started",
+			"relayed", "aborted", "dropped", "removed", "delivered",
+			"delivery_prob", "response_prob", "overhead_ratio",
+			"delivery_utility", "latency_avg", "latency_med", "hopcount_avg",
+			"hopcount_med", "buffertime_avg", "buffertime_med", "rtt_avg",
+			"rtt_med", "nilai_max_hobcount", "list_hobcount"};
+
+		private ColumnarEventLogReader log;
+		/** creation times by message index (NaN if not created in range) */
+		private double[] creationTimes;
+		private CopyTable copies;
+		private double lastTime;
+		private int nrofDropped;
+		private int nrofRemoved;
+		private int nrofStarted;
+		private int nrofAborted;
+		private int nrofRelayed;
+		private int nrofCreated;
+		private int nrofResponseReqCreated;
+		private int nrofResponseDelivered;
+		private int nrofDelivered;
+		private RunningStats latencyStats;
+		private SampleQuantiles latencies;
+		private RunningStats hopCountStats;
+		private Histogram hopCounts;
+		private RunningStats bufferTimeStats;
+		private SampleQuantiles bufferTimes;
+		private RunningStats rttStats;
+		private SampleQuantiles rtts;
+
+		private MessageStats(ColumnarEventLogReader log) {
+			this.log = log;
+			this.creationTimes = new double[log.getNrofMessages()];
+			Arrays.fill(creationTimes, Double.NaN);
+			this.copies = new CopyTable(log.getNrofHosts());
+			this.latencyStats = new RunningStats();
+			this.latencies = new SampleQuantiles();
+			this.hopCountStats = new RunningStats();
+			this.hopCounts = new Histogram(1, 3);
+			this.bufferTimeStats = new RunningStats();
+			this.bufferTimes = new SampleQuantiles();
+			this.rttStats = new RunningStats();
+			this.rtts = new SampleQuantiles();
+		}
+
+		public void visit(Chunk chunk, int event) {
+			int type = chunk.getType(event);
+			int msg = chunk.getMessage(event);
+			double time = chunk.getTime(event);
+			this.lastTime = time;
+			if (msg < 0) {
+				return; // connection event
+			}
+			if (type == ColumnarEventLogReport.TYPE_CREATE) {
+				creationTimes[msg] = time;
+				nrofCreated++;
+				if ((log.getMessageFlags(msg) &
+						ColumnarEventLogReport.MSG_RESPONSE_REQUESTED) != 0) {
+					nrofResponseReqCreated++;
+				}
+				copies.put(msg, chunk.getHost1(event), 0, time);
+				return;
+			}
+			if (Double.isNaN(creationTimes[msg])) {
+				return; // created before the time range
+			}
+
+			switch (type) {
+			case ColumnarEventLogReport.TYPE_SEND:
+				nrofStarted++;
+				break;
+			case ColumnarEventLogReport.TYPE_ABORT:
+				nrofAborted++;
+				break;
+			case ColumnarEventLogReport.TYPE_DROP:
+			case ColumnarEventLogReport.TYPE_REMOVE:
+				if (type == ColumnarEventLogReport.TYPE_DROP) {
+					nrofDropped++;
+				}
+				else {
+					nrofRemoved++;
+				}
+				int slot = copies.find(msg, chunk.getHost1(event));
+				double received = slot < 0 ? creationTimes[msg] :
+					copies.receiveTimes[slot];
+				bufferTimeStats.add(time - received);
+				bufferTimes.add(time - received);
+				break;
+			case ColumnarEventLogReport.TYPE_RELAYED:
+			case ColumnarEventLogReport.TYPE_DELIVERED:
+			case ColumnarEventLogReport.TYPE_DELIVERED_AGAIN:
+				nrofRelayed++;
+				int from = copies.find(msg, chunk.getHost1(event));
+				int hops = (from < 0 ? 0 : copies.hops[from]) + 1;
+				copies.put(msg, chunk.getHost2(event), hops, time);
+				if (type == ColumnarEventLogReport.TYPE_DELIVERED) {
+					delivered(msg, hops, time);
+				}
+				break;
+			}
+		}
+
+		private void delivered(int msg, int hops, double time) {
+			nrofDelivered++;
+			double latency = time - creationTimes[msg];
+			latencyStats.add(latency);
+			latencies.add(latency);
+			hopCountStats.add(hops);
+			hopCounts.add(hops);
+			if ((log.getMessageFlags(msg) &
+					ColumnarEventLogReport.MSG_RESPONSE) != 0) {
+				double rtt = time - log.getRequestCreationTime(msg);
+				rttStats.add(rtt);
+				rtts.add(rtt);
+				nrofResponseDelivered++;
+			}
+		}
+
+		/**
+		 * Returns the value of a statistic formatted like in
+		 * {@link MessageStatsReport}
+		 * @param name Name of the statistic (one of {@link #NAMES})
+		 * @return The value
+		 */
+		public String getValue(String name) {
+			if (name.equals("created")) {
+				return "" + nrofCreated;
+			} else if (name.equals("started")) {
+				return "" + nrofStarted;
+			} else if (name.equals("relayed")) {
+				return "" + nrofRelayed;
+			} else if (name.equals("aborted")) {
+				return "" + nrofAborted;
+			} else if (name.equals("dropped")) {
+				return "" + nrofDropped;
+			} else if (name.equals("removed")) {
+				return "" + nrofRemoved;
+			} else if (name.equals("delivered")) {
+				return "" + nrofDelivered;
+			} else if (name.equals("delivery_prob")) {
+				return format(nrofCreated > 0 ?
+						(1.0 * nrofDelivered) / nrofCreated : 0);
+			} else if (name.equals("response_prob")) {
+				return format(nrofResponseReqCreated > 0 ?
+						(1.0 * nrofResponseDelivered) /
+						nrofResponseReqCreated : 0);
+			} else if (name.equals("overhead_ratio")) {
+				return format(nrofDelivered > 0 ? (1.0 * (nrofRelayed -
+						nrofDelivered)) / nrofDelivered : Double.NaN);
+			} else if (name.equals("delivery_utility")) {
+				/* MessageStatsReport never counts received messages */
+				return format(nrofRelayed > 0 ? 0 : Double.NaN);
+			} else if (name.equals("latency_avg")) {
+				return average(latencyStats);
+			} else if (name.equals("latency_med")) {
+				return median(latencies);
+			} else if (name.equals("hopcount_avg")) {
+				return average(hopCountStats);
+			} else if (name.equals("hopcount_med")) {
+				return "" + (hopCounts.getCount() == 0 ? 0 :
+					(int)hopCounts.getQuantile(0.5));
+			} else if (name.equals("buffertime_avg")) {
+				return average(bufferTimeStats);
+			} else if (name.equals("buffertime_med")) {
+				return median(bufferTimes);
+			} else if (name.equals("rtt_avg")) {
+				return average(rttStats);
+			} else if (name.equals("rtt_med")) {
+				return median(rtts);
+			} else if (name.equals("nilai_max_hobcount")) {
+				return "" + (hopCounts.getCount() == 0 ? 0 :
+					(int)hopCounts.getMax());
+			} else if (name.equals("list_hobcount")) {
+				return hopCountList();
+			}
+			throw new SimError("Unknown statistic " + name);
+		}
+
+		private static String average(RunningStats stats) {
+			return stats.getCount() == 0 ? Report.NAN :
+				format(stats.getMean());
+		}
+
+		private static String median(SampleQuantiles values) {
+			return values.getCount() == 0 ? Report.NAN :
+				format(values.getQuantile(0.5));
+		}
+
+		private String hopCountList() {
+			StringBuilder sb = new StringBuilder("[");
+			for (int i=0; i<hopCounts.getNrofBuckets(); i++) {
+				int hopCount = (int)hopCounts.getBucketValue(i);
+				for (long j=hopCounts.getBucketCount(i); j>0; j--) {
+					if (sb.length() > 1) {
+						sb.append(", ");
+					}
+					sb.append(hopCount);
+				}
+			}
+			return sb.append(']').toString();
+		}
+	}
+
+	/**
+	 * Open addressing hash table of message copies (message and host) with
+	 * the hop count and receive time of each copy
+	 */
+	private static class CopyTable {
+		private static final long EMPTY = -1;
+		private final int nrofHosts;
+		private long[] keys;
+		private int[] hops;
+		private double[] receiveTimes;
+		private int size;
+
+		private CopyTable(int nrofHosts) {
+			this.nrofHosts = Math.max(1, nrofHosts);
+			allocate(1 << 10);
+		}
+
+		private void allocate(int capacity) {
+			this.keys = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+			this.hops = new int[capacity];
+			this.receiveTimes = new double[capacity];
+		}
+
+		private long key(int msg, int host) {
+			return (long)msg * nrofHosts + host;
+		}
+
+		private int slotOf(long key) {
+			int mask = keys.length - 1;
+			int slot = (int)((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+			while (keys[slot] != EMPTY && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Returns the slot of a copy or -1 if there's no such copy
+		 */
+		private int find(int msg, int host) {
+			int slot = slotOf(key(msg, host));
+			return keys[slot] == EMPTY ? -1 : slot;
+		}
+
+		private void put(int msg, int host, int hopCount, double time) {
+			long key = key(msg, host);
+			int slot = slotOf(key);
+			if (keys[slot] == EMPTY) {
+				if (2 * (size + 1) > keys.length) {
+					grow();
+					slot = slotOf(key);
+				}
+				keys[slot] = key;
+				size++;
+			}
+			hops[slot] = hopCount;
+			receiveTimes[slot] = time;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			int[] oldHops = hops;
+			double[] oldTimes = receiveTimes;
+			allocate(oldKeys.length * 2);
+			for (int i=0; i<oldKeys.length; i++) {
+				if (oldKeys[i] != EMPTY) {
+					int slot = slotOf(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					hops[slot] = oldHops[i];
+					receiveTimes[slot] = oldTimes[i];
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println(USAGE);
+			System.exit(-1);
+		}
+		String command = args[0];
+		double from = -Double.MAX_VALUE;
+		double to = Double.MAX_VALUE;
+		String stat = null;
+		String labelRe = DEF_LABEL_RE;
+		boolean complementary = false;
+		long total = -1;
+		List<File> files = new ArrayList<File>();
+
+		for (int i=1; i<args.length; i++) {
+			String arg = args[i];
+			boolean hasValue = i + 1 < args.length;
+			if (arg.equals("-from") && hasValue) {
+				from = Double.parseDouble(args[++i]);
+			} else if (arg.equals("-to") && hasValue) {
+				to = Double.parseDouble(args[++i]);
+			} else if (arg.equals("-stat") && hasValue) {
+				stat = args[++i];
+			} else if (arg.equals("-label") && hasValue) {
+				labelRe = args[++i];
+			} else if (arg.equals("-total") && hasValue) {
+				total = Long.parseLong(args[++i]);
+			} else if (arg.equals("-comp")) {
+				complementary = true;
+			} else if (arg.startsWith("-")) {
+				System.out.println("Unknown option " + arg + "\n" + USAGE);
+				System.exit(-1);
+			} else {
+				files.add(new File(arg));
+			}
+		}
+
+		EventLogQuery query = new EventLogQuery(from, to, System.out);
+		if (command.equals("stats") && stat != null) {
+			query.printStat(files, stat, labelRe);
+			return;
+		}
+		for (File f : files) {
+			ColumnarEventLogReader log = new ColumnarEventLogReader(f);
+			if (command.equals("stats")) {
+				query.printStats(log);
+			} else if (command.equals("cdf")) {
+				query.printDelayCdf(log, complementary, total);
+			} else if (command.equals("count")) {
+				query.printCounts(log);
+			} else {
+				System.out.println("Unknown command " + command + "\n" +
+						USAGE);
+				System.exit(-1);
+			}
+			log.close();
+		}
+	}
+}
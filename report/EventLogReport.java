@@ -37,10 +37,21 @@ public class EventLogReport extends Report
 	 */
 	private void processEvent(final String action, final DTNHost host1, 
 			final DTNHost host2, final Message message, final String extra) {
-		write(getSimTime() + " " + action + " " + (host1 != null ? host1 : "")
-				+ (host2 != null ? (" " + host2) : "")
-				+ (message != null ? " " + message : "")
-				+ (extra != null ? " " + extra : ""));
+		ReportRecord r = record().add(getSimTime()).add(' ').add(action)
+			.add(' ');
+		if (host1 != null) {
+			r.add(host1);
+		}
+		if (host2 != null) {
+			r.add(' ').add(host2);
+		}
+		if (message != null) {
+			r.add(' ').add(message);
+		}
+		if (extra != null) {
+			r.add(' ').add(extra);
+		}
+		write(r);
 	}
 	
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
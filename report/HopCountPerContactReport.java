@@ -9,11 +9,9 @@ import core.ConnectionListener;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import report.stats.RunningStats;
 
 /**
  * 
@@ -21,11 +19,7 @@ import java.util.Map;
  */
 public abstract class HopCountPerContactReport extends Report implements MessageListener, ConnectionListener{
 
-    private Map<String, Double> creationTimes;
-	private List<Double> latencies;
-	private List<Integer> hopCounts;
-	private List<Double> msgBufferTime;
-	private List<Double> rtt; // round trip times
+	private RunningStats hopCounts;
 	private int lastRecord = 0;
         public static final int DEFAULT_CONTACT_COUNT = 500;
         private int interval;
@@ -52,11 +46,7 @@ public abstract class HopCountPerContactReport extends Report implements Message
 	@Override
 	protected void init() {
 		super.init();
-		this.creationTimes = new HashMap<String, Double>();
-		this.latencies = new ArrayList<Double>();
-		this.msgBufferTime = new ArrayList<Double>();
-		this.hopCounts = new ArrayList<Integer>();
-		this.rtt = new ArrayList<Double>();
+		this.hopCounts = new RunningStats();
 		this.interval = DEFAULT_CONTACT_COUNT;
                 this.hopCount = new HashMap<>();
 		this.nrofDropped = 0;
@@ -80,7 +70,6 @@ public abstract class HopCountPerContactReport extends Report implements Message
 			this.nrofRemoved++;
 		}
 		
-		this.msgBufferTime.add(getSimTime() - m.getReceiveTime());
 	}
 
 	
@@ -101,13 +90,10 @@ public abstract class HopCountPerContactReport extends Report implements Message
 
 		this.nrofRelayed++;
 		if (finalTarget) {
-			this.latencies.add(getSimTime() - 
-				this.creationTimes.get(m.getId()) );
 			this.nrofDelivered++;
 			this.hopCounts.add(m.getHops().size() - 1);
 			
 			if (m.isResponse()) {
-				this.rtt.add(getSimTime() -	m.getRequest().getCreationTime());
 				this.nrofResponseDelivered++;
 			}
 		}
@@ -120,7 +106,6 @@ public abstract class HopCountPerContactReport extends Report implements Message
 			return;
 		}
 		
-		this.creationTimes.put(m.getId(), getSimTime());
 		this.nrofCreated++;
 		if (m.getResponseSize() > 0) {
 			this.nrofResponseReqCreated++;
@@ -152,14 +137,9 @@ public abstract class HopCountPerContactReport extends Report implements Message
         @Override
         public void hostsConnected(DTNHost host1, DTNHost host2) {
                 TOTAL_CONTACT++;
-                int totalHopCount = 0;
                 if (TOTAL_CONTACT - lastRecord >= interval) {
                     lastRecord = TOTAL_CONTACT;
-                    for (Iterator<Integer> iterator = hopCounts.iterator(); iterator.hasNext();) {
-                        Integer next = iterator.next();
-                        totalHopCount = totalHopCount + next;
-                    }
-                    hopCount.put(lastRecord, totalHopCount);
+                    hopCount.put(lastRecord, (int)hopCounts.getSum());
                 }
         }
 
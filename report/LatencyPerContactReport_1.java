@@ -10,9 +10,8 @@ import core.DTNHost;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
-import java.util.ArrayList;
+import report.stats.RunningStats;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 
@@ -25,7 +24,7 @@ public class LatencyPerContactReport_1 extends Report implements MessageListener
     private int interval;
     private Map<Integer, String> nrofLatency;
     private Map<String, Double> creationTimes;
-    private List<Double> latencies;
+    private RunningStats latencies;
 
     /**
      * Constructor.
@@ -47,7 +46,7 @@ public class LatencyPerContactReport_1 extends Report implements MessageListener
         this.lastRecord = 0;
         this.totalContact = 0;
         this.creationTimes = new HashMap<String, Double>();
-        this.latencies = new ArrayList<Double>();
+        this.latencies = new RunningStats();
         this.nrofLatency = new HashMap<>();
     }
 
@@ -4,9 +4,7 @@
  */
 package report;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import report.stats.SampleQuantiles;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
@@ -20,7 +18,7 @@ public class MessageDelayReport extends Report implements MessageListener {
 	public static final String HEADER =
 	    "# messageDelay  cumulativeProbability";
 	/** all message delays */
-	private List<Double> delays;
+	private SampleQuantiles delays;
 	private int nrofCreated;
 	
 	/**
@@ -34,7 +32,7 @@ public class MessageDelayReport extends Report implements MessageListener {
 	public void init() {
 		super.init();
 		write(HEADER);
-		this.delays = new ArrayList<Double>();
+		this.delays = new SampleQuantiles();
 		this.nrofCreated = 0;
 	}
 	
@@ -57,16 +55,14 @@ public class MessageDelayReport extends Report implements MessageListener {
 
 	@Override
 	public void done() {
-		if (delays.size() == 0) {
+		if (delays.getCount() == 0) {
 			write("# no messages delivered in sim time "+format(getSimTime()));
 			super.done();
 			return;
 		}
 		double cumProb = 0; // cumulative probability
 		
-		java.util.Collections.sort(delays);
-		
-		for (int i=0; i < delays.size(); i++) {
+		for (int i=0; i < delays.getCount(); i++) {
 			cumProb += 1.0/nrofCreated;
 			write(format(delays.get(i)) + " " + format(cumProb));
 		}
@@ -7,6 +7,7 @@ package report;
 import java.util.HashSet;
 import java.util.List;
 
+import core.Coord;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
@@ -68,24 +69,25 @@ public class MessageLocationReport extends Report implements UpdateListener {
 	 * @param hosts The list of hosts in the world
 	 */
 	private void createSnapshot(List<DTNHost> hosts) {
-		boolean isFirstMessage;
-		String reportLine;
+		ReportRecord reportLine;
 		
-		write ("[" + (int)getSimTime() + "]"); /* write sim time stamp */
+		/* write sim time stamp */
+		write(record().add('[').add((int)getSimTime()).add(']'));
 		
 		for (DTNHost host : hosts) {
-			isFirstMessage = true;
-			reportLine = "";
+			reportLine = null;
 			for (Message m : host.getMessageCollection()) {
 				if (this.reportedMessages.contains(m.getId())) {
-					if (isFirstMessage) {
-						reportLine = host.getLocation().toString();
-						isFirstMessage = false;
+					if (reportLine == null) {
+						/* same format as Coord.toString() */
+						Coord loc = host.getLocation();
+						reportLine = record().add('(').addFixed(loc.getX(), 2)
+							.add(',').addFixed(loc.getY(), 2).add(')');
 					}		
-					reportLine += " " + m.getId();
+					reportLine.add(' ').add(m.getId());
 				}
 			}
-			if (reportLine.length() > 0) {
+			if (reportLine != null) {
 				write(reportLine); /* write coordinate and message IDs */
 			}
 		}
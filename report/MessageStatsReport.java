@@ -4,14 +4,18 @@
  */
 package report;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
+import report.stats.Histogram;
+import report.stats.QuantileEstimator;
+import report.stats.RunningStats;
+import report.stats.SampleQuantiles;
+import report.stats.TDigest;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.Settings;
 
 /**
  * Report for generating different kind of total statistics about message
@@ -20,13 +24,34 @@ import core.MessageListener;
  * <P><strong>Note:</strong> if some statistics could not be created (e.g.
  * overhead ratio if no messages were delivered) "NaN" is reported for
  * double values and zero for integer median(s).
+ * <P>
+ * The averages are computed as the values come in, but by default all the
+ * latencies, buffer times and round trip times are stored for the exact
+ * medians. With {@link #STREAMING_QUANTILES_S} the medians are estimated
+ * with t-digests instead, so the memory use doesn't grow with the number of
+ * messages. If the report {@link Report#INTERVAL_SETTING interval} is set,
+ * a snapshot of the statistics so far is written in a new file after every
+ * interval.
  */
 public class MessageStatsReport extends Report implements MessageListener {
+	/** Streaming quantiles -setting id ({@value}). Boolean valued. If true,
+	 * the medians are estimated without storing the values. Default is
+	 * false. */
+	public static final String STREAMING_QUANTILES_S = "streamingQuantiles";
+	/** Significant digits of the hop count histogram. Hop counts below 2048
+	 * are counted exactly. */
+	private static final int HOP_COUNT_DIGITS = 3;
+
+	private boolean streamingQuantiles;
 	private Map<String, Double> creationTimes;
-	private List<Double> latencies;
-	private List<Integer> hopCounts;
-	private List<Double> msgBufferTime;
-	private List<Double> rtt; // round trip times
+	private RunningStats latencyStats;
+	private QuantileEstimator latencies;
+	private RunningStats hopCountStats;
+	private Histogram hopCounts;
+	private RunningStats msgBufferTimeStats;
+	private QuantileEstimator msgBufferTime;
+	private RunningStats rttStats; // round trip times
+	private QuantileEstimator rtt;
 	
 	private int nrofDropped;
 	private int nrofRemoved;
@@ -43,17 +68,28 @@ public class MessageStatsReport extends Report implements MessageListener {
 	 * Constructor.
 	 */
 	public MessageStatsReport() {
+		Settings s = getSettings();
+		if (s.contains(STREAMING_QUANTILES_S)) {
+			this.streamingQuantiles = s.getBoolean(STREAMING_QUANTILES_S);
+		}
 		init();
 	}
 
 	@Override
 	protected void init() {
 		super.init();
+		if (this.creationTimes != null) {
+			return; // new output file for a snapshot; keep the statistics
+		}
 		this.creationTimes = new HashMap<String, Double>();
-		this.latencies = new ArrayList<Double>();
-		this.msgBufferTime = new ArrayList<Double>();
-		this.hopCounts = new ArrayList<Integer>();
-		this.rtt = new ArrayList<Double>();
+		this.latencyStats = new RunningStats();
+		this.latencies = newQuantileEstimator();
+		this.msgBufferTimeStats = new RunningStats();
+		this.msgBufferTime = newQuantileEstimator();
+		this.hopCountStats = new RunningStats();
+		this.hopCounts = new Histogram(1, HOP_COUNT_DIGITS);
+		this.rttStats = new RunningStats();
+		this.rtt = newQuantileEstimator();
 		
 		this.nrofDropped = 0;
 		this.nrofRemoved = 0;
@@ -67,8 +103,19 @@ public class MessageStatsReport extends Report implements MessageListener {
                 this.nrofReceived = 0;
 	}
 
+	/**
+	 * Returns a new quantile estimator for the median values
+	 */
+	private QuantileEstimator newQuantileEstimator() {
+		if (streamingQuantiles) {
+			return new TDigest();
+		}
+		return new SampleQuantiles();
+	}
+
 	
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		newEvent();
 		if (isWarmupID(m.getId())) {
 			return;
 		}
@@ -80,11 +127,14 @@ public class MessageStatsReport extends Report implements MessageListener {
 			this.nrofRemoved++;
 		}
 		
-		this.msgBufferTime.add(getSimTime() - m.getReceiveTime());
+		double bufferTime = getSimTime() - m.getReceiveTime();
+		this.msgBufferTimeStats.add(bufferTime);
+		this.msgBufferTime.add(bufferTime);
 	}
 
 	
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		newEvent();
 		if (isWarmupID(m.getId())) {
 			return;
 		}
@@ -95,18 +145,26 @@ public class MessageStatsReport extends Report implements MessageListener {
 	
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 		          boolean finalTarget) {
+        newEvent();
         if (isWarmupID(m.getId())) {
             return;
         }
 
         this.nrofRelayed++;
         if (finalTarget) {
-            this.latencies.add(getSimTime() - this.creationTimes.get(m.getId()));
+            /* delivered for the first time: creation time not needed again */
+            double latency = getSimTime() - this.creationTimes.remove(m.getId());
+            this.latencyStats.add(latency);
+            this.latencies.add(latency);
             this.nrofDelivered++;
-            this.hopCounts.add(m.getHops().size() - 1);
+            int hopCount = m.getHops().size() - 1;
+            this.hopCountStats.add(hopCount);
+            this.hopCounts.add(hopCount);
 
             if (m.isResponse()) {
-                this.rtt.add(getSimTime() - m.getRequest().getCreationTime());
+                double roundTrip = getSimTime() - m.getRequest().getCreationTime();
+                this.rttStats.add(roundTrip);
+                this.rtt.add(roundTrip);
                 this.nrofResponseDelivered++;
             }
         }
@@ -114,6 +172,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 
 	public void newMessage(Message m) {
+		newEvent();
 		if (isWarmup()) {
 			addWarmupID(m.getId());
 			return;
@@ -128,6 +187,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 	
 	
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		newEvent();
 		if (isWarmupID(m.getId())) {
 			return;
 		}
@@ -171,20 +231,57 @@ public class MessageStatsReport extends Report implements MessageListener {
 			"\nresponse_prob: " + format(responseProb) + 
 			"\noverhead_ratio: " + format(overHead) + 
                         "\ndelivery_utility: " + format(deliveryUtility)+
-			"\nlatency_avg: " + getAverage(this.latencies) +
+			"\nlatency_avg: " + getAverage(this.latencyStats) +
 			"\nlatency_med: " + getMedian(this.latencies) + 
-			"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
-			"\nhopcount_med: " + getIntMedian(this.hopCounts) + 
-			"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
+			"\nhopcount_avg: " + getAverage(this.hopCountStats) +
+			"\nhopcount_med: " + getHopCountMedian() + 
+			"\nbuffertime_avg: " + getAverage(this.msgBufferTimeStats) +
 			"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
-			"\nrtt_avg: " + getAverage(this.rtt) +
+			"\nrtt_avg: " + getAverage(this.rttStats) +
 			"\nrtt_med: " + getMedian(this.rtt) +
-                        "\nnilai_max_hobcount: " + getIntMax(this.hopCounts) +
-                        "\nlist_hobcount: " +getjmlIntMax(this.hopCounts)
+                        "\nnilai_max_hobcount: " + getHopCountMax() +
+                        "\nlist_hobcount: " + getHopCountList()
 			;
 		
 		write(statsText);
 		super.done();
 	}
+
+	/**
+	 * Returns the median hop count or 0 if no messages were delivered
+	 */
+	private int getHopCountMedian() {
+		if (hopCounts.getCount() == 0) {
+			return 0;
+		}
+		return (int)hopCounts.getQuantile(0.5);
+	}
+
+	/**
+	 * Returns the largest hop count or 0 if no messages were delivered
+	 */
+	private int getHopCountMax() {
+		if (hopCounts.getCount() == 0) {
+			return 0;
+		}
+		return (int)hopCounts.getMax();
+	}
+
+	/**
+	 * Returns the sorted hop counts of the delivered messages as a list
+	 */
+	private String getHopCountList() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i=0; i<hopCounts.getNrofBuckets(); i++) {
+			int hopCount = (int)hopCounts.getBucketValue(i);
+			for (long j=hopCounts.getBucketCount(i); j>0; j--) {
+				if (sb.length() > 1) {
+					sb.append(", ");
+				}
+				sb.append(hopCount);
+			}
+		}
+		return sb.append(']').toString();
+	}
 	
 }
@@ -27,8 +27,10 @@ public class MovementNs2Report extends Report implements MovementListener {
 	
 	/** a value "close enough" to zero ({@value}). Used for fixing zero values*/
 	public static final double EPSILON = 0.00001; 
+	/** number of decimals in coordinate values ({@value})*/
+	public static final int COORD_DECIMALS = 5;
 	/** formatting string for coordinate values ({@value})*/
-	public static final String COORD_FORMAT = "%.5f";
+	public static final String COORD_FORMAT = "%." + COORD_DECIMALS + "f";
 	
 	private String nodeArray;
 	private String nsCmd;
@@ -61,29 +63,32 @@ public class MovementNs2Report extends Report implements MovementListener {
 
 	public void initialLocation(DTNHost host, Coord location) {
 		int index = host.getAddress();
-		write(nodeArray + "("+ index + ") set X_ " + fix(location.getX()));
-		write(nodeArray + "("+ index + ") set Y_ " + fix(location.getY()));
-		write(nodeArray + "("+ index + ") set Z_ 0");
+		write(record().add(nodeArray).add('(').add(index).add(") set X_ ")
+				.addFixed(fix(location.getX()), COORD_DECIMALS));
+		write(record().add(nodeArray).add('(').add(index).add(") set Y_ ")
+				.addFixed(fix(location.getY()), COORD_DECIMALS));
+		write(record().add(nodeArray).add('(').add(index).add(") set Z_ 0"));
 	}
 
 	public void newDestination(DTNHost host, Coord dst, double speed) {
 		int index = host.getAddress();
 		double time = getSimTime();
 		
-		write(nsCmd + " at " + time + " \"\\" + nodeArray +	"(" + index + ")" + 
-				" setdest " + fix(dst.getX()) + " " + fix(dst.getY()) +
-				" " + speed + "\""); 
+		write(record().add(nsCmd).add(" at ").add(time).add(" \"\\")
+				.add(nodeArray).add('(').add(index).add(") setdest ")
+				.addFixed(fix(dst.getX()), COORD_DECIMALS).add(' ')
+				.addFixed(fix(dst.getY()), COORD_DECIMALS).add(' ')
+				.add(speed).add('"'));
 	}
 
 	/** 
-	 * Fixes and formats coordinate values suitable for Ns2 module. 
-	 * I.e. converts zero-values to {@value EPSILON} and formats values
+	 * Fixes coordinate values suitable for Ns2 module. 
+	 * I.e. converts zero-values to {@value EPSILON}. The values are written
 	 * with {@link #COORD_FORMAT}. 
 	 * @param val The value to fix
 	 * @return The fixed value
 	 */
-	private String fix(double val) {
-		val = val == 0 ? EPSILON : val;
-		return String.format(COORD_FORMAT, val);
+	private double fix(double val) {
+		return val == 0 ? EPSILON : val;
 	}
 }
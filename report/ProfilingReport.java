@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import core.DTNHost;
+import core.Settings;
+import core.SettingsError;
+import core.SimProfiler;
+import core.UpdateListener;
+
+/**
+ * Reports the {@link SimProfiler} measurements of the simulation loop. Every
+ * {@link #GRANULARITY} simulated seconds a block is written with the
+ * simulated seconds per wall clock second and the processed events per
+ * second of the period, followed by the calls, total time and mean time per
+ * call of each span during the period. In the end, a summary of the whole
+ * run is written, with the longest call and the share of the wall clock
+ * time of each span. Spans are listed in the order of their total time.
+ * Profiling must be enabled with <CODE>Profiler.enabled = true</CODE>.
+ */
+public class ProfilingReport extends Report implements UpdateListener {
+	/** Reporting interval -setting id ({@value}). How often (simulated
+	 * seconds) the measurements of the period are written. Default is
+	 * {@value #DEF_GRANULARITY}. */
+	public static final String GRANULARITY = "granularity";
+	/** Default reporting interval */
+	public static final int DEF_GRANULARITY = 3600;
+
+	private double granularity;
+	private double lastRecord;
+	private long lastWallNanos;
+	private long lastEvents;
+	/** calls and nanoseconds of each span at the previous record */
+	private List<long[]> lastValues;
+
+	/**
+	 * Constructor.
+	 */
+	public ProfilingReport() {
+		if (!SimProfiler.isEnabled()) {
+			throw new SettingsError(getClass().getSimpleName() + " needs " +
+					SimProfiler.PROFILER_NS + "." + SimProfiler.ENABLED_S +
+					" = true");
+		}
+		Settings s = getSettings();
+		if (s.contains(GRANULARITY)) {
+			this.granularity = s.getDouble(GRANULARITY);
+		}
+		else {
+			this.granularity = DEF_GRANULARITY;
+		}
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.lastRecord = getSimTime();
+		this.lastWallNanos = SimProfiler.getWallNanos();
+		this.lastEvents = SimProfiler.getNrofEvents();
+		this.lastValues = new ArrayList<long[]>();
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		if (getSimTime() - lastRecord >= granularity) {
+			writePeriod();
+		}
+	}
+
+	/**
+	 * Writes the measurements since the previous record
+	 */
+	private void writePeriod() {
+		double now = getSimTime();
+		long wallNanos = SimProfiler.getWallNanos();
+		long events = SimProfiler.getNrofEvents();
+		double wallSeconds = (wallNanos - lastWallNanos) / 1e9;
+
+		write("@ " + format(now) + " wall_s " + format(wallSeconds) +
+				" sim/wall " + format((now - lastRecord) / wallSeconds) +
+				" events/s " + format((events - lastEvents) / wallSeconds));
+
+		List<SimProfiler.Span> spans = SimProfiler.getSpans();
+		final List<long[]> deltas = new ArrayList<long[]>();
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i=0; i<spans.size(); i++) {
+			SimProfiler.Span span = spans.get(i);
+			if (lastValues.size() <= i) {
+				lastValues.add(new long[2]);
+			}
+			long[] last = lastValues.get(i);
+			deltas.add(new long[] {span.getCalls() - last[0],
+					span.getNanos() - last[1]});
+			last[0] = span.getCalls();
+			last[1] = span.getNanos();
+			if (deltas.get(i)[0] > 0) {
+				order.add(i);
+			}
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return Long.compare(deltas.get(i2)[1], deltas.get(i1)[1]);
+			}
+		});
+		for (int i : order) {
+			long[] d = deltas.get(i);
+			write(spans.get(i).getName() + " " + d[0] + " " +
+					format(d[1] / 1e6) + " " + format(d[1] / 1e3 / d[0]));
+		}
+
+		this.lastRecord = now;
+		this.lastWallNanos = wallNanos;
+		this.lastEvents = events;
+	}
+
+	@Override
+	public void done() {
+		double wallSeconds = SimProfiler.getWallNanos() / 1e9;
+		long events = SimProfiler.getNrofEvents();
+		write("# summary");
+		write("sim_time: " + format(getSimTime()));
+		write("wall_time: " + format(wallSeconds));
+		write("sim_per_wall: " + format(getSimTime() / wallSeconds));
+		write("events: " + events);
+		write("events_per_s: " + format(events / wallSeconds));
+		write("# span calls total_ms mean_us max_us wall_%");
+
+		List<SimProfiler.Span> spans =
+			new ArrayList<SimProfiler.Span>(SimProfiler.getSpans());
+		Collections.sort(spans, new Comparator<SimProfiler.Span>() {
+			public int compare(SimProfiler.Span s1, SimProfiler.Span s2) {
+				return Long.compare(s2.getNanos(), s1.getNanos());
+			}
+		});
+		for (SimProfiler.Span span : spans) {
+			if (span.getCalls() == 0) {
+				continue;
+			}
+			write(span.getName() + " " + span.getCalls() + " " +
+					format(span.getNanos() / 1e6) + " " +
+					format(span.getNanos() / 1e3 / span.getCalls()) + " " +
+					format(span.getMaxNanos() / 1e3) + " " +
+					format(100 * span.getNanos() / 1e9 / wallSeconds));
+		}
+		super.done();
+	}
+}
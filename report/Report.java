@@ -4,16 +4,25 @@
  */
 package report;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Formatter;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
+import report.stats.QuantileEstimator;
+import report.stats.RunningStats;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -25,6 +34,13 @@ import core.SimScenario;
  * reports ({@link #INTERVAL_SETTING}) and will ignore that setting. Most of 
  * the reports implement warm up feature ({@link #WARMUP_S}) but the
  * implementations are always report specific.
+ * <P>
+ * By default, the output is written in the simulation thread. With
+ * {@link #ASYNC_OUTPUT_S} the lines are formatted and written in a background
+ * thread (see {@link AsyncReportWriter}). Reports that write lots of lines
+ * should build them with {@link #record()} and {@link #write(ReportRecord)},
+ * so that also the number formatting and string building is left to the
+ * background thread.
  */
 public abstract class Report {
 	/** Name space of the settings that are common to all reports ({@value}). */ 
@@ -49,16 +65,44 @@ public abstract class Report {
 	 *  respective report classes for details. Default is 0. Must be a positive
 	 *  integer or 0. */
 	public static final String WARMUP_S = "warmup";
+	/** Asynchronous output -setting id ({@value}). Boolean valued. If true,
+	 * the report output is formatted and written in a background thread.
+	 * Default is false. */
+	public static final String ASYNC_OUTPUT_S = "asyncOutput";
+	/** Asynchronous output buffer's size -setting id ({@value}). Defines how
+	 * many lines can wait for writing before the simulation waits for the
+	 * writer. Default is {@link AsyncReportWriter#DEF_CAPACITY}. */
+	public static final String ASYNC_BUFFER_S = "asyncBufferSize";
+	/** Output compression -setting id ({@value}). Boolean valued. If true,
+	 * the output is gzip compressed and {@value #GZ_SUFFIX} is appended to
+	 * the file name. Default is false. */
+	public static final String COMPRESS_OUTPUT_S = "compressOutput";
 	/** Suffix of report files without explicit output */
 	public static final String OUT_SUFFIX = ".txt";
+	/** Suffix of compressed report files */
+	public static final String GZ_SUFFIX = ".gz";
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX; 
-	/** The print writer used to write output. See {@link #write(String)} */
+	/** The print writer used to write output. See {@link #write(String)}.
+	 * Null if the output is asynchronous. */
 	protected PrintWriter out;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
 	private int precision;
+	private boolean asyncOutput;
+	private int asyncBufferSize;
+	private boolean compressOutput;
+	/** writer of the asynchronous output (null if output is synchronous or
+	 * closed) */
+	private AsyncReportWriter asyncOut;
+	/** has {@link #done()} closed the output; lines written after that are
+	 * ignored in both output modes */
+	private boolean outputClosed;
+	/** reused record of the synchronous output */
+	private ReportRecord syncRecord;
+	private StringBuilder syncLine;
+	private Formatter syncFormatter;
 	protected int warmupTime;
 	protected Set<String> warmupIDs;
 	
@@ -108,6 +152,19 @@ public abstract class Report {
 		else {
 			precision = DEF_PRECISION;
 		}
+
+		if (settings.contains(ASYNC_OUTPUT_S)) {
+			asyncOutput = settings.getBoolean(ASYNC_OUTPUT_S);
+		}
+		if (settings.contains(ASYNC_BUFFER_S)) {
+			asyncBufferSize = settings.getInt(ASYNC_BUFFER_S);
+		}
+		else {
+			asyncBufferSize = AsyncReportWriter.DEF_CAPACITY;
+		}
+		if (settings.contains(COMPRESS_OUTPUT_S)) {
+			compressOutput = settings.getBoolean(COMPRESS_OUTPUT_S);
+		}
 		
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
@@ -193,8 +250,29 @@ public abstract class Report {
 	 * @param outFileName Name (&path) of the file to create
 	 */
 	private void createOutput(String outFileName) {
+		this.outputClosed = false;
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			Writer w;
+			if (compressOutput) {
+				if (!outFileName.endsWith(GZ_SUFFIX)) {
+					outFileName += GZ_SUFFIX;
+				}
+				OutputStream os = new GZIPOutputStream(
+						new FileOutputStream(outFileName), 1 << 16);
+				w = new OutputStreamWriter(os);
+			}
+			else {
+				w = new FileWriter(outFileName);
+			}
+
+			if (asyncOutput) {
+				this.asyncOut = new AsyncReportWriter(new BufferedWriter(w,
+						1 << 16), asyncBufferSize, getClass().getSimpleName() +
+						" writer");
+			}
+			else {
+				this.out = new PrintWriter(w);
+			}
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName + 
 					"' for report output\n" + e.getMessage(), e);
@@ -234,10 +312,58 @@ public abstract class Report {
 	 * @see #setPrefix(String)
 	 */
 	protected void write(String txt) {
-		if (out == null) {
+		if (out == null && asyncOut == null && !outputClosed) {
 			init();
 		}
-		out.println(prefix + txt);
+		if (asyncOut != null) {
+			asyncOut.claim(prefix).add(txt);
+			asyncOut.publish();
+		}
+		else if (out != null) {
+			out.println(prefix + txt);
+		}
+	}
+
+	/**
+	 * Returns an empty record for a new line of the report. The current
+	 * prefix is written before the record's fields. The record must be
+	 * written with {@link #write(ReportRecord)} before getting another record
+	 * or writing other lines.
+	 * @return An empty record
+	 * @see ReportRecord
+	 */
+	protected ReportRecord record() {
+		if (out == null && asyncOut == null && !outputClosed) {
+			init();
+		}
+		if (asyncOut != null) {
+			return asyncOut.claim(prefix);
+		}
+
+		if (syncRecord == null) {
+			syncRecord = new ReportRecord();
+			syncLine = new StringBuilder();
+			syncFormatter = new Formatter(syncLine);
+		}
+		syncRecord.clear(prefix);
+		return syncRecord;
+	}
+
+	/**
+	 * Writes a record returned by {@link #record()} as a line to the report
+	 * @param r The record
+	 */
+	protected void write(ReportRecord r) {
+		if (asyncOut != null) {
+			asyncOut.publish();
+		}
+		else {
+			syncLine.setLength(0);
+			r.appendTo(syncLine, syncFormatter);
+			if (out != null) {
+				out.println(syncLine);
+			}
+		}
 	}
 	
 	/**
@@ -335,6 +461,12 @@ public abstract class Report {
 		if (out != null) {
 			out.close();
 		}
+		if (asyncOut != null) {
+			AsyncReportWriter w = asyncOut;
+			asyncOut = null; // closed even if writing failed
+			w.close();
+		}
+		outputClosed = true;
 	}
 	
 	/**
@@ -356,6 +488,19 @@ public abstract class Report {
 		return format(sum / values.size());
 	}
 
+	/**
+	 * Returns the average of the values in running statistics
+	 * @param stats The statistics
+	 * @return The average of the values in a formatted String or "NaN" if
+	 * there are no values
+	 */
+	public String getAverage(RunningStats stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getMean());
+	}
+
 	/**
 	 * Returns the average of integer values stored in a List
 	 * @param values The list of values
@@ -385,6 +530,19 @@ public abstract class Report {
 		return format(values.get(values.size()/2));
 	}
 	
+	/**
+	 * Returns the median of the values in a quantile estimator
+	 * @param values The estimator
+	 * @return The (estimated) median in a formatted String or "NaN" if there
+	 * are no values
+	 */
+	public String getMedian(QuantileEstimator values) {
+		if (values.getCount() == 0) {
+			return NAN;
+		}
+		return format(values.getQuantile(0.5));
+	}
+
 	/**
 	 * Returns the median of integer values stored in a List
 	 * @param values The list of values
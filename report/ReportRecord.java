@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+import java.util.Formatter;
+
+/**
+ * One line of report output stored as a sequence of fields. The fields are
+ * converted to text only when the line is written, so with asynchronous
+ * output (see {@link Report#ASYNC_OUTPUT_S}) the formatting is done in the
+ * writer thread instead of the simulation thread. The fields are written one
+ * after another without separators. Get records with {@link Report#record()}
+ * and write them with {@link Report#write(ReportRecord)}.
+ * <P>
+ * Objects added with {@link #add(Object)} are converted to strings later,
+ * possibly in another thread, so only objects whose string form does not
+ * change (e.g., hosts and messages) may be added as such. Add the string
+ * (or the numeric values) of other objects, such as locations.
+ */
+public class ReportRecord {
+	private static final byte TEXT = 0;
+	private static final byte LONG = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte FIXED = 3;
+	private static final byte CHAR = 4;
+	private static final int INITIAL_SIZE = 8;
+	/** cached format strings for {@link #addFixed(double, int)} */
+	private static final String[] FIXED_FORMATS = new String[16];
+
+	static {
+		for (int i=0; i<FIXED_FORMATS.length; i++) {
+			FIXED_FORMATS[i] = "%." + i + "f";
+		}
+	}
+
+	private String prefix;
+	private int size;
+	private byte[] types;
+	/** numeric values of the fields (doubles as raw long bits) */
+	private long[] values;
+	/** objects of the text fields and formats of the fixed fields */
+	private Object[] objects;
+
+	/**
+	 * Creates a new, empty record
+	 */
+	ReportRecord() {
+		this.prefix = "";
+		this.types = new byte[INITIAL_SIZE];
+		this.values = new long[INITIAL_SIZE];
+		this.objects = new Object[INITIAL_SIZE];
+	}
+
+	/**
+	 * Removes all fields of the record and sets a new prefix for it
+	 * @param prefix Text to write before the fields
+	 */
+	void clear(String prefix) {
+		Arrays.fill(objects, 0, size, null);
+		this.size = 0;
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Adds a string field. Null is written as "null".
+	 * @param txt The string
+	 * @return This record
+	 */
+	public ReportRecord add(String txt) {
+		int i = next(TEXT);
+		objects[i] = txt;
+		return this;
+	}
+
+	/**
+	 * Adds a field whose text is the string form of an object. See the
+	 * class description for the objects that can be added.
+	 * @param o The object
+	 * @return This record
+	 */
+	public ReportRecord add(Object o) {
+		int i = next(TEXT);
+		objects[i] = o;
+		return this;
+	}
+
+	/**
+	 * Adds a character field
+	 * @param c The character
+	 * @return This record
+	 */
+	public ReportRecord add(char c) {
+		int i = next(CHAR);
+		values[i] = c;
+		return this;
+	}
+
+	/**
+	 * Adds an integer field
+	 * @param value The value
+	 * @return This record
+	 */
+	public ReportRecord add(long value) {
+		int i = next(LONG);
+		values[i] = value;
+		return this;
+	}
+
+	/**
+	 * Adds a double field that is written like {@link Double#toString(double)}
+	 * writes it (and like string concatenation does)
+	 * @param value The value
+	 * @return This record
+	 */
+	public ReportRecord add(double value) {
+		int i = next(DOUBLE);
+		values[i] = Double.doubleToRawLongBits(value);
+		return this;
+	}
+
+	/**
+	 * Adds a double field with a fixed number of decimals. The value is
+	 * written like <CODE>String.format("%.Nf", value)</CODE> writes it.
+	 * @param value The value
+	 * @param decimals Number of decimals (N)
+	 * @return This record
+	 */
+	public ReportRecord addFixed(double value, int decimals) {
+		int i = next(FIXED);
+		values[i] = Double.doubleToRawLongBits(value);
+		objects[i] = decimals < FIXED_FORMATS.length ?
+				FIXED_FORMATS[decimals] : "%." + decimals + "f";
+		return this;
+	}
+
+	/**
+	 * Reserves the next field and returns its index
+	 */
+	private int next(byte type) {
+		if (size == types.length) {
+			int newSize = size * 2;
+			types = Arrays.copyOf(types, newSize);
+			values = Arrays.copyOf(values, newSize);
+			objects = Arrays.copyOf(objects, newSize);
+		}
+		types[size] = type;
+		return size++;
+	}
+
+	/**
+	 * Appends the text of the record (without a line separator)
+	 * @param sb The builder to append to
+	 * @param formatter Formatter that appends to the same builder (for the
+	 * fixed fields)
+	 */
+	void appendTo(StringBuilder sb, Formatter formatter) {
+		sb.append(prefix);
+		for (int i=0; i<size; i++) {
+			switch (types[i]) {
+			case TEXT:
+				sb.append(objects[i]);
+				break;
+			case LONG:
+				sb.append(values[i]);
+				break;
+			case DOUBLE:
+				sb.append(Double.longBitsToDouble(values[i]));
+				break;
+			case FIXED:
+				formatter.format((String)objects[i],
+						Double.longBitsToDouble(values[i]));
+				break;
+			case CHAR:
+				sb.append((char)values[i]);
+				break;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		appendTo(sb, new Formatter(sb));
+		return sb.toString();
+	}
+}
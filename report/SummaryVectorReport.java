@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.EpidemicSummaryRouter;
+import routing.MessageRouter;
+import core.DTNHost;
+import core.SimScenario;
+
+/**
+ * Reports the statistics of the summary vector exchanges of the nodes that
+ * use {@link EpidemicSummaryRouter}. The "offered" messages and bytes are the
+ * ones that plain epidemic routing would have offered to nodes that already
+ * had the messages but the summary vectors filtered out. The bytes saved
+ * are the bytes of those messages minus the size of the summary vectors.
+ */
+public class SummaryVectorReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public SummaryVectorReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		int nrofSummaries = 0;
+		long summaryBytes = 0;
+		int nrofFiltered = 0;
+		long filteredBytes = 0;
+		int nrofFalsePositives = 0;
+		int nrofDeniedOld = 0;
+
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = h.getRouter();
+			if (!(r instanceof EpidemicSummaryRouter)) {
+				continue;
+			}
+			EpidemicSummaryRouter er = (EpidemicSummaryRouter)r;
+			nrofSummaries += er.getNrofSummaries();
+			summaryBytes += er.getSummaryBytes();
+			nrofFiltered += er.getNrofFiltered();
+			filteredBytes += er.getFilteredBytes();
+			nrofFalsePositives += er.getNrofFalsePositives();
+			nrofDeniedOld += er.getNrofDeniedOld();
+		}
+
+		write("Summary vector stats for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		String statsText = "summaries: " + nrofSummaries +
+			"\nsummary_bytes: " + summaryBytes +
+			"\noffers_avoided: " + nrofFiltered +
+			"\noffered_bytes_avoided: " + filteredBytes +
+			"\nfalse_positives: " + nrofFalsePositives +
+			"\ndenied_old: " + nrofDeniedOld +
+			"\nbytes_saved: " + (filteredBytes - summaryBytes)
+			;
+
+		write(statsText);
+		super.done();
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report.stats;
+
+import java.util.Arrays;
+
+import core.SimError;
+
+/**
+ * Histogram of non-negative values with buckets whose width grows with the
+ * value, like in the HDR histogram. The values are first converted to whole
+ * units (rounded down) and the unit counts are then stored in buckets that
+ * keep the given number of significant decimal digits: small unit counts
+ * have a bucket of their own and the relative width of the larger buckets is
+ * at most <CODE>10^-digits</CODE>. E.g., with a unit of 1 and 3 significant
+ * digits, integer values below 2048 are counted exactly. The memory use
+ * depends only on the range of the values, not on their number.
+ */
+public class Histogram implements QuantileEstimator {
+	private static final int INITIAL_BUCKETS = 2;
+
+	private final double unit;
+	/** log2 of the number of sub-buckets per bucket, halved */
+	private final int subBucketHalfCountMagnitude;
+	private final int subBucketHalfCount;
+	private final long subBucketMask;
+	private final int leadingZeroCountBase;
+	private long[] counts;
+	private long count;
+	private double min;
+	private double max;
+
+	/**
+	 * Creates a new, empty histogram
+	 * @param unit Size of the unit the values are converted to (i.e., the
+	 * resolution of the histogram)
+	 * @param significantDigits Number of significant decimal digits to keep
+	 * (1-5)
+	 */
+	public Histogram(double unit, int significantDigits) {
+		if (unit <= 0 || significantDigits < 1 || significantDigits > 5) {
+			throw new SimError("Invalid histogram unit (" + unit +
+					") or precision (" + significantDigits + ")");
+		}
+		this.unit = unit;
+
+		long singleUnitRange = 2 * (long)Math.pow(10, significantDigits);
+		int subBucketCountMagnitude = 64 -
+			Long.numberOfLeadingZeros(singleUnitRange - 1);
+		this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+		this.subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+		this.subBucketMask = (1L << subBucketCountMagnitude) - 1;
+		this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+		this.counts = new long[INITIAL_BUCKETS * subBucketHalfCount];
+		this.min = Double.POSITIVE_INFINITY;
+		this.max = Double.NEGATIVE_INFINITY;
+	}
+
+	public void add(double value) {
+		if (value < 0) {
+			throw new SimError("Negative value " + value + " for histogram");
+		}
+		int index = countsIndex((long)(value / unit));
+		if (index >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(index + 1,
+					counts.length * 2));
+		}
+		counts[index]++;
+		count++;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the estimated quantile. The estimate is the middle of the
+	 * bucket that has the quantile (but not beyond the smallest or largest
+	 * value added).
+	 */
+	public double getQuantile(double q) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long rank = Math.min(count - 1, (long)(q * count));
+		long cumulative = 0;
+		int index = 0;
+		for (; index < counts.length - 1; index++) {
+			cumulative += counts[index];
+			if (cumulative > rank) {
+				break;
+			}
+		}
+
+		double value = medianEquivalentValue(index) * unit;
+		return Math.max(min, Math.min(max, value));
+	}
+
+	/**
+	 * Returns the number of buckets. Buckets are in the order of their values
+	 * and most of them may be empty.
+	 * @return The number of buckets
+	 */
+	public int getNrofBuckets() {
+		return counts.length;
+	}
+
+	/**
+	 * Returns the number of values in a bucket
+	 * @param index Index of the bucket
+	 * @return The number of values
+	 */
+	public long getBucketCount(int index) {
+		return counts[index];
+	}
+
+	/**
+	 * Returns the value in the middle of a bucket. For values that have a
+	 * bucket of their own, this is the value (converted to units).
+	 * @param index Index of the bucket
+	 * @return The value
+	 */
+	public double getBucketValue(int index) {
+		return medianEquivalentValue(index) * unit;
+	}
+
+	/**
+	 * Returns the smallest value added
+	 * @return The smallest value or NaN if no values were added
+	 */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * Returns the largest value added
+	 * @return The largest value or NaN if no values were added
+	 */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Returns the index of the bucket counter of a value (in units)
+	 */
+	private int countsIndex(long value) {
+		int bucketIndex = leadingZeroCountBase -
+			Long.numberOfLeadingZeros(value | subBucketMask);
+		int subBucketIndex = (int)(value >>> bucketIndex);
+		return ((bucketIndex + 1) << subBucketHalfCountMagnitude) +
+			(subBucketIndex - subBucketHalfCount);
+	}
+
+	/**
+	 * Returns the value (in units) in the middle of a bucket
+	 */
+	private long medianEquivalentValue(int index) {
+		int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & (subBucketHalfCount - 1)) +
+			subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		long lowest = (long)subBucketIndex << bucketIndex;
+		return lowest + ((1L << bucketIndex) >> 1);
+	}
+}
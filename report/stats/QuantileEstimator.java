@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report.stats;
+
+/**
+ * Interface for classes that collect a stream of values and tell the
+ * quantiles of the values collected so far. The quantile <CODE>q</CODE> of
+ * <CODE>n</CODE> values is the value at (zero based) index
+ * <CODE>floor(q * n)</CODE> (but at most <CODE>n - 1</CODE>) of the sorted
+ * values, e.g., the median of an even number of values is the upper one of
+ * the two middle values. Implementations that don't store the values return
+ * an estimate of the quantile.
+ */
+public interface QuantileEstimator {
+
+	/**
+	 * Adds a value
+	 * @param value The value
+	 */
+	public void add(double value);
+
+	/**
+	 * Returns the number of values added
+	 * @return The number of values
+	 */
+	public long getCount();
+
+	/**
+	 * Returns the (estimated) quantile of the values added so far
+	 * @param q The quantile [0, 1]
+	 * @return The quantile or NaN if no values were added
+	 */
+	public double getQuantile(double q);
+}
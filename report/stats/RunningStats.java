@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report.stats;
+
+/**
+ * Count, sum, mean, variance, minimum and maximum of a stream of values,
+ * updated as the values are added and without storing the values. The
+ * variance is updated with Welford's algorithm. The mean is the plain sum
+ * divided by the count, so it is exactly the same as the mean computed from
+ * a list of the values in the order they were added.
+ */
+public class RunningStats {
+	private long count;
+	private double sum;
+	/** Welford's running mean */
+	private double runningMean;
+	/** Welford's sum of squared differences from the mean */
+	private double m2;
+	private double min;
+	private double max;
+
+	/**
+	 * Creates new, empty statistics
+	 */
+	public RunningStats() {
+		clear();
+	}
+
+	/**
+	 * Adds a value to the statistics
+	 * @param value The value
+	 */
+	public void add(double value) {
+		count++;
+		sum += value;
+		double delta = value - runningMean;
+		runningMean += delta / count;
+		m2 += delta * (value - runningMean);
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Removes all values from the statistics
+	 */
+	public void clear() {
+		count = 0;
+		sum = 0;
+		runningMean = 0;
+		m2 = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the number of values added
+	 * @return The number of values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the sum of the values
+	 * @return The sum
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * Returns the mean of the values
+	 * @return The mean or NaN if no values were added
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * Returns the (population) variance of the values
+	 * @return The variance or NaN if no values were added
+	 */
+	public double getVariance() {
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * Returns the smallest value
+	 * @return The smallest value or NaN if no values were added
+	 */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * Returns the largest value
+	 * @return The largest value or NaN if no values were added
+	 */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+}
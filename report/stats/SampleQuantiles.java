@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report.stats;
+
+import java.util.Arrays;
+
+/**
+ * Quantile "estimator" that stores all the values in a primitive array and
+ * returns exact quantiles. The values are sorted only when quantiles or
+ * values are requested after new values were added.
+ */
+public class SampleQuantiles implements QuantileEstimator {
+	private static final int INITIAL_CAPACITY = 64;
+	private double[] values;
+	private int size;
+	private boolean sorted;
+
+	/**
+	 * Creates a new, empty sample
+	 */
+	public SampleQuantiles() {
+		this.values = new double[INITIAL_CAPACITY];
+		this.sorted = true;
+	}
+
+	public void add(double value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		if (size > 0 && value < values[size - 1]) {
+			sorted = false;
+		}
+		values[size++] = value;
+	}
+
+	public long getCount() {
+		return size;
+	}
+
+	public double getQuantile(double q) {
+		if (size == 0) {
+			return Double.NaN;
+		}
+		return get(Math.min(size - 1, (int)(q * size)));
+	}
+
+	/**
+	 * Returns a value from the sorted values
+	 * @param index Index of the value in the sorted values
+	 * @return The value
+	 */
+	public double get(int index) {
+		if (!sorted) {
+			Arrays.sort(values, 0, size);
+			sorted = true;
+		}
+		return values[index];
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report.stats;
+
+import java.util.Arrays;
+
+/**
+ * Quantile estimator that summarizes the values as a t-digest (Dunning and
+ * Ertl, <I>Computing Extremely Accurate Quantiles Using t-Digests</I>). The
+ * values are collected in a buffer that is merged from time to time into a
+ * sorted list of centroids (mean and weight). The centroids near the ends of
+ * the distribution are kept small, so the tail quantiles are estimated more
+ * accurately than the ones in the middle. The memory use depends only on the
+ * compression parameter; the number of centroids is at most about
+ * compression + 1. With only a few values, all the centroids have a single
+ * value and the quantiles are exact.
+ */
+public class TDigest implements QuantileEstimator {
+	/** Default compression ({@value}) */
+	public static final double DEF_COMPRESSION = 100;
+	/** How many times the number of centroids fits in the buffer */
+	private static final int BUFFER_FACTOR = 5;
+
+	private final double compression;
+	private double[] means;
+	private double[] weights;
+	private int nrofCentroids;
+	private double[] buffer;
+	private int bufferSize;
+	/** temporary arrays for merging the buffer with the centroids */
+	private double[] mergeMeans;
+	private double[] mergeWeights;
+	private long count;
+	private double min;
+	private double max;
+
+	/**
+	 * Creates a new, empty digest with the default compression
+	 */
+	public TDigest() {
+		this(DEF_COMPRESSION);
+	}
+
+	/**
+	 * Creates a new, empty digest
+	 * @param compression Compression parameter. Larger values keep more
+	 * centroids and give more accurate quantiles.
+	 */
+	public TDigest(double compression) {
+		this.compression = compression;
+		int size = 2 * (int)Math.ceil(compression) + 10;
+		this.means = new double[size];
+		this.weights = new double[size];
+		this.buffer = new double[BUFFER_FACTOR * size];
+		this.mergeMeans = new double[size + buffer.length];
+		this.mergeWeights = new double[size + buffer.length];
+		this.min = Double.POSITIVE_INFINITY;
+		this.max = Double.NEGATIVE_INFINITY;
+	}
+
+	public void add(double value) {
+		if (bufferSize == buffer.length) {
+			merge();
+		}
+		buffer[bufferSize++] = value;
+		count++;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the estimated quantile. The quantile is interpolated between
+	 * the means of the centroids (and the smallest and largest value), which
+	 * are assumed to be in the middle of the centroids' values. Centroids of
+	 * a single value give exact values.
+	 */
+	public double getQuantile(double q) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		merge();
+
+		double index = Math.min(count - 1, Math.floor(q * count));
+		double cumulative = 0; // weight of the centroids before centroid i
+		double prevCenter = 0;
+		double prevMean = min;
+		for (int i=0; i<nrofCentroids; i++) {
+			double w = weights[i];
+			if (w == 1 && index >= cumulative && index < cumulative + 1) {
+				return means[i]; // single value
+			}
+			double center = cumulative + w / 2;
+			if (index < center) {
+				return interpolate(index, prevCenter, prevMean, center,
+						means[i]);
+			}
+			prevCenter = center;
+			prevMean = means[i];
+			cumulative += w;
+		}
+		return interpolate(index, prevCenter, prevMean, count - 1, max);
+	}
+
+	/**
+	 * Returns the smallest value added
+	 * @return The smallest value or NaN if no values were added
+	 */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * Returns the largest value added
+	 * @return The largest value or NaN if no values were added
+	 */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Returns the number of centroids (after merging the buffered values)
+	 * @return The number of centroids
+	 */
+	public int getNrofCentroids() {
+		merge();
+		return nrofCentroids;
+	}
+
+	private static double interpolate(double x, double x0, double y0,
+			double x1, double y1) {
+		if (x1 <= x0) {
+			return y1;
+		}
+		double value = y0 + (x - x0) * (y1 - y0) / (x1 - x0);
+		return Math.max(Math.min(y0, y1), Math.min(Math.max(y0, y1), value));
+	}
+
+	/**
+	 * Merges the buffered values with the centroids and compresses the
+	 * result so that no centroid spans more than one unit of the scale
+	 * function
+	 */
+	private void merge() {
+		if (bufferSize == 0) {
+			return;
+		}
+		Arrays.sort(buffer, 0, bufferSize);
+
+		/* merge the sorted buffer and centroids */
+		int n = 0;
+		int b = 0;
+		int c = 0;
+		while (b < bufferSize || c < nrofCentroids) {
+			if (c == nrofCentroids ||
+					(b < bufferSize && buffer[b] < means[c])) {
+				mergeMeans[n] = buffer[b++];
+				mergeWeights[n] = 1;
+			}
+			else {
+				mergeMeans[n] = means[c];
+				mergeWeights[n] = weights[c++];
+			}
+			n++;
+		}
+
+		/* compress */
+		double total = count;
+		double weightBefore = 0; // weight before the current centroid
+		double kBefore = k(0);
+		int out = 0;
+		means[0] = mergeMeans[0];
+		weights[0] = mergeWeights[0];
+		for (int i=1; i<n; i++) {
+			double proposed = weights[out] + mergeWeights[i];
+			if (k((weightBefore + proposed) / total) - kBefore <= 1) {
+				means[out] += (mergeMeans[i] - means[out]) * mergeWeights[i] /
+					proposed;
+				weights[out] = proposed;
+			}
+			else {
+				weightBefore += weights[out];
+				kBefore = k(weightBefore / total);
+				out++;
+				means[out] = mergeMeans[i];
+				weights[out] = mergeWeights[i];
+			}
+		}
+		nrofCentroids = out + 1;
+		bufferSize = 0;
+	}
+
+	/**
+	 * The scale function (k1) that maps quantiles to centroid size units
+	 */
+	private double k(double q) {
+		return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+	}
+}
@@ -5,7 +5,6 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
@@ -17,6 +16,7 @@ import core.MessageListener;
 import core.Settings;
 import core.SimClock;
 import core.Tuple;
+import routing.drop.DropPolicy;
 
 /**
  * Superclass of active routers. Contains convenience methods (e.g. 
@@ -32,6 +32,16 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * from message buffer */
 	protected boolean deleteDelivered;
 	
+	/** Drop policy -setting id ({@value}). Name of the drop policy class
+	 * (in the routing.drop package) that decides which messages are dropped
+	 * when the buffer is full. If not set, the oldest message (by receive
+	 * time) is dropped first. */
+	public static final String DROP_POLICY_S = "dropPolicy";
+	/** package where to look for drop policy classes */
+	public static final String DROP_POLICY_PACKAGE = "routing.drop.";
+	/** the drop policy or null if the default (drop oldest) is used */
+	private DropPolicy dropPolicy;
+	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	/** how often TTL check (discarding old messages) is performed */
@@ -56,6 +66,11 @@ public abstract class ActiveRouter extends MessageRouter {
 		else {
 			this.deleteDelivered = false;
 		}
+		
+		if (s.contains(DROP_POLICY_S)) {
+			this.dropPolicy = (DropPolicy)s.createIntializedObject(
+					DROP_POLICY_PACKAGE + s.getSetting(DROP_POLICY_S));
+		}
 	}
 	
 	/**
@@ -65,6 +80,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		if (r.dropPolicy != null) {
+			this.dropPolicy = r.dropPolicy.replicate();
+		}
 	}
 	
 	@Override
@@ -226,8 +244,30 @@ public abstract class ActiveRouter extends MessageRouter {
 		return RCV_OK;
 	}
 	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		if (this.dropPolicy != null) {
+			Message old = getMessage(m.getId());
+			if (old != null) {
+				this.dropPolicy.messageRemoved(old);
+			}
+			this.dropPolicy.messageAdded(m);
+		}
+		super.addToMessages(m, newMessage);
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null && this.dropPolicy != null) {
+			this.dropPolicy.messageRemoved(m);
+		}
+		return m;
+	}
+	
 	/** 
-	 * Removes messages from the buffer (oldest first) until
+	 * Removes messages from the buffer (in the order given by 
+	 * {@link #getNextMessageToDrop(boolean)}) until
 	 * there's enough space for the new message.
 	 * @param size Size of the new message 
 	 * transferred, the transfer is aborted before message is removed
@@ -241,7 +281,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		int freeBuffer = this.getFreeBufferSize();
 		/* delete messages from the buffer until there's enough space */
 		while (freeBuffer < size) {
-			Message m = getOldestMessage(true); // don't remove msgs being sent
+			Message m = getNextMessageToDrop(true); // don't remove msgs being sent
 
 			if (m == null) {
 				return false; // couldn't remove any more messages
@@ -280,9 +320,34 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	
+	/**
+	 * Returns the message that should be dropped next from the buffer. If a
+	 * drop policy is set, the first message in the policy's drop order is 
+	 * returned. Otherwise the oldest message is returned (see 
+	 * {@link #getOldestMessage(boolean)}).
+	 * @param excludeMsgBeingSent If true, excludes message(s) that are
+	 * being sent
+	 * @return The message to drop or null if no message could be returned
+	 */
+	protected Message getNextMessageToDrop(boolean excludeMsgBeingSent) {
+		if (this.dropPolicy == null) {
+			return getOldestMessage(excludeMsgBeingSent);
+		}
+		
+		for (Message m : this.dropPolicy.getDropOrder()) {
+			if (excludeMsgBeingSent && isSending(m.getId())) {
+				continue; // skip the message(s) that router is sending
+			}
+			return m;
+		}
+		
+		return null;
+	}
+	
 	/**
 	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * (that is not being sent if excludeMsgBeingSent is true). Of messages
+	 * with the same receive time, the one created first is returned.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -291,23 +356,14 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
+		for (Message m : this.getMessagesByReceiveTime()) {
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	/**
@@ -11,8 +11,8 @@ import core.*;
  *
  * <strong>Forwarding Logic:</strong>
  *
- * A DecisionEngineRouter maintains a List of Tuple<Message, Connection> in
- * support of a call to ActiveRouter.tryMessagesForConnected() in
+ * A DecisionEngineRouter maintains a {@link SendQueue} of Tuple<Message,
+ * Connection> in support of a call to ActiveRouter.tryMessagesForConnected() in
  * DecisionEngineRouter.update(). Since update() is called so frequently, we'd
  * like as little computation done in it as possible; hence the List that gets
  * updated when events happen. Four events cause the List to be updated: a new
@@ -23,7 +23,11 @@ import core.*;
  * List. When a connection goes up, the collection of messages is examined to
  * determine to determine if any should be sent to this new peer, adding a Tuple
  * to the list if so. When a connection goes down, any Tuple in the list
- * associated with that connection is removed from the List.
+ * associated with that connection is removed from the List. The queue is
+ * indexed by connection and message ID, so these removals (and the ones after
+ * a transfer or a message deletion) don't need to scan the whole List. The
+ * queue is tried in the order the Tuples were added; subclasses can use
+ * another order by overriding {@link #getOutgoingMessages()}.
  *
  * <strong>Decision Engines</strong>
  *
@@ -77,6 +81,15 @@ import core.*;
  * that has a tombstone for the message, the sending node receives the
  * tombstone.
  *
+ * <strong>Utility Cache</strong>
+ *
+ * If the decision engine implements {@link UtilityDecisionEngine}, the router
+ * caches the utilities of its host for each destination (see
+ * {@link #getUtility(DTNHost)}). The cache is invalidated on connection
+ * events, information exchanges, updates and whenever the simulation time
+ * changes, so the decisions for a full buffer cost one utility computation
+ * per distinct destination instead of one per message.
+ *
  * @author PJ Dillon, University of Pittsburgh
  */
 public class DecisionEngineRouter extends ActiveRouter {
@@ -89,7 +102,7 @@ public class DecisionEngineRouter extends ActiveRouter {
 
     protected boolean tombstoning;
     protected RoutingDecisionEngine decider;
-    protected List<Tuple<Message, Connection>> outgoingMessages;
+    protected SendQueue outgoingMessages;
 
     protected Set<String> tombstones;
 
@@ -99,12 +112,21 @@ public class DecisionEngineRouter extends ActiveRouter {
      */
     protected Map<Connection, Integer> conStates;
 
+    /** Cached utilities of this host, indexed by destination address */
+    private double[] utilities;
+    /** Generation of the cache in which each utility was computed */
+    private int[] utilityStamps;
+    /** Current generation of the utility cache */
+    private int utilityGeneration;
+    /** Simulation time of the current generation */
+    private double utilityTime;
+
     public DecisionEngineRouter(Settings s) {
         super(s);
 
         Settings routeSettings = new Settings(PUBSUB_NS);
 
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new SendQueue();
 
         decider = (RoutingDecisionEngine) routeSettings.createIntializedObject(
                 "routing." + routeSettings.getSetting(ENGINE_SETTING));
@@ -119,11 +141,12 @@ public class DecisionEngineRouter extends ActiveRouter {
             tombstones = new HashSet<String>(10);
         }
         conStates = new HashMap<Connection, Integer>(4);
+        initUtilities();
     }
 
     public DecisionEngineRouter(DecisionEngineRouter r) {
         super(r);
-        outgoingMessages = new LinkedList<Tuple<Message, Connection>>();
+        outgoingMessages = new SendQueue();
         decider = r.decider.replicate();
         tombstoning = r.tombstoning;
 
@@ -131,6 +154,7 @@ public class DecisionEngineRouter extends ActiveRouter {
             tombstones = new HashSet<String>(10);
         }
         conStates = new HashMap<Connection, Integer>(4);
+        initUtilities();
     }
 
 //@Override
@@ -226,6 +250,8 @@ public class DecisionEngineRouter extends ActiveRouter {
         DTNHost myHost = getHost();
         DTNHost otherNode = con.getOtherNode(myHost);
         DecisionEngineRouter otherRouter = (DecisionEngineRouter) otherNode.getRouter();
+        invalidateUtilities();
+        otherRouter.invalidateUtilities();
         if (con.isUp()) {
             decider.connectionUp(myHost, otherNode);
 
@@ -260,7 +286,7 @@ public class DecisionEngineRouter extends ActiveRouter {
             Collection<Message> msgs = getMessageCollection();
             for (Message m : msgs) {
                 if (decider.shouldSendMessageToHost(m, otherNode, this.getHost())) {
-                    outgoingMessages.add(new Tuple<Message, Connection>(m, con));
+                    outgoingMessages.add(m, con);
                 }
             }
         } else {
@@ -272,19 +298,14 @@ public class DecisionEngineRouter extends ActiveRouter {
 * If we  were trying to send message to this peer, we need to remove them
 * from the outgoing List.
              */
-            for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                    i.hasNext();) {
-                Tuple<Message, Connection> t = i.next();
-                if (t.getValue() == con) {
-                    i.remove();
-                }
-            }
+            outgoingMessages.removeConnection(con);
         }
     }
 
     protected void doExchange(Connection con, DTNHost otherHost) {
         conStates.put(con, 1);
         decider.doExchangeForNewConnection(con, otherHost);
+        invalidateUtilities();
     }
 
     /**
@@ -295,6 +316,7 @@ public class DecisionEngineRouter extends ActiveRouter {
      */
     protected void didExchange(Connection con) {
         conStates.put(con, 1);
+        invalidateUtilities();
     }
 
     @Override
@@ -384,15 +406,7 @@ public class DecisionEngineRouter extends ActiveRouter {
     protected void transferDone(Connection con) {
         Message transferred = this.getMessage(con.getMessage().getId());
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(transferred.getId())
-                    && t.getValue().equals(con)) {
-                i.remove();
-                break;
-            }
-        }
+        outgoingMessages.remove(transferred.getId(), con);
 
         if (decider.shouldDeleteSentMessage(transferred, con.getOtherNode(getHost()))) {
 // if(transferred.getId().equals("M14"))
@@ -415,13 +429,7 @@ public class DecisionEngineRouter extends ActiveRouter {
     public void deleteMessage(String id, boolean drop) {
         super.deleteMessage(id, drop);
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (t.getKey().getId().equals(id)) {
-                i.remove();
-            }
-        }
+        outgoingMessages.removeMessage(id);
     }
 
     @Override
@@ -429,26 +437,169 @@ public class DecisionEngineRouter extends ActiveRouter {
         super.update();
         
         decider.update(getHost());
+        invalidateUtilities();
         
         if (!canStartTransfer() || isTransferring()) {
             return; // nothing to transfer or is currently transferring
         }
 
-        tryMessagesForConnected(outgoingMessages);
+        /* deleteMessage() keeps the queue free of deleted messages */
+        tryMessagesForConnected(getOutgoingMessages());
+    }
+
+    /**
+     * Tries the tuples in order until a transfer starts. Unless tombstones or
+     * deleteDelivered are enabled, a refusal because the peer is busy has no
+     * side effects and the peer refuses the rest of the messages too, so the
+     * remaining tuples of that connection are skipped. Trying stops when all
+     * connections of a {@link SendQueue} have refused.
+     */
+    @Override
+    protected Tuple<Message, Connection> tryMessagesForConnected(
+            List<Tuple<Message, Connection>> tuples) {
+        if (tombstoning || deleteDelivered) {
+            return super.tryMessagesForConnected(tuples);
+        }
 
-        for (Iterator<Tuple<Message, Connection>> i = outgoingMessages.iterator();
-                i.hasNext();) {
-            Tuple<Message, Connection> t = i.next();
-            if (!this.hasMessage(t.getKey().getId())) {
-                i.remove();
+        int nrofConnections = Integer.MAX_VALUE;
+        if (tuples instanceof SendQueue) {
+            nrofConnections = ((SendQueue) tuples).getNrofConnections();
+        }
+        List<Connection> busy = null;
+        for (Tuple<Message, Connection> t : tuples) {
+            Connection con = t.getValue();
+            if (busy != null && busy.contains(con)) {
+                continue;
+            }
+            int retVal = startTransfer(t.getKey(), con);
+            if (retVal == RCV_OK) {
+                return t;
+            } else if (retVal == TRY_LATER_BUSY) {
+                if (busy == null) {
+                    busy = new ArrayList<Connection>(2);
+                }
+                busy.add(con);
+                if (busy.size() >= nrofConnections) {
+                    break;
+                }
             }
         }
+        return null;
+    }
+
+    /**
+     * Returns the messages to try to send, in the order they should be tried.
+     * By default, this is the queue in the order the decisions to send were
+     * made. Subclasses may return another order, e.g., a copy of the queue
+     * sorted with {@link #sortByQueueMode(List)}.
+     *
+     * @return The message-connection tuples to try
+     */
+    protected List<Tuple<Message, Connection>> getOutgoingMessages() {
+        return outgoingMessages;
+    }
+
+    /**
+     * Returns the router class and the decision engine class, so that each
+     * decision engine is profiled separately.
+     */
+    @Override
+    protected String getProfilingName() {
+        return super.getProfilingName() + "/"
+                + decider.getClass().getSimpleName();
     }
 
+    /**
+     * Returns the decision engine whose routing state other engines may read.
+     * For a {@link WrappingDecisionEngine}, this is its state engine (if it
+     * has one).
+     *
+     * @return The decision engine
+     */
     public RoutingDecisionEngine getDecisionEngine() {
+        if (decider instanceof WrappingDecisionEngine) {
+            RoutingDecisionEngine state =
+                    ((WrappingDecisionEngine) decider).getStateEngine();
+            if (state != null) {
+                return state;
+            }
+        }
         return this.decider;
     }
 
+    /**
+     * Discards the queued transfers of a message and asks the decision engine
+     * again which of the current peers the message should be sent to. Decision
+     * engines can call this when their decisions for a message change, e.g.,
+     * when it runs out of copies to hand out.
+     *
+     * @param id ID of the message
+     * @param except Host the message is not queued to (e.g., the host the
+     * message was just sent to) or null
+     */
+    public void requeueMessage(String id, DTNHost except) {
+        outgoingMessages.removeMessage(id);
+        Message m = getMessage(id);
+        if (m != null) {
+            findConnectionsForNewMessage(m, except);
+        }
+    }
+
+    /**
+     * Returns the utility of this router's host for the given destination, as
+     * computed by the {@link UtilityDecisionEngine} (or the state engine of a
+     * {@link WrappingDecisionEngine}). The value is computed at most once
+     * between invalidations of the cache.
+     *
+     * @param dest The destination
+     * @return The (possibly cached) utility
+     * @throws SimError if the decision engine is not a UtilityDecisionEngine
+     */
+    public double getUtility(DTNHost dest) {
+        RoutingDecisionEngine engine = getDecisionEngine();
+        if (!(engine instanceof UtilityDecisionEngine)) {
+            throw new SimError("Decision engine " + engine.getClass().getName()
+                    + " of " + getHost() + " does not compute utilities");
+        }
+
+        if (SimClock.getTime() != utilityTime) {
+            invalidateUtilities();
+        }
+
+        int i = dest.getAddress();
+        if (i >= utilities.length) {
+            int size = Math.max(i + 1, utilities.length * 2);
+            utilities = Arrays.copyOf(utilities, size);
+            utilityStamps = Arrays.copyOf(utilityStamps, size);
+        }
+        if (utilityStamps[i] != utilityGeneration) {
+            utilities[i] = ((UtilityDecisionEngine) engine).getUtility(dest,
+                    getHost());
+            utilityStamps[i] = utilityGeneration;
+        }
+        return utilities[i];
+    }
+
+    /**
+     * Discards the cached utilities of this router's host. Called
+     * automatically on connection events, exchanges and updates.
+     */
+    public void invalidateUtilities() {
+        if (utilityGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(utilityStamps, 0);
+            utilityGeneration = 0;
+        }
+        utilityGeneration++;
+        utilityTime = SimClock.getTime();
+    }
+
+    private void initUtilities() {
+        utilities = new double[0];
+        utilityStamps = new int[0];
+        utilityGeneration = 1;
+        utilityTime = SimClock.getTime();
+    }
+
     protected boolean shouldNotifyPeer(Connection con) {
         Integer i = conStates.get(con);
         return i == null || i < 1;
@@ -461,7 +612,7 @@ public class DecisionEngineRouter extends ActiveRouter {
             if (other != from && decider.shouldSendMessageToHost(m, other, this.getHost())) {
 // if(m.getId().equals("M14"))
 // System.out.println("Adding attempt for M14 from: " + getHost() + " to: " + other);
-                outgoingMessages.add(new Tuple<Message, Connection>(m, c));
+                outgoingMessages.add(m, c);
             }
         }
     }
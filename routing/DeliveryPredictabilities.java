@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Delivery predictabilities of a PRoPHET node, stored in primitive arrays
+ * indexed by the address of the destination host. Aging
+ * (<CODE>P = P_old * GAMMA^k</CODE>) is done lazily: each value is stored with
+ * the time it was last aged and the decay is applied only when the value is
+ * read. Hence, reading or updating a value costs constant time instead of
+ * aging all the known values first.
+ */
+public class DeliveryPredictabilities {
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** aging constant */
+	private double gamma;
+	/** number of seconds in one aging time unit */
+	private double secondsInTimeUnit;
+
+	/** the hosts with a value (or null) by address */
+	private DTNHost[] hosts;
+	/** the values by address, as they were at {@link #times} */
+	private double[] values;
+	/** the times the values were last aged at */
+	private double[] times;
+	private int size;
+
+	/** time difference of the last computed aging multiplier */
+	private double lastDiff;
+	/** the last computed aging multiplier */
+	private double lastMult;
+
+	/**
+	 * Creates a new, empty set of delivery predictabilities
+	 * @param gamma The aging constant
+	 * @param secondsInTimeUnit How many seconds one aging time unit is
+	 */
+	public DeliveryPredictabilities(double gamma, double secondsInTimeUnit) {
+		this.gamma = gamma;
+		this.secondsInTimeUnit = secondsInTimeUnit;
+		this.hosts = new DTNHost[INITIAL_CAPACITY];
+		this.values = new double[INITIAL_CAPACITY];
+		this.times = new double[INITIAL_CAPACITY];
+		this.lastDiff = 0;
+		this.lastMult = 1;
+	}
+
+	/**
+	 * Returns the current (aged) delivery predictability for a host
+	 * @param host The host
+	 * @return The predictability or 0 if there is no value for the host
+	 */
+	public double get(DTNHost host) {
+		return get(host.getAddress());
+	}
+
+	/**
+	 * Returns the current (aged) delivery predictability for a host address
+	 * @param address Address of the host
+	 * @return The predictability or 0 if there is no value for the address
+	 */
+	public double get(int address) {
+		if (address >= hosts.length || hosts[address] == null) {
+			return 0;
+		}
+
+		double now = SimClock.getTime();
+		double diff = now - times[address];
+		if (diff != 0) {
+			values[address] *= getMultiplier(diff);
+			times[address] = now;
+		}
+		return values[address];
+	}
+
+	/**
+	 * Sets the delivery predictability for a host at the current time
+	 * @param host The host
+	 * @param value The new predictability
+	 */
+	public void set(DTNHost host, double value) {
+		int address = host.getAddress();
+		if (address >= hosts.length) {
+			int capacity = Math.max(address + 1, hosts.length * 2);
+			hosts = Arrays.copyOf(hosts, capacity);
+			values = Arrays.copyOf(values, capacity);
+			times = Arrays.copyOf(times, capacity);
+		}
+		if (hosts[address] == null) {
+			hosts[address] = host;
+			size++;
+		}
+		values[address] = value;
+		times[address] = SimClock.getTime();
+	}
+
+	/**
+	 * Returns true if there is a value for the host
+	 * @param host The host
+	 * @return True if there is a value for the host
+	 */
+	public boolean contains(DTNHost host) {
+		return getHost(host.getAddress()) != null;
+	}
+
+	/**
+	 * Returns the host with the given address if it has a value
+	 * @param address The address
+	 * @return The host or null if there is no value for the address
+	 */
+	public DTNHost getHost(int address) {
+		return address < hosts.length ? hosts[address] : null;
+	}
+
+	/**
+	 * Returns an upper limit for the addresses that have a value. Together
+	 * with {@link #getHost(int)} and {@link #get(int)}, this can be used to go
+	 * through the values without creating objects.
+	 * @return All addresses with a value are smaller than this
+	 */
+	public int getCapacity() {
+		return hosts.length;
+	}
+
+	/**
+	 * Returns the number of hosts that have a value
+	 * @return The number of hosts
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the aging multiplier for the given time difference
+	 */
+	private double getMultiplier(double diff) {
+		if (diff != lastDiff) {
+			lastMult = Math.pow(gamma, diff / secondsInTimeUnit);
+			lastDiff = diff;
+		}
+		return lastMult;
+	}
+}
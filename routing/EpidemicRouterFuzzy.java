@@ -11,10 +11,7 @@ import core.DTNHost;
 import core.Message;
 import core.Settings;
 import java.util.Map;
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
-import net.sourceforge.jFuzzyLogic.plot.JFuzzyChart;
-import net.sourceforge.jFuzzyLogic.rule.Variable;
+import routing.fuzzy.FuzzyEngine;
 import routing.ActiveRouter;
 import routing.MessageRouter;
 
@@ -33,7 +30,10 @@ public class EpidemicRouterFuzzy extends ActiveRouter{
     
     
     //Fuzzy Control Language
-    private FIS fcl;
+    private FuzzyEngine fcl;
+    private int ftcInput;
+    private int ttlInput;
+    private int priorityOutput;
     // FTC adalah forward transmission count yaitu jumlah copy pesan yang berada pada jaringan
     protected Map<DTNHost,Double> FTC;
     // TTL adalah waktu hidup dari pesan.
@@ -44,13 +44,19 @@ public class EpidemicRouterFuzzy extends ActiveRouter{
 
     public EpidemicRouterFuzzy(Settings s) {
         super(s);
-        String fclString = s.getSetting(FCL_NAMES);
-        fcl = FIS.load(fclString);   
+        fcl = FuzzyEngine.load(s, FCL_NAMES);
+        ftcInput = fcl.requireInput(FORWARD_TRANSMISSION_COUNT);
+        ttlInput = fcl.requireInput(TIME_TO_LIVE);
+        priorityOutput = fcl.requireOutput(NILAI_PRIORITAS);
         
     }
     
     protected EpidemicRouterFuzzy (EpidemicRouterFuzzy r){
         super(r);
+        this.fcl = r.fcl;
+        this.ftcInput = r.ftcInput;
+        this.ttlInput = r.ttlInput;
+        this.priorityOutput = r.priorityOutput;
     }
     
    private double getFTC (DTNHost nodes){
@@ -75,20 +81,12 @@ public class EpidemicRouterFuzzy extends ActiveRouter{
     private double fuzzy(DTNHost nodes) {       
         double ftcValue = getFTC(nodes);
         double ttlValue = getTTL(nodes);
-        FunctionBlock functionBlock = fcl.getFunctionBlock(null);
-        
-
-        functionBlock.setVariable(FORWARD_TRANSMISSION_COUNT, ftcValue);
-        functionBlock.setVariable(TIME_TO_LIVE, ttlValue);
-        functionBlock.evaluate();
+        double[] inputs = fcl.getInputBuffer();
 
-        Variable coa = functionBlock.getVariable(NILAI_PRIORITAS);
+        inputs[ftcInput] = ftcValue;
+        inputs[ttlInput] = ttlValue;
 
-      //double priority = 1 - coa.getValue();
-        System.out.println(functionBlock);
-        System.out.println(coa.getValue());
-        JFuzzyChart.get().chart(functionBlock);
-        return coa.getValue();
+        return fcl.evaluate(inputs, priorityOutput);
        
         
     }
@@ -18,9 +18,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
-import net.sourceforge.jFuzzyLogic.rule.Variable;
+import routing.fuzzy.FuzzyEngine;
 
 /**
  * Epidemic message router with drop-oldest buffer and only single transferring
@@ -36,7 +34,10 @@ public class EpidemicRouterFuzzy_1 extends ActiveRouter {
     private List<Message> ackList;
     private Set<String> allAckedMessages;
 
-    private FIS fcl;
+    private FuzzyEngine fcl;
+    private int ftcInput;
+    private int ttlInput;
+    private int priorityOutput;
 
     /**
      * Constructor. Creates a new message router based on the settings in the
@@ -46,8 +47,10 @@ public class EpidemicRouterFuzzy_1 extends ActiveRouter {
      */
     public EpidemicRouterFuzzy_1(Settings s) {
         super(s);
-        String fclString = s.getSetting(FCL_NAMES);
-        fcl = FIS.load(fclString);
+        fcl = FuzzyEngine.load(s, FCL_NAMES);
+        ftcInput = fcl.requireInput(FORWARD_TRANSMISSION_COUNT);
+        ttlInput = fcl.requireInput(TIME_TO_LIVE);
+        priorityOutput = fcl.requireOutput(MESSAGE_PRIORITY);
         this.ackList = new ArrayList<Message>();
         this.allAckedMessages = new HashSet<>();
         //TODO: read&use epidemic router specific settings (if any)
@@ -61,6 +64,9 @@ public class EpidemicRouterFuzzy_1 extends ActiveRouter {
     protected EpidemicRouterFuzzy_1(EpidemicRouterFuzzy_1 r) {
         super(r);
         this.fcl = r.fcl;
+        this.ftcInput = r.ftcInput;
+        this.ttlInput = r.ttlInput;
+        this.priorityOutput = r.priorityOutput;
         this.ackList = r.ackList;
         this.allAckedMessages = r.allAckedMessages;
         //TODO: copy epidemic settings here (if any)
@@ -186,15 +192,12 @@ public class EpidemicRouterFuzzy_1 extends ActiveRouter {
     protected double fuzzy(Message m) {
         double ftcValue = m.getFtc();
         double ttlValue = m.getTtl();
-        FunctionBlock functionBlock = fcl.getFunctionBlock(null);
+        double[] inputs = fcl.getInputBuffer();
 
-        functionBlock.setVariable(FORWARD_TRANSMISSION_COUNT, ftcValue);
-        functionBlock.setVariable(TIME_TO_LIVE, ttlValue);
-        functionBlock.evaluate();
+        inputs[ftcInput] = ftcValue;
+        inputs[ttlInput] = ttlValue;
 
-        Variable coa = functionBlock.getVariable(MESSAGE_PRIORITY);
-
-        return coa.getValue();
+        return fcl.evaluate(inputs, priorityOutput);
     }
 
 //    public double callPriority(Message m) {
@@ -273,9 +276,7 @@ public class EpidemicRouterFuzzy_1 extends ActiveRouter {
             EpidemicRouterFuzzy_1 peer = (EpidemicRouterFuzzy_1) other.getRouter();
 
             List<Message> messageBufferA = new ArrayList<>(getMessageCollection());
-            System.out.println("buffA : " + messageBufferA.size());
             List<Message> messageBufferB = new ArrayList<>(peer.getMessageCollection());
-            System.out.println("buffB : " + messageBufferB.size());
 
 
             // Tambahkan pesan dari buffer saat ini jika belum ada di buffer tujuan
@@ -293,10 +294,8 @@ public class EpidemicRouterFuzzy_1 extends ActiveRouter {
         }
         }
         // Urutkan pesan berdasarkan prioritas
-       System.out.println("jumlah all : " + allMessages.size());
        callPriority(allMessages);
        this.sortByQueueMode(allMessages);
-       System.out.println("urutan : " +sortByQueueMode(allMessages) );
 
         // Coba kirim pesan ke semua koneksi
         return tryMessagesToConnections(allMessages, connections);
@@ -19,10 +19,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.Queue;
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
-import net.sourceforge.jFuzzyLogic.plot.JFuzzyChart;
-import net.sourceforge.jFuzzyLogic.rule.Variable;
+import routing.fuzzy.FuzzyEngine;
 import static routing.EpidemicRouter_fuzzy.Q_MODE_DESC;
 import static routing.MessageRouter.Q_MODE_FIFO;
 import static routing.MessageRouter.Q_MODE_RANDOM;
@@ -42,7 +39,10 @@ public class EpidemicRouter_fuzzy1 extends ActiveRouter {
     public static final int Q_MODE_DESC = 1;
 
     
-     private FIS fcl;
+     private FuzzyEngine fcl;
+     private int ftcInput;
+     private int msInput;
+     private int priorityOutput;
     /**
      * Constructor. Creates a new message router based on the settings in the
      * given Settings object.
@@ -51,13 +51,18 @@ public class EpidemicRouter_fuzzy1 extends ActiveRouter {
      */
     public EpidemicRouter_fuzzy1(Settings s) {
         super(s);
-        String fclString = s.getSetting(FCL_NAMES);
-        fcl = FIS.load(fclString);
+        fcl = FuzzyEngine.load(s, FCL_NAMES);
+        ftcInput = fcl.requireInput(FORWARD_TRANSMISSION_COUNT);
+        msInput = fcl.requireInput(MESSAGE_SIZE);
+        priorityOutput = fcl.requireOutput(NILAI_PRIORITAS);
     }
 
     protected EpidemicRouter_fuzzy1(EpidemicRouter_fuzzy1 r) {
         super(r);
         this.fcl = r.fcl;
+        this.ftcInput = r.ftcInput;
+        this.msInput = r.msInput;
+        this.priorityOutput = r.priorityOutput;
     }
 
     @Override
@@ -250,16 +255,12 @@ public class EpidemicRouter_fuzzy1 extends ActiveRouter {
     protected double fuzzy (Message m){
         double ftcValue = m.getFtc();
         double msValue = m.getSize();
-        FunctionBlock functionBlock = fcl.getFunctionBlock(null);
-        
+        double[] inputs = fcl.getInputBuffer();
 
-        functionBlock.setVariable(FORWARD_TRANSMISSION_COUNT, ftcValue);
-        functionBlock.setVariable(MESSAGE_SIZE, msValue);
-        functionBlock.evaluate();
+        inputs[ftcInput] = ftcValue;
+        inputs[msInput] = msValue;
 
-        Variable coa = functionBlock.getVariable(NILAI_PRIORITAS);
-        
-        return coa.getValue();
+        return fcl.evaluate(inputs, priorityOutput);
     }
 
 
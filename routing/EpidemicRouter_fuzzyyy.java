@@ -18,10 +18,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
-import net.sourceforge.jFuzzyLogic.plot.JFuzzyChart;
-import net.sourceforge.jFuzzyLogic.rule.Variable;
+import routing.fuzzy.FuzzyEngine;
 import static routing.MessageRouter.Q_MODE_FIFO;
 import static routing.MessageRouter.Q_MODE_RANDOM;
 
@@ -39,7 +36,10 @@ public class EpidemicRouter_fuzzyyy extends ActiveRouter {
     public static final int Q_MODE_ASC = 1;
 
     
-     private FIS fcl;
+     private FuzzyEngine fcl;
+     private int ftcInput;
+     private int msInput;
+     private int priorityOutput;
     /**
      * Constructor. Creates a new message router based on the settings in the
      * given Settings object.
@@ -48,13 +48,18 @@ public class EpidemicRouter_fuzzyyy extends ActiveRouter {
      */
     public EpidemicRouter_fuzzyyy(Settings s) {
         super(s);
-        String fclString = s.getSetting(FCL_NAMES);
-        fcl = FIS.load(fclString);
+        fcl = FuzzyEngine.load(s, FCL_NAMES);
+        ftcInput = fcl.requireInput(FORWARD_TRANSMISSION_COUNT);
+        msInput = fcl.requireInput(MESSAGE_SIZE);
+        priorityOutput = fcl.requireOutput(NILAI_PRIORITAS);
     }
 
     protected EpidemicRouter_fuzzyyy(EpidemicRouter_fuzzyyy r) {
         super(r);
         this.fcl = r.fcl;
+        this.ftcInput = r.ftcInput;
+        this.msInput = r.msInput;
+        this.priorityOutput = r.priorityOutput;
     }
 
     @Override
@@ -279,8 +284,7 @@ public class EpidemicRouter_fuzzyyy extends ActiveRouter {
 //       // System.out.println("FTC : " + FTC +" dan" + " TTL : " + TTL);
        // fuzzy(m);
       //  System.out.println("coba eli : " + m.fuzzy(m));
-      callPriority(m);
-      System.out.println("FTC : " + m.getFtc()+" dan" + " MS : " + m.getSize()+ " memiliki priority : " +  callPriority(m));
+      callPriority(m); // refreshes the priorities of the buffered messages
 //        return callPriority(m);
         return priority;
     }
@@ -288,20 +292,12 @@ public class EpidemicRouter_fuzzyyy extends ActiveRouter {
     protected double fuzzy (Message m){
         double ftcValue = m.getFtc();
         double msValue = m.getSize();
-        FunctionBlock functionBlock = fcl.getFunctionBlock(null);
-        
-
-        functionBlock.setVariable(FORWARD_TRANSMISSION_COUNT, ftcValue);
-        functionBlock.setVariable(MESSAGE_SIZE, msValue);
-        functionBlock.evaluate();
+        double[] inputs = fcl.getInputBuffer();
 
-        Variable coa = functionBlock.getVariable(NILAI_PRIORITAS);
+        inputs[ftcInput] = ftcValue;
+        inputs[msInput] = msValue;
 
-       //double priority = 1 - coa.getValue();
-       // System.out.println(functionBlock);
-      //  System.out.println("coa : " + coa.getValue());
-      //  JFuzzyChart.get().chart(functionBlock);
-        return coa.getValue();
+        return fcl.evaluate(inputs, priorityOutput);
     }
 
 
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+import core.Tuple;
+
+/**
+ * Epidemic message router that exchanges summary vectors when a connection
+ * comes up. Like in the original epidemic routing (Vahdat and Becker,
+ * <I>Epidemic Routing for Partially-Connected Ad Hoc Networks</I>), the nodes
+ * tell each other which messages they already have and only the messages the
+ * other node is missing are offered to it. The summary vectors are Bloom
+ * filters (see {@link SummaryVector}), so a false positive may prevent a
+ * message from being offered during that contact.
+ * <P>
+ * The router collects statistics of the exchanges; see
+ * {@link report.SummaryVectorReport}.
+ */
+public class EpidemicSummaryRouter extends ActiveRouter {
+	/** Router's setting namespace ({@value})*/
+	public static final String EPIDEMIC_SUMMARY_NS = "EpidemicSummaryRouter";
+	/**
+	 * Summary vector bits per message -setting id ({@value}). More bits make
+	 * false positives less likely but the summary vectors bigger. */
+	public static final String BITS_PER_MESSAGE_S = "bitsPerMessage";
+	/** Default value for the bits per message ({@value}) */
+	public static final int DEFAULT_BITS_PER_MESSAGE = 16;
+
+	private int bitsPerMessage;
+	/** summary vector of this router's messages (null if not up to date) */
+	private SummaryVector summary;
+	/** messages waiting to be offered to the connected nodes */
+	private SendQueue sendQueue;
+
+	/** number of summary vectors received from other nodes */
+	private int nrofSummaries;
+	/** total size of the received summary vectors */
+	private long summaryBytes;
+	/** number of messages not offered because the other node had them */
+	private int nrofFiltered;
+	/** total size of the messages not offered */
+	private long filteredBytes;
+	/** number of messages not offered that the other node didn't have */
+	private int nrofFalsePositives;
+	/** number of offered messages the other node already had */
+	private int nrofDeniedOld;
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public EpidemicSummaryRouter(Settings s) {
+		super(s);
+		Settings esSettings = new Settings(EPIDEMIC_SUMMARY_NS);
+		if (esSettings.contains(BITS_PER_MESSAGE_S)) {
+			bitsPerMessage = esSettings.getInt(BITS_PER_MESSAGE_S);
+		} else {
+			bitsPerMessage = DEFAULT_BITS_PER_MESSAGE;
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected EpidemicSummaryRouter(EpidemicSummaryRouter r) {
+		super(r);
+		this.bitsPerMessage = r.bitsPerMessage;
+		this.sendQueue = new SendQueue();
+	}
+
+	@Override
+	public void changedConnection(Connection con) {
+		if (!con.isUp()) {
+			sendQueue.removeConnection(con);
+			return;
+		}
+
+		MessageRouter mRouter = con.getOtherNode(getHost()).getRouter();
+		EpidemicSummaryRouter otherRouter = null;
+		SummaryVector otherSummary = null;
+		if (mRouter instanceof EpidemicSummaryRouter) {
+			otherRouter = (EpidemicSummaryRouter)mRouter;
+			otherSummary = otherRouter.getSummaryVector();
+			nrofSummaries++;
+			summaryBytes += otherSummary.getSize();
+		}
+
+		List<Message> messages =
+			new ArrayList<Message>(this.getMessageCollection());
+		this.sortByQueueMode(messages);
+
+		for (Message m : messages) {
+			if (otherSummary != null && otherSummary.mightContain(m.getId())) {
+				if (otherRouter.hasMessage(m.getId()) ||
+						otherRouter.isDeliveredMessage(m)) {
+					nrofFiltered++;
+					filteredBytes += m.getSize();
+				}
+				else {
+					nrofFalsePositives++;
+				}
+				continue; // other node (probably) has the message
+			}
+			sendQueue.add(m, con);
+		}
+	}
+
+	/**
+	 * Returns the summary vector of the messages this router has or that
+	 * have been delivered to it
+	 * @return The summary vector
+	 */
+	public SummaryVector getSummaryVector() {
+		if (summary == null) {
+			summary = new SummaryVector(getNrofMessages() +
+					deliveredMessages.size(), bitsPerMessage);
+			for (Message m : getMessageCollection()) {
+				summary.add(m.getId());
+			}
+			for (String id : deliveredMessages.keySet()) {
+				summary.add(id);
+			}
+		}
+		return summary;
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		summary = null;
+
+		/* offer the new message to the current contacts too, except to
+		 * the ones it has already passed */
+		for (Connection con : getConnections()) {
+			if (!m.getHops().contains(con.getOtherNode(getHost()))) {
+				sendQueue.add(m, con);
+			}
+		}
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			summary = null;
+			sendQueue.removeMessage(id);
+		}
+		return m;
+	}
+
+	@Override
+	public Message messageTransferred(String id, DTNHost from) {
+		Message m = super.messageTransferred(id, from);
+		summary = null; // the message may have been delivered to this node
+		return m;
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (isTransferring() || !canStartTransfer()) {
+			return; // transferring, don't try other connections yet
+		}
+
+		// Try first the messages that can be delivered to final recipient
+		if (exchangeDeliverableMessages() != null) {
+			return; // started a transfer, don't try others (yet)
+		}
+
+		// then try the messages the other nodes don't have
+		trySendQueue();
+	}
+
+	/**
+	 * Tries to send the queued messages in the order they were queued until
+	 * one transfer is started. Messages that the other node already has are
+	 * removed from the queue and the other messages are tried again later.
+	 * @return The connection that started a transfer or null if no
+	 * transfer was started
+	 */
+	private Connection trySendQueue() {
+		List<Connection> busy = null;
+
+		for (Iterator<Tuple<Message, Connection>> i = sendQueue.iterator();
+				i.hasNext();) {
+			Tuple<Message, Connection> t = i.next();
+			Message m = t.getKey();
+			Connection con = t.getValue();
+			if (busy != null && busy.contains(con)) {
+				continue;
+			}
+
+			int retVal = startTransfer(m, con);
+			if (retVal == RCV_OK) {
+				sendQueue.remove(m.getId(), con);
+				return con;
+			}
+			else if (retVal == DENIED_OLD) {
+				nrofDeniedOld++;
+				sendQueue.remove(m.getId(), con);
+			}
+			else if (retVal > 0) { // should try later -> skip the connection
+				if (busy == null) {
+					busy = new ArrayList<Connection>();
+				}
+				busy.add(con);
+				if (busy.size() == sendQueue.getNrofConnections()) {
+					break;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the number of summary vectors received from other nodes
+	 * @return The number of summary vectors
+	 */
+	public int getNrofSummaries() {
+		return this.nrofSummaries;
+	}
+
+	/**
+	 * Returns the total size of the received summary vectors
+	 * @return The size in bytes
+	 */
+	public long getSummaryBytes() {
+		return this.summaryBytes;
+	}
+
+	/**
+	 * Returns how many times a message was not offered to a node because
+	 * the node already had it (according to the node's summary vector)
+	 * @return The number of messages not offered
+	 */
+	public int getNrofFiltered() {
+		return this.nrofFiltered;
+	}
+
+	/**
+	 * Returns the total size of the messages that were not offered because
+	 * the other node already had them
+	 * @return The size in bytes
+	 */
+	public long getFilteredBytes() {
+		return this.filteredBytes;
+	}
+
+	/**
+	 * Returns how many of the messages not offered were actually missing
+	 * from the other node (false positives of the summary vectors)
+	 * @return The number of false positives
+	 */
+	public int getNrofFalsePositives() {
+		return this.nrofFalsePositives;
+	}
+
+	/**
+	 * Returns how many offered messages the other node already had
+	 * @return The number of DENIED_OLD replies
+	 */
+	public int getNrofDeniedOld() {
+		return this.nrofDeniedOld;
+	}
+
+	@Override
+	public EpidemicSummaryRouter replicate() {
+		return new EpidemicSummaryRouter(this);
+	}
+}
@@ -14,7 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MaxPropCostEngine;
 import routing.maxprop.MeetingProbabilitySet;
 import core.Connection;
 import core.DTNHost;
@@ -51,15 +51,9 @@ public class MaxPropRouter extends ActiveRouter {
 	 * mapped using host's network address */
 	private Map<Integer, MeetingProbabilitySet> allProbs;
 	/** the cost-to-node calculator */
-	private MaxPropDijkstra dijkstra;	
+	private MaxPropCostEngine costs;
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
 		
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -110,7 +104,7 @@ public class MaxPropRouter extends ActiveRouter {
 		this.alpha = r.alpha;
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
-		this.dijkstra = new MaxPropDijkstra(this.allProbs);
+		this.costs = new MaxPropCostEngine(this.allProbs);
 		this.ackedMessageIds = new HashSet<String>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
 	}	
@@ -118,8 +112,6 @@ public class MaxPropRouter extends ActiveRouter {
 	@Override
 	public void changedConnection(Connection con) {
 		if (con.isUp()) { // new connection
-			this.costsForMessages = null; // invalidate old cost estimates
-			
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
 				 * other node too (so that the meeting probs are updated
@@ -140,6 +132,8 @@ public class MaxPropRouter extends ActiveRouter {
 				/* update both meeting probabilities */
 				probs.updateMeetingProbFor(otherHost.getAddress());
 				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
+				this.costs.probsChanged(getHost().getAddress());
+				otherRouter.costs.probsChanged(otherHost.getAddress());
 				
 				/* exchange the transitive probabilities */
 				this.updateTransitiveProbs(otherRouter.allProbs);
@@ -148,6 +142,8 @@ public class MaxPropRouter extends ActiveRouter {
 						otherRouter.probs.replicate());
 				otherRouter.allProbs.put(getHost().getAddress(),
 						this.probs.replicate());
+				this.costs.probsChanged(otherHost.getAddress());
+				otherRouter.costs.probsChanged(getHost().getAddress());
 			}
 		}
 		else {
@@ -168,6 +164,7 @@ public class MaxPropRouter extends ActiveRouter {
 			if (myMps == null || 
 				e.getValue().getLastUpdateTime() > myMps.getLastUpdateTime() ) {
 				this.allProbs.put(e.getKey(), e.getValue().replicate());
+				this.costs.probsChanged(e.getKey());
 			}
 		}
 	}
@@ -185,7 +182,6 @@ public class MaxPropRouter extends ActiveRouter {
 	
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
@@ -285,38 +281,21 @@ public class MaxPropRouter extends ActiveRouter {
 	/**
 	 * Returns the message delivery cost between two hosts from this host's
 	 * point of view. If there is no path between "from" and "to" host, 
-	 * Double.MAX_VALUE is returned. Paths are calculated only to hosts
-	 * that this host has messages to.
+	 * Double.MAX_VALUE is returned. The costs are cached until the meeting
+	 * probabilities on the path change.
 	 * @param from The host where a message is coming from
 	 * @param to The host where a message would be destined to
 	 * @return The cost of the cheapest path to the destination or 
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
-		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
-			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
-			
-			/* calculate paths only to nodes we have messages to 
-			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
-			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
-			}
-						
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
-		}
-		
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
+		int address = getHost().getAddress();
+		if (this.allProbs.get(address) != this.probs) {
+			/* own probabilities are part of the paths too */
+			this.allProbs.put(address, this.probs);
+			this.costs.probsChanged(address);
 		}
+		return this.costs.getCost(from.getAddress(), to.getAddress());
 	}
 	
 	/**
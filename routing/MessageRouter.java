@@ -10,7 +10,9 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Random;
+import java.util.TreeSet;
 
 import core.Application;
 import core.Connection;
@@ -21,6 +23,7 @@ import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimProfiler;
 import core.Tuple;
 
 /**
@@ -90,6 +93,20 @@ public abstract class MessageRouter {
      */
     public static final int DENIED_UNSPECIFIED = -999;
     public static final int DENIED_DELIVERED = -4;
+    /**
+     * Orders messages by their receive time and messages with the same
+     * receive time by their creation order
+     */
+    private static final Comparator<Message> RECEIVE_TIME_ORDER =
+            new Comparator<Message>() {
+        public int compare(Message m1, Message m2) {
+            int c = Double.compare(m1.getReceiveTime(), m2.getReceiveTime());
+            if (c != 0) {
+                return c;
+            }
+            return Integer.compare(m1.getUniqueId(), m2.getUniqueId());
+        }
+    };
     protected List<MessageListener> mListeners;
     /**
      * The messages being transferred with msgID_hostName keys
@@ -99,6 +116,14 @@ public abstract class MessageRouter {
      * The messages this router is carrying
      */
     private HashMap<String, Message> messages;
+    /**
+     * The messages this router is carrying ordered by their receive time
+     */
+    private TreeSet<Message> messagesByReceiveTime;
+    /**
+     * Sum of the sizes of the messages this router is carrying
+     */
+    private int bufferOccupancy;
     /**
      * The messages this router has received as the final recipient
      */
@@ -128,6 +153,10 @@ public abstract class MessageRouter {
     private int nodeSelfish;
 
     protected LinkedList<Integer> nodeList;
+    /**
+     * profiling span of this router's updates (looked up when first needed)
+     */
+    private SimProfiler.Span updateSpan;
 
     /**
      * Constructor. Creates a new message router based on the settings in the
@@ -172,6 +201,8 @@ public abstract class MessageRouter {
     public void init(DTNHost host, List<MessageListener> mListeners) {
         this.incomingMessages = new HashMap<String, Message>();
         this.messages = new HashMap<String, Message>();
+        this.messagesByReceiveTime = new TreeSet<Message>(RECEIVE_TIME_ORDER);
+        this.bufferOccupancy = 0;
         this.deliveredMessages = new HashMap<String, Message>();
         this.mListeners = mListeners;
         this.host = host;
@@ -217,6 +248,31 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Returns the {@link SimProfiler} span where the time of this router's
+     * {@link #update()} calls is measured. All routers with the same
+     * {@link #getProfilingName() profiling name} share the span.
+     *
+     * @return The span
+     */
+    public SimProfiler.Span getUpdateSpan() {
+        if (this.updateSpan == null) {
+            this.updateSpan = SimProfiler.span("MessageRouter.update:" +
+                    getProfilingName());
+        }
+        return this.updateSpan;
+    }
+
+    /**
+     * Returns the name that identifies this kind of routers in the profiling
+     * results. The default is the name of the router class.
+     *
+     * @return The name
+     */
+    protected String getProfilingName() {
+        return getClass().getSimpleName();
+    }
+
     /**
      * Informs the router about change in connections state.
      *
@@ -297,17 +353,24 @@ public abstract class MessageRouter {
      * isn't defined)
      */
     public int getFreeBufferSize() {
-        int occupancy = 0;
-
         if (this.getBufferSize() == Integer.MAX_VALUE) {
             return Integer.MAX_VALUE;
         }
 
-        for (Message m : getMessageCollection()) {
-            occupancy += m.getSize();
-        }
+        return this.getBufferSize() - this.bufferOccupancy;
+    }
 
-        return this.getBufferSize() - occupancy;
+    /**
+     * Returns the messages of this router ordered by their receive time
+     * (oldest first). Messages with the same receive time are in the order
+     * they were created in. The returned set is a read-only view to the
+     * buffer; the same note about modifications applies as with
+     * {@link #getMessageCollection()}.
+     *
+     * @return The messages ordered by their receive time
+     */
+    protected NavigableSet<Message> getMessagesByReceiveTime() {
+        return Collections.unmodifiableNavigableSet(this.messagesByReceiveTime);
     }
 
     /**
@@ -468,7 +531,13 @@ public abstract class MessageRouter {
      * message, if false, nothing is informed.
      */
     protected void addToMessages(Message m, boolean newMessage) {
-        this.messages.put(m.getId(), m);
+        Message old = this.messages.put(m.getId(), m);
+        if (old != null) {
+            this.messagesByReceiveTime.remove(old);
+            this.bufferOccupancy -= old.getSize();
+        }
+        this.messagesByReceiveTime.add(m);
+        this.bufferOccupancy += m.getSize();
 
         if (newMessage) {
             for (MessageListener ml : this.mListeners) {
@@ -485,6 +554,10 @@ public abstract class MessageRouter {
      */
     protected Message removeFromMessages(String id) {
         Message m = this.messages.remove(id);
+        if (m != null) {
+            this.messagesByReceiveTime.remove(m);
+            this.bufferOccupancy -= m.getSize();
+        }
         return m;
     }
 
@@ -9,8 +9,9 @@ import core.*;
 import routing.DecisionEngineRouter;
 import routing.MessageRouter;
 import routing.RoutingDecisionEngine;
+import routing.UtilityDecisionEngine;
 
-public class ProphetDecisionEngine implements RoutingDecisionEngine {
+public class ProphetDecisionEngine implements UtilityDecisionEngine {
 
     protected final static String BETA_SETTING = "beta";
     protected final static String P_INIT_SETTING = "initial_p";
@@ -23,7 +24,6 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
 
     protected double beta;
     protected double pinit;
-    protected double lastAgeUpdate;
     protected int secondsInTimeUnit;
     
     private Set<Message> msgStamp;
@@ -31,9 +31,9 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
     private DTNHost meHost;
 
     /**
-     * delivery predictabilities
+     * delivery predictabilities (aged lazily)
      */
-    private Map<DTNHost, Double> preds;
+    private DeliveryPredictabilities preds;
 
     public ProphetDecisionEngine(Settings s) {
         if (s.contains(BETA_SETTING)) {
@@ -54,8 +54,7 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
             secondsInTimeUnit = DEFAULT_UNIT;
         }
 
-        preds = new HashMap<DTNHost, Double>();
-        this.lastAgeUpdate = 0.0;
+        preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
     }
 
     public ProphetDecisionEngine(ProphetDecisionEngine de) {
@@ -65,8 +64,7 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
         meHost = de.meHost;
         msgStamp = new HashSet<>();
         relayed = new HashMap<>();
-        preds = new HashMap<DTNHost, Double>();
-        this.lastAgeUpdate = de.lastAgeUpdate;
+        preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
     }
 
     public RoutingDecisionEngine replicate() {
@@ -82,39 +80,33 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
     public void doExchangeForNewConnection(Connection con, DTNHost peer) {
         DTNHost myHost = con.getOtherNode(peer);
         ProphetDecisionEngine de = getOtherProphetDecisionEngine(peer);
-        Set<DTNHost> hostSet = new HashSet<DTNHost>(this.preds.size()
-                + de.preds.size());
-        hostSet.addAll(this.preds.keySet());
-        hostSet.addAll(de.preds.keySet());
-
-        this.agePreds();
-        de.agePreds();
 
         // Update preds for this connection
         double myOldValue = this.getPredFor(peer),
                 peerOldValue = de.getPredFor(myHost),
                 myPforHost = myOldValue + (1 - myOldValue) * pinit,
                 peerPforMe = peerOldValue + (1 - peerOldValue) * de.pinit;
-        preds.put(peer, myPforHost);
-        de.preds.put(myHost, peerPforMe);
-
-        // Update transistivities
-        for (DTNHost h : hostSet) {
-            myOldValue = 0.0;
-            peerOldValue = 0.0;
-
-            if (preds.containsKey(h)) {
-                myOldValue = preds.get(h);
-            }
-            if (de.preds.containsKey(h)) {
-                peerOldValue = de.preds.get(h);
+        preds.set(peer, myPforHost);
+        de.preds.set(myHost, peerPforMe);
+
+        // Update transistivities for the hosts known by either of us
+        int n = Math.max(preds.getCapacity(), de.preds.getCapacity());
+        for (int i = 0; i < n; i++) {
+            DTNHost h = preds.getHost(i);
+            if (h == null) {
+                h = de.preds.getHost(i);
+                if (h == null) {
+                    continue;
+                }
             }
+            myOldValue = preds.get(i);
+            peerOldValue = de.preds.get(i);
 
             if (h != myHost) {
-                preds.put(h, myOldValue + (1 - myOldValue) * myPforHost * peerOldValue * beta);
+                preds.set(h, myOldValue + (1 - myOldValue) * myPforHost * peerOldValue * beta);
             }
             if (h != peer) {
-                de.preds.put(h, peerOldValue + (1 - peerOldValue) * peerPforMe * myOldValue * beta);
+                de.preds.set(h, peerOldValue + (1 - peerOldValue) * peerPforMe * myOldValue * beta);
             }
         }
     }
@@ -138,11 +130,15 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
             return true;
         }
 
-        ProphetDecisionEngine de = getOtherProphetDecisionEngine(otherHost);
         if (msgStamp.contains(m)) {
             relayed.put(meHost, !relayed.containsKey(meHost)? 1 : relayed.get(meHost) + 1);
         }
-        return de.getPredFor(m.getTo()) > this.getPredFor(m.getTo());
+        return getRouter(otherHost).getUtility(m.getTo())
+                > getRouter(thisHost).getUtility(m.getTo());
+    }
+
+    public double getUtility(DTNHost dest, DTNHost thisHost) {
+        return this.getPredFor(dest);
     }
 
     public boolean shouldDeleteSentMessage(Message m, DTNHost otherHost) {
@@ -154,27 +150,15 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
     }
 
     private ProphetDecisionEngine getOtherProphetDecisionEngine(DTNHost host) {
+        return (ProphetDecisionEngine) getRouter(host).getDecisionEngine();
+    }
+
+    private DecisionEngineRouter getRouter(DTNHost host) {
         MessageRouter otherRouter = host.getRouter();
         assert otherRouter instanceof DecisionEngineRouter : "This router only works "
                 + " with other routers of same type";
 
-        return (ProphetDecisionEngine) ((DecisionEngineRouter) otherRouter).getDecisionEngine();
-    }
-
-    private void agePreds() {
-        double timeDiff = (SimClock.getTime() - this.lastAgeUpdate)
-                / secondsInTimeUnit;
-
-        if (timeDiff == 0) {
-            return;
-        }
-
-        double mult = Math.pow(GAMMA, timeDiff);
-        for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-            e.setValue(e.getValue() * mult);
-        }
-
-        this.lastAgeUpdate = SimClock.getTime();
+        return (DecisionEngineRouter) otherRouter;
     }
 
     /**
@@ -185,12 +169,7 @@ public class ProphetDecisionEngine implements RoutingDecisionEngine {
      * @return the current P value
      */
     private double getPredFor(DTNHost host) {
-        agePreds(); // make sure preds are updated before getting
-        if (preds.containsKey(host)) {
-            return preds.get(host);
-        } else {
-            return 0;
-        }
+        return preds.get(host); // aging is applied when the value is read
     }
 
     @Override
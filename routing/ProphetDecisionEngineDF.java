@@ -25,7 +25,6 @@ public class ProphetDecisionEngineDF implements RoutingDecisionEngine {
 
     protected double beta;
     protected double pinit;
-    protected double lastAgeUpdate;
     protected int secondsInTimeUnit;
     protected double FT;
     private Set<Message> msgStamp;
@@ -33,9 +32,9 @@ public class ProphetDecisionEngineDF implements RoutingDecisionEngine {
     private DTNHost meHost;
 
     /**
-     * delivery predictabilities
+     * delivery predictabilities (aged lazily)
      */
-    private Map<DTNHost, Double> preds;
+    private DeliveryPredictabilities preds;
 
     public ProphetDecisionEngineDF(Settings s) {
         if (s.contains(BETA_SETTING)) {
@@ -56,8 +55,7 @@ public class ProphetDecisionEngineDF implements RoutingDecisionEngine {
             secondsInTimeUnit = DEFAULT_UNIT;
         }
 
-        preds = new HashMap<DTNHost, Double>();
-        this.lastAgeUpdate = 0.0;
+        preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
     }
 
     public ProphetDecisionEngineDF(ProphetDecisionEngineDF de) {
@@ -67,8 +65,7 @@ public class ProphetDecisionEngineDF implements RoutingDecisionEngine {
         meHost = de.meHost;
         msgStamp = new HashSet<>();
         relayed = new HashMap<>();
-        preds = new HashMap<DTNHost, Double>();
-        this.lastAgeUpdate = de.lastAgeUpdate;
+        preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
     }
 
     public RoutingDecisionEngine replicate() {
@@ -85,39 +82,33 @@ public class ProphetDecisionEngineDF implements RoutingDecisionEngine {
     public void doExchangeForNewConnection(Connection con, DTNHost peer) {
         DTNHost myHost = con.getOtherNode(peer);
         ProphetDecisionEngineDF de = getOtherProphetDecisionEngine_DF(peer);
-        Set<DTNHost> hostSet = new HashSet<DTNHost>(this.preds.size()
-                + de.preds.size());
-        hostSet.addAll(this.preds.keySet());
-        hostSet.addAll(de.preds.keySet());
-
-        this.agePreds();
-        de.agePreds();
 
         // Update preds for this connection
         double myOldValue = this.getPredFor(peer),
                 peerOldValue = de.getPredFor(myHost),
                 myPforHost = myOldValue + (1 - myOldValue) * pinit,
                 peerPforMe = peerOldValue + (1 - peerOldValue) * de.pinit;
-        preds.put(peer, myPforHost);
-        de.preds.put(myHost, peerPforMe);
-
-        // Update transistivities
-        for (DTNHost h : hostSet) {
-            myOldValue = 0.0;
-            peerOldValue = 0.0;
-
-            if (preds.containsKey(h)) {
-                myOldValue = preds.get(h);
-            }
-            if (de.preds.containsKey(h)) {
-                peerOldValue = de.preds.get(h);
+        preds.set(peer, myPforHost);
+        de.preds.set(myHost, peerPforMe);
+
+        // Update transistivities for the hosts known by either of us
+        int n = Math.max(preds.getCapacity(), de.preds.getCapacity());
+        for (int i = 0; i < n; i++) {
+            DTNHost h = preds.getHost(i);
+            if (h == null) {
+                h = de.preds.getHost(i);
+                if (h == null) {
+                    continue;
+                }
             }
+            myOldValue = preds.get(i);
+            peerOldValue = de.preds.get(i);
 
             if (h != myHost) {
-                preds.put(h, myOldValue + (1 - myOldValue) * myPforHost * peerOldValue * beta);
+                preds.set(h, myOldValue + (1 - myOldValue) * myPforHost * peerOldValue * beta);
             }
             if (h != peer) {
-                de.preds.put(h, peerOldValue + (1 - peerOldValue) * peerPforMe * myOldValue * beta);
+                de.preds.set(h, peerOldValue + (1 - peerOldValue) * peerPforMe * myOldValue * beta);
             }
         }
     }
@@ -153,22 +144,6 @@ public class ProphetDecisionEngineDF implements RoutingDecisionEngine {
         return (ProphetDecisionEngineDF) ((DecisionEngineRouter) otherRouter).getDecisionEngine();
     }
 
-    private void agePreds() {
-        double timeDiff = (SimClock.getTime() - this.lastAgeUpdate)
-                / secondsInTimeUnit;
-
-        if (timeDiff == 0) {
-            return;
-        }
-
-        double mult = Math.pow(GAMMA, timeDiff);
-        for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-            e.setValue(e.getValue() * mult);
-        }
-
-        this.lastAgeUpdate = SimClock.getTime();
-    }
-
     /**
      * Returns the current prediction (P) value for a host or 0 if entry for the
      * host doesn't exist.
@@ -177,12 +152,7 @@ public class ProphetDecisionEngineDF implements RoutingDecisionEngine {
      * @return the current P value
      */
     private double getPredFor(DTNHost host) {
-        agePreds(); // make sure preds are updated before getting
-        if (preds.containsKey(host)) {
-            return preds.get(host);
-        } else {
-            return 0;
-        }
+        return preds.get(host); // aging is applied when the value is read
     }
 
     @Override
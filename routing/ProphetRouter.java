@@ -8,15 +8,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
-import core.SimClock;
 import core.Tuple;
 
 /**
@@ -51,10 +48,8 @@ public class ProphetRouter extends ActiveRouter {
 	/** value of beta setting */
 	private double beta;
 
-	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
+	/** delivery predictabilities (aged lazily) */
+	private DeliveryPredictabilities preds;
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -90,7 +85,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
 	}
 
 	@Override
@@ -110,7 +105,7 @@ public class ProphetRouter extends ActiveRouter {
 	private void updateDeliveryPredFor(DTNHost host) {
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * P_INIT;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 	}
 	
 	/**
@@ -120,13 +115,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * @return the current P value
 	 */
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host); // aging is applied when the value is read
 	}
 	
 	/**
@@ -141,49 +130,20 @@ public class ProphetRouter extends ActiveRouter {
 			" with other routers of same type";
 		
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds = 
-			((ProphetRouter)otherRouter).getDeliveryPreds();
+		DeliveryPredictabilities othersPreds = 
+			((ProphetRouter)otherRouter).preds;
 		
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
+		for (int i=0, n=othersPreds.getCapacity(); i<n; i++) {
+			DTNHost c = othersPreds.getHost(i);
+			if (c == null || c == getHost()) {
+				continue; // no value or yourself
 			}
 			
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
-		}
-	}
-
-	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 * @see #SECONDS_IN_UNIT_S
-	 */
-	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) / 
-			secondsInTimeUnit;
-		
-		if (timeDiff == 0) {
-			return;
-		}
-		
-		double mult = Math.pow(GAMMA, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
+			double pOld = preds.get(i); // P(a,c)_old
+			double pNew = pOld + ( 1 - pOld) * pForHost * othersPreds.get(i) * 
+				beta;
+			preds.set(c, pNew);
 		}
-		
-		this.lastAgeUpdate = SimClock.getTime();
-	}
-	
-	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
-	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
-		return this.preds;
 	}
 	
 	@Override
@@ -278,17 +238,18 @@ public class ProphetRouter extends ActiveRouter {
 	
 	@Override
 	public RoutingInfo getRoutingInfo() {
-		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
 		RoutingInfo ri = new RoutingInfo(preds.size() + 
 				" delivery prediction(s)");
 		
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i=0, n=preds.getCapacity(); i<n; i++) {
+			DTNHost host = preds.getHost(i);
+			if (host == null) {
+				continue;
+			}
 			
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", 
-					host, value)));
+					host, preds.get(i))));
 		}
 		
 		top.addMoreInfo(ri);
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.AbstractSequentialList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import core.Connection;
+import core.Message;
+import core.Tuple;
+
+/**
+ * Queue of messages waiting to be sent over connections. As a list, the
+ * queue contains message-connection tuples in the order they were added.
+ * Internally, the entries are also indexed per connection by message ID, so
+ * removing an entry, all entries of a message or all entries of a connection
+ * only costs time proportional to the number of removed entries (and the
+ * number of connections with queued messages).
+ * <P>
+ * The queue can be modified while it is iterated (e.g., a message is deleted
+ * while the queue is tried for transfers): iterators skip entries that are
+ * removed after the iterator has been created and see entries that are
+ * added to the end. The indexes of a list iterator are only exact if the
+ * queue is not modified by other means during the iteration. A (message,
+ * connection) pair is queued at most once, so the entries can't be replaced
+ * or inserted by position (e.g., the queue can't be sorted in place; sort a
+ * copy instead).
+ */
+public class SendQueue extends AbstractSequentialList<Tuple<Message, Connection>> {
+	/** first and last entry of the insertion order list */
+	private Entry head;
+	private Entry tail;
+	private int size;
+	/** queued entries per connection by message ID */
+	private Map<Connection, Map<String, Entry>> queues;
+
+	/**
+	 * Creates a new, empty queue
+	 */
+	public SendQueue() {
+		this.queues = new HashMap<Connection, Map<String, Entry>>();
+	}
+
+	/**
+	 * Adds a message to the end of the queue of a connection
+	 * @param m The message
+	 * @param con The connection
+	 * @return True if the message was added, false if it was already queued
+	 * for the connection
+	 */
+	public boolean add(Message m, Connection con) {
+		Map<String, Entry> queue = queues.get(con);
+		if (queue == null) {
+			queue = new HashMap<String, Entry>();
+			queues.put(con, queue);
+		} else if (queue.containsKey(m.getId())) {
+			return false;
+		}
+
+		Entry e = new Entry(m, con);
+		queue.put(m.getId(), e);
+		e.prev = tail;
+		if (tail == null) {
+			head = e;
+		} else {
+			tail.next = e;
+		}
+		tail = e;
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean add(Tuple<Message, Connection> t) {
+		return add(t.getKey(), t.getValue());
+	}
+
+	/**
+	 * Removes a message from the queue of a connection
+	 * @param id ID of the message
+	 * @param con The connection
+	 * @return True if the message was queued for the connection
+	 */
+	public boolean remove(String id, Connection con) {
+		Map<String, Entry> queue = queues.get(con);
+		if (queue == null) {
+			return false;
+		}
+		Entry e = queue.remove(id);
+		if (e == null) {
+			return false;
+		}
+		if (queue.isEmpty()) {
+			queues.remove(con);
+		}
+		unlink(e);
+		return true;
+	}
+
+	/**
+	 * Removes a message from the queues of all connections
+	 * @param id ID of the message
+	 * @return How many entries were removed
+	 */
+	public int removeMessage(String id) {
+		int removed = 0;
+		for (Map<String, Entry> queue : queues.values()) {
+			Entry e = queue.remove(id);
+			if (e != null) {
+				unlink(e);
+				removed++;
+			}
+		}
+		if (removed > 0) {
+			removeEmptyQueues();
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes all messages queued for a connection
+	 * @param con The connection
+	 * @return How many entries were removed
+	 */
+	public int removeConnection(Connection con) {
+		Map<String, Entry> queue = queues.remove(con);
+		if (queue == null) {
+			return 0;
+		}
+		for (Entry e : queue.values()) {
+			unlink(e);
+		}
+		return queue.size();
+	}
+
+	/**
+	 * Returns true if the message is queued for the connection
+	 * @param id ID of the message
+	 * @param con The connection
+	 * @return True if the message is queued for the connection
+	 */
+	public boolean contains(String id, Connection con) {
+		Map<String, Entry> queue = queues.get(con);
+		return queue != null && queue.containsKey(id);
+	}
+
+	/**
+	 * Returns the number of messages queued for a connection
+	 * @param con The connection
+	 * @return The number of messages
+	 */
+	public int size(Connection con) {
+		Map<String, Entry> queue = queues.get(con);
+		return queue == null ? 0 : queue.size();
+	}
+
+	/**
+	 * Returns the number of connections that have messages queued
+	 * @return The number of connections
+	 */
+	public int getNrofConnections() {
+		return queues.size();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (Entry e = head; e != null; e = e.next) {
+			e.removed = true;
+		}
+		head = tail = null;
+		size = 0;
+		queues.clear();
+	}
+
+	@Override
+	public ListIterator<Tuple<Message, Connection>> listIterator(int index) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Size: " + size);
+		}
+		Iter iter = new Iter();
+		if (index > size / 2) { // closer to the end
+			iter.before = tail;
+			iter.index = size;
+			while (iter.index > index) {
+				iter.previous();
+			}
+		}
+		else {
+			while (iter.index < index) {
+				iter.next();
+			}
+		}
+		return iter;
+	}
+
+	/**
+	 * Removes the entry from the insertion order list. The entry keeps its
+	 * prev pointer so that iterators at the entry can find their position
+	 * (see {@link #livePredecessor(Entry)}).
+	 */
+	private void unlink(Entry e) {
+		if (e.prev == null) {
+			head = e.next;
+		} else {
+			e.prev.next = e.next;
+		}
+		if (e.next == null) {
+			tail = e.prev;
+		} else {
+			e.next.prev = e.prev;
+		}
+		e.removed = true;
+		size--;
+	}
+
+	/**
+	 * Returns the entry itself if it is still queued, or otherwise the
+	 * closest preceding entry that is still queued. Entries are only added to
+	 * the end, so the next entry of the returned entry is the first queued
+	 * entry after the given entry.
+	 * @param e The entry or null
+	 * @return The entry, its closest queued predecessor, or null if there is
+	 * no such entry (i.e., the first queued entry is the head)
+	 */
+	private static Entry livePredecessor(Entry e) {
+		while (e != null && e.removed) {
+			e = e.prev;
+		}
+		return e;
+	}
+
+	private void removeEmptyQueues() {
+		for (Iterator<Map<String, Entry>> i =
+				queues.values().iterator(); i.hasNext();) {
+			if (i.next().isEmpty()) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Queue entry; a tuple in the insertion order list
+	 */
+	private static class Entry extends Tuple<Message, Connection> {
+		private Entry prev;
+		private Entry next;
+		private boolean removed;
+
+		private Entry(Message m, Connection con) {
+			super(m, con);
+		}
+	}
+
+	/**
+	 * List iterator that tolerates modifications of the queue
+	 */
+	private class Iter implements ListIterator<Tuple<Message, Connection>> {
+		/** the entry before the cursor (possibly removed since) or null if
+		 * the cursor is at the beginning */
+		private Entry before;
+		/** the entry returned last by next() or previous() or null */
+		private Entry lastReturned;
+		private int index;
+
+		private Entry nextEntry() {
+			Entry p = livePredecessor(before);
+			return p == null ? head : p.next;
+		}
+
+		public boolean hasNext() {
+			return nextEntry() != null;
+		}
+
+		public Tuple<Message, Connection> next() {
+			Entry e = nextEntry();
+			if (e == null) {
+				throw new NoSuchElementException();
+			}
+			before = e;
+			lastReturned = e;
+			index++;
+			return e;
+		}
+
+		public boolean hasPrevious() {
+			return livePredecessor(before) != null;
+		}
+
+		public Tuple<Message, Connection> previous() {
+			Entry e = livePredecessor(before);
+			if (e == null) {
+				throw new NoSuchElementException();
+			}
+			before = e.prev;
+			lastReturned = e;
+			index--;
+			return e;
+		}
+
+		public void remove() {
+			if (lastReturned == null || lastReturned.removed) {
+				throw new IllegalStateException();
+			}
+			SendQueue.this.remove(lastReturned.getKey().getId(),
+					lastReturned.getValue());
+			if (lastReturned == before) { // returned by next()
+				index--;
+			}
+			lastReturned = null;
+		}
+
+		public int nextIndex() {
+			return index;
+		}
+
+		public int previousIndex() {
+			return index - 1;
+		}
+
+		public void set(Tuple<Message, Connection> t) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void add(Tuple<Message, Connection> t) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -25,7 +25,10 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	public static final String BINARY_MODE = "binaryMode";
 	/** SprayAndWait router's settings name space ({@value})*/ 
 	public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
-	/** Message property key */
+	/** Message property key
+	 * @deprecated The number of copies is no longer stored as a message
+	 * property; use {@link Message#getCopies()} */
+	@Deprecated
 	public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." +
 		"copies";
 	
@@ -58,9 +61,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message msg = super.messageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-		
-		assert nrofCopies != null : "Not a SnW message: " + msg;
+		int nrofCopies = msg.getCopies();
 		
 		if (isBinary) {
 			/* in binary S'n'W the receiving node gets ceil(n/2) copies */
@@ -71,7 +72,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			nrofCopies = 1;
 		}
 		
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setCopies(nrofCopies);
 		return msg;
 	}
 	
@@ -80,7 +81,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		makeRoomForNewMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+		msg.setCopies(initialNrofCopies);
 		addToMessages(msg, true);
 		return true;
 	}
@@ -116,10 +117,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		List<Message> list = new ArrayList<Message>();
 
 		for (Message m : getMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "SnW message " + m + " didn't have " + 
-				"nrof copies property!";
-			if (nrofCopies > 1) {
+			if (m.getCopies() > 1) {
 				list.add(m);
 			}
 		}
@@ -136,7 +134,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	 */
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
@@ -146,14 +144,14 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 		
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getCopies();
 		if (isBinary) { 
 			nrofCopies /= 2;
 		}
 		else {
 			nrofCopies--;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setCopies(nrofCopies);
 	}
 	
 	@Override
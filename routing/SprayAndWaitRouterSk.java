@@ -13,6 +13,8 @@ public class SprayAndWaitRouterSk extends ActiveRouter {
     public static final String NROF_COPIES = "nrofCopies";
     public static final String BINARY_MODE = "binaryMode";
     public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
+    /** @deprecated Use {@link Message#getCopies()} */
+    @Deprecated
     public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." + "copies";
     public static final String QON_PROPERTY = SPRAYANDWAIT_NS + "." + "QoN";
     public static final String LAST_UPDATE_TIME_PROPERTY = SPRAYANDWAIT_NS + "." + "lastUpdateTime";
@@ -44,12 +46,8 @@ public class SprayAndWaitRouterSk extends ActiveRouter {
     @Override
     public Message messageTransferred(String id, DTNHost from) {
         Message msg = super.messageTransferred(id, from);
-        Integer nrofCopies = (Integer) msg.getProperty(MSG_COUNT_PROPERTY);
-
-        assert nrofCopies != null : "Not a SnW message: " + msg;
-
         double QoN = this.Q;
-        msg.updateProperty(MSG_COUNT_PROPERTY, (int) Math.ceil(QoN));
+        msg.setCopies((int) Math.ceil(QoN));
 
         return msg;
     }
@@ -58,7 +56,7 @@ public class SprayAndWaitRouterSk extends ActiveRouter {
     public boolean createNewMessage(Message msg) {
         makeRoomForNewMessage(msg.getSize());
         msg.setTtl(this.msgTtl);
-        msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+        msg.setCopies(initialNrofCopies);
         msg.addProperty(QON_PROPERTY, calculateQoN(getHost()));
         addToMessages(msg, true);
         return true;
@@ -82,9 +80,7 @@ public class SprayAndWaitRouterSk extends ActiveRouter {
     protected List<Message> getMessagesWithCopiesLeft() {
         List<Message> list = new ArrayList<Message>();
         for (Message m : getMessageCollection()) {
-            Integer nrofCopies = (Integer) m.getProperty(MSG_COUNT_PROPERTY);
-            assert nrofCopies != null : "SnW message " + m + " didn't have nrof copies property!";
-            if (nrofCopies > 1) {
+            if (m.getCopies() > 1) {
                 list.add(m);
             }
         }
@@ -93,19 +89,19 @@ public class SprayAndWaitRouterSk extends ActiveRouter {
 
     @Override
     protected void transferDone(Connection con) {
-        Integer nrofCopies;
+        int nrofCopies;
         String msgId = con.getMessage().getId();
         Message msg = getMessage(msgId);
         if (msg == null) {
             return;
         }
-        nrofCopies = (Integer) msg.getProperty(MSG_COUNT_PROPERTY);
+        nrofCopies = msg.getCopies();
         if (isBinary) {
             nrofCopies /= 2;
         } else {
             nrofCopies--;
         }
-        msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+        msg.setCopies(nrofCopies);
     }
 
     @Override
@@ -163,7 +159,7 @@ public class SprayAndWaitRouterSk extends ActiveRouter {
             QoN2 = 0.0;
         }
 
-        int nrofCopies = (Integer) msg.getProperty(MSG_COUNT_PROPERTY);
+        int nrofCopies = msg.getCopies();
         int newCopies = (int) Math.ceil((QoN2 / (QoN1 + QoN2)) * nrofCopies);
         return newCopies;
     }
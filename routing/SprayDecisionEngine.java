@@ -0,0 +1,210 @@
+package routing;
+
+import core.*;
+
+/**
+ * Multi-copy decision engine for {@link DecisionEngineRouter}. A new message
+ * gets a quota of copies (see {@link Message#getCopies()}) and a node that
+ * holds more than one copy hands copies out to every node it meets. In the
+ * binary mode the receiving node gets half of the copies (rounded up) and the
+ * sender keeps the rest; in the source mode only the source hands out copies
+ * and the receiving nodes get a single copy each.
+ *
+ * When only one copy is left, the node waits until it meets the destination
+ * (Spray and Wait), unless a focus engine is configured. The focus engine must
+ * be a {@link UtilityDecisionEngine} (e.g., {@link ProphetDecisionEngine}) and
+ * the last copy is then forwarded (not copied) to nodes whose utility for the
+ * destination is higher by more than a threshold (Spray and Focus). Without
+ * a threshold, a last copy may keep moving between nodes whose utilities
+ * fluctuate without getting any closer to the destination. The focus engine
+ * is read from the same settings namespace as this engine and it gets all
+ * connection events, so that it can maintain its utilities. It is also the
+ * state engine of this engine (see {@link WrappingDecisionEngine}).
+ *
+ * Example settings:
+ * <pre>
+ * DecisionEngineRouter.decisionEngine = SprayDecisionEngine
+ * DecisionEngineRouter.nrofCopies = 8
+ * DecisionEngineRouter.binaryMode = true
+ * DecisionEngineRouter.focusEngine = ProphetDecisionEngine
+ * DecisionEngineRouter.focusThreshold = 0.1
+ * </pre>
+ */
+public class SprayDecisionEngine implements WrappingDecisionEngine {
+
+    /** Initial number of copies -setting id ({@value}) */
+    public static final String NROF_COPIES_S = "nrofCopies";
+    /** Binary mode -setting id ({@value}). Default is true. */
+    public static final String BINARY_MODE_S = "binaryMode";
+    /**
+     * Focus engine's class name -setting id ({@value}). If not set, the last
+     * copy is only delivered to the destination.
+     */
+    public static final String FOCUS_ENGINE_S = "focusEngine";
+    /**
+     * Focus threshold -setting id ({@value}). The utility of the other node
+     * must exceed the utility of this node by more than this to forward the
+     * last copy. Default is 0.
+     */
+    public static final String FOCUS_THRESHOLD_S = "focusThreshold";
+
+    protected int initialNrofCopies;
+    protected boolean isBinary;
+    protected UtilityDecisionEngine focus;
+    protected double focusThreshold;
+    /** the host whose router this engine belongs to */
+    private DTNHost meHost;
+
+    public SprayDecisionEngine(Settings s) {
+        initialNrofCopies = s.getInt(NROF_COPIES_S);
+
+        if (s.contains(BINARY_MODE_S)) {
+            isBinary = s.getBoolean(BINARY_MODE_S);
+        } else {
+            isBinary = true;
+        }
+
+        if (s.contains(FOCUS_ENGINE_S)) {
+            Object engine = s.createIntializedObject("routing."
+                    + s.getSetting(FOCUS_ENGINE_S));
+            if (!(engine instanceof UtilityDecisionEngine)) {
+                throw new SettingsError("Focus engine " + engine.getClass().getName()
+                        + " is not a UtilityDecisionEngine");
+            }
+            focus = (UtilityDecisionEngine) engine;
+        }
+
+        if (s.contains(FOCUS_THRESHOLD_S)) {
+            focusThreshold = s.getDouble(FOCUS_THRESHOLD_S);
+        } else {
+            focusThreshold = 0;
+        }
+    }
+
+    public SprayDecisionEngine(SprayDecisionEngine de) {
+        initialNrofCopies = de.initialNrofCopies;
+        isBinary = de.isBinary;
+        focusThreshold = de.focusThreshold;
+        if (de.focus != null) {
+            focus = (UtilityDecisionEngine) de.focus.replicate();
+        }
+    }
+
+    public RoutingDecisionEngine replicate() {
+        return new SprayDecisionEngine(this);
+    }
+
+    /**
+     * Returns the engine that decides where the last copy of a message is
+     * forwarded to
+     *
+     * @return The focus engine or null if the last copy waits for the
+     * destination
+     */
+    public UtilityDecisionEngine getFocusEngine() {
+        return focus;
+    }
+
+    /**
+     * Returns the focus engine, so that the focus engines of the peers read
+     * each other's state and utilities
+     *
+     * @return The focus engine or null if there is none
+     */
+    public RoutingDecisionEngine getStateEngine() {
+        return focus;
+    }
+
+    public void connectionUp(DTNHost thisHost, DTNHost peer) {
+        meHost = thisHost;
+        if (focus != null) {
+            focus.connectionUp(thisHost, peer);
+        }
+    }
+
+    public void connectionDown(DTNHost thisHost, DTNHost peer) {
+        meHost = thisHost;
+        if (focus != null) {
+            focus.connectionDown(thisHost, peer);
+        }
+    }
+
+    public void doExchangeForNewConnection(Connection con, DTNHost peer) {
+        if (focus != null) {
+            focus.doExchangeForNewConnection(con, peer);
+        }
+    }
+
+    public boolean newMessage(Message m) {
+        m.setCopies(initialNrofCopies);
+        return focus == null || focus.newMessage(m);
+    }
+
+    public boolean isFinalDest(Message m, DTNHost aHost) {
+        return m.getTo() == aHost;
+    }
+
+    public boolean shouldSaveReceivedMessage(Message m, DTNHost thisHost) {
+        meHost = thisHost;
+        int nrofCopies = m.getCopies();
+        /* a single copy is a forwarded last copy; the receiver keeps it */
+        if (nrofCopies > 1) {
+            m.setCopies(isBinary ? (nrofCopies + 1) / 2 : 1);
+        }
+
+        if (focus != null) {
+            return focus.shouldSaveReceivedMessage(m, thisHost);
+        }
+        return m.getTo() != thisHost;
+    }
+
+    public boolean shouldSendMessageToHost(Message m, DTNHost otherHost, DTNHost thisHost) {
+        meHost = thisHost;
+        if (m.getTo() == otherHost || m.getCopies() > 1) {
+            return true;
+        }
+        if (focus == null) {
+            return false; // wait for the destination
+        }
+
+        return getRouter(otherHost).getUtility(m.getTo())
+                > getRouter(thisHost).getUtility(m.getTo()) + focusThreshold;
+    }
+
+    public boolean shouldDeleteSentMessage(Message m, DTNHost otherHost) {
+        int nrofCopies = m.getCopies();
+        if (nrofCopies <= 1) {
+            return true; // forwarded or delivered the last copy
+        }
+
+        nrofCopies = isBinary ? nrofCopies / 2 : nrofCopies - 1;
+        m.setCopies(nrofCopies);
+
+        if (nrofCopies == 1) {
+            /* the copies queued for other nodes when the message still had
+             * copies to spare may now only go to the destination (or to
+             * better nodes when focusing) */
+            getRouter(meHost).requeueMessage(m.getId(), otherHost);
+        }
+        return false;
+    }
+
+    public boolean shouldDeleteOldMessage(Message m, DTNHost hostReportingOld) {
+        return m.getTo() == hostReportingOld;
+    }
+
+    public void update(DTNHost thisHost) {
+        meHost = thisHost;
+        if (focus != null) {
+            focus.update(thisHost);
+        }
+    }
+
+    private DecisionEngineRouter getRouter(DTNHost host) {
+        MessageRouter otherRouter = host.getRouter();
+        assert otherRouter instanceof DecisionEngineRouter : "This router only works "
+                + " with other routers of same type";
+
+        return (DecisionEngineRouter) otherRouter;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+/**
+ * Compact summary of a set of message IDs as a Bloom filter. A summary can
+ * tell for sure that a message ID is <I>not</I> in the set, but it may claim
+ * that an ID is in the set even when it isn't (a false positive). The false
+ * positive probability depends on the number of bits per ID.
+ */
+public class SummaryVector {
+	/** size of the bit array in bits */
+	private int nrofBits;
+	/** number of bits set per ID */
+	private int nrofHashes;
+	private long[] bits;
+
+	/**
+	 * Creates a new, empty summary vector
+	 * @param nrofIds Number of IDs the vector is sized for
+	 * @param bitsPerId Number of bits per ID in the vector
+	 */
+	public SummaryVector(int nrofIds, int bitsPerId) {
+		int nrofWords = Math.max(1, (nrofIds * bitsPerId + 63) / 64);
+		this.bits = new long[nrofWords];
+		this.nrofBits = nrofWords * 64;
+		/* optimal number of hash functions is (bits / IDs) * ln 2 */
+		this.nrofHashes = Math.max(1, (int)Math.round(bitsPerId * Math.log(2)));
+	}
+
+	/**
+	 * Adds a message ID to the summary
+	 * @param id The message ID
+	 */
+	public void add(String id) {
+		int h1 = id.hashCode();
+		int h2 = secondHash(h1);
+		for (int i=0; i<nrofHashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % nrofBits;
+			bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Returns true if the message ID may be in the summary. False means that
+	 * the ID was certainly not added to the summary.
+	 * @param id The message ID
+	 * @return True if the ID may be in the summary
+	 */
+	public boolean mightContain(String id) {
+		int h1 = id.hashCode();
+		int h2 = secondHash(h1);
+		for (int i=0; i<nrofHashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % nrofBits;
+			if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the size of the summary vector in bytes (i.e., how many bytes
+	 * sending it to another node would take)
+	 * @return The size in bytes
+	 */
+	public int getSize() {
+		return nrofBits / 8;
+	}
+
+	/**
+	 * Derives the second hash value used for double hashing from the first
+	 */
+	private static int secondHash(int h) {
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h | 1; // odd step visits different bits
+	}
+}
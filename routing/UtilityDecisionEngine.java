@@ -0,0 +1,33 @@
+package routing;
+
+import core.*;
+
+/**
+ * A RoutingDecisionEngine whose forwarding decisions compare a per-destination
+ * utility of this host against the same utility of the peer. Implementing this
+ * interface lets {@link DecisionEngineRouter} cache the utilities: each
+ * router computes the utility of its own host for a destination at most once
+ * between invalidations, no matter how many messages to that destination are
+ * considered. Engines read the cached values through
+ * {@link DecisionEngineRouter#getUtility(DTNHost)} of their own router and the
+ * peer's router.
+ *
+ * The cache of a router is invalidated when a connection of its host goes up
+ * or down, when an information exchange is performed on a new connection of
+ * its host, when the router is updated and when the simulation time changes.
+ * Hence, the utility may only depend on state that changes in those calls (and
+ * on the simulation time). If an engine changes its state at other times, it
+ * must call {@link DecisionEngineRouter#invalidateUtilities()}.
+ */
+public interface UtilityDecisionEngine extends RoutingDecisionEngine
+{
+	/**
+	 * Computes the utility of this engine's host for delivering messages to
+	 * the given destination.
+	 *
+	 * @param dest The destination
+	 * @param thisHost The host of this engine
+	 * @return The utility
+	 */
+	public double getUtility(DTNHost dest, DTNHost thisHost);
+}
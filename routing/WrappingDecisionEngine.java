@@ -0,0 +1,22 @@
+package routing;
+
+/**
+ * A RoutingDecisionEngine that delegates (part of) its decisions to another
+ * engine that keeps the routing state, e.g., {@link SprayDecisionEngine}
+ * with a focus engine. Engines of the peers read each other's state through
+ * {@link DecisionEngineRouter#getDecisionEngine()}, so for a wrapping engine
+ * the router returns the state engine instead. This way the wrapped engines
+ * exchange their state just like when they are used directly, and
+ * {@link DecisionEngineRouter#getUtility(core.DTNHost)} uses the utilities
+ * of the wrapped {@link UtilityDecisionEngine}.
+ */
+public interface WrappingDecisionEngine extends RoutingDecisionEngine
+{
+	/**
+	 * Returns the wrapped engine whose routing state other engines may read.
+	 *
+	 * @return The state engine or null if this engine doesn't currently wrap
+	 * one (then this engine is used as such)
+	 */
+	public RoutingDecisionEngine getStateEngine();
+}
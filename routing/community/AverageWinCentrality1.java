@@ -12,7 +12,7 @@ import java.util.*;
 import core.*;
 
 
-public class AverageWinCentrality1 implements Centrality {
+public class AverageWinCentrality1 implements IncrementalCentrality {
 
 	
 	public static final String CENTRALITY_WINDOW_SETTING = "timeWindow";
@@ -33,6 +33,8 @@ public class AverageWinCentrality1 implements Centrality {
 	//temporary inserted !!!
 	protected int [] globalCentralities = new int[EPOCH_COUNT];
 	
+	protected ContactEpochs epochs;
+	
 	
 	
 	public AverageWinCentrality1 (Settings s)
@@ -48,6 +50,7 @@ public class AverageWinCentrality1 implements Centrality {
 	public AverageWinCentrality1 (AverageWinCentrality1 proto)
 	{
 		this.lastGlobalComputationTime = this.lastLocalComputationTime = -COMPUTE_INTERVAL;
+		this.epochs = new ContactEpochs(CENTRALITY_TIME_WINDOW, false);
 	}
 	
 	public double getGlobalCentrality (Map<DTNHost, List<Duration>> connHistory)
@@ -55,182 +58,47 @@ public class AverageWinCentrality1 implements Centrality {
 		if (SimClock.getIntTime() - this.lastGlobalComputationTime < COMPUTE_INTERVAL)
 			return globalCentrality;
 		
-		
-		//start-initialisation
-		int epochCount = (int)Math.round(SimClock.getIntTime() / CENTRALITY_TIME_WINDOW + 0.5);
-		int [] centralities = new int[epochCount];
-		
-		int epoch;
-		int timeNow=SimClock.getIntTime();
-		Map<Integer, Set<DTNHost>> nodesCountedInEpoch = new HashMap<Integer, Set<DTNHost>>();
-		
-		for (int i=0; i<epochCount; i++) 
-			nodesCountedInEpoch.put(i, new HashSet<DTNHost>());
-		//end-initialisation
-		
-		
-		for (Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet())
-		{
-			DTNHost h= entry.getKey();
-			for (Duration d: entry.getValue())
-			{
-				int timePassed = (int) (timeNow - d.end);
-				if (timePassed > CENTRALITY_TIME_WINDOW * epochCount) 
-					break;
-				
-				epoch= timePassed / CENTRALITY_TIME_WINDOW; // EPOCH NUMBER or LOCATION
-				
-				Set<DTNHost> nodesAlreadyCounted = nodesCountedInEpoch.get(epoch); //Only consider each node counted 1 per epoch
-				if(nodesAlreadyCounted.contains(h))
-					continue;
-				centralities[epoch]++;
-				nodesAlreadyCounted.add(h);
-								
-			}
-					
-		}
-		
-		// compute and return average node degree
-		int sum = 0;
-				
-		for (int i=0; i < epochCount; i++)
-			sum += centralities[i];
-		this.globalCentrality =((double)sum) / epochCount;
+		// all epochs, including the current one
+		int current = epochs.getEpoch(SimClock.getIntTime());
+		this.globalCentrality = ((double)epochs.getDegreeSum(0, current)) / 
+			(current + 1);
 		
 		this.lastGlobalComputationTime = SimClock.getIntTime();
 		return this.globalCentrality;
-		
 	}
 	
 	public double getLocalCentrality(Map<DTNHost, List<Duration>> connHistory, CommunityDetection cd)
 	{
-		
 		if(SimClock.getIntTime() - this.lastLocalComputationTime < COMPUTE_INTERVAL)
 			return localCentrality;
 		
-		
-		//start-initialisation
-		// centralities will hold the count of unique encounters in each epoch
-				
-		int epochCount = (int)Math.round(SimClock.getIntTime() / CENTRALITY_TIME_WINDOW + 0.5);
-		int [] centralities = new int[epochCount];
-				
-		int epoch; 
-		int timeNow = SimClock.getIntTime();
-		Map<Integer, Set<DTNHost>> nodesCountedInEpoch = new HashMap<Integer, Set<DTNHost>>();
-								
-		for(int i = 0; i < epochCount; i++)
-					nodesCountedInEpoch.put(i, new HashSet<DTNHost>());
-		
-		//end-initialisation
-		
-		
-		// local centrality only considers nodes in the local community
-		Set<DTNHost> community = cd.getLocalCommunity();
-		
-		/*
-		 * For each node, loop through connection history until we crossed all
-		 * the epochs we need to cover
-		 */
-		
-		for(Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet())
-		{
-			DTNHost h = entry.getKey();
-			
-			// if the host isn't in the local community, we don't consider it
-			if(!community.contains(h))
-				continue;
-			
-			for(Duration d : entry.getValue())
-			{
-				int timePassed = (int)(timeNow - d.end);
-				
-				// if we reached the end of the last epoch, we're done with this node
-				if(timePassed > CENTRALITY_TIME_WINDOW * epochCount)
-					break;
-				
-				// compute the epoch this contact belongs to
-				epoch = timePassed / CENTRALITY_TIME_WINDOW; //EPOCH NUMBER or LOCATION
-				
-				
-				// Only consider each node once per epoch
-				Set<DTNHost> nodesAlreadyCounted = nodesCountedInEpoch.get(epoch);
-				if(nodesAlreadyCounted.contains(h))
-					continue;
-				
-				// increment the degree for the given epoch
-				centralities[epoch]++;
-				nodesAlreadyCounted.add(h);
-			}
-		}
-		
-		// compute and return average LOCAL node degree
-		int sum = 0;
-				
-		for (int i=0; i < epochCount; i++)
-					sum += centralities[i];
-		this.localCentrality =((double)sum) / epochCount;
+		int current = epochs.getEpoch(SimClock.getIntTime());
+		this.localCentrality = ((double)epochs.getDegreeSum(0, current, 
+				cd.getLocalCommunity())) / (current + 1);
 				
 		this.lastLocalComputationTime = SimClock.getIntTime();
 		return this.localCentrality;
-		
-				
 	}
 	
-	
-	
-	
-	
-	
-	//temporary inserted new method by me
+	/**
+	 * Returns the degree of the node in the latest epochs
+	 * @param connHistory Not used
+	 * @return The degrees, index 0 being the current epoch. The array is
+	 * reused on the next call.
+	 */
 	public int [] getGlobalArrayCentrality(Map<DTNHost, List<Duration>> connHistory)
 	{
-		//if (SimClock.getIntTime() - this.lastGlobalComputationTime < COMPUTE_INTERVAL)
-		//	return globalCentralities;
-		
-		
-		//initialise
-		
-		int [] centralities = new int[EPOCH_COUNT];
-		
-		int epoch;
-		int timeNow=SimClock.getIntTime();
-		Map<Integer, Set<DTNHost>> nodesCountedInEpoch = new HashMap<Integer, Set<DTNHost>>();
-		
+		int current = epochs.getEpoch(SimClock.getIntTime());
 		for (int i=0; i<EPOCH_COUNT; i++)
-			nodesCountedInEpoch.put(i, new HashSet<DTNHost>());
-		//end-initialisation
-		
-		
-		for (Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet())
-		{
-			DTNHost h= entry.getKey();
-			for (Duration d: entry.getValue())
-			{
-				int timePassed = (int) (timeNow - d.end);
-				if (timePassed > CENTRALITY_TIME_WINDOW * EPOCH_COUNT)
-					break;
-				
-				epoch= timePassed / CENTRALITY_TIME_WINDOW; // EPOCH NUMBER/LOCATION
-				
-				Set<DTNHost> nodesAlreadyCounted = nodesCountedInEpoch.get(epoch); //Only consider each node counted 1 per epoch
-				if(nodesAlreadyCounted.contains(h))
-					continue;
-				centralities[epoch]++;
-				nodesAlreadyCounted.add(h);
-								
-			}
-					
-		}
-		
-		
+			globalCentralities[i] = epochs.getDegreeSum(current - i, current - i);
 		
-		//this.lastGlobalComputationTime = SimClock.getIntTime();
-		return this.globalCentralities = centralities;
-			
+		return this.globalCentralities;
 	}
 	
-	
+	public void connectionLost(DTNHost peer, Duration d)
+	{
+		epochs.addContact(peer, d.end);
+	}
 	
 	public Centrality replicate()
 	{
@@ -32,7 +32,9 @@ import core.*;
  * degree in each window, and computing average.<p> 
  * 
  * <p>This computation is done at regular intervals instead of every time the 
- * global and local centrality measures are requested.</p> 
+ * global and local centrality measures are requested. The degrees of the 
+ * epochs are updated as contacts end (see {@link ContactEpochs}), and the 
+ * average is taken over the completed epochs.</p> 
  * 
  * <p>This class looks for two settings:
  * <ul>
@@ -64,7 +66,7 @@ import core.*;
  * @see Centrality
  * @see DegreeCentrality
  */
-public class AvgDegreeCentrality implements Centrality
+public class AvgDegreeCentrality implements IncrementalCentrality
 {
 	/** Width of time window into which to group past history -setting id 
 	   {@value} */
@@ -88,6 +90,9 @@ public class AvgDegreeCentrality implements Centrality
 	/** timestamp of last local centrality computation */ 
 	protected int lastLocalComputationTime;
 	
+	/** Node degree per epoch */
+	protected ContactEpochs epochs;
+	
 	public AvgDegreeCentrality(Settings s) 
 	{
 		if(s.contains(CENTRALITY_WINDOW_SETTING))
@@ -103,6 +108,7 @@ public class AvgDegreeCentrality implements Centrality
 		// start of the sim
 		this.lastGlobalComputationTime = this.lastLocalComputationTime = 
 			-COMPUTE_INTERVAL;
+		this.epochs = new ContactEpochs(CENTRALITY_TIME_WINDOW, false);
 	}
 	
 	public double getGlobalCentrality(Map<DTNHost, List<Duration>> connHistory)
@@ -110,50 +116,10 @@ public class AvgDegreeCentrality implements Centrality
 		if(SimClock.getIntTime() - this.lastGlobalComputationTime < COMPUTE_INTERVAL)
 			return globalCentrality;
 		
-		// initialize
-		int epochCount = SimClock.getIntTime() / CENTRALITY_TIME_WINDOW;
-		int[] centralities = new int[epochCount];
-		int epoch, timeNow = SimClock.getIntTime();
-		Map<Integer, Set<DTNHost>> nodesCountedInEpoch = 
-			new HashMap<Integer, Set<DTNHost>>();
-		
-		for(int i = 0; i < epochCount; i++)
-			nodesCountedInEpoch.put(i, new HashSet<DTNHost>());
-		
-		/*
-		 * For each node, loop through connection history until we crossed all
-		 * the epochs we need to cover
-		 */
-		for(Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet())
-		{
-			DTNHost h = entry.getKey();
-			for(Duration d : entry.getValue())
-			{
-				int timePassed = (int)(timeNow - d.end);
-				
-				// if we reached the end of the last epoch, we're done with this node
-				if(timePassed > CENTRALITY_TIME_WINDOW * epochCount)
-					break;
-				
-				// compute the epoch this contact belongs to
-				epoch = timePassed / CENTRALITY_TIME_WINDOW;
-				
-				// Only consider each node once per epoch
-				Set<DTNHost> nodesAlreadyCounted = nodesCountedInEpoch.get(epoch);
-				if(nodesAlreadyCounted.contains(h))
-					continue;
-				
-				// increment the degree for the given epoch
-				centralities[epoch]++;
-				nodesAlreadyCounted.add(h);
-			}
-		}
-		
-		// compute and return average node degree
-		int sum = 0;
-		for(int i = 0; i < epochCount; i++) 
-			sum += centralities[i];
-		this.globalCentrality = ((double)sum) / epochCount;
+		// average over the completed epochs
+		int epochCount = epochs.getEpoch(SimClock.getIntTime());
+		this.globalCentrality = average(epochs.getDegreeSum(0, epochCount - 1),
+				epochCount);
 		
 		this.lastGlobalComputationTime = SimClock.getIntTime();
 		
@@ -166,63 +132,26 @@ public class AvgDegreeCentrality implements Centrality
 		if(SimClock.getIntTime() - this.lastLocalComputationTime < COMPUTE_INTERVAL)
 			return localCentrality;
 		
-		// centralities will hold the count of unique encounters in each epoch
-		int epochCount = SimClock.getIntTime() / CENTRALITY_TIME_WINDOW;
-		int[] centralities = new int[epochCount];
-		int epoch, timeNow = SimClock.getIntTime();
-		Map<Integer, Set<DTNHost>> nodesCountedInEpoch = 
-			new HashMap<Integer, Set<DTNHost>>();
-		
-		for(int i = 0; i < epochCount; i++)
-			nodesCountedInEpoch.put(i, new HashSet<DTNHost>());
-		
-		// local centrality only considers nodes in the local community
-		Set<DTNHost> community = cd.getLocalCommunity();
-		
-		/*
-		 * For each node, loop through connection history until we crossed all
-		 * the epochs we need to cover
-		 */
-		for(Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet())
-		{
-			DTNHost h = entry.getKey();
-			
-			// if the host isn't in the local community, we don't consider it
-			if(!community.contains(h))
-				continue;
-			
-			for(Duration d : entry.getValue())
-			{
-				int timePassed = (int)(timeNow - d.end);
-				
-				// if we reached the end of the last epoch, we're done with this node
-				if(timePassed > CENTRALITY_TIME_WINDOW * epochCount)
-					break;
-				
-				// compute the epoch this contact belongs to
-				epoch = timePassed / CENTRALITY_TIME_WINDOW;
-				
-				// Only consider each node once per epoch
-				Set<DTNHost> nodesAlreadyCounted = nodesCountedInEpoch.get(epoch);
-				if(nodesAlreadyCounted.contains(h))
-					continue;
-				
-				// increment the degree for the given epoch
-				centralities[epoch]++;
-				nodesAlreadyCounted.add(h);
-			}
-		}
-		
-		// compute and return average node degree
-		int sum = 0;
-		for(int i = 0; i < epochCount; i++) 
-			sum += centralities[i];
-		this.localCentrality = ((double)sum) / epochCount; 
+		int epochCount = epochs.getEpoch(SimClock.getIntTime());
+		this.localCentrality = average(epochs.getDegreeSum(0, epochCount - 1,
+				cd.getLocalCommunity()), epochCount);
 		
 		this.lastLocalComputationTime = SimClock.getIntTime();
 		
 		return this.localCentrality;
 	}
+	
+	private double average(int sum, int epochCount)
+	{
+		if(epochCount == 0)
+			return 0; // first epoch still in progress
+		return ((double)sum) / epochCount;
+	}
+	
+	public void connectionLost(DTNHost peer, Duration d)
+	{
+		epochs.addContact(peer, d.end);
+	}
 
 	public Centrality replicate()
 	{
@@ -18,7 +18,7 @@ public class BubbleRap implements RoutingDecisionEngine, CommunityDetectionEngin
     public static final String CENTRALITY_ALG_SETTING = "centralityAlg";
 
     protected Map<DTNHost, Double> startTimestamps;
-    protected Map<DTNHost, List<Duration>> connHistory;
+    protected ContactHistory connHistory;
 
     protected CommunityDetection community;  //added
     protected Centrality centrality;
@@ -38,6 +38,8 @@ public class BubbleRap implements RoutingDecisionEngine, CommunityDetectionEngin
         } else {
             this.centrality = new AverageWinCentrality1(s);
         }
+
+        this.connHistory = new ContactHistory(s);
     }
 
     //Constructor based on the argument prototype
@@ -45,7 +47,7 @@ public class BubbleRap implements RoutingDecisionEngine, CommunityDetectionEngin
         this.community = proto.community.replicate();	//added
         this.centrality = proto.centrality.replicate();
         startTimestamps = new HashMap<DTNHost, Double>();
-        connHistory = new HashMap<DTNHost, List<Duration>>();
+        connHistory = new ContactHistory(proto.connHistory);
     }
 
     public void connectionUp(DTNHost thisHost, DTNHost peer) {
@@ -69,17 +71,15 @@ public class BubbleRap implements RoutingDecisionEngine, CommunityDetectionEngin
         double etime = SimClock.getTime();
 
         // Find or create the connection history list
-        List<Duration> history;
-        if (!connHistory.containsKey(peer)) {
-            history = new LinkedList<Duration>();
-            connHistory.put(peer, history);
-        } else {
-            history = connHistory.get(peer);
-        }
+        List<Duration> history = connHistory.getHistory(peer, true);
 
         // add this connection to the list
         if (etime - time > 0) {
-            history.add(new Duration(time, etime));
+            connHistory.add(peer, time, etime);
+            if (centrality instanceof IncrementalCentrality) {
+                ((IncrementalCentrality) centrality).connectionLost(peer,
+                        new Duration(time, etime));
+            }
         }
 
         CommunityDetection peerCD = this.getOtherDecisionEngine(peer).community; //added
@@ -172,11 +172,11 @@ public class BubbleRap implements RoutingDecisionEngine, CommunityDetectionEngin
     }
 
     protected double getLocalCentrality() {
-        return this.centrality.getLocalCentrality(connHistory, community);
+        return this.centrality.getLocalCentrality(connHistory.asMap(), community);
     }
 
     protected double getGlobalCentrality() {
-        return this.centrality.getGlobalCentrality(connHistory);
+        return this.centrality.getGlobalCentrality(connHistory.asMap());
     }
 
     private BubbleRap getOtherDecisionEngine(DTNHost h) {
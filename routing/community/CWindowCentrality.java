@@ -27,7 +27,12 @@ import core.*;
  * </p>
  * 
  * <p>This computation is done at regular intervals instead of every time the 
- * global and local centrality measures are requested.</p> 
+ * global and local centrality measures are requested. The degrees of the 
+ * epochs are updated as contacts end (see {@link ContactEpochs}) so the 
+ * computation doesn't go through the connection history. Epochs start at
+ * multiples of the time window, the latest epoch being the one that is in 
+ * progress, and the average is taken over the epochs since the oldest
+ * epoch with contacts (at most nrOfEpochsToAvg epochs).</p> 
  * 
  * <p>This class looks for three settings:
  * <ul>
@@ -60,7 +65,7 @@ import core.*;
  * @author PJ Dillon, University of Pittsburgh
  * @see Centrality
  */
-public class CWindowCentrality implements Centrality
+public class CWindowCentrality implements IncrementalCentrality
 {
 	/** length of time to consider in each epoch -setting id {@value} */
 	public static final String CENTRALITY_WINDOW_SETTING = "timeWindow";
@@ -87,6 +92,9 @@ public class CWindowCentrality implements Centrality
 	/** timestamp of last local centrality computation */ 
 	protected int lastLocalComputationTime;
 	
+	/** Node degree per epoch */
+	protected ContactEpochs epochs;
+	
 	public CWindowCentrality(Settings s) 
 	{
 		if(s.contains(CENTRALITY_WINDOW_SETTING))
@@ -105,6 +113,7 @@ public class CWindowCentrality implements Centrality
 		// start of the sim
 		this.lastGlobalComputationTime = this.lastLocalComputationTime = 
 			-COMPUTE_INTERVAL;
+		this.epochs = new ContactEpochs(CENTRALITY_TIME_WINDOW, false);
 	}
 	
 	public double getGlobalCentrality(Map<DTNHost, List<Duration>> connHistory)
@@ -112,77 +121,12 @@ public class CWindowCentrality implements Centrality
 		if(SimClock.getIntTime() - this.lastGlobalComputationTime < COMPUTE_INTERVAL)
 			return globalCentrality;
 		
-		// initialize
-		int[] centralities = new int[EPOCH_COUNT];
-		int epoch, timeNow = SimClock.getIntTime();
-		Map<Integer, Set<DTNHost>> nodesCountedInEpoch = 
-			new HashMap<Integer, Set<DTNHost>>();
-		
-		for(int i = 0; i < EPOCH_COUNT; i++)
-			nodesCountedInEpoch.put(i, new HashSet<DTNHost>());
-		
-		/*
-		 * For each node, loop through connection history until we crossed all
-		 * the epochs we need to cover
-		 */
-		int epochControl=0;
-		for(Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet())
-		{
-			DTNHost h = entry.getKey();
-			for(Duration d : entry.getValue())
-			{
-				int timePassed = (int)(timeNow - d.end);
-				
-				// if we reached the end of the last epoch, we're done with this node
-//				System.out.println("EPOCH_COUNT "+EPOCH_COUNT);
-//				System.out.println("time now: "+timeNow);
-//				System.out.println("timePassed: "+timePassed);
-				if(timePassed > CENTRALITY_TIME_WINDOW * EPOCH_COUNT)//{
-					//System.out.println("break\n");
-					break;
-			//	}
-				// compute the epoch this contact belongs to
-				epoch = timePassed / CENTRALITY_TIME_WINDOW;
-				if(epoch>epochControl)
-					epochControl=epoch;
-//				System.out.println("epoch: "+epoch);
-				
-				// Only consider each node once per epoch
-				Set<DTNHost> nodesAlreadyCounted = nodesCountedInEpoch.get(epoch);
-//				System.out.println("nodesAlreadyCounted: "+nodesAlreadyCounted);
-//				System.out.println("h: "+h);
-//				if(nodesAlreadyCounted!=null)
-//					System.out.println("nodesAlreadyCounted.contains(h): "+nodesAlreadyCounted.contains(h));
-//				else
-//					System.out.println("nodesAlreadyCounted.contains(h): NULL");
-//				if(nodesAlreadyCounted!=null && nodesAlreadyCounted.contains(h)){ 
-				if(nodesAlreadyCounted.contains(h))
-//				{	
-//					System.out.println("continue\n");
-					continue;
-//				}
-				// increment the degree for the given epoch
-//				System.out.println("centralities["+epoch+"]: " + centralities[epoch] + ", size: " + centralities.length);
-//				System.out.println("epoch: "+epoch);
-				centralities[epoch]++;
-				nodesAlreadyCounted.add(h);
-//				System.out.println( "Add "+h+ " to nodesAlreadyCounted:"+nodesAlreadyCounted +"\n");
-			}
-		}
-//		System.out.println("SAINDO PRIMEIRO FOR");
-
-		// compute and return average node degree
-		int control = 0, sum = 0;
-		for(int i = 0; i < epochControl+1; i++){ // CHANGE FROM for(int i = 0; i < EPOCH_COUNT; i++){ 
-//			System.out.println("centralities["+i+"]: "+centralities[i]);
-			sum += centralities[i];
-			control++;
-		}
-//		System.out.println("epochControl: "+ epochControl);
-//		System.out.println("control: "+ control);
-		this.globalCentrality = ((double)sum) / control; // CHANGED FROM this.globalCentrality = ((double)sum) / EPOCH_COUNT;
-//		System.out.println(this+".globalCentrality: "+this.globalCentrality+"\n");
+		int current = epochs.getEpoch(SimClock.getIntTime());
+		int first = firstEpochToAvg(epochs.getFirstEpoch(), current);
 		
+		// average node degree since the oldest epoch with contacts
+		this.globalCentrality = average(epochs.getDegreeSum(first, current), 
+				first, current);
 		this.lastGlobalComputationTime = SimClock.getIntTime();
 		
 		return this.globalCentrality;
@@ -194,74 +138,45 @@ public class CWindowCentrality implements Centrality
 		if(SimClock.getIntTime() - this.lastLocalComputationTime < COMPUTE_INTERVAL)
 			return localCentrality;
 		
-		// centralities will hold the count of unique encounters in each epoch
-		int[] centralities = new int[EPOCH_COUNT];
-		int epoch, timeNow = SimClock.getIntTime();
-		Map<Integer, Set<DTNHost>> nodesCountedInEpoch = 
-			new HashMap<Integer, Set<DTNHost>>();
-		
-		int epochControl=0;
-		
-		for(int i = 0; i < EPOCH_COUNT; i++)
-			nodesCountedInEpoch.put(i, new HashSet<DTNHost>());
-		
 		// local centrality only considers nodes in the local community
 		Set<DTNHost> community = cd.getLocalCommunity();
+		int current = epochs.getEpoch(SimClock.getIntTime());
+		int first = firstEpochToAvg(epochs.getFirstEpoch(community), current);
 		
-		/*
-		 * For each node, loop through connection history until we crossed all
-		 * the epochs we need to cover
-		 */
-		for(Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet())
-		{
-			DTNHost h = entry.getKey();
-			
-			// if the host isn't in the local community, we don't consider it
-			if(!community.contains(h))
-				continue;
-			
-			for(Duration d : entry.getValue())
-			{
-				int timePassed = (int)(timeNow - d.end);
-				
-				// if we reached the end of the last epoch, we're done with this node
-				if(timePassed > CENTRALITY_TIME_WINDOW * EPOCH_COUNT)
-					break;
-				
-				// compute the epoch this contact belongs to
-				epoch = timePassed / CENTRALITY_TIME_WINDOW;
-				if(epoch>epochControl)
-					epochControl=epoch;
-				
-				// Only consider each node once per epoch
-				Set<DTNHost> nodesAlreadyCounted = nodesCountedInEpoch.get(epoch);
-				if(nodesAlreadyCounted.contains(h))
-					continue;
-				
-				// increment the degree for the given epoch
-//				System.out.println("epoch: "+epoch);
-				centralities[epoch]++;
-				nodesAlreadyCounted.add(h);
-			}
-		}
-//		System.out.println("SAINDO PRIMEIRO FOR");
-		// compute and return average node degree
-		int control = 0, sum = 0;
-		for(int i = 0; i < epochControl+1; i++){ 
-//			System.out.println("centralities["+i+"]: "+centralities[i]);
-			sum += centralities[i];
-			control++;
-		}
-//		System.out.println("epochControl: "+ epochControl);
-//		System.out.println("control: "+ control);
-		
-		this.localCentrality = ((double)sum) / control; 
-//		System.out.println(this+".localCentrality: "+this.localCentrality+"\n");
-		
+		this.localCentrality = average(
+				epochs.getDegreeSum(first, current, community), first, current);
 		this.lastLocalComputationTime = SimClock.getIntTime();
 		
 		return this.localCentrality;
 	}
+	
+	/**
+	 * Returns the first epoch to include in the average
+	 * @param oldest The oldest epoch with contacts (-1 if none)
+	 * @param current The current epoch
+	 * @return The first epoch or current+1 if there are no contacts
+	 */
+	private int firstEpochToAvg(int oldest, int current)
+	{
+		if(oldest < 0)
+			return current + 1;
+		return Math.max(oldest, current - EPOCH_COUNT + 1);
+	}
+	
+	/**
+	 * Returns the average degree of the epochs first...last
+	 */
+	private double average(int sum, int first, int last)
+	{
+		if(first > last)
+			return 0; // no contacts
+		return ((double)sum) / (last - first + 1);
+	}
+	
+	public void connectionLost(DTNHost peer, Duration d)
+	{
+		epochs.addContact(peer, d.end);
+	}
 
 	public Centrality replicate()
 	{
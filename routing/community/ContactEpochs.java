@@ -0,0 +1,371 @@
+/*
+ * @(#)ContactEpochs.java
+ *
+ * Copyright 2010 by University of Pittsburgh, released under GPLv3.
+ *
+ */
+package routing.community;
+
+import java.util.*;
+
+import core.*;
+
+/**
+ * <p>Incrementally maintained node degree per time window (epoch) for the
+ * window based centrality algorithms. Time is divided into epochs of equal
+ * length starting from time 0, and the degree of an epoch is the number of
+ * unique peers whose contact with the node ended during the epoch.</p>
+ *
+ * <p>Contacts are added with {@link #addContact(DTNHost, double)} in the
+ * order they end, which costs O(1). The degrees are kept as cumulative sums
+ * so the sum of the degrees of any range of epochs is read in O(1) without
+ * creating any objects. For local centralities, the epochs in which each
+ * peer was met are stored too so that a range can be summed over the peers
+ * of a community.</p>
+ *
+ * <p>Optionally, the object also tracks the number of peers met within a
+ * sliding time window that ends at the current time (see
+ * {@link #getNrofRecentPeers(double)}). Contacts are then kept in a queue
+ * until they slide out of the window.</p>
+ *
+ * @see IncrementalCentrality
+ */
+public class ContactEpochs
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Per peer contact information */
+	private static class Peer
+	{
+		/** epochs with contacts to the peer, in ascending order */
+		int[] epochs = new int[4];
+		/** number of valid values in epochs */
+		int nrofEpochs;
+		/** end time of the latest contact */
+		double lastEnd = -1;
+		/** is the peer counted as a recent peer */
+		boolean recent;
+	}
+
+	/** Length of an epoch */
+	private int epochLength;
+	private Map<DTNHost, Peer> peers;
+	/** cumulative[e] = sum of degrees of epochs 0...e */
+	private int[] cumulative;
+	/** largest epoch that has contacts (-1 if none) */
+	private int lastEpoch;
+	/** smallest epoch that has contacts (-1 if none) */
+	private int firstEpoch;
+
+	/* queue of contacts within the sliding window (null if not tracked) */
+	private Peer[] recentPeers;
+	private double[] recentEnds;
+	private int recentHead;
+	private int recentSize;
+	private int nrofRecentPeers;
+
+	/**
+	 * Creates a new object
+	 *
+	 * @param epochLength Length of an epoch (seconds)
+	 * @param trackRecent If true, the peers met within the sliding window
+	 * are tracked
+	 */
+	public ContactEpochs(int epochLength, boolean trackRecent)
+	{
+		if(epochLength <= 0)
+			throw new SimError("Invalid centrality time window " + epochLength);
+		this.epochLength = epochLength;
+		this.peers = new HashMap<DTNHost, Peer>();
+		this.cumulative = new int[INITIAL_CAPACITY];
+		this.lastEpoch = this.firstEpoch = -1;
+
+		if(trackRecent)
+		{
+			this.recentPeers = new Peer[INITIAL_CAPACITY];
+			this.recentEnds = new double[INITIAL_CAPACITY];
+		}
+	}
+
+	/**
+	 * Returns the epoch the time belongs to
+	 *
+	 * @param time The time
+	 * @return The epoch (first epoch is 0)
+	 */
+	public int getEpoch(double time)
+	{
+		return (int)(time / epochLength);
+	}
+
+	/**
+	 * Returns the length of an epoch
+	 *
+	 * @return The length of an epoch
+	 */
+	public int getEpochLength()
+	{
+		return this.epochLength;
+	}
+
+	/**
+	 * Returns the first epoch that has contacts
+	 *
+	 * @return The first epoch that has contacts or -1 if there are none
+	 */
+	public int getFirstEpoch()
+	{
+		return this.firstEpoch;
+	}
+
+	/**
+	 * Adds a contact that ended at the given time. Contacts should be
+	 * added in the order they end.
+	 *
+	 * @param peer The peer of the contact
+	 * @param end End time of the contact
+	 */
+	public void addContact(DTNHost peer, double end)
+	{
+		Peer p = peers.get(peer);
+		if(p == null)
+		{
+			p = new Peer();
+			peers.put(peer, p);
+		}
+
+		if(recentPeers != null)
+			addRecent(p, end);
+		p.lastEnd = Math.max(p.lastEnd, end);
+
+		int epoch = getEpoch(end);
+		int n = p.nrofEpochs;
+		if(n > 0 && p.epochs[n - 1] == epoch)
+			return; // peer already counted for this epoch
+
+		if(n > 0 && p.epochs[n - 1] > epoch)
+		{ // contact out of order, insert in the middle
+			int pos = Arrays.binarySearch(p.epochs, 0, n, epoch);
+			if(pos >= 0)
+				return;
+			pos = -pos - 1;
+			ensureEpochCapacity(p);
+			System.arraycopy(p.epochs, pos, p.epochs, pos + 1, n - pos);
+			p.epochs[pos] = epoch;
+		}
+		else
+		{
+			ensureEpochCapacity(p);
+			p.epochs[n] = epoch;
+		}
+		p.nrofEpochs++;
+
+		incrementDegree(epoch);
+	}
+
+	/**
+	 * Returns the sum of the degrees of the epochs in the range
+	 *
+	 * @param first The first epoch of the range
+	 * @param last The last epoch of the range
+	 * @return The sum of the degrees (number of unique peers per epoch)
+	 */
+	public int getDegreeSum(int first, int last)
+	{
+		return cumulativeDegree(last) - cumulativeDegree(first - 1);
+	}
+
+	/**
+	 * Returns the sum of the degrees of the epochs in the range when only
+	 * the peers in the community are counted
+	 *
+	 * @param first The first epoch of the range
+	 * @param last The last epoch of the range
+	 * @param community The hosts of the community
+	 * @return The sum of the degrees
+	 */
+	public int getDegreeSum(int first, int last, Set<DTNHost> community)
+	{
+		if(first > last)
+			return 0;
+
+		int sum = 0;
+		for(DTNHost h : community)
+		{
+			Peer p = peers.get(h);
+			if(p != null)
+				sum += countEpochs(p, first, last);
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the first epoch that has contacts to any of the community's
+	 * hosts
+	 *
+	 * @param community The hosts of the community
+	 * @return The first epoch or -1 if there are no contacts
+	 */
+	public int getFirstEpoch(Set<DTNHost> community)
+	{
+		int first = -1;
+		for(DTNHost h : community)
+		{
+			Peer p = peers.get(h);
+			if(p != null && p.nrofEpochs > 0 &&
+					(first == -1 || p.epochs[0] < first))
+				first = p.epochs[0];
+		}
+		return first;
+	}
+
+	/**
+	 * Returns the number of peers whose latest contact ended after the
+	 * given time. The time must not decrease between the calls. Contacts
+	 * that ended before the time are dropped from the sliding window.
+	 *
+	 * @param since Start of the sliding window
+	 * @return The number of peers met after the time
+	 * @throws SimError if the object doesn't track recent peers
+	 */
+	public int getNrofRecentPeers(double since)
+	{
+		if(recentPeers == null)
+			throw new SimError("Recent peers are not tracked");
+
+		expireRecent(since);
+		return nrofRecentPeers;
+	}
+
+	/**
+	 * Returns the number of peers in the community whose latest contact
+	 * ended after the given time
+	 *
+	 * @param since Start of the window
+	 * @param community The hosts of the community
+	 * @return The number of community's hosts met after the time
+	 */
+	public int getNrofRecentPeers(double since, Set<DTNHost> community)
+	{
+		int count = 0;
+		for(DTNHost h : community)
+		{
+			Peer p = peers.get(h);
+			if(p != null && p.lastEnd > since)
+				count++;
+		}
+		return count;
+	}
+
+	private void ensureEpochCapacity(Peer p)
+	{
+		if(p.nrofEpochs == p.epochs.length)
+			p.epochs = Arrays.copyOf(p.epochs, p.epochs.length * 2);
+	}
+
+	/**
+	 * Returns the number of the peer's epochs within the range
+	 */
+	private int countEpochs(Peer p, int first, int last)
+	{
+		int n = p.nrofEpochs;
+		if(n == 0 || p.epochs[n - 1] < first || p.epochs[0] > last)
+			return 0;
+		return lowerBound(p, last + 1) - lowerBound(p, first);
+	}
+
+	/**
+	 * Returns the index of the first of the peer's epochs that is equal to
+	 * or larger than the epoch
+	 */
+	private int lowerBound(Peer p, int epoch)
+	{
+		int lo = 0;
+		int hi = p.nrofEpochs;
+		while(lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if(p.epochs[mid] < epoch)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the sum of the degrees of epochs 0...epoch
+	 */
+	private int cumulativeDegree(int epoch)
+	{
+		if(epoch < 0 || lastEpoch < 0)
+			return 0;
+		return cumulative[Math.min(epoch, lastEpoch)];
+	}
+
+	private void incrementDegree(int epoch)
+	{
+		if(epoch >= cumulative.length)
+			cumulative = Arrays.copyOf(cumulative,
+					Math.max(cumulative.length * 2, epoch + 1));
+
+		/* epochs between the previous last epoch and this one have no
+		 * contacts, i.e., they have the same cumulative sum */
+		for(int e = lastEpoch + 1; e <= epoch; e++)
+			cumulative[e] = e > 0 ? cumulative[e - 1] : 0;
+
+		if(epoch > lastEpoch)
+			lastEpoch = epoch;
+		if(firstEpoch == -1 || epoch < firstEpoch)
+			firstEpoch = epoch;
+
+		for(int e = epoch; e <= lastEpoch; e++)
+			cumulative[e]++; // only one value unless contacts are out of order
+	}
+
+	private void addRecent(Peer p, double end)
+	{
+		if(recentSize == recentPeers.length)
+		{
+			int size = recentPeers.length;
+			Peer[] newPeers = new Peer[size * 2];
+			double[] newEnds = new double[size * 2];
+			for(int i = 0; i < recentSize; i++)
+			{
+				newPeers[i] = recentPeers[(recentHead + i) % size];
+				newEnds[i] = recentEnds[(recentHead + i) % size];
+			}
+			recentPeers = newPeers;
+			recentEnds = newEnds;
+			recentHead = 0;
+		}
+
+		int tail = (recentHead + recentSize) % recentPeers.length;
+		recentPeers[tail] = p;
+		recentEnds[tail] = end;
+		recentSize++;
+
+		if(!p.recent)
+		{
+			p.recent = true;
+			nrofRecentPeers++;
+		}
+	}
+
+	private void expireRecent(double since)
+	{
+		while(recentSize > 0 && recentEnds[recentHead] <= since)
+		{
+			Peer p = recentPeers[recentHead];
+			/* the peer leaves the window with its latest contact */
+			if(p.recent && p.lastEnd <= since)
+			{
+				p.recent = false;
+				nrofRecentPeers--;
+			}
+			recentPeers[recentHead] = null;
+			recentHead = (recentHead + 1) % recentPeers.length;
+			recentSize--;
+		}
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * @(#)ContactHistory.java
+ *
+ * Copyright 2010 by University of Pittsburgh, released under GPLv3.
+ *
+ */
+package routing.community;
+
+import java.util.*;
+
+import core.*;
+
+/**
+ * <p>Contact history of a node, i.e., the start and end times of the
+ * contacts (or any other durations) with each peer. The times are stored
+ * per peer in primitive ring buffers instead of lists of {@link Duration}
+ * objects, and the number of durations kept per peer can be limited with
+ * settings. Statistics of the kept durations (count, sum, sum of squares and
+ * the latest end) are updated as durations are added and removed, so the
+ * mean and variance of the durations are computed in constant time.</p>
+ *
+ * <p>The history can also be viewed as a map from peers to lists of
+ * durations (see {@link #asMap()}) for the code that expects the
+ * <code>Map&lt;DTNHost, List&lt;Duration&gt;&gt;</code> form. The view is
+ * read-only and its Duration objects are created when accessed.</p>
+ *
+ * <p>This class looks for two settings (in the namespace of the object that
+ * uses the history):
+ * <ul>
+ * <li><strong>historySize</strong> &ndash; the maximum number of durations
+ * kept per peer; older ones are removed. Default: no limit</li>
+ * <li><strong>historyAge</strong> &ndash; durations that ended more than this
+ * many seconds before the end of the latest added duration of the peer are
+ * removed. Default: no limit</li>
+ * </ul>
+ * </p>
+ */
+public class ContactHistory
+{
+	/** Maximum number of durations per peer -setting id {@value} */
+	public static final String HISTORY_SIZE_SETTING = "historySize";
+	/** Maximum age of the durations (seconds) -setting id {@value} */
+	public static final String HISTORY_AGE_SETTING = "historyAge";
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private int maxSize;
+	private double maxAge;
+	private Map<DTNHost, PeerHistory> peers;
+	/** read-only view of peers */
+	private Map<DTNHost, List<Duration>> mapView;
+
+	/**
+	 * Creates a new contact history using the retention settings
+	 *
+	 * @param s Settings to read the retention settings from
+	 */
+	public ContactHistory(Settings s)
+	{
+		this.maxSize = Integer.MAX_VALUE;
+		this.maxAge = Double.MAX_VALUE;
+		if(s.contains(HISTORY_SIZE_SETTING))
+		{
+			this.maxSize = s.getInt(HISTORY_SIZE_SETTING);
+			if(maxSize < 1)
+				throw new SettingsError("Invalid " + HISTORY_SIZE_SETTING +
+						" " + maxSize);
+		}
+		if(s.contains(HISTORY_AGE_SETTING))
+			this.maxAge = s.getDouble(HISTORY_AGE_SETTING);
+		init();
+	}
+
+	/**
+	 * Creates a new, empty contact history with the same retention settings
+	 * as the prototype
+	 *
+	 * @param proto The prototype
+	 */
+	public ContactHistory(ContactHistory proto)
+	{
+		this.maxSize = proto.maxSize;
+		this.maxAge = proto.maxAge;
+		init();
+	}
+	
+	private void init()
+	{
+		this.peers = new HashMap<DTNHost, PeerHistory>();
+		this.mapView = 
+			Collections.<DTNHost, List<Duration>>unmodifiableMap(peers);
+	}
+
+	/**
+	 * Returns the history of a peer
+	 *
+	 * @param peer The peer
+	 * @param create If true, an empty history is created for the peer if it
+	 * doesn't have one yet
+	 * @return The history or null if the peer has no history and create was
+	 * false
+	 */
+	public PeerHistory getHistory(DTNHost peer, boolean create)
+	{
+		PeerHistory h = peers.get(peer);
+		if(h == null && create)
+		{
+			h = new PeerHistory();
+			peers.put(peer, h);
+		}
+		return h;
+	}
+
+	/**
+	 * Adds a duration to the peer's history
+	 *
+	 * @param peer The peer
+	 * @param start Start of the duration
+	 * @param end End of the duration
+	 * @return The history of the peer
+	 */
+	public PeerHistory add(DTNHost peer, double start, double end)
+	{
+		PeerHistory h = getHistory(peer, true);
+		h.add(start, end);
+		return h;
+	}
+
+	/**
+	 * Returns true if the peer has a history (possibly empty)
+	 *
+	 * @param peer The peer
+	 * @return True if the peer has a history
+	 */
+	public boolean contains(DTNHost peer)
+	{
+		return peers.containsKey(peer);
+	}
+
+	/**
+	 * Returns the peers that have a history
+	 *
+	 * @return The peers
+	 */
+	public Set<DTNHost> getPeers()
+	{
+		return Collections.unmodifiableSet(peers.keySet());
+	}
+
+	/**
+	 * Returns a read-only map view of the history
+	 *
+	 * @return The history as a map from peers to duration lists
+	 */
+	public Map<DTNHost, List<Duration>> asMap()
+	{
+		return this.mapView;
+	}
+
+	/**
+	 * Durations of one peer. As a List, the durations are in the order they
+	 * were added and the Duration objects are created when accessed.
+	 */
+	public class PeerHistory extends AbstractList<Duration>
+	{
+		private double[] starts;
+		private double[] ends;
+		private int head;
+		private int size;
+
+		private double sum;
+		private double sumOfSquares;
+		private double lastEnd;
+
+		private PeerHistory()
+		{
+			this.starts = new double[INITIAL_CAPACITY];
+			this.ends = new double[INITIAL_CAPACITY];
+			this.lastEnd = -1;
+		}
+
+		private void add(double start, double end)
+		{
+			while(size > 0 && end - ends[head] > maxAge)
+				removeOldest();
+
+			if(size == maxSize)
+				removeOldest();
+			else if(size == starts.length)
+				grow();
+
+			int tail = (head + size) % starts.length;
+			starts[tail] = start;
+			ends[tail] = end;
+			size++;
+
+			double d = end - start;
+			sum += d;
+			sumOfSquares += d * d;
+			lastEnd = Math.max(lastEnd, end);
+		}
+
+		private void removeOldest()
+		{
+			double d = ends[head] - starts[head];
+			sum -= d;
+			sumOfSquares -= d * d;
+			head = (head + 1) % starts.length;
+			size--;
+			if(size == 0)
+				sum = sumOfSquares = 0; // remove rounding errors
+		}
+
+		private void grow()
+		{
+			int capacity = (int)Math.min((long)starts.length * 2, maxSize);
+			double[] newStarts = new double[capacity];
+			double[] newEnds = new double[capacity];
+			for(int i = 0; i < size; i++)
+			{
+				newStarts[i] = getStart(i);
+				newEnds[i] = getEnd(i);
+			}
+			starts = newStarts;
+			ends = newEnds;
+			head = 0;
+		}
+
+		/**
+		 * Returns the start of the i<sup>th</sup> kept duration (0 is the
+		 * oldest)
+		 *
+		 * @param i Index of the duration
+		 * @return The start
+		 */
+		public double getStart(int i)
+		{
+			return starts[(head + i) % starts.length];
+		}
+
+		/**
+		 * Returns the end of the i<sup>th</sup> kept duration (0 is the
+		 * oldest)
+		 *
+		 * @param i Index of the duration
+		 * @return The end
+		 */
+		public double getEnd(int i)
+		{
+			return ends[(head + i) % ends.length];
+		}
+
+		public Duration get(int i)
+		{
+			if(i < 0 || i >= size)
+				throw new IndexOutOfBoundsException("Index: " + i +
+						", Size: " + size);
+			return new Duration(getStart(i), getEnd(i));
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		/**
+		 * Returns the sum of the lengths of the kept durations
+		 *
+		 * @return The total duration
+		 */
+		public double getTotalDuration()
+		{
+			return sum;
+		}
+
+		/**
+		 * Returns the sum of the squared lengths of the kept durations
+		 *
+		 * @return The sum of squares
+		 */
+		public double getSumOfSquares()
+		{
+			return sumOfSquares;
+		}
+
+		/**
+		 * Returns the mean length of the kept durations
+		 *
+		 * @return The mean or NaN if there are no durations
+		 */
+		public double getMean()
+		{
+			return sum / size;
+		}
+
+		/**
+		 * Returns the (population) variance of the lengths of the kept
+		 * durations
+		 *
+		 * @return The variance or NaN if there are no durations
+		 */
+		public double getVariance()
+		{
+			double mean = getMean();
+			return Math.max(0, sumOfSquares / size - mean * mean);
+		}
+
+		/**
+		 * Returns the end of the latest duration that was added
+		 *
+		 * @return The latest end or -1 if no durations have been added
+		 */
+		public double getLastEnd()
+		{
+			return lastEnd;
+		}
+	}
+}
@@ -12,6 +12,7 @@ import core.*;
 import routing.DecisionEngineRouter;
 import routing.MessageRouter;
 import routing.RoutingDecisionEngine;
+import routing.UtilityDecisionEngine;
 
 /**
  * <p>Implements the Distributed BubbleRap Routing Algorithm from Hui et al. 
@@ -55,7 +56,8 @@ import routing.RoutingDecisionEngine;
  * @author PJ Dillon, University of Pittsburgh
  *
  */
-public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDetectionEngine
+public class DistributedBubbleRap implements UtilityDecisionEngine, CommunityDetectionEngine,
+	FrequencyDecisionEngine
 {
 	/** Community Detection Algorithm to employ -setting id {@value} */
 	public static final String COMMUNITY_ALG_SETTING = "communityDetectAlg";
@@ -63,7 +65,7 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 	public static final String CENTRALITY_ALG_SETTING = "centralityAlg";
 	
 	protected Map<DTNHost, Double> startTimestamps;
-	protected Map<DTNHost, List<Duration>> connHistory;
+	protected ContactHistory connHistory;
 	
 	protected CommunityDetection community;
 	protected Centrality centrality;
@@ -88,7 +90,8 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 			this.centrality = (Centrality) 
 				s.createIntializedObject(s.getSetting(CENTRALITY_ALG_SETTING));
 		else
-			this.centrality = new SWindowCentrality(s);
+			this.centrality = new SWindowCentrality(s);		
+		this.connHistory = new ContactHistory(s);
 	}
 	
 	/**
@@ -102,7 +105,7 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 		this.community = proto.community.replicate();
 		this.centrality = proto.centrality.replicate();
 		startTimestamps = new HashMap<DTNHost, Double>();
-		connHistory = new HashMap<DTNHost, List<Duration>>();
+		connHistory = new ContactHistory(proto.connHistory);
 	}
 
 	public void connectionUp(DTNHost thisHost, DTNHost peer){}
@@ -131,18 +134,16 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 		double etime = SimClock.getTime();
 		
 		// Find or create the connection history list
-		List<Duration> history;
-		if(!connHistory.containsKey(peer))
-		{
-			history = new LinkedList<Duration>();
-			connHistory.put(peer, history);
-		}
-		else
-			history = connHistory.get(peer);
+		List<Duration> history = connHistory.getHistory(peer, true);
 		
 		// add this connection to the list
 		if(etime - time > 0)
-			history.add(new Duration(time, etime));
+		{
+			connHistory.add(peer, time, etime);
+			if(centrality instanceof IncrementalCentrality)
+				((IncrementalCentrality)centrality).connectionLost(peer, 
+						new Duration(time, etime));
+		}
 		
 		CommunityDetection peerCD = this.getOtherDecisionEngine(peer).community;
 		
@@ -197,19 +198,26 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 			return true;
 		else if(!peerInCommunity && meInCommunity) // I'm in local commun. of dest
 			return false;
-		else if(peerInCommunity) // we're both in the local community of destination
-		{
-			// Forward to the one with the higher local centrality (in our community)
-			if(de.getLocalCentrality() > this.getLocalCentrality())
-				return true;
-			else
-				return false;
-		}
-		// Neither in local community, forward to more globally central node
-		else if(de.getGlobalCentrality() > this.getGlobalCentrality())
-			return true;
-		
-		return false;
+		/*
+		 * Either we're both in the local community of destination and forward
+		 * to the one with the higher local centrality (in our community), or
+		 * neither is and we forward to the more globally central node. The 
+		 * utility (see getUtility()) is the right centrality in both cases.
+		 */
+		return getRouter(otherHost).getUtility(dest) > 
+			getRouter(thisHost).getUtility(dest);
+	}
+
+	/**
+	 * Returns the local centrality of this host if the destination is in its
+	 * local community and the global centrality otherwise. 
+	 */
+	public double getUtility(DTNHost dest, DTNHost thisHost)
+	{
+		if(this.commumesWithHost(dest))
+			return this.getLocalCentrality();
+		else
+			return this.getGlobalCentrality();
 	}
 
 	public boolean shouldDeleteSentMessage(Message m, DTNHost otherHost)
@@ -240,21 +248,31 @@ public class DistributedBubbleRap implements RoutingDecisionEngine, CommunityDet
 	
 	protected double getLocalCentrality()
 	{
-		return this.centrality.getLocalCentrality(connHistory, community);
+		return this.centrality.getLocalCentrality(connHistory.asMap(), community);
 	}
 	
 	protected double getGlobalCentrality()
 	{
-		return this.centrality.getGlobalCentrality(connHistory);
+		return this.centrality.getGlobalCentrality(connHistory.asMap());
+	}
+
+	public Map<DTNHost, List<Duration>> getFrequency()
+	{
+		return connHistory.asMap();
 	}
 
 	private DistributedBubbleRap getOtherDecisionEngine(DTNHost h)
+	{
+		return (DistributedBubbleRap) getRouter(h).getDecisionEngine();
+	}
+
+	private DecisionEngineRouter getRouter(DTNHost h)
 	{
 		MessageRouter otherRouter = h.getRouter();
 		assert otherRouter instanceof DecisionEngineRouter : "This router only works " + 
 		" with other routers of same type";
 		
-		return (DistributedBubbleRap) ((DecisionEngineRouter)otherRouter).getDecisionEngine();
+		return (DecisionEngineRouter)otherRouter;
 	}
 
 	public Set<DTNHost> getLocalCommunity() {return this.community.getLocalCommunity();}
@@ -63,7 +63,7 @@ public class DistributedBubbleRapCentrality implements RoutingDecisionEngine, Co
 	public static final String CENTRALITY_ALG_SETTING = "centralityAlg";
 	
 	protected Map<DTNHost, Double> startTimestamps;
-	protected Map<DTNHost, List<Duration>> connHistory;
+	protected ContactHistory connHistory;
 	
 	protected CommunityDetection community;
 	protected Centrality centrality;
@@ -88,7 +88,8 @@ public class DistributedBubbleRapCentrality implements RoutingDecisionEngine, Co
 			this.centrality = (Centrality) 
 				s.createIntializedObject(s.getSetting(CENTRALITY_ALG_SETTING));
 		else
-			this.centrality = new SWindowCentrality(s);
+			this.centrality = new SWindowCentrality(s);		
+		this.connHistory = new ContactHistory(s);
 	}
 	
 	/**
@@ -102,7 +103,7 @@ public class DistributedBubbleRapCentrality implements RoutingDecisionEngine, Co
 		this.community = proto.community.replicate();
 		this.centrality = proto.centrality.replicate();
 		startTimestamps = new HashMap<DTNHost, Double>();
-		connHistory = new HashMap<DTNHost, List<Duration>>();
+		connHistory = new ContactHistory(proto.connHistory);
 	}
 
 	public void connectionUp(DTNHost thisHost, DTNHost peer){}
@@ -131,18 +132,16 @@ public class DistributedBubbleRapCentrality implements RoutingDecisionEngine, Co
 		double etime = SimClock.getTime();
 		
 		// Find or create the connection history list
-		List<Duration> history;
-		if(!connHistory.containsKey(peer))
-		{
-			history = new LinkedList<Duration>();
-			connHistory.put(peer, history);
-		}
-		else
-			history = connHistory.get(peer);
+		List<Duration> history = connHistory.getHistory(peer, true);
 		
 		// add this connection to the list
 		if(etime - time > 0)
-			history.add(new Duration(time, etime));
+		{
+			connHistory.add(peer, time, etime);
+			if(centrality instanceof IncrementalCentrality)
+				((IncrementalCentrality)centrality).connectionLost(peer, 
+						new Duration(time, etime));
+		}
 		
 		CommunityDetection peerCD = this.getOtherDecisionEngine(peer).community;
 		
@@ -240,12 +239,12 @@ public class DistributedBubbleRapCentrality implements RoutingDecisionEngine, Co
 	
 	protected double getLocalCentrality()
 	{
-		return this.centrality.getLocalCentrality(connHistory, community);
+		return this.centrality.getLocalCentrality(connHistory.asMap(), community);
 	}
 	
 	protected double getGlobalCentrality()
 	{
-		return this.centrality.getGlobalCentrality(connHistory);
+		return this.centrality.getGlobalCentrality(connHistory.asMap());
 	}
 
 	private DistributedBubbleRapCentrality getOtherDecisionEngine(DTNHost h)
@@ -261,12 +260,12 @@ public class DistributedBubbleRapCentrality implements RoutingDecisionEngine, Co
 
     @Override
     public double getGlobalDegreeCentrality() {
-        return this.centrality.getGlobalCentrality(connHistory); //To change body of generated methods, choose Tools | Templates.
+        return this.centrality.getGlobalCentrality(connHistory.asMap()); //To change body of generated methods, choose Tools | Templates.
     }
 
     @Override
     public double getLocalDegreeCentrality() {
-        return this.centrality.getLocalCentrality(connHistory, community); //To change body of generated methods, choose Tools | Templates.
+        return this.centrality.getLocalCentrality(connHistory.asMap(), community); //To change body of generated methods, choose Tools | Templates.
     }
 
     @Override
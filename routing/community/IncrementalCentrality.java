@@ -0,0 +1,34 @@
+/*
+ * @(#)IncrementalCentrality.java
+ *
+ * Copyright 2010 by University of Pittsburgh, released under GPLv3.
+ *
+ */
+package routing.community;
+
+import core.*;
+
+/**
+ * <p>A {@link Centrality} that keeps its own summary of the contact history
+ * and updates it as contacts end, instead of computing the centrality from
+ * the whole connection history when the centrality is asked. The
+ * connection history arguments of the {@link Centrality} methods are
+ * ignored by implementations of this interface.</p>
+ *
+ * <p>Decision engines that use a Centrality object must call
+ * {@link #connectionLost(DTNHost, Duration)} for each connection they add to
+ * their connection history.</p>
+ *
+ * @see ContactEpochs
+ */
+public interface IncrementalCentrality extends Centrality
+{
+	/**
+	 * Informs the centrality object that a connection to the peer ended and
+	 * was added to the connection history.
+	 *
+	 * @param peer The host the connection was with
+	 * @param d Start and end time of the connection
+	 */
+	public void connectionLost(DTNHost peer, Duration d);
+}
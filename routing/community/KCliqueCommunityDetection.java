@@ -185,12 +185,17 @@ public class KCliqueCommunityDetection implements CommunityDetection
 		if(this.familiarSet.contains(peer)) return;
 		
 		// Compute cummulative contact duration with this peer
-		Iterator<Duration> i = history.iterator();
 		double time = 0;
-		while(i.hasNext())
+		if(history instanceof ContactHistory.PeerHistory)
+			time = ((ContactHistory.PeerHistory)history).getTotalDuration();
+		else
 		{
-			Duration d = i.next();
-			time += d.end - d.start;
+			Iterator<Duration> i = history.iterator();
+			while(i.hasNext())
+			{
+				Duration d = i.next();
+				time += d.end - d.start;
+			}
 		}
 		
 		// If cummulative duration is greater than threshold, add
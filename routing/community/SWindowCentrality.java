@@ -24,6 +24,8 @@ import core.*;
  * few hours. The authors found that a six hour time window correlated well with
  * a node's actual centrality value (for the datasets they examined), which is
  * set to be the default interal but can be configured in the settings file.
+ * The peers met within the window are tracked as contacts end (see
+ * {@link ContactEpochs}) so the connection history isn't needed.
  * </p>
  *
  * <p>
@@ -56,7 +58,7 @@ import core.*;
  *
  * @author PJ Dillon, University of Pittsburgh
  */
-public class SWindowCentrality implements Centrality {
+public class SWindowCentrality implements IncrementalCentrality {
 
     /**
      * length of time into the past to consider -setting id {@value}
@@ -95,6 +97,11 @@ public class SWindowCentrality implements Centrality {
      */
     protected int lastLocalComputationTime;
 
+    /**
+     * Peers met within the time window
+     */
+    protected ContactEpochs epochs;
+
     public SWindowCentrality(Settings s) {
         if (s.contains(CENTRALITY_WINDOW_SETTING)) {
             CENTRALITY_TIME_WINDOW = s.getInt(CENTRALITY_WINDOW_SETTING);
@@ -106,6 +113,7 @@ public class SWindowCentrality implements Centrality {
         // start of the sim
         this.lastGlobalComputationTime = this.lastLocalComputationTime
                 = -COMPUTE_INTERVAL;
+        this.epochs = new ContactEpochs(CENTRALITY_TIME_WINDOW, true);
     }
 
     public double getGlobalCentrality(Map<DTNHost, List<Duration>> connHistory) {
@@ -113,17 +121,8 @@ public class SWindowCentrality implements Centrality {
             return globalCentrality;
         }
 
-        int centrality = 0;
         int timeNow = SimClock.getIntTime();
-
-        // For each host, check whether its last contact time was within window
-        // no need to loop through the entire contact history
-        for (Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet()) {
-            List<Duration> l = entry.getValue();
-            if (timeNow - l.get(l.size() - 1).end < CENTRALITY_TIME_WINDOW) {
-                centrality++;
-            }
-        }
+        int centrality = epochs.getNrofRecentPeers(timeNow - CENTRALITY_TIME_WINDOW);
 
         this.lastGlobalComputationTime = SimClock.getIntTime();
         return this.globalCentrality = centrality;
@@ -135,25 +134,18 @@ public class SWindowCentrality implements Centrality {
             return localCentrality;
         }
 
-        int centrality = 0;
         int timeNow = SimClock.getIntTime();
-
-        // same check as for global centrality, but must ensure host is in local
-        // community too
-        for (Map.Entry<DTNHost, List<Duration>> entry : connHistory.entrySet()) {
-            List<Duration> l = entry.getValue();
-            if (timeNow - l.get(l.size() - 1).end > CENTRALITY_TIME_WINDOW) {
-                break;
-            }
-            if (cd.isHostInCommunity(entry.getKey())) {
-                centrality++;
-            }
-        }
+        int centrality = epochs.getNrofRecentPeers(
+                timeNow - CENTRALITY_TIME_WINDOW, cd.getLocalCommunity());
 
         this.lastLocalComputationTime = SimClock.getIntTime();
         return this.localCentrality = centrality;
     }
 
+    public void connectionLost(DTNHost peer, Duration d) {
+        epochs.addContact(peer, d.end);
+    }
+
     public Centrality replicate() {
         return new SWindowCentrality(this);
     }
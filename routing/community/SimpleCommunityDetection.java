@@ -179,11 +179,15 @@ public class SimpleCommunityDetection implements CommunityDetection {
 		 * contact duration exceeds the familiarThreshold
          */
         // Compute total contact duration
-        Iterator<Duration> i = history.iterator();
         double time = 0;
-        while (i.hasNext()) {
-            Duration d = i.next();
-            time += d.end - d.start;
+        if (history instanceof ContactHistory.PeerHistory) {
+            time = ((ContactHistory.PeerHistory) history).getTotalDuration();
+        } else {
+            Iterator<Duration> i = history.iterator();
+            while (i.hasNext()) {
+                Duration d = i.next();
+                time += d.end - d.start;
+            }
         }
 
         // Add peer to familiar set if needed (and by extension to the local comm.)
@@ -0,0 +1,45 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.drop;
+
+import core.Message;
+
+/**
+ * Interface for buffer drop policies. A drop policy keeps track of the
+ * messages in a router's buffer and tells in which order they should be
+ * dropped when room is needed for new messages. Implementations should keep
+ * the messages indexed so that finding the next message to drop doesn't
+ * require going through the whole buffer.
+ */
+public interface DropPolicy {
+
+	/**
+	 * Called when a message is added to the buffer
+	 * @param m The message that was added
+	 */
+	public void messageAdded(Message m);
+
+	/**
+	 * Called when a message is removed from the buffer
+	 * @param m The message that was removed
+	 */
+	public void messageRemoved(Message m);
+
+	/**
+	 * Returns the buffered messages in the order they should be dropped
+	 * (first message should be dropped first). The returned object is a view
+	 * to the policy's index and must not be used after the buffer has been
+	 * modified.
+	 * @return The messages in drop order
+	 */
+	public Iterable<Message> getDropOrder();
+
+	/**
+	 * Creates a replicate of this policy. The replicate has the same settings
+	 * but no messages.
+	 * @return The replicate
+	 */
+	public DropPolicy replicate();
+}
@@ -0,0 +1,219 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.drop;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import routing.fuzzy.FuzzyEngine;
+import core.Message;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Drop policy that drops the message with the lowest fuzzy priority first.
+ * The priority is computed the same way as in the fuzzy epidemic routers:
+ * the FCL file's "priority" output (center of area) is evaluated for the
+ * message's forward transmission count ("ftc") and, if the function block
+ * defines them, the remaining TTL ("ttl") and message size ("ms") and the
+ * priority is 1 - output.
+ * <P>
+ * Priorities are cached and a message is re-evaluated only when its
+ * (minute resolution) TTL has changed since the previous evaluation, so
+ * finding the next message to drop only re-evaluates the messages whose
+ * inputs have actually changed. </P>
+ */
+public class FuzzyPriorityDropPolicy implements DropPolicy {
+	/** FCL file -setting id ({@value}). Path to the fuzzy control language
+	 * file that defines the "priority" function block. */
+	public static final String FCL_S = "fcl";
+
+	/** name of the forward transmission count input variable */
+	public static final String FTC_VAR = "ftc";
+	/** name of the time to live input variable */
+	public static final String TTL_VAR = "ttl";
+	/** name of the message size input variable */
+	public static final String SIZE_VAR = "ms";
+	/** name of the output variable */
+	public static final String PRIORITY_VAR = "priority";
+
+	private FuzzyEngine fis;
+	private int ftcInput;
+	private int ttlInput;
+	private int sizeInput;
+	private int priorityOutput;
+
+	/** entries ordered by drop order (lowest priority first) */
+	private TreeSet<Entry> byPriority;
+	/** entries ordered by the time their priority must be re-evaluated */
+	private TreeSet<Entry> byRekeyTime;
+	private Map<Message, Entry> entries;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public FuzzyPriorityDropPolicy(Settings s) {
+		this.fis = FuzzyEngine.load(s, FCL_S);
+		this.priorityOutput = this.fis.requireOutput(PRIORITY_VAR);
+		this.ftcInput = this.fis.requireInput(FTC_VAR);
+		this.ttlInput = this.fis.getInputIndex(TTL_VAR);
+		this.sizeInput = this.fis.getInputIndex(SIZE_VAR);
+		init();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected FuzzyPriorityDropPolicy(FuzzyPriorityDropPolicy p) {
+		this.fis = p.fis;
+		this.ftcInput = p.ftcInput;
+		this.ttlInput = p.ttlInput;
+		this.sizeInput = p.sizeInput;
+		this.priorityOutput = p.priorityOutput;
+		init();
+	}
+
+	private void init() {
+		this.byPriority = new TreeSet<Entry>(new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				int c = Double.compare(e1.priority, e2.priority);
+				if (c != 0) {
+					return c;
+				}
+				return Integer.compare(e1.msg.getUniqueId(),
+						e2.msg.getUniqueId());
+			}
+		});
+		this.byRekeyTime = new TreeSet<Entry>(new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				int c = Double.compare(e1.rekeyTime, e2.rekeyTime);
+				if (c != 0) {
+					return c;
+				}
+				return Integer.compare(e1.msg.getUniqueId(),
+						e2.msg.getUniqueId());
+			}
+		});
+		this.entries = new IdentityHashMap<Message, Entry>();
+	}
+
+	public void messageAdded(Message m) {
+		Entry e = new Entry(m);
+		evaluate(e);
+		this.entries.put(m, e);
+		this.byPriority.add(e);
+		this.byRekeyTime.add(e);
+	}
+
+	public void messageRemoved(Message m) {
+		Entry e = this.entries.remove(m);
+		if (e != null) {
+			this.byPriority.remove(e);
+			this.byRekeyTime.remove(e);
+		}
+	}
+
+	public Iterable<Message> getDropOrder() {
+		updatePriorities();
+		return new AbstractCollection<Message>() {
+			public Iterator<Message> iterator() {
+				final Iterator<Entry> i = byPriority.iterator();
+				return new Iterator<Message>() {
+					public boolean hasNext() {
+						return i.hasNext();
+					}
+					public Message next() {
+						return i.next().msg;
+					}
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			public int size() {
+				return byPriority.size();
+			}
+		};
+	}
+
+	/**
+	 * Re-evaluates the priorities of the messages whose TTL has changed
+	 * since they were last evaluated
+	 */
+	private void updatePriorities() {
+		double now = SimClock.getTime();
+		List<Entry> due = new ArrayList<Entry>();
+		for (Entry e : this.byRekeyTime) {
+			if (e.rekeyTime > now) {
+				break;
+			}
+			due.add(e);
+		}
+
+		for (Entry e : due) {
+			this.byPriority.remove(e);
+			this.byRekeyTime.remove(e);
+			evaluate(e);
+			this.byPriority.add(e);
+			this.byRekeyTime.add(e);
+		}
+	}
+
+	/**
+	 * Evaluates the priority of the entry's message and the time when the
+	 * priority has to be evaluated again
+	 * @param e The entry
+	 */
+	private void evaluate(Entry e) {
+		Message m = e.msg;
+		double[] inputs = this.fis.getInputBuffer();
+		inputs[this.ftcInput] = m.getFtc();
+		if (this.sizeInput >= 0) {
+			inputs[this.sizeInput] = m.getSize();
+		}
+		if (this.ttlInput >= 0 && m.getInitTtl() != Message.INFINITE_TTL) {
+			inputs[this.ttlInput] = m.getTtl();
+			/* getTtl() changes when the message's age reaches the next
+			 * full minute */
+			double age = SimClock.getTime() - m.getCreationTime();
+			e.rekeyTime = m.getCreationTime() +
+				60 * (Math.floor(age / 60) + 1);
+		}
+		else {
+			if (this.ttlInput >= 0) {
+				inputs[this.ttlInput] = m.getTtl();
+			}
+			e.rekeyTime = Double.MAX_VALUE;
+		}
+
+		e.priority = 1 - this.fis.evaluate(inputs, this.priorityOutput);
+	}
+
+	public DropPolicy replicate() {
+		return new FuzzyPriorityDropPolicy(this);
+	}
+
+	/**
+	 * Cached priority of a buffered message
+	 */
+	private static class Entry {
+		private final Message msg;
+		private double priority;
+		private double rekeyTime;
+
+		private Entry(Message msg) {
+			this.msg = msg;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.drop;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+import core.Message;
+
+/**
+ * Superclass for drop policies whose drop order depends only on values that
+ * don't change while the message is in the buffer. The messages are kept in
+ * a sorted set so adding, removing, and finding the next message to drop
+ * are all O(log n) operations. Messages that are equal by the policy's order
+ * are dropped in the order they were created in.
+ */
+public abstract class IndexedDropPolicy implements DropPolicy {
+	private TreeSet<Message> index;
+
+	/**
+	 * Constructor.
+	 */
+	public IndexedDropPolicy() {
+		this.index = new TreeSet<Message>(new Comparator<Message>() {
+			public int compare(Message m1, Message m2) {
+				int c = compareForDrop(m1, m2);
+				if (c != 0) {
+					return c;
+				}
+				return Integer.compare(m1.getUniqueId(), m2.getUniqueId());
+			}
+		});
+	}
+
+	/**
+	 * Compares two messages by the order they should be dropped in
+	 * @param m1 The first message
+	 * @param m2 The second message
+	 * @return Negative value if the first message should be dropped first,
+	 * positive value if the second message should be dropped first, or zero
+	 * if the policy doesn't define the order
+	 */
+	protected abstract int compareForDrop(Message m1, Message m2);
+
+	public void messageAdded(Message m) {
+		this.index.add(m);
+	}
+
+	public void messageRemoved(Message m) {
+		this.index.remove(m);
+	}
+
+	public Iterable<Message> getDropOrder() {
+		return Collections.unmodifiableSet(this.index);
+	}
+}
@@ -0,0 +1,39 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.drop;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Drop policy that drops the largest message first.
+ */
+public class LargestFirstDropPolicy extends IndexedDropPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public LargestFirstDropPolicy(Settings s) {
+		super();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected LargestFirstDropPolicy(LargestFirstDropPolicy p) {
+		super();
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return Integer.compare(m2.getSize(), m1.getSize());
+	}
+
+	public DropPolicy replicate() {
+		return new LargestFirstDropPolicy(this);
+	}
+}
@@ -0,0 +1,41 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.drop;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Drop policy that drops the message with the largest forward transmission
+ * count (FTC, see {@link Message#getFtc()}) first. The assumption is that
+ * the most forwarded messages have the most copies elsewhere in the network.
+ */
+public class MostForwardedDropPolicy extends IndexedDropPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public MostForwardedDropPolicy(Settings s) {
+		super();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected MostForwardedDropPolicy(MostForwardedDropPolicy p) {
+		super();
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return Integer.compare(m2.getFtc(), m1.getFtc());
+	}
+
+	public DropPolicy replicate() {
+		return new MostForwardedDropPolicy(this);
+	}
+}
@@ -0,0 +1,40 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.drop;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Drop policy that drops the message that was received first (i.e., the
+ * same policy that {@link routing.ActiveRouter} uses by default).
+ */
+public class OldestFirstDropPolicy extends IndexedDropPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public OldestFirstDropPolicy(Settings s) {
+		super();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected OldestFirstDropPolicy(OldestFirstDropPolicy p) {
+		super();
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return Double.compare(m1.getReceiveTime(), m2.getReceiveTime());
+	}
+
+	public DropPolicy replicate() {
+		return new OldestFirstDropPolicy(this);
+	}
+}
@@ -0,0 +1,54 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing.drop;
+
+import core.Message;
+import core.Settings;
+
+/**
+ * Drop policy that drops the message with the shortest remaining TTL first.
+ * Messages are ordered by the time their TTL expires so the order stays
+ * the same while they are in the buffer. Messages with infinite TTL are 
+ * dropped last.
+ */
+public class ShortestTtlDropPolicy extends IndexedDropPolicy {
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public ShortestTtlDropPolicy(Settings s) {
+		super();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param p The policy prototype
+	 */
+	protected ShortestTtlDropPolicy(ShortestTtlDropPolicy p) {
+		super();
+	}
+
+	@Override
+	protected int compareForDrop(Message m1, Message m2) {
+		return Double.compare(getExpiryTime(m1), getExpiryTime(m2));
+	}
+
+	/**
+	 * Returns the simulation time when the message's TTL expires
+	 * @param m The message
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	private double getExpiryTime(Message m) {
+		if (m.getInitTtl() == Message.INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return m.getCreationTime() + m.getInitTtl() * 60.0;
+	}
+
+	public DropPolicy replicate() {
+		return new ShortestTtlDropPolicy(this);
+	}
+}
@@ -0,0 +1,593 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.fuzzy;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SettingsError;
+
+/**
+ * Parser for the subset of the Fuzzy Control Language (IEC 61131-7) that
+ * {@link FuzzyEngine} supports. Only the first function block of the file
+ * is read. Supported constructs are:
+ * <UL>
+ * <LI>VAR_INPUT and VAR_OUTPUT declarations of REAL variables</LI>
+ * <LI>FUZZIFY and DEFUZZIFY blocks with terms of type <CODE>trian</CODE>,
+ * <CODE>trape</CODE>, <CODE>gauss</CODE>, piece-wise linear points
+ * <CODE>(x, y) (x, y) ...</CODE> and (for inputs only) singletons</LI>
+ * <LI>METHOD (COG, COA, MM, LM, RM), DEFAULT (a number or NC) and RANGE of
+ * the output variables</LI>
+ * <LI>RULEBLOCKs with AND (MIN, PROD, BDIF), OR (MAX, ASUM, BSUM),
+ * ACT (MIN, PROD) and ACCU (MAX, SUM, BSUM) methods and rules with AND, OR,
+ * NOT, parentheses, multiple consequents and WITH weights</LI>
+ * </UL>
+ */
+class FclParser {
+	/* membership function types */
+	static final int MF_TRIAN = 0;
+	static final int MF_TRAPE = 1;
+	static final int MF_GAUSS = 2;
+	static final int MF_POINTS = 3;
+	static final int MF_SINGLETON = 4;
+
+	/* defuzzification methods */
+	static final int DEFUZ_COG = 0;
+	static final int DEFUZ_COA = 1;
+	static final int DEFUZ_MM = 2;
+	static final int DEFUZ_LM = 3;
+	static final int DEFUZ_RM = 4;
+
+	/* rule connection, activation and accumulation methods */
+	static final int M_MIN = 0;
+	static final int M_PROD = 1;
+	static final int M_BDIF = 2;
+	static final int M_MAX = 3;
+	static final int M_ASUM = 4;
+	static final int M_BSUM = 5;
+	static final int M_SUM = 6;
+
+	/** A membership function of a linguistic term */
+	static class Term {
+		String name;
+		int type;
+		double[] params;
+	}
+
+	/** A variable and its terms */
+	static class Var {
+		String name;
+		boolean output;
+		List<Term> terms = new ArrayList<Term>();
+		double rangeMin = Double.NaN;
+		double rangeMax = Double.NaN;
+		int method = DEFUZ_COG;
+		double defaultValue = 0;
+	}
+
+	/** Antecedent clause "var IS [NOT] term" */
+	static class Clause {
+		String var;
+		String term;
+		boolean not;
+		int line;
+	}
+
+	/** A rule; the antecedent is in postfix order (Clauses and operators) */
+	static class Rule {
+		List<Object> antecedent = new ArrayList<Object>();
+		List<Clause> consequents = new ArrayList<Clause>();
+		double weight = 1;
+		int and = M_MIN;
+		int or = M_MAX;
+		int act = M_MIN;
+		int accu = M_MAX;
+	}
+
+	static final Integer OP_AND = -1;
+	static final Integer OP_OR = -2;
+	static final Integer OP_NOT = -3;
+
+	String name = "";
+	Map<String, Var> vars = new LinkedHashMap<String, Var>();
+	List<Rule> rules = new ArrayList<Rule>();
+
+	private String fileName;
+	private List<String> tokens;
+	private List<Integer> lines;
+	private int pos;
+
+	/**
+	 * Parses an FCL file
+	 * @param fileName Path of the file
+	 * @throws SettingsError if the file can't be read or is not valid
+	 */
+	FclParser(String fileName) {
+		this.fileName = fileName;
+		Reader r = null;
+		try {
+			r = new BufferedReader(new FileReader(fileName));
+			tokenize(r);
+		} catch (IOException e) {
+			throw new SettingsError("Can't read FCL file '" + fileName +
+					"'", e);
+		} finally {
+			if (r != null) {
+				try {
+					r.close();
+				} catch (IOException e) {}
+			}
+		}
+		parse();
+	}
+
+	/**
+	 * Parses FCL read from a reader
+	 * @param r The reader
+	 * @param name Name of the source for error messages
+	 * @throws IOException if reading fails
+	 */
+	FclParser(Reader r, String name) throws IOException {
+		this.fileName = name;
+		tokenize(r);
+		parse();
+	}
+
+	private void tokenize(Reader r) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[4096];
+		int n;
+		while ((n = r.read(buf)) > 0) {
+			sb.append(buf, 0, n);
+		}
+
+		tokens = new ArrayList<String>();
+		lines = new ArrayList<Integer>();
+		int line = 1;
+		int i = 0;
+		int len = sb.length();
+		while (i < len) {
+			char c = sb.charAt(i);
+			if (c == '\n') {
+				line++;
+				i++;
+			} else if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '/' && i + 1 < len && sb.charAt(i + 1) == '/') {
+				while (i < len && sb.charAt(i) != '\n') {
+					i++;
+				}
+			} else if ((c == '/' || c == '(') && i + 1 < len &&
+					sb.charAt(i + 1) == '*') {
+				String end = c == '/' ? "*/" : "*)";
+				int e = sb.indexOf(end, i + 2);
+				e = e < 0 ? len : e + 2;
+				for (int j = i; j < e; j++) {
+					if (sb.charAt(j) == '\n') {
+						line++;
+					}
+				}
+				i = e;
+			} else {
+				int start = i;
+				if (Character.isLetter(c) || c == '_') {
+					while (i < len && (Character.isLetterOrDigit(sb.charAt(i))
+							|| sb.charAt(i) == '_')) {
+						i++;
+					}
+				} else if (Character.isDigit(c) || c == '-' || c == '+' ||
+						(c == '.' && i + 1 < len &&
+						Character.isDigit(sb.charAt(i + 1)))) {
+					i++;
+					while (i < len && (Character.isDigit(sb.charAt(i)) ||
+							(sb.charAt(i) == '.' && i + 1 < len &&
+							Character.isDigit(sb.charAt(i + 1))))) {
+						i++;
+					}
+					if (i < len && (sb.charAt(i) == 'e' ||
+							sb.charAt(i) == 'E')) {
+						i++;
+						if (i < len && (sb.charAt(i) == '-' ||
+								sb.charAt(i) == '+')) {
+							i++;
+						}
+						while (i < len && Character.isDigit(sb.charAt(i))) {
+							i++;
+						}
+					}
+				} else if ((c == ':' && i + 1 < len && sb.charAt(i + 1) == '=')
+						|| (c == '.' && i + 1 < len &&
+						sb.charAt(i + 1) == '.')) {
+					i += 2;
+				} else {
+					i++;
+				}
+				tokens.add(sb.substring(start, i));
+				lines.add(line);
+			}
+		}
+	}
+
+	private SettingsError error(String msg) {
+		int line = pos < lines.size() ? lines.get(pos) :
+			(lines.isEmpty() ? 0 : lines.get(lines.size() - 1));
+		return new SettingsError("Error in FCL file '" + fileName +
+				"' at line " + line + ": " + msg);
+	}
+
+	private boolean hasMore() {
+		return pos < tokens.size();
+	}
+
+	private String peek() {
+		if (!hasMore()) {
+			throw error("Unexpected end of file");
+		}
+		return tokens.get(pos);
+	}
+
+	private String next() {
+		String t = peek();
+		pos++;
+		return t;
+	}
+
+	private boolean isKeyword(String kw) {
+		return hasMore() && tokens.get(pos).equalsIgnoreCase(kw);
+	}
+
+	private void expect(String kw) {
+		String t = next();
+		if (!t.equalsIgnoreCase(kw)) {
+			pos--;
+			throw error("Expected '" + kw + "' but found '" + t + "'");
+		}
+	}
+
+	private String identifier() {
+		String t = next();
+		if (!Character.isLetter(t.charAt(0)) && t.charAt(0) != '_') {
+			pos--;
+			throw error("Expected a name but found '" + t + "'");
+		}
+		return t;
+	}
+
+	private double number() {
+		String t = next();
+		try {
+			return Double.parseDouble(t);
+		} catch (NumberFormatException e) {
+			pos--;
+			throw error("Expected a number but found '" + t + "'");
+		}
+	}
+
+	private boolean isNumber() {
+		if (!hasMore()) {
+			return false;
+		}
+		char c = tokens.get(pos).charAt(0);
+		return Character.isDigit(c) || c == '-' || c == '+' || c == '.' &&
+			tokens.get(pos).length() > 1 && tokens.get(pos).charAt(1) != '.';
+	}
+
+	private void parse() {
+		expect("FUNCTION_BLOCK");
+		if (!isKeyword("VAR_INPUT") && !isKeyword("VAR_OUTPUT")) {
+			name = identifier();
+		}
+
+		while (!isKeyword("END_FUNCTION_BLOCK")) {
+			String t = next().toUpperCase();
+			if (t.equals("VAR_INPUT")) {
+				parseVars(false);
+			} else if (t.equals("VAR_OUTPUT")) {
+				parseVars(true);
+			} else if (t.equals("FUZZIFY")) {
+				parseFuzzify(getVar(identifier(), false), "END_FUZZIFY");
+			} else if (t.equals("DEFUZZIFY")) {
+				parseFuzzify(getVar(identifier(), true), "END_DEFUZZIFY");
+			} else if (t.equals("RULEBLOCK")) {
+				parseRuleBlock();
+			} else {
+				pos--;
+				throw error("Unexpected '" + t + "'");
+			}
+		}
+		expect("END_FUNCTION_BLOCK");
+
+		for (Var v : vars.values()) {
+			if (v.terms.isEmpty()) {
+				throw new SettingsError("Variable '" + v.name + "' of FCL " +
+						"file '" + fileName + "' has no terms");
+			}
+		}
+	}
+
+	private Var getVar(String varName, boolean output) {
+		Var v = vars.get(varName);
+		if (v == null || v.output != output) {
+			pos--;
+			throw error("Unknown " + (output ? "output" : "input") +
+					" variable '" + varName + "'");
+		}
+		return v;
+	}
+
+	private void parseVars(boolean output) {
+		while (!isKeyword("END_VAR")) {
+			Var v = new Var();
+			v.name = identifier();
+			v.output = output;
+			expect(":");
+			String type = next();
+			if (!type.equalsIgnoreCase("REAL")) {
+				pos--;
+				throw error("Unsupported variable type '" + type + "'");
+			}
+			expect(";");
+			if (vars.containsKey(v.name)) {
+				throw error("Variable '" + v.name + "' defined twice");
+			}
+			vars.put(v.name, v);
+		}
+		expect("END_VAR");
+	}
+
+	private void parseFuzzify(Var v, String end) {
+		while (!isKeyword(end)) {
+			String t = next().toUpperCase();
+			if (t.equals("TERM")) {
+				v.terms.add(parseTerm(v));
+			} else if (t.equals("RANGE")) {
+				expect(":=");
+				expect("(");
+				v.rangeMin = number();
+				expect("..");
+				v.rangeMax = number();
+				expect(")");
+				expect(";");
+			} else if (t.equals("METHOD") && v.output) {
+				expect(":");
+				String m = next().toUpperCase();
+				if (m.equals("COG")) {
+					v.method = DEFUZ_COG;
+				} else if (m.equals("COA")) {
+					v.method = DEFUZ_COA;
+				} else if (m.equals("MM")) {
+					v.method = DEFUZ_MM;
+				} else if (m.equals("LM")) {
+					v.method = DEFUZ_LM;
+				} else if (m.equals("RM")) {
+					v.method = DEFUZ_RM;
+				} else {
+					pos--;
+					throw error("Unsupported defuzzification method '" +
+							m + "'");
+				}
+				expect(";");
+			} else if (t.equals("DEFAULT") && v.output) {
+				expect(":=");
+				if (isKeyword("NC")) {
+					next();
+					v.defaultValue = Double.NaN;
+				} else {
+					v.defaultValue = number();
+				}
+				expect(";");
+			} else if (t.equals("ACCU") && v.output) {
+				expect(":");
+				next(); // accumulation is defined by the rule blocks
+				expect(";");
+			} else {
+				pos--;
+				throw error("Unexpected '" + t + "'");
+			}
+		}
+		expect(end);
+	}
+
+	private Term parseTerm(Var v) {
+		Term term = new Term();
+		term.name = identifier();
+		expect(":=");
+		List<Double> p = new ArrayList<Double>();
+		if (isKeyword("trian")) {
+			next();
+			term.type = MF_TRIAN;
+			for (int i = 0; i < 3; i++) {
+				p.add(number());
+			}
+		} else if (isKeyword("trape")) {
+			next();
+			term.type = MF_TRAPE;
+			for (int i = 0; i < 4; i++) {
+				p.add(number());
+			}
+		} else if (isKeyword("gauss")) {
+			next();
+			term.type = MF_GAUSS;
+			p.add(number());
+			p.add(number());
+		} else if (isKeyword("(")) {
+			term.type = MF_POINTS;
+			double prevX = Double.NEGATIVE_INFINITY;
+			while (isKeyword("(")) {
+				next();
+				double x = number();
+				expect(",");
+				double y = number();
+				expect(")");
+				if (x < prevX) {
+					throw error("Points of term '" + term.name +
+							"' are not in order");
+				}
+				prevX = x;
+				p.add(x);
+				p.add(y);
+			}
+		} else if (isNumber() && !v.output) {
+			term.type = MF_SINGLETON;
+			p.add(number());
+		} else {
+			throw error("Unsupported membership function '" + peek() + "'");
+		}
+		expect(";");
+
+		term.params = new double[p.size()];
+		for (int i = 0; i < p.size(); i++) {
+			term.params[i] = p.get(i);
+		}
+		for (Term other : v.terms) {
+			if (other.name.equals(term.name)) {
+				throw error("Term '" + term.name + "' defined twice");
+			}
+		}
+		return term;
+	}
+
+	private void parseRuleBlock() {
+		if (!isKeyword("AND") && !isKeyword("OR") && !isKeyword("ACT") &&
+				!isKeyword("ACCU") && !isKeyword("RULE") &&
+				!isKeyword("END_RULEBLOCK")) {
+			identifier(); // name of the block
+		}
+
+		int and = M_MIN;
+		int or = -1;
+		int act = M_MIN;
+		int accu = M_MAX;
+		List<Rule> blockRules = new ArrayList<Rule>();
+
+		while (!isKeyword("END_RULEBLOCK")) {
+			String t = next().toUpperCase();
+			if (t.equals("RULE")) {
+				next(); // rule number/name
+				expect(":");
+				blockRules.add(parseRule());
+			} else {
+				expect(":");
+				String m = next().toUpperCase();
+				pos--;
+				if (t.equals("AND")) {
+					and = method(m, M_MIN, M_PROD, M_BDIF);
+				} else if (t.equals("OR")) {
+					or = method(m, M_MAX, M_ASUM, M_BSUM);
+				} else if (t.equals("ACT")) {
+					act = method(m, M_MIN, M_PROD);
+				} else if (t.equals("ACCU")) {
+					accu = method(m, M_MAX, M_SUM, M_BSUM);
+				} else {
+					throw error("Unexpected '" + t + "'");
+				}
+				next();
+				expect(";");
+			}
+		}
+		expect("END_RULEBLOCK");
+
+		if (or == -1) { // the dual of AND (De Morgan)
+			or = and == M_MIN ? M_MAX : (and == M_PROD ? M_ASUM : M_BSUM);
+		}
+		for (Rule r : blockRules) {
+			r.and = and;
+			r.or = or;
+			r.act = act;
+			r.accu = accu;
+		}
+		rules.addAll(blockRules);
+	}
+
+	private int method(String m, int... allowed) {
+		String[] names = {"MIN", "PROD", "BDIF", "MAX", "ASUM", "BSUM", "SUM"};
+		for (int a : allowed) {
+			if (names[a].equals(m)) {
+				return a;
+			}
+		}
+		throw error("Unsupported method '" + m + "'");
+	}
+
+	private Rule parseRule() {
+		Rule r = new Rule();
+		expect("IF");
+		parseOr(r.antecedent);
+		expect("THEN");
+		do {
+			r.consequents.add(parseClause());
+			if (!isKeyword(",")) {
+				break;
+			}
+			next();
+		} while (true);
+		if (isKeyword("WITH")) {
+			next();
+			r.weight = number();
+		}
+		expect(";");
+		return r;
+	}
+
+	private void parseOr(List<Object> out) {
+		parseAnd(out);
+		while (isKeyword("OR")) {
+			next();
+			parseAnd(out);
+			out.add(OP_OR);
+		}
+	}
+
+	private void parseAnd(List<Object> out) {
+		parseUnary(out);
+		while (isKeyword("AND")) {
+			next();
+			parseUnary(out);
+			out.add(OP_AND);
+		}
+	}
+
+	private void parseUnary(List<Object> out) {
+		if (isKeyword("NOT")) {
+			next();
+			parseUnary(out);
+			out.add(OP_NOT);
+		} else if (isKeyword("(")) {
+			next();
+			parseOr(out);
+			expect(")");
+		} else {
+			out.add(parseClause());
+		}
+	}
+
+	private Clause parseClause() {
+		Clause c = new Clause();
+		c.line = lines.get(Math.min(pos, lines.size() - 1));
+		c.var = identifier();
+		expect("IS");
+		if (isKeyword("NOT")) {
+			next();
+			c.not = true;
+		}
+		c.term = identifier();
+		return c;
+	}
+
+	/**
+	 * Returns an error for a clause that refers to an unknown variable or
+	 * term
+	 */
+	SettingsError clauseError(Clause c, String msg) {
+		return new SettingsError("Error in FCL file '" + fileName +
+				"' at line " + c.line + ": " + msg);
+	}
+}
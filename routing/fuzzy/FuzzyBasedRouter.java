@@ -10,25 +10,23 @@ import core.DTNHost;
 import core.Message;
 import core.Settings;
 import core.SimClock;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
-import net.sourceforge.jFuzzyLogic.plot.JFuzzyChart;
-import net.sourceforge.jFuzzyLogic.rule.Variable;
 import routing.MessageRouter;
 import routing.RoutingDecisionEngine;
+import routing.UtilityDecisionEngine;
+import routing.community.ContactHistory;
 import routing.community.Duration;
+import routing.community.FrequencyDecisionEngine;
 import routing.DecisionEngineRouter;
 
 /**
  * 
  * @author Afra Rian Yudianto, Sanata Dharma University
  */
-public class FuzzyBasedRouter implements RoutingDecisionEngine{
+public class FuzzyBasedRouter implements UtilityDecisionEngine, FrequencyDecisionEngine{
    
     public static final String FCL_SIMILARITY = "fclSimilarity";
     public static final String CLOSENESS = "closeness";
@@ -36,19 +34,28 @@ public class FuzzyBasedRouter implements RoutingDecisionEngine{
     public static final String TRANSFER_OF_UTILITY = "su";
     
 
-    private FIS fclSimilarity;
+    private FuzzyEngine fclSimilarity;
+    private int closenessInput;
+    private int varianceInput;
+    private int touOutput;
     protected Map<DTNHost, Double> startTimestamps;
-    protected Map<DTNHost, List<Duration>> connHistory;
+    protected ContactHistory connHistory;
         
     public FuzzyBasedRouter(Settings s) {
-        String fclString = s.getSetting(FCL_SIMILARITY);
-        fclSimilarity = FIS.load(fclString);
+        fclSimilarity = FuzzyEngine.load(s, FCL_SIMILARITY);
+        closenessInput = fclSimilarity.requireInput(CLOSENESS);
+        varianceInput = fclSimilarity.requireInput(VARIANCE);
+        touOutput = fclSimilarity.requireOutput(TRANSFER_OF_UTILITY);
+        connHistory = new ContactHistory(s);
     }
 
     public FuzzyBasedRouter(FuzzyBasedRouter t) {
         this.fclSimilarity = t.fclSimilarity;
+        this.closenessInput = t.closenessInput;
+        this.varianceInput = t.varianceInput;
+        this.touOutput = t.touOutput;
         startTimestamps = new HashMap<>();
-        connHistory = new HashMap<>();
+        connHistory = new ContactHistory(t.connHistory);
     }
 
     @Override
@@ -60,22 +67,13 @@ public class FuzzyBasedRouter implements RoutingDecisionEngine{
         }
         double currentTime = SimClock.getTime();
 
-        List<Duration> history;
-        if (!connHistory.containsKey(peer)) {
-            history = new LinkedList<Duration>();
-//            connHistory.put(peer, history);
-
-        } else {
-            history = connHistory.get(peer);
-
-        }
+        connHistory.getHistory(peer, true);
 
 //         add this connection to the list
         if (currentTime - getLastDisconnect > 0) {
-            history.add(new Duration(getLastDisconnect, currentTime));
+            connHistory.add(peer, getLastDisconnect, currentTime);
 
         }
-        connHistory.put(peer, history);
         this.startTimestamps.remove(peer);
         
         
@@ -113,66 +111,61 @@ public class FuzzyBasedRouter implements RoutingDecisionEngine{
         }
         
         DTNHost dest = m.getTo();
-        FuzzyBasedRouter de = getOtherDecisionEngine(otherHost);
-        double me = this.Defuzzification(dest);
-        double peer = de.Defuzzification(dest);
+        double me = getRouter(thisHost).getUtility(dest);
+        double peer = getRouter(otherHost).getUtility(dest);
         return me > peer;
     }
+
+    @Override
+    public double getUtility(DTNHost dest, DTNHost thisHost) {
+        return this.Defuzzification(dest);
+    }
     
     
     private double Defuzzification(DTNHost nodes) {
         double closenessValue = getClosenessOfNodes(nodes);
         double varianceValue = getNormalizedVarianceOfNodes(nodes);
-        FunctionBlock functionBlock = fclSimilarity.getFunctionBlock(null);
-
-        functionBlock.setVariable(CLOSENESS, closenessValue);
-        functionBlock.setVariable(VARIANCE, varianceValue);
-        functionBlock.evaluate();
+        double[] inputs = fclSimilarity.getInputBuffer();
 
-        Variable tou = functionBlock.getVariable(TRANSFER_OF_UTILITY);
-        System.out.println(functionBlock);
-        System.out.println("Nilai TOU : " + tou.getValue());
-       // JFuzzyChart.get().chart(functionBlock);
+        inputs[closenessInput] = closenessValue;
+        inputs[varianceInput] = varianceValue;
 
-        return tou.getValue();
+        return fclSimilarity.evaluate(inputs, touOutput);
     }
 
     public double getVarianceOfNodes(DTNHost nodes) {
-        List<Duration> list = getList(nodes);
-        Iterator<Duration> duration = list.iterator();
-        double temp = 0;
-        double mean = getAverageShortestSeparationOfNodes(nodes);
-        while (duration.hasNext()) {
-            Duration d = duration.next();
-            temp += Math.pow((d.end - d.start) - mean, 2);
+        ContactHistory.PeerHistory history = connHistory.getHistory(nodes, false);
+        if (history == null) {
+            return Double.NaN;
         }
-        return temp / list.size();
+        return history.getVariance();
     }
 
     public double getNormalizedVarianceOfNodes(DTNHost nodes) {
-        double k = getList(nodes).size();
-        double N = 0;
-        double sigmf = 0;
-        Iterator<Duration> iterator = getList(nodes).iterator();
-        while (iterator.hasNext()) {
-            Duration duration = iterator.next();
-            double timeDuration = (duration.end - duration.start);
-            N += timeDuration;
-            sigmf += Math.pow(timeDuration, 2);
+        ContactHistory.PeerHistory history = connHistory.getHistory(nodes, false);
+        if (history == null) {
+            return Double.NaN;
         }
+        double k = history.size();
+        double N = history.getTotalDuration();
+        double sigmf = history.getSumOfSquares();
         Double d = (k * (Math.pow(N, 2) - sigmf)) / (Math.pow(N, 2) * (k - 1));
         return d;
     }
 
     public List<Duration> getList(DTNHost nodes) {
-        if (connHistory.containsKey(nodes)) {
-            return connHistory.get(nodes);
+        if (connHistory.contains(nodes)) {
+            return connHistory.getHistory(nodes, false);
         } else {
-            List<Duration> d = new LinkedList<>();
-            return d;
+            return Collections.<Duration>emptyList();
         }
     }
 
+    @Override
+    public Map<DTNHost, List<Duration>> getFrequency() {
+        return connHistory.asMap();
+    }
+
     private double getClosenessOfNodes(DTNHost nodes) {
         double rataShortestSeparation = getAverageShortestSeparationOfNodes(nodes);
         double variansi = getVarianceOfNodes(nodes);
@@ -181,14 +174,11 @@ public class FuzzyBasedRouter implements RoutingDecisionEngine{
     }
 
     public double getAverageShortestSeparationOfNodes(DTNHost nodes) {
-        List<Duration> list = getList(nodes);
-        Iterator<Duration> duration = list.iterator();
-        double hasil = 0;
-        while (duration.hasNext()) {
-            Duration d = duration.next();
-            hasil += (d.end - d.start);
+        ContactHistory.PeerHistory history = connHistory.getHistory(nodes, false);
+        if (history == null) {
+            return Double.NaN;
         }
-        return hasil / list.size();
+        return history.getMean();
     }
 
     @Override
@@ -206,12 +196,12 @@ public class FuzzyBasedRouter implements RoutingDecisionEngine{
         return new FuzzyBasedRouter(this);
     }
 
-    private FuzzyBasedRouter getOtherDecisionEngine(DTNHost h) {
-        MessageRouter otherRouter = h.getRouter();
-        assert otherRouter instanceof DecisionEngineRouter : "This router only works "
+    private DecisionEngineRouter getRouter(DTNHost h) {
+        MessageRouter router = h.getRouter();
+        assert router instanceof DecisionEngineRouter : "This router only works "
                 + " with other routers of same type";
 
-        return (FuzzyBasedRouter) ((DecisionEngineRouter) otherRouter).getDecisionEngine();
+        return (DecisionEngineRouter) router;
     }
      
     @Override
@@ -0,0 +1,1086 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.fuzzy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.DTNSim;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * <P>
+ * Fuzzy inference engine compiled from a Fuzzy Control Language (FCL) file.
+ * The file's function block is parsed once (see {@link FclParser} for the
+ * supported language) into flat arrays of membership function parameters,
+ * rule programs and pre-sampled output terms, and evaluating the block
+ * does not create any objects. The inference is Mamdani type with the
+ * rule block's AND/OR/ACT/ACCU methods and the output is defuzzified from
+ * {@value #NROF_POINTS} points over the output variable's range, like in
+ * jFuzzyLogic. NaN inputs belong to no term and if no rule activates, the
+ * output variable's DEFAULT value is returned.
+ * </P><P>
+ * Engines are immutable and the temporary evaluation buffers are per
+ * thread, so one engine can be shared by all the hosts even if they are
+ * updated in parallel. {@link #load(String)} caches the engines by the file
+ * name.
+ * </P><P>
+ * Optionally, the engine can precompute the values of the outputs on a
+ * regular grid over the ranges of the inputs (see
+ * {@link #withGrid(int, double)} and {@link #withGrid(int, int, double)})
+ * and evaluate them by multilinear interpolation from the grid. Inputs
+ * outside the grid (or NaN) and inputs next to grid points where no rule activates (where the output may jump to
+ * the default value) are evaluated exactly. The routers that use
+ * {@link #load(Settings, String)} enable the grid with the settings
+ * {@value #GRID_SIZE_S} and {@value #GRID_TOLERANCE_S}.
+ * </P>
+ */
+public class FuzzyEngine {
+	/** Number of grid points per input -setting id ({@value}). If defined,
+	 * the engine is evaluated from a lookup grid. */
+	public static final String GRID_SIZE_S = "fuzzyGridSize";
+	/** Maximum interpolation error of the grid -setting id ({@value}).
+	 * If defined, the grid is made denser until the largest measured error
+	 * (see {@link #getGridError()}) is within the tolerance. */
+	public static final String GRID_TOLERANCE_S = "fuzzyGridTolerance";
+
+	/** Number of points the output range is sampled at */
+	public static final int NROF_POINTS = 1000;
+	/** Maximum number of values in a lookup grid */
+	public static final int MAX_GRID_VALUES = 1 << 22;
+
+	private static final int OP_AND = FclParser.OP_AND;
+	private static final int OP_OR = FclParser.OP_OR;
+	private static final int OP_NOT = FclParser.OP_NOT;
+
+	private static Map<String, FuzzyEngine> engines;
+
+	static {
+		DTNSim.registerForReset(FuzzyEngine.class.getCanonicalName());
+		reset();
+	}
+
+	private final String name;
+	private final String[] inputNames;
+	private final String[] outputNames;
+
+	/* membership functions of all terms (input terms first) */
+	private final int[] termType;
+	private final int[] termParamStart;
+	private final int[] termParamEnd;
+	private final double[] params;
+	/** input i has terms inputTermStart[i]...inputTermStart[i+1]-1 */
+	private final int[] inputTermStart;
+	/** output i has terms outputTermStart[i]...outputTermStart[i+1]-1 */
+	private final int[] outputTermStart;
+	private final int nrofInputTerms;
+
+	/* sampled output terms (indexed by term - nrofInputTerms) */
+	private final double[][] samples;
+	private final int[] sampleFirst;
+	private final int[] sampleLast;
+	private final double[] outputMin;
+	private final double[] outputStep;
+	private final int[] method;
+	private final double[] defaultValue;
+
+	/* rules: the antecedents are postfix programs where values >= 0 are
+	 * indices of input terms */
+	private final int[] program;
+	private final int[] programStart;
+	private final double[] weight;
+	private final int[] andMethod;
+	private final int[] orMethod;
+	private final int[] actMethod;
+	private final int[] accuMethod;
+	private final int[] consStart;
+	private final int[] consTerm;
+	private final int[] consOutput;
+	/** rules of output i are outputRules[outputRuleStart[i]...] */
+	private final int[] outputRuleStart;
+	private final int[] outputRules;
+	/** activation method if all rules of the output accumulate with MAX
+	 * and activate with the same method, -1 otherwise */
+	private final int[] fastAct;
+	private final int maxStack;
+
+	/* lookup grid (null if not used) */
+	/** grid values of each output (null for outputs without a grid) */
+	private final double[][] gridValues;
+	private final int[] gridSize;
+	private final int[] gridStride;
+	private final double[] gridMin;
+	private final double[] gridStep;
+	private final double gridError;
+
+	private final ThreadLocal<Workspace> workspace;
+
+	/**
+	 * Buffers for the evaluation
+	 */
+	private static class Workspace {
+		private double[] mu;
+		private double[] stack;
+		private double[] alpha;
+		private double[] acc;
+		private double[] inputs;
+		private double[] frac;
+		private int lo;
+		private int hi;
+	}
+
+	/**
+	 * Compiles the parsed function block
+	 * @param p The parser
+	 */
+	FuzzyEngine(FclParser p) {
+		this.name = p.name;
+
+		List<FclParser.Var> ins = new ArrayList<FclParser.Var>();
+		List<FclParser.Var> outs = new ArrayList<FclParser.Var>();
+		for (FclParser.Var v : p.vars.values()) {
+			(v.output ? outs : ins).add(v);
+		}
+		if (outs.isEmpty()) {
+			throw new SettingsError("FCL function block '" + name +
+					"' has no output variables");
+		}
+
+		this.inputNames = new String[ins.size()];
+		this.outputNames = new String[outs.size()];
+		this.inputTermStart = new int[ins.size() + 1];
+		this.outputTermStart = new int[outs.size() + 1];
+
+		/* flatten the terms */
+		List<FclParser.Term> terms = new ArrayList<FclParser.Term>();
+		Map<String, Integer> termIndex = new HashMap<String, Integer>();
+		for (int i = 0; i < ins.size(); i++) {
+			inputNames[i] = ins.get(i).name;
+			inputTermStart[i] = terms.size();
+			for (FclParser.Term t : ins.get(i).terms) {
+				termIndex.put(ins.get(i).name + "." + t.name, terms.size());
+				terms.add(t);
+			}
+		}
+		inputTermStart[ins.size()] = terms.size();
+		this.nrofInputTerms = terms.size();
+		for (int i = 0; i < outs.size(); i++) {
+			outputNames[i] = outs.get(i).name;
+			outputTermStart[i] = terms.size();
+			for (FclParser.Term t : outs.get(i).terms) {
+				termIndex.put(outs.get(i).name + "." + t.name, terms.size());
+				terms.add(t);
+			}
+		}
+		outputTermStart[outs.size()] = terms.size();
+
+		int nrofParams = 0;
+		for (FclParser.Term t : terms) {
+			nrofParams += t.params.length;
+		}
+		this.termType = new int[terms.size()];
+		this.termParamStart = new int[terms.size()];
+		this.termParamEnd = new int[terms.size()];
+		this.params = new double[nrofParams];
+		int pi = 0;
+		for (int i = 0; i < terms.size(); i++) {
+			FclParser.Term t = terms.get(i);
+			termType[i] = t.type;
+			termParamStart[i] = pi;
+			System.arraycopy(t.params, 0, params, pi, t.params.length);
+			pi += t.params.length;
+			termParamEnd[i] = pi;
+		}
+
+		/* sample the output terms over the output ranges */
+		int nrofOutputTerms = terms.size() - nrofInputTerms;
+		this.samples = new double[nrofOutputTerms][];
+		this.sampleFirst = new int[nrofOutputTerms];
+		this.sampleLast = new int[nrofOutputTerms];
+		this.outputMin = new double[outs.size()];
+		this.outputStep = new double[outs.size()];
+		this.method = new int[outs.size()];
+		this.defaultValue = new double[outs.size()];
+		for (int o = 0; o < outs.size(); o++) {
+			FclParser.Var v = outs.get(o);
+			double min = v.rangeMin;
+			double max = v.rangeMax;
+			if (Double.isNaN(min)) {
+				min = Double.MAX_VALUE;
+				max = -Double.MAX_VALUE;
+				for (int t = outputTermStart[o]; t < outputTermStart[o+1];
+						t++) {
+					min = Math.min(min, getTermMin(t));
+					max = Math.max(max, getTermMax(t));
+				}
+			}
+			outputMin[o] = min;
+			outputStep[o] = (max - min) / NROF_POINTS;
+			method[o] = v.method;
+			defaultValue[o] = v.defaultValue;
+
+			for (int t = outputTermStart[o]; t < outputTermStart[o+1]; t++) {
+				double[] s = new double[NROF_POINTS];
+				int first = NROF_POINTS;
+				int last = -1;
+				for (int i = 0; i < NROF_POINTS; i++) {
+					s[i] = membership(t, min + i * outputStep[o]);
+					if (s[i] > 0) {
+						first = Math.min(first, i);
+						last = i;
+					}
+				}
+				samples[t - nrofInputTerms] = s;
+				sampleFirst[t - nrofInputTerms] = first;
+				sampleLast[t - nrofInputTerms] = last;
+			}
+		}
+
+		/* compile the rules */
+		int nrofRules = p.rules.size();
+		List<Integer> prog = new ArrayList<Integer>();
+		List<Integer> cTerms = new ArrayList<Integer>();
+		List<Integer> cOutputs = new ArrayList<Integer>();
+		this.programStart = new int[nrofRules + 1];
+		this.consStart = new int[nrofRules + 1];
+		this.weight = new double[nrofRules];
+		this.andMethod = new int[nrofRules];
+		this.orMethod = new int[nrofRules];
+		this.actMethod = new int[nrofRules];
+		this.accuMethod = new int[nrofRules];
+		int stack = 1;
+		for (int r = 0; r < nrofRules; r++) {
+			FclParser.Rule rule = p.rules.get(r);
+			programStart[r] = prog.size();
+			int depth = 0;
+			for (Object o : rule.antecedent) {
+				if (o instanceof FclParser.Clause) {
+					FclParser.Clause c = (FclParser.Clause)o;
+					FclParser.Var v = p.vars.get(c.var);
+					if (v == null || v.output) {
+						throw p.clauseError(c, "Unknown input variable '" +
+								c.var + "'");
+					}
+					Integer t = termIndex.get(c.var + "." + c.term);
+					if (t == null) {
+						throw p.clauseError(c, "Unknown term '" + c.term +
+								"' of variable '" + c.var + "'");
+					}
+					prog.add(t);
+					if (c.not) {
+						prog.add(OP_NOT);
+					}
+					depth++;
+					stack = Math.max(stack, depth);
+				} else {
+					prog.add((Integer)o);
+					if ((Integer)o != OP_NOT) {
+						depth--;
+					}
+				}
+			}
+
+			consStart[r] = cTerms.size();
+			for (FclParser.Clause c : rule.consequents) {
+				FclParser.Var v = p.vars.get(c.var);
+				if (v == null || !v.output) {
+					throw p.clauseError(c, "Unknown output variable '" +
+							c.var + "'");
+				}
+				Integer t = termIndex.get(c.var + "." + c.term);
+				if (t == null || c.not) {
+					throw p.clauseError(c, "Unknown term '" + c.term +
+							"' of variable '" + c.var + "'");
+				}
+				cTerms.add(t);
+				cOutputs.add(outs.indexOf(v));
+			}
+			weight[r] = rule.weight;
+			andMethod[r] = rule.and;
+			orMethod[r] = rule.or;
+			actMethod[r] = rule.act;
+			accuMethod[r] = rule.accu;
+		}
+		programStart[nrofRules] = prog.size();
+		consStart[nrofRules] = cTerms.size();
+		this.program = toArray(prog);
+		this.consTerm = toArray(cTerms);
+		this.consOutput = toArray(cOutputs);
+		this.maxStack = stack;
+
+		/* rules per output */
+		List<Integer> oRules = new ArrayList<Integer>();
+		this.outputRuleStart = new int[outs.size() + 1];
+		this.fastAct = new int[outs.size()];
+		for (int o = 0; o < outs.size(); o++) {
+			outputRuleStart[o] = oRules.size();
+			fastAct[o] = -2;
+			for (int r = 0; r < nrofRules; r++) {
+				boolean targets = false;
+				for (int c = consStart[r]; c < consStart[r+1]; c++) {
+					targets |= consOutput[c] == o;
+				}
+				if (!targets) {
+					continue;
+				}
+				oRules.add(r);
+				if (accuMethod[r] != FclParser.M_MAX) {
+					fastAct[o] = -1;
+				} else if (fastAct[o] == -2) {
+					fastAct[o] = actMethod[r];
+				} else if (fastAct[o] != actMethod[r]) {
+					fastAct[o] = -1;
+				}
+			}
+		}
+		outputRuleStart[outs.size()] = oRules.size();
+		this.outputRules = toArray(oRules);
+
+		this.gridValues = null;
+		this.gridSize = null;
+		this.gridStride = null;
+		this.gridMin = null;
+		this.gridStep = null;
+		this.gridError = 0;
+		this.workspace = newWorkspace();
+	}
+
+	/**
+	 * Creates a copy of the engine with a lookup grid for the given outputs
+	 */
+	private FuzzyEngine(FuzzyEngine e, int[] outputs, int size) {
+		this.name = e.name;
+		this.inputNames = e.inputNames;
+		this.outputNames = e.outputNames;
+		this.termType = e.termType;
+		this.termParamStart = e.termParamStart;
+		this.termParamEnd = e.termParamEnd;
+		this.params = e.params;
+		this.inputTermStart = e.inputTermStart;
+		this.outputTermStart = e.outputTermStart;
+		this.nrofInputTerms = e.nrofInputTerms;
+		this.samples = e.samples;
+		this.sampleFirst = e.sampleFirst;
+		this.sampleLast = e.sampleLast;
+		this.outputMin = e.outputMin;
+		this.outputStep = e.outputStep;
+		this.method = e.method;
+		this.defaultValue = e.defaultValue;
+		this.program = e.program;
+		this.programStart = e.programStart;
+		this.weight = e.weight;
+		this.andMethod = e.andMethod;
+		this.orMethod = e.orMethod;
+		this.actMethod = e.actMethod;
+		this.accuMethod = e.accuMethod;
+		this.consStart = e.consStart;
+		this.consTerm = e.consTerm;
+		this.consOutput = e.consOutput;
+		this.outputRuleStart = e.outputRuleStart;
+		this.outputRules = e.outputRules;
+		this.fastAct = e.fastAct;
+		this.maxStack = e.maxStack;
+		this.workspace = newWorkspace();
+
+		int n = inputNames.length;
+		this.gridSize = new int[n];
+		this.gridStride = new int[n];
+		this.gridMin = new double[n];
+		this.gridStep = new double[n];
+		long nrofValues = 1;
+		for (int i = n - 1; i >= 0; i--) {
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (int t = inputTermStart[i]; t < inputTermStart[i+1]; t++) {
+				min = Math.min(min, getTermMin(t));
+				max = Math.max(max, getTermMax(t));
+			}
+			gridSize[i] = max > min ? size : 1;
+			gridMin[i] = min;
+			gridStep[i] = max > min ? (max - min) / (size - 1) : 0;
+			gridStride[i] = (int)nrofValues;
+			nrofValues *= gridSize[i];
+			if (nrofValues > MAX_GRID_VALUES) {
+				throw new SettingsError("Fuzzy lookup grid of " + size +
+						" points per input is too large for FCL function " +
+						"block '" + name + "'");
+			}
+		}
+
+		this.gridValues = new double[outputNames.length][];
+		for (int output : outputs) {
+			gridValues[output] = new double[(int)nrofValues];
+		}
+		double[] in = new double[n];
+		for (int v = 0; v < nrofValues; v++) {
+			for (int i = 0; i < n; i++) {
+				in[i] = gridMin[i] + ((v / gridStride[i]) % gridSize[i]) *
+					gridStep[i];
+			}
+			for (int output : outputs) {
+				gridValues[output][v] = evaluate(in, output, false);
+			}
+		}
+		double error = 0;
+		for (int output : outputs) {
+			error = Math.max(error, measureGridError(output));
+		}
+		this.gridError = error;
+	}
+
+	private ThreadLocal<Workspace> newWorkspace() {
+		return new ThreadLocal<Workspace>() {
+			protected Workspace initialValue() {
+				Workspace w = new Workspace();
+				w.mu = new double[Math.max(nrofInputTerms, 1)];
+				w.stack = new double[maxStack];
+				w.alpha = new double[termType.length - nrofInputTerms];
+				w.acc = new double[NROF_POINTS];
+				w.inputs = new double[inputNames.length];
+				w.frac = new double[inputNames.length];
+				return w;
+			}
+		};
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] a = new int[list.size()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = list.get(i);
+		}
+		return a;
+	}
+
+	/**
+	 * Resets the engine cache
+	 */
+	public static synchronized void reset() {
+		engines = new HashMap<String, FuzzyEngine>();
+	}
+
+	/**
+	 * Returns the compiled (exactly evaluated) engine for the first function
+	 * block of an FCL file. Engines are cached by the file.
+	 * @param fclFile Path of the FCL file
+	 * @return The engine
+	 * @throws SettingsError if the file can't be read or is not valid
+	 */
+	public static synchronized FuzzyEngine load(String fclFile) {
+		String key;
+		try {
+			key = new File(fclFile).getCanonicalPath();
+		} catch (IOException e) {
+			key = fclFile;
+		}
+		FuzzyEngine e = engines.get(key);
+		if (e == null) {
+			e = new FuzzyEngine(new FclParser(fclFile));
+			engines.put(key, e);
+		}
+		return e;
+	}
+
+	/**
+	 * Returns the engine for the FCL file defined by a setting. If the
+	 * settings define {@value #GRID_SIZE_S}, all the outputs of the engine
+	 * are evaluated from a lookup grid (and the grid is made denser until
+	 * the {@value #GRID_TOLERANCE_S}, if defined, is met).
+	 * @param s The settings
+	 * @param fclSetting Name of the setting that defines the FCL file
+	 * @return The engine
+	 * @throws SettingsError if the file can't be read or is not valid
+	 */
+	public static FuzzyEngine load(Settings s, String fclSetting) {
+		String fclFile = s.getSetting(fclSetting);
+		FuzzyEngine e = load(fclFile);
+		if (!s.contains(GRID_SIZE_S)) {
+			return e;
+		}
+
+		int size = s.getInt(GRID_SIZE_S);
+		double tolerance = s.contains(GRID_TOLERANCE_S) ?
+				s.getDouble(GRID_TOLERANCE_S) : Double.MAX_VALUE;
+		String key = fclFile + "@" + size + "@" + tolerance;
+		synchronized (FuzzyEngine.class) {
+			FuzzyEngine g = engines.get(key);
+			if (g == null) {
+				g = e.withGrid(size, tolerance);
+				engines.put(key, g);
+			}
+			return g;
+		}
+	}
+
+	/**
+	 * Returns a copy of this engine that evaluates all the outputs from a
+	 * lookup grid. See {@link #withGrid(int, int, double)}.
+	 * @param size Initial number of points per input (at least 2)
+	 * @param tolerance Maximum allowed interpolation error
+	 * @return The engine with the grid
+	 * @throws SettingsError if the tolerance can't be met with a grid of
+	 * at most {@link #MAX_GRID_VALUES} points
+	 */
+	public FuzzyEngine withGrid(int size, double tolerance) {
+		int[] outputs = new int[outputNames.length];
+		for (int o = 0; o < outputs.length; o++) {
+			outputs[o] = o;
+		}
+		return withGrid(outputs, size, tolerance);
+	}
+
+	/**
+	 * Returns a copy of this engine that evaluates an output from a lookup
+	 * grid. The grid covers the ranges of the input variables' terms with
+	 * <CODE>size</CODE> points per input. If the interpolation error (see
+	 * {@link #getGridError()}) exceeds the tolerance, the number of points
+	 * is doubled until the tolerance is met.
+	 * @param output Index of the output
+	 * @param size Initial number of points per input (at least 2)
+	 * @param tolerance Maximum allowed interpolation error
+	 * @return The engine with the grid
+	 * @throws SettingsError if the tolerance can't be met with a grid of
+	 * at most {@link #MAX_GRID_VALUES} points
+	 */
+	public FuzzyEngine withGrid(int output, int size, double tolerance) {
+		if (output < 0 || output >= outputNames.length) {
+			throw new SimError("Invalid output index " + output);
+		}
+		return withGrid(new int[] {output}, size, tolerance);
+	}
+
+	private FuzzyEngine withGrid(int[] outputs, int size, double tolerance) {
+		if (size < 2) {
+			throw new SettingsError("Invalid fuzzy grid size " + size);
+		}
+		FuzzyEngine g = new FuzzyEngine(this, outputs, size);
+		while (g.gridError > tolerance) {
+			size = 2 * size - 1; // keeps the old points
+			if (Math.pow(size, inputNames.length) > MAX_GRID_VALUES) {
+				throw new SettingsError("Fuzzy lookup grid for FCL " +
+						"function block '" + name + "' can't meet the " +
+						"tolerance " + tolerance + " (error " + g.gridError +
+						")");
+			}
+			g = new FuzzyEngine(this, outputs, size);
+		}
+		return g;
+	}
+
+	/**
+	 * Returns the largest interpolation error of the lookup grid. The error
+	 * is measured at the centers of the grid cells and at the midpoints of
+	 * their edges and faces (the grid points themselves are exact), so it is
+	 * an estimate: the error between the sampled points can be larger.
+	 * @return The error or 0 if the engine has no grid
+	 */
+	public double getGridError() {
+		return this.gridError;
+	}
+
+	/**
+	 * Returns the number of values in the lookup grid
+	 * @return The number of grid values or 0 if the engine has no grid
+	 */
+	public int getGridValueCount() {
+		int count = 0;
+		if (gridValues != null) {
+			for (double[] values : gridValues) {
+				count += values == null ? 0 : values.length;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the name of the function block
+	 * @return The name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the number of input variables
+	 * @return The number of inputs
+	 */
+	public int getNrofInputs() {
+		return this.inputNames.length;
+	}
+
+	/**
+	 * Returns the index of an input variable
+	 * @param var Name of the variable
+	 * @return The index or -1 if there's no such input
+	 */
+	public int getInputIndex(String var) {
+		for (int i = 0; i < inputNames.length; i++) {
+			if (inputNames[i].equals(var)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of an output variable
+	 * @param var Name of the variable
+	 * @return The index or -1 if there's no such output
+	 */
+	public int getOutputIndex(String var) {
+		for (int i = 0; i < outputNames.length; i++) {
+			if (outputNames[i].equals(var)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of an input variable that must exist
+	 * @param var Name of the variable
+	 * @return The index
+	 * @throws SettingsError if there's no such input
+	 */
+	public int requireInput(String var) {
+		int i = getInputIndex(var);
+		if (i < 0) {
+			throw new SettingsError("No input variable '" + var +
+					"' in FCL function block '" + name + "'");
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the index of an output variable that must exist
+	 * @param var Name of the variable
+	 * @return The index
+	 * @throws SettingsError if there's no such output
+	 */
+	public int requireOutput(String var) {
+		int i = getOutputIndex(var);
+		if (i < 0) {
+			throw new SettingsError("No output variable '" + var +
+					"' in FCL function block '" + name + "'");
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the calling thread's buffer for the input values. The caller
+	 * should set all the inputs and then call one of the evaluate methods.
+	 * The buffer is shared by all the users of this engine in the same
+	 * thread, so the values may have changed since the previous call.
+	 * @return The input buffer (one value per input)
+	 */
+	public double[] getInputBuffer() {
+		return workspace.get().inputs;
+	}
+
+	/**
+	 * Evaluates the first output
+	 * @param inputs Values of the inputs in the order of
+	 * {@link #getInputIndex(String)}
+	 * @return Value of the output
+	 */
+	public double evaluate(double[] inputs) {
+		return evaluate(inputs, 0);
+	}
+
+	/**
+	 * Evaluates an output, using the lookup grid if it has one
+	 * @param inputs Values of the inputs in the order of
+	 * {@link #getInputIndex(String)}
+	 * @param output Index of the output
+	 * @return Value of the output
+	 */
+	public double evaluate(double[] inputs, int output) {
+		if (gridValues != null && gridValues[output] != null) {
+			double v = interpolate(inputs, gridValues[output]);
+			if (!Double.isNaN(v)) {
+				return v;
+			}
+		}
+		return evaluateExact(inputs, output);
+	}
+
+	/**
+	 * Evaluates an output without the lookup grid
+	 * @param inputs Values of the inputs in the order of
+	 * {@link #getInputIndex(String)}
+	 * @param output Index of the output
+	 * @return Value of the output
+	 */
+	public double evaluateExact(double[] inputs, int output) {
+		return evaluate(inputs, output, true);
+	}
+
+	/**
+	 * Evaluates an output without the lookup grid
+	 * @param useDefault If false, NaN is returned instead of the default
+	 * value when no rule activates
+	 */
+	private double evaluate(double[] inputs, int output, boolean useDefault) {
+		Workspace w = workspace.get();
+		double[] mu = w.mu;
+
+		/* fuzzify */
+		for (int i = 0; i < inputNames.length; i++) {
+			double x = inputs[i];
+			for (int t = inputTermStart[i]; t < inputTermStart[i+1]; t++) {
+				mu[t] = Double.isNaN(x) ? 0 : membership(t, x);
+			}
+		}
+
+		/* evaluate the rules and accumulate the activated terms */
+		int first = outputTermStart[output];
+		int last = outputTermStart[output + 1];
+		int fast = fastAct[output];
+		double[] alpha = w.alpha;
+		for (int t = first; t < last; t++) {
+			alpha[t - nrofInputTerms] = 0;
+		}
+		w.lo = NROF_POINTS;
+		w.hi = -1;
+
+		for (int ri = outputRuleStart[output];
+				ri < outputRuleStart[output + 1]; ri++) {
+			int r = outputRules[ri];
+			double degree = degreeOfSupport(r, w) * weight[r];
+			if (!(degree > 0)) {
+				continue;
+			}
+			for (int c = consStart[r]; c < consStart[r+1]; c++) {
+				if (consOutput[c] != output) {
+					continue;
+				}
+				int t = consTerm[c] - nrofInputTerms;
+				if (fast >= 0) {
+					alpha[t] = Math.max(alpha[t], degree);
+				} else {
+					accumulate(t, degree, actMethod[r], accuMethod[r], w);
+				}
+			}
+		}
+		if (fast >= 0) {
+			for (int t = first; t < last; t++) {
+				if (alpha[t - nrofInputTerms] > 0) {
+					accumulate(t - nrofInputTerms, alpha[t - nrofInputTerms],
+							fast, FclParser.M_MAX, w);
+				}
+			}
+		}
+
+		return defuzzify(output, w, useDefault);
+	}
+
+	/**
+	 * Evaluates the antecedent of a rule
+	 */
+	private double degreeOfSupport(int r, Workspace w) {
+		double[] stack = w.stack;
+		int sp = 0;
+		for (int i = programStart[r]; i < programStart[r+1]; i++) {
+			int op = program[i];
+			if (op >= 0) {
+				stack[sp++] = w.mu[op];
+			} else if (op == OP_NOT) {
+				stack[sp - 1] = 1 - stack[sp - 1];
+			} else {
+				sp--;
+				double a = stack[sp - 1];
+				double b = stack[sp];
+				stack[sp - 1] = combine(op == OP_AND ? andMethod[r] :
+					orMethod[r], a, b);
+			}
+		}
+		return stack[0];
+	}
+
+	private static double combine(int m, double a, double b) {
+		switch (m) {
+		case FclParser.M_MIN: return Math.min(a, b);
+		case FclParser.M_PROD: return a * b;
+		case FclParser.M_BDIF: return Math.max(0, a + b - 1);
+		case FclParser.M_MAX: return Math.max(a, b);
+		case FclParser.M_ASUM: return a + b - a * b;
+		case FclParser.M_BSUM: return Math.min(1, a + b);
+		case FclParser.M_SUM: return a + b;
+		default: throw new SimError("Unknown method " + m);
+		}
+	}
+
+	/**
+	 * Adds an activated output term to the accumulated output
+	 * @param t Index of the output term (among output terms)
+	 */
+	private void accumulate(int t, double degree, int act, int accu,
+			Workspace w) {
+		double[] s = samples[t];
+		double[] acc = w.acc;
+		int from = sampleFirst[t];
+		int to = sampleLast[t];
+		for (int i = from; i <= to; i++) {
+			double v = act == FclParser.M_MIN ? Math.min(degree, s[i]) :
+				degree * s[i];
+			acc[i] = accu == FclParser.M_MAX ? Math.max(acc[i], v) :
+				combine(accu, acc[i], v);
+		}
+		if (from <= to) {
+			w.lo = Math.min(w.lo, from);
+			w.hi = Math.max(w.hi, to);
+		}
+	}
+
+	/**
+	 * Defuzzifies the accumulated output and clears the accumulation
+	 * buffer
+	 */
+	private double defuzzify(int output, Workspace w, boolean useDefault) {
+		double[] acc = w.acc;
+		int lo = w.lo;
+		int hi = w.hi;
+		double min = outputMin[output];
+		double step = outputStep[output];
+
+		double sum = 0;
+		double wsum = 0;
+		double max = 0;
+		for (int i = lo; i <= hi; i++) {
+			sum += acc[i];
+			wsum += (min + i * step) * acc[i];
+			max = Math.max(max, acc[i]);
+		}
+
+		double value;
+		if (!(sum > 0)) {
+			value = useDefault ? defaultValue[output] : Double.NaN;
+		} else if (method[output] == FclParser.DEFUZ_COG) {
+			value = wsum / sum;
+		} else if (method[output] == FclParser.DEFUZ_COA) {
+			double half = sum / 2;
+			double s = 0;
+			int i = lo;
+			for (; i < hi; i++) {
+				s += acc[i];
+				if (s >= half) {
+					break;
+				}
+			}
+			value = min + i * step;
+		} else {
+			int left = -1;
+			int right = -1;
+			double xsum = 0;
+			int count = 0;
+			for (int i = lo; i <= hi; i++) {
+				if (acc[i] == max) {
+					if (left < 0) {
+						left = i;
+					}
+					right = i;
+					xsum += min + i * step;
+					count++;
+				}
+			}
+			if (method[output] == FclParser.DEFUZ_LM) {
+				value = min + left * step;
+			} else if (method[output] == FclParser.DEFUZ_RM) {
+				value = min + right * step;
+			} else {
+				value = xsum / count;
+			}
+		}
+
+		for (int i = lo; i <= hi; i++) {
+			acc[i] = 0;
+		}
+		return value;
+	}
+
+	/**
+	 * Interpolates the output from the lookup grid
+	 * @return The output or NaN if the inputs are outside the grid or
+	 * next to a grid point where no rule activates
+	 */
+	private double interpolate(double[] inputs, double[] values) {
+		int n = gridSize.length;
+		double[] frac = workspace.get().frac;
+		int base = 0;
+		for (int i = 0; i < n; i++) {
+			if (gridSize[i] == 1) {
+				if (inputs[i] != gridMin[i]) {
+					return Double.NaN;
+				}
+				frac[i] = 0;
+				continue;
+			}
+			double pos = (inputs[i] - gridMin[i]) / gridStep[i];
+			if (!(pos >= 0 && pos <= gridSize[i] - 1)) {
+				return Double.NaN; // outside the grid or NaN
+			}
+			int cell = Math.min((int)pos, gridSize[i] - 2);
+			frac[i] = pos - cell;
+			base += cell * gridStride[i];
+		}
+
+		double value = 0;
+		for (int corner = 0; corner < (1 << n); corner++) {
+			double w = 1;
+			int index = base;
+			for (int i = 0; i < n; i++) {
+				if ((corner & (1 << i)) != 0) {
+					if (gridSize[i] == 1) {
+						w = 0;
+						break;
+					}
+					w *= frac[i];
+					index += gridStride[i];
+				} else {
+					w *= 1 - frac[i];
+				}
+			}
+			if (w != 0) {
+				double v = values[index];
+				if (Double.isNaN(v)) {
+					return Double.NaN; // the output may jump to the default
+				}
+				value += w * v;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the largest difference of the interpolated and exact value of
+	 * an output at the points halfway between the grid points (the centers
+	 * of the grid cells and of their faces and edges) that are not
+	 * evaluated exactly
+	 */
+	private double measureGridError(int output) {
+		int n = gridSize.length;
+		int[] nrofSamples = new int[n];
+		long nrofPoints = 1;
+		for (int i = 0; i < n; i++) {
+			nrofSamples[i] = 2 * gridSize[i] - 1;
+			nrofPoints *= nrofSamples[i];
+		}
+		double[] in = new double[n];
+		double error = 0;
+		for (long p = 0; p < nrofPoints; p++) {
+			long rest = p;
+			boolean gridPoint = true;
+			for (int i = 0; i < n; i++) {
+				int k = (int)(rest % nrofSamples[i]);
+				rest /= nrofSamples[i];
+				in[i] = gridMin[i] + k * 0.5 * gridStep[i];
+				gridPoint &= k % 2 == 0;
+			}
+			if (gridPoint) {
+				continue; // grid values are exact
+			}
+			double interpolated = interpolate(in, gridValues[output]);
+			if (Double.isNaN(interpolated)) {
+				continue; // evaluated exactly
+			}
+			double exact = evaluateExact(in, output);
+			error = Math.max(error, Math.abs(exact - interpolated));
+		}
+		return error;
+	}
+
+	/**
+	 * Returns the membership degree of a value to a term
+	 */
+	private double membership(int t, double x) {
+		int p = termParamStart[t];
+		switch (termType[t]) {
+		case FclParser.MF_TRIAN:
+			return trapezoid(x, params[p], params[p+1], params[p+1],
+					params[p+2]);
+		case FclParser.MF_TRAPE:
+			return trapezoid(x, params[p], params[p+1], params[p+2],
+					params[p+3]);
+		case FclParser.MF_GAUSS:
+			double d = x - params[p];
+			return Math.exp(-d * d / (2 * params[p+1] * params[p+1]));
+		case FclParser.MF_POINTS:
+			int end = termParamEnd[t];
+			if (x <= params[p]) {
+				return params[p+1];
+			}
+			for (int i = p + 2; i < end; i += 2) {
+				if (x <= params[i]) {
+					double x0 = params[i-2];
+					double y0 = params[i-1];
+					if (params[i] == x0) {
+						return params[i+1];
+					}
+					return y0 + (params[i+1] - y0) * (x - x0) /
+						(params[i] - x0);
+				}
+			}
+			return params[end - 1];
+		case FclParser.MF_SINGLETON:
+			return x == params[p] ? 1 : 0;
+		default:
+			throw new SimError("Unknown membership function " + termType[t]);
+		}
+	}
+
+	private static double trapezoid(double x, double a, double b, double c,
+			double d) {
+		if (x < a || x > d) {
+			return 0;
+		}
+		if (x < b) {
+			return (x - a) / (b - a);
+		}
+		if (x <= c) {
+			return 1;
+		}
+		return (d - x) / (d - c);
+	}
+
+	/**
+	 * Returns the smallest value with a non-zero membership (or the first
+	 * point of a piece-wise linear term)
+	 */
+	private double getTermMin(int t) {
+		int p = termParamStart[t];
+		switch (termType[t]) {
+		case FclParser.MF_GAUSS:
+			return params[p] - 4 * params[p+1];
+		default:
+			return params[p];
+		}
+	}
+
+	/**
+	 * Returns the largest value with a non-zero membership (or the last
+	 * point of a piece-wise linear term)
+	 */
+	private double getTermMax(int t) {
+		int p = termParamStart[t];
+		switch (termType[t]) {
+		case FclParser.MF_GAUSS:
+			return params[p] + 4 * params[p+1];
+		case FclParser.MF_POINTS:
+			return params[termParamEnd[t] - 2];
+		default:
+			return params[termParamEnd[t] - 1];
+		}
+	}
+
+	public String toString() {
+		return "FuzzyEngine " + name + (gridValues != null ? " (grid of " +
+				getGridValueCount() + " values)" : "");
+	}
+}
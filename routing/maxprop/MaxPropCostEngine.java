@@ -0,0 +1,301 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.maxprop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental path cost calculator for the MaxProp router module. The cost
+ * of a link from node A to node B is the complement of the probability that
+ * the next node A meets is B, and the cost to a node is the sum of the link
+ * costs on the cheapest path (see {@link MaxPropDijkstra}).
+ * <P>
+ * The links of each node are cached in primitive arrays that are built from
+ * the node's {@link MeetingProbabilitySet} when they are first needed.
+ * The shortest path searches are kept for the last
+ * {@link #MAX_CACHED_SOURCES} source nodes and continued only as far as the
+ * requested costs need, so asking costs from the same source nodes again
+ * (e.g., while sorting messages for all the current contacts) doesn't
+ * require new searches. The user of the engine must call
+ * {@link #probsChanged(int)} whenever the probability set of a node is
+ * changed or replaced; only the searches that have already used the links of
+ * that node are dropped.
+ */
+public class MaxPropCostEngine {
+	/** Value for infinite cost ({@value}) */
+	public static final double INFINITY = Double.MAX_VALUE;
+	/** Maximum number of source nodes whose searches are cached ({@value}) */
+	public static final int MAX_CACHED_SOURCES = 8;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int[] NO_NODES = new int[0];
+	private static final double[] NO_COSTS = new double[0];
+
+	/** Mapping of the nodes' probability sets by address */
+	private Map<Integer, MeetingProbabilitySet> probs;
+	/** Cached neighbor addresses of the nodes (null if not cached) */
+	private int[][] linkNodes;
+	/** Cached link costs to the neighbors of the nodes */
+	private double[][] linkCosts;
+	/** The cached searches, least recently used first */
+	private List<Search> searches;
+
+	/**
+	 * Constructor.
+	 * @param probs A reference to the mapping of the known hosts' meeting
+	 * probability sets
+	 */
+	public MaxPropCostEngine(Map<Integer, MeetingProbabilitySet> probs) {
+		this.probs = probs;
+		this.linkNodes = new int[INITIAL_CAPACITY][];
+		this.linkCosts = new double[INITIAL_CAPACITY][];
+		this.searches = new ArrayList<Search>(MAX_CACHED_SOURCES);
+	}
+
+	/**
+	 * Returns the cost of the cheapest path between two nodes
+	 * @param from Address of the source node
+	 * @param to Address of the destination node
+	 * @return The cost of the cheapest path or {@link #INFINITY} if there is
+	 * no known path between the nodes
+	 */
+	public double getCost(int from, int to) {
+		return getSearch(from).getCost(to);
+	}
+
+	/**
+	 * Tells the engine that the probability set of a node was changed,
+	 * added, or removed
+	 * @param node Address of the node
+	 */
+	public void probsChanged(int node) {
+		if (node < linkNodes.length) {
+			linkNodes[node] = null;
+			linkCosts[node] = null;
+		}
+		for (Iterator<Search> i = searches.iterator(); i.hasNext();) {
+			if (i.next().isSettled(node)) {
+				i.remove(); // search used the old links of the node
+			}
+		}
+	}
+
+	/**
+	 * Drops all cached data. Can be used instead of
+	 * {@link #probsChanged(int)} calls if the probability sets were modified
+	 * without telling the engine.
+	 */
+	public void reset() {
+		Arrays.fill(linkNodes, null);
+		Arrays.fill(linkCosts, null);
+		searches.clear();
+	}
+
+	/**
+	 * Returns the search for a source node, creating a new one if necessary
+	 */
+	private Search getSearch(int source) {
+		Search s;
+		for (int i=searches.size()-1; i >= 0; i--) {
+			s = searches.get(i);
+			if (s.source == source) {
+				if (i != searches.size()-1) { // move to most recently used
+					searches.remove(i);
+					searches.add(s);
+				}
+				return s;
+			}
+		}
+
+		if (searches.size() >= MAX_CACHED_SOURCES) {
+			searches.remove(0);
+		}
+		s = new Search(source);
+		searches.add(s);
+		return s;
+	}
+
+	/**
+	 * Returns the neighbor addresses of a node, building the link cache of
+	 * the node if needed. The link costs are in {@link #linkCosts} at the
+	 * same index.
+	 */
+	private int[] getLinks(int node) {
+		if (node >= linkNodes.length) {
+			int capacity = Math.max(node + 1, linkNodes.length * 2);
+			linkNodes = Arrays.copyOf(linkNodes, capacity);
+			linkCosts = Arrays.copyOf(linkCosts, capacity);
+		}
+		if (linkNodes[node] != null) {
+			return linkNodes[node];
+		}
+
+		MeetingProbabilitySet set = probs.get(node);
+		int[] nodes = NO_NODES;
+		double[] costs = NO_COSTS;
+
+		if (set != null) { // otherwise node's neighbors are not known
+			nodes = new int[set.size()];
+			costs = new double[set.size()];
+			for (int i=0; i<nodes.length; i++) {
+				nodes[i] = set.getNodeAt(i);
+				costs[i] = 1 - set.getProbAt(i);
+			}
+		}
+
+		linkNodes[node] = nodes;
+		linkCosts[node] = costs;
+		return nodes;
+	}
+
+	/**
+	 * Dijkstra's search from one source node that can be continued later.
+	 * Nodes with equal distance are settled in the order of their address.
+	 */
+	private class Search {
+		private int source;
+		/** distances from the source; exact for the settled nodes */
+		private double[] dist;
+		/** nodes whose shortest distance is known */
+		private boolean[] settled;
+		/** binary min-heap of the discovered but unsettled nodes */
+		private int[] heap;
+		private int heapSize;
+		/** positions of the nodes in the heap plus one (0 = not in heap) */
+		private int[] heapPos;
+
+		private Search(int source) {
+			this.source = source;
+			this.dist = new double[0];
+			this.settled = new boolean[0];
+			this.heapPos = new int[0];
+			this.heap = new int[INITIAL_CAPACITY];
+			ensureCapacity(Math.max(source + 1, INITIAL_CAPACITY));
+			dist[source] = 0;
+			push(source);
+		}
+
+		/**
+		 * Returns the cost to the given node, continuing the search until the
+		 * node is settled or there are no more reachable nodes
+		 */
+		private double getCost(int to) {
+			while (!isSettled(to) && heapSize > 0) {
+				int node = pop();
+				settled[node] = true;
+				relax(node);
+			}
+			return isSettled(to) ? dist[to] : INFINITY;
+		}
+
+		private boolean isSettled(int node) {
+			return node < settled.length && settled[node];
+		}
+
+		/**
+		 * Relaxes the neighbors of a node (updates the shortest distances)
+		 */
+		private void relax(int node) {
+			int[] nodes = getLinks(node);
+			double[] costs = linkCosts[node];
+			double nodeDist = dist[node];
+
+			for (int i=0; i<nodes.length; i++) {
+				int n = nodes[i];
+				ensureCapacity(n + 1);
+				if (settled[n]) {
+					continue;
+				}
+				double nDist = nodeDist + costs[i];
+				if (dist[n] > nDist) {
+					dist[n] = nDist;
+					if (heapPos[n] == 0) {
+						push(n);
+					} else {
+						siftUp(heapPos[n] - 1);
+					}
+				}
+			}
+		}
+
+		private void ensureCapacity(int size) {
+			if (size <= dist.length) {
+				return;
+			}
+			int old = dist.length;
+			int capacity = Math.max(size, old * 2);
+			dist = Arrays.copyOf(dist, capacity);
+			Arrays.fill(dist, old, capacity, INFINITY);
+			settled = Arrays.copyOf(settled, capacity);
+			heapPos = Arrays.copyOf(heapPos, capacity);
+		}
+
+		private boolean isBefore(int n1, int n2) {
+			return dist[n1] < dist[n2] || (dist[n1] == dist[n2] && n1 < n2);
+		}
+
+		private void push(int node) {
+			if (heapSize == heap.length) {
+				heap = Arrays.copyOf(heap, heap.length * 2);
+			}
+			heap[heapSize] = node;
+			heapPos[node] = heapSize + 1;
+			heapSize++;
+			siftUp(heapSize - 1);
+		}
+
+		private int pop() {
+			int top = heap[0];
+			heapPos[top] = 0;
+			heapSize--;
+			if (heapSize > 0) {
+				heap[0] = heap[heapSize];
+				heapPos[heap[0]] = 1;
+				siftDown(0);
+			}
+			return top;
+		}
+
+		private void siftUp(int pos) {
+			int node = heap[pos];
+			while (pos > 0) {
+				int parent = (pos - 1) / 2;
+				if (!isBefore(node, heap[parent])) {
+					break;
+				}
+				heap[pos] = heap[parent];
+				heapPos[heap[pos]] = pos + 1;
+				pos = parent;
+			}
+			heap[pos] = node;
+			heapPos[node] = pos + 1;
+		}
+
+		private void siftDown(int pos) {
+			int node = heap[pos];
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && isBefore(heap[child + 1],
+						heap[child])) {
+					child++;
+				}
+				if (!isBefore(heap[child], node)) {
+					break;
+				}
+				heap[pos] = heap[child];
+				heapPos[heap[pos]] = pos + 1;
+				pos = child;
+			}
+			heap[pos] = node;
+			heapPos[node] = pos + 1;
+		}
+	}
+}
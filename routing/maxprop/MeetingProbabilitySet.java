@@ -1,9 +1,10 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
 package routing.maxprop;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,17 +14,41 @@ import core.SimClock;
 /**
  * Class for storing and manipulating the meeting probabilities for the MaxProp
  * router module.
+ * <P>
+ * The probabilities are stored as weights in primitive arrays and the actual
+ * probability of a node is its weight multiplied by a scale factor that is
+ * common to the whole set. Hence, normalizing all the probabilities is only a
+ * division of the scale factor. The entries are kept in a binary min-heap
+ * (smallest probability first) so the entry to drop from a full set is always
+ * at hand. Replicas share the arrays with the original set until either one
+ * of them is modified, so copying sets between routers is cheap.
  */
 public class MeetingProbabilitySet {
 	public static final int INFINITE_SET_SIZE = Integer.MAX_VALUE;
-	/** meeting probabilities (probability that the next node one meets is X) */
-	private Map<Integer, Double> probs;
+	/** scale factor limit below which the weights are normalized again to
+	 * avoid underflows */
+	private static final double MIN_SCALE = 1e-100;
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** node indexes of the entries in heap order */
+	private int[] nodes;
+	/** weights of the entries in heap order; weight * scale = probability
+	 * (probability that the next node one meets is X) */
+	private double[] weights;
+	/** heap positions of the entries plus one by node index (0 = no entry) */
+	private int[] heapPos;
+	/** number of entries */
+	private int size;
+	/** the common scale factor of the weights */
+	private double scale;
+	/** true if the arrays may be shared with a replica */
+	private boolean shared;
 	/** the time when this MPS was last updated */
 	private double lastUpdateTime;
 	/** the alpha parameter */
 	private double alpha;
-    private int maxSetSize;
-	
+	private int maxSetSize;
+
 	/**
 	 * Constructor. Creates a probability set with empty node-probability
 	 * mapping.
@@ -32,17 +57,18 @@ public class MeetingProbabilitySet {
 	 */
 	public MeetingProbabilitySet(int maxSetSize, double alpha) {
 		this.alpha = alpha;
-		this.probs = new HashMap<Integer, Double>();
-        if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
-        	this.probs = new HashMap<Integer, Double>();
-        	this.maxSetSize = INFINITE_SET_SIZE;
-        } else {
-        	this.probs = new HashMap<Integer, Double>(maxSetSize);
-            this.maxSetSize = maxSetSize;
-        }
+		if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
+			this.maxSetSize = INFINITE_SET_SIZE;
+		} else {
+			this.maxSetSize = maxSetSize;
+		}
+		this.nodes = new int[INITIAL_CAPACITY];
+		this.weights = new double[INITIAL_CAPACITY];
+		this.heapPos = new int[INITIAL_CAPACITY];
+		this.scale = 1;
 		this.lastUpdateTime = 0;
 	}
-	
+
 	/**
 	 * Constructor. Creates a probability set with empty node-probability
 	 * mapping and infinite set size
@@ -50,86 +76,131 @@ public class MeetingProbabilitySet {
 	public MeetingProbabilitySet() {
 		this(INFINITE_SET_SIZE, 1);
 	}
-	
+
 	/**
 	 * Constructor. Creates a probability set with equal probability for
 	 * all the given node indexes.
 	 */
-	public MeetingProbabilitySet(double alpha, 
+	public MeetingProbabilitySet(double alpha,
 				List<Integer> initiallyKnownNodes) {
 		this(INFINITE_SET_SIZE, alpha);
 		double prob = 1.0/initiallyKnownNodes.size();
 		for (Integer i : initiallyKnownNodes) {
-			this.probs.put(i, prob);
+			put(i, prob);
 		}
 	}
-	
+
+	/**
+	 * Copy constructor. The replica shares the arrays of the original set
+	 * until either one of them is modified.
+	 */
+	private MeetingProbabilitySet(MeetingProbabilitySet mps) {
+		this.nodes = mps.nodes;
+		this.weights = mps.weights;
+		this.heapPos = mps.heapPos;
+		this.size = mps.size;
+		this.scale = mps.scale;
+		this.lastUpdateTime = mps.lastUpdateTime;
+		this.alpha = mps.alpha;
+		this.maxSetSize = mps.maxSetSize;
+		this.shared = mps.shared = true;
+	}
+
 	/**
 	 * Updates meeting probability for the given node index.
 	 * <PRE> P(b) = P(b)_old + alpha
-	 * Normalize{P}</PRE> 
+	 * Normalize{P}</PRE>
 	 * I.e., The probability of the given node index is increased by one and
 	 * then all the probabilities are normalized so that their sum equals to 1.
 	 * @param index The node index to update the probability for
 	 */
 	public void updateMeetingProbFor(Integer index) {
-        Map.Entry<Integer, Double> smallestEntry = null;
-        double smallestValue = Double.MAX_VALUE;
-
 		this.lastUpdateTime = SimClock.getTime();
-		
-		if (probs.size() == 0) { // first entry
-			probs.put(index, 1.0);
+
+		if (size == 0) { // first entry
+			scale = 1;
+			put(index, 1.0);
 			return;
 		}
-		
-		double newValue = getProbFor(index) + alpha;
-		probs.put(index, newValue);
 
-		/* now the sum of all entries is 1+alpha;
-		 * normalize to one by dividing all the entries by 1+alpha */ 
-		for (Map.Entry<Integer, Double> entry : probs.entrySet()) {
-			entry.setValue(entry.getValue() / (1+alpha));
-            if (entry.getValue() < smallestValue) {
-                smallestEntry = entry;
-                smallestValue = entry.getValue();
-            }
+		put(index, getProbFor(index) + alpha);
 
+		/* now the sum of all entries is 1+alpha;
+		 * normalize to one by dividing all the entries by 1+alpha */
+		scale /= (1+alpha);
+		if (scale < MIN_SCALE) {
+			for (int i=0; i<size; i++) {
+				weights[i] *= scale;
+			}
+			scale = 1;
 		}
 
-        if (probs.size() >= maxSetSize) {
-            core.Debug.p("Probsize: " + probs.size() + " dropping " + 
-                    probs.remove(smallestEntry.getKey()));
-        }
+		if (size >= maxSetSize) {
+			core.Debug.p("Probsize: " + size + " dropping " +
+					weights[0] * scale);
+			removeFirst();
+		}
 	}
-	
+
 	public void updateMeetingProbFor(Integer index, double iet)	{
-		probs.put(index, iet);
+		put(index, iet);
 	}
-	
+
 	/**
-	 * Returns the current delivery probability value for the given node index 
+	 * Returns the current delivery probability value for the given node index
 	 * @param index The index of the node to look the P for
 	 * @return the current delivery probability value
 	 */
-	public double getProbFor(Integer index) {
-		if (probs.containsKey(index)) {
-			return probs.get(index);
+	public double getProbFor(int index) {
+		if (index < heapPos.length && heapPos[index] != 0) {
+			return weights[heapPos[index] - 1] * scale;
 		}
 		else {
 			/* the node with the given index has not been met */
 			return 0.0;
 		}
 	}
-	
+
 	/**
-	 * Returns a reference to the probability map of this probability set
-	 * @return a reference to the probability map of this probability set
+	 * Returns the number of nodes that have a probability value
+	 * @return the number of nodes that have a probability value
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the node index of an entry. Together with {@link #size()} and
+	 * {@link #getProbAt(int)}, this can be used to go through the
+	 * probabilities without creating objects.
+	 * @param i Index of the entry (0 <= i < size)
+	 * @return The node index of the entry
+	 */
+	public int getNodeAt(int i) {
+		return this.nodes[i];
+	}
+
+	/**
+	 * Returns the probability value of an entry
+	 * @param i Index of the entry (0 <= i < size)
+	 * @return The probability value of the entry
+	 */
+	public double getProbAt(int i) {
+		return this.weights[i] * scale;
+	}
+
+	/**
+	 * Returns a new map containing the probabilities of this probability set
+	 * @return a (node index, probability) map of the probabilities
 	 */
 	public Map<Integer, Double> getAllProbs() {
-		return this.probs;
+		Map<Integer, Double> probs = new HashMap<Integer, Double>(size * 2);
+		for (int i=0; i<size; i++) {
+			probs.put(nodes[i], getProbAt(i));
+		}
+		return probs;
 	}
-	
+
 	/**
 	 * Returns the time when this probability set was last updated
 	 * @return the time when this probability set was last updated
@@ -137,37 +208,141 @@ public class MeetingProbabilitySet {
 	public double getLastUpdateTime() {
 		return this.lastUpdateTime;
 	}
-	
+
 	/**
 	 * Enables changing the alpha parameter dynamically
 	 */
 	public void setAlpha(double alpha) {
 		this.alpha = alpha;
 	}
-	
+
 	/**
-	 * Returns a deep copy of the probability set
-	 * @return a deep copy of the probability set
+	 * Returns a copy of the probability set. Modifying either one of the sets
+	 * later doesn't affect the other.
+	 * @return a copy of the probability set
 	 */
 	public MeetingProbabilitySet replicate() {
-		MeetingProbabilitySet replica = new MeetingProbabilitySet(
-				this.maxSetSize, alpha);
-		
-		// do a deep copy
-		for (Map.Entry<Integer, Double> e : probs.entrySet()) {
-			replica.probs.put(e.getKey(), e.getValue().doubleValue());
+		return new MeetingProbabilitySet(this);
+	}
+
+	/**
+	 * Sets the probability of a node, adding an entry for the node if needed
+	 */
+	private void put(int index, double value) {
+		prepareWrite();
+		if (index >= heapPos.length) {
+			heapPos = Arrays.copyOf(heapPos, Math.max(index + 1,
+					heapPos.length * 2));
+		}
+
+		int pos = heapPos[index] - 1;
+		if (pos < 0) { // new entry
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				weights = Arrays.copyOf(weights, size * 2);
+			}
+			pos = size++;
+			nodes[pos] = index;
+			weights[pos] = value / scale;
+			siftUp(pos);
+		}
+		else {
+			weights[pos] = value / scale;
+			siftDown(siftUp(pos));
+		}
+	}
+
+	/**
+	 * Removes the entry with the smallest probability
+	 */
+	private void removeFirst() {
+		prepareWrite();
+		heapPos[nodes[0]] = 0;
+		size--;
+		if (size > 0) {
+			nodes[0] = nodes[size];
+			weights[0] = weights[size];
+			heapPos[nodes[0]] = 1;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Makes private copies of the arrays if they may be shared with a replica
+	 */
+	private void prepareWrite() {
+		if (shared) {
+			nodes = nodes.clone();
+			weights = weights.clone();
+			heapPos = heapPos.clone();
+			shared = false;
 		}
-		
-		replica.lastUpdateTime = this.lastUpdateTime;
-		return replica;
 	}
-	
+
+	/**
+	 * Returns true if the entry at position p1 should be before the entry
+	 * at p2 in the heap (smaller probability or same probability and smaller
+	 * node index)
+	 */
+	private boolean isBefore(int p1, int p2) {
+		return weights[p1] < weights[p2] ||
+			(weights[p1] == weights[p2] && nodes[p1] < nodes[p2]);
+	}
+
+	private void swap(int p1, int p2) {
+		int node = nodes[p1];
+		double weight = weights[p1];
+		nodes[p1] = nodes[p2];
+		weights[p1] = weights[p2];
+		nodes[p2] = node;
+		weights[p2] = weight;
+		heapPos[nodes[p1]] = p1 + 1;
+		heapPos[nodes[p2]] = p2 + 1;
+	}
+
+	/**
+	 * Moves an entry up in the heap as far as needed
+	 * @return The new position of the entry
+	 */
+	private int siftUp(int pos) {
+		heapPos[nodes[pos]] = pos + 1;
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isBefore(pos, parent)) {
+				break;
+			}
+			swap(pos, parent);
+			pos = parent;
+		}
+		return pos;
+	}
+
+	/**
+	 * Moves an entry down in the heap as far as needed
+	 */
+	private void siftDown(int pos) {
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(child + 1, child)) {
+				child++;
+			}
+			if (!isBefore(child, pos)) {
+				break;
+			}
+			swap(pos, child);
+			pos = child;
+		}
+	}
+
 	/**
 	 * Returns a String presentation of the probabilities
 	 * @return a String presentation of the probabilities
 	 */
-    @Override
+	@Override
 	public String toString() {
-		return "probs: " +	this.probs.toString();
+		return "probs: " +	getAllProbs().toString();
 	}
-}
\ No newline at end of file
+}
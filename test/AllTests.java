@@ -36,6 +36,8 @@ public class AllTests {
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
 		suite.addTestSuite(MessageGraphvizReportTest.class);
 		suite.addTestSuite(ExternalEventsQueueTest.class);
+		suite.addTestSuite(StandardEventsReaderTest.class);
+		suite.addTestSuite(EventQueueHandlerTest.class);
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
@@ -49,6 +51,22 @@ public class AllTests {
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(DropPolicyTest.class);
+		suite.addTestSuite(SpatialHashGridTest.class);
+		suite.addTestSuite(ContactEpochsTest.class);
+		suite.addTestSuite(ContactHistoryTest.class);
+		suite.addTestSuite(FuzzyEngineTest.class);
+		suite.addTestSuite(DecisionEngineRouterTest.class);
+		suite.addTestSuite(SendQueueTest.class);
+		suite.addTestSuite(DeliveryPredictabilitiesTest.class);
+		suite.addTestSuite(MaxPropCostEngineTest.class);
+		suite.addTestSuite(EpidemicSummaryRouterTest.class);
+		suite.addTestSuite(SprayDecisionEngineTest.class);
+		suite.addTestSuite(ReportOutputTest.class);
+		suite.addTestSuite(StreamingStatsTest.class);
+		suite.addTestSuite(ColumnarEventLogTest.class);
+		suite.addTestSuite(SimProfilerTest.class);
+		suite.addTestSuite(BenchmarkRunnerTest.class);
 		//$JUnit-END$
 		return suite;
 	}
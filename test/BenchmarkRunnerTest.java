@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import benchmark.Benchmark;
+import benchmark.BenchmarkRunner;
+
+/**
+ * Tests for the benchmark runner
+ */
+public class BenchmarkRunnerTest extends TestCase {
+	private static final int OPS = 100;
+
+	/**
+	 * Benchmark that counts the calls of its methods
+	 */
+	private static class CountingBenchmark extends Benchmark {
+		private int setUps;
+		private int iterations;
+		private int runs;
+		private int tearDowns;
+
+		public CountingBenchmark() {
+			super("counting");
+		}
+
+		@Override
+		public void setUp() {
+			setUps++;
+		}
+
+		@Override
+		public void setUpIteration() {
+			iterations++;
+		}
+
+		@Override
+		public long run() {
+			return runs++;
+		}
+
+		@Override
+		public int getOperationsPerIteration() {
+			return OPS;
+		}
+
+		@Override
+		public void tearDown() {
+			tearDowns++;
+		}
+	}
+
+	public void testMeasure() {
+		CountingBenchmark b = new CountingBenchmark();
+		double[] result = new BenchmarkRunner().measure(b);
+		int nrofIterations = BenchmarkRunner.DEF_WARMUP_ITERATIONS +
+			BenchmarkRunner.DEF_ITERATIONS;
+		assertEquals(1, b.setUps);
+		assertEquals(nrofIterations, b.iterations);
+		assertEquals(nrofIterations * OPS, b.runs);
+		assertEquals(1, b.tearDowns);
+		assertTrue(result[0] > 0);
+		assertTrue(result[1] >= 0);
+	}
+
+	public void testReadResults() throws IOException {
+		File f = File.createTempFile("benchmark", ".txt");
+		f.deleteOnExit();
+		FileWriter out = new FileWriter(f);
+		out.write(BenchmarkRunner.COMMENT_PREFIX + " header\n\n" +
+				"a:x=1    12.5   1.0\n" +
+				"b        1000.0 20.0\n");
+		out.close();
+
+		Map<String, Double> results = BenchmarkRunner.readResults(f);
+		assertEquals(2, results.size());
+		assertEquals(12.5, results.get("a:x=1"));
+		assertEquals(1000.0, results.get("b"));
+	}
+
+	public void testBenchmarkNames() {
+		Set<String> names = new HashSet<String>();
+		for (Benchmark b : BenchmarkRunner.getBenchmarks()) {
+			assertFalse(b.getName(), b.getName().contains(" "));
+			assertTrue("Duplicate " + b.getName(), names.add(b.getName()));
+		}
+	}
+}
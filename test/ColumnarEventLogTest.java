@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import junit.framework.TestCase;
+import report.ColumnarEventLogReader;
+import report.ColumnarEventLogReader.Chunk;
+import report.ColumnarEventLogReport;
+import report.EventLogQuery;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the columnar event log report, reader and query tool
+ */
+public class ColumnarEventLogTest extends TestCase {
+	private static final int CHUNK_SIZE = 10;
+	private static final int NROF_MESSAGES = 20;
+	private TestSettings ts;
+	private File logFile;
+	private DTNHost h1;
+	private DTNHost h2;
+	private DTNHost h3;
+
+	@Override
+	public void setUp() throws IOException {
+		ts = new TestSettings();
+		File outFile = File.createTempFile("celtest", ".txt");
+		outFile.deleteOnExit();
+		logFile = File.createTempFile("celtest", ".cel");
+		logFile.deleteOnExit();
+		ts.putSetting("ColumnarEventLogReport.output",
+				outFile.getAbsolutePath());
+		ts.putSetting("ColumnarEventLogReport." +
+				ColumnarEventLogReport.LOG_FILE_S, logFile.getAbsolutePath());
+		ts.putSetting("ColumnarEventLogReport." +
+				ColumnarEventLogReport.CHUNK_SIZE_S, "" + CHUNK_SIZE);
+		SimClock.reset();
+
+		TestUtils utils = new TestUtils(null, null, ts);
+		h1 = utils.createHost(new Coord(0,0), "h1");
+		h2 = utils.createHost(new Coord(0,0), "h2");
+		h3 = utils.createHost(new Coord(0,0), "h3");
+	}
+
+	/**
+	 * Writes a log where every message is created at time 10*i in h1,
+	 * relayed through h2 to h3 and removed from h2 (6 events per message)
+	 */
+	private void writeLog() {
+		ColumnarEventLogReport r = new ColumnarEventLogReport();
+		for (int i=0; i<NROF_MESSAGES; i++) {
+			SimClock.getInstance().setTime(i * 10);
+			Message m = new Message(h1, h3, "M" + i, 1);
+			r.newMessage(m);
+			r.hostsConnected(h1, h2);
+			r.messageTransferStarted(m, h1, h2);
+			SimClock.getInstance().setTime(i * 10 + 1);
+			r.messageTransferred(m, h1, h2, false);
+			SimClock.getInstance().setTime(i * 10 + 3);
+			r.messageTransferred(m, h2, h3, true);
+			SimClock.getInstance().setTime(i * 10 + 5);
+			r.messageDeleted(m, h2, false);
+		}
+		r.done();
+	}
+
+	public void testReadBack() {
+		writeLog();
+		ColumnarEventLogReader log = new ColumnarEventLogReader(logFile);
+		assertEquals(NROF_MESSAGES * 6, log.getNrofEvents());
+		assertEquals(NROF_MESSAGES * 6 / CHUNK_SIZE, log.getNrofChunks());
+		assertEquals(NROF_MESSAGES, log.getNrofMessages());
+		assertEquals("M3", log.getMessageId(3));
+		assertEquals("h2", log.getHostName(h2.getAddress()));
+
+		Chunk c = log.getChunk(1); // events 10-19: M1's delivery, ...
+		assertEquals(CHUNK_SIZE, c.getNrofEvents());
+		assertEquals(log.getChunkMinTime(1), c.getTime(0));
+		assertEquals(log.getChunkMaxTime(1), c.getTime(CHUNK_SIZE - 1));
+		assertEquals(13.0, c.getTime(0));
+		assertEquals(ColumnarEventLogReport.TYPE_DELIVERED, c.getType(0));
+		assertEquals(h2.getAddress(), c.getHost1(0));
+		assertEquals(h3.getAddress(), c.getHost2(0));
+		assertEquals("M1", log.getMessageId(c.getMessage(0)));
+		assertEquals(ColumnarEventLogReport.TYPE_CREATE, c.getType(2));
+		assertEquals("M2", log.getMessageId(c.getMessage(2)));
+		assertEquals(-1, c.getHost2(2));
+		assertEquals(ColumnarEventLogReport.TYPE_CONN_UP, c.getType(3));
+		assertEquals(-1, c.getMessage(3));
+
+		assertEquals(0, log.firstChunk(0));
+		assertEquals(1, log.firstChunk(log.getChunkMaxTime(0) + 0.5));
+		assertEquals(log.getNrofChunks(), log.firstChunk(1000000));
+		log.close();
+	}
+
+	public void testStats() {
+		writeLog();
+		ColumnarEventLogReader log = new ColumnarEventLogReader(logFile);
+		EventLogQuery q = new EventLogQuery(-Double.MAX_VALUE,
+				Double.MAX_VALUE, System.out);
+		EventLogQuery.MessageStats stats = q.getMessageStats(log);
+		assertEquals("" + NROF_MESSAGES, stats.getValue("created"));
+		assertEquals("" + NROF_MESSAGES * 2, stats.getValue("relayed"));
+		assertEquals("" + NROF_MESSAGES, stats.getValue("delivered"));
+		assertEquals("1.0000", stats.getValue("delivery_prob"));
+		assertEquals("1.0000", stats.getValue("overhead_ratio"));
+		assertEquals("3.0000", stats.getValue("latency_avg"));
+		assertEquals("2.0000", stats.getValue("hopcount_avg"));
+		assertEquals("2", stats.getValue("hopcount_med"));
+		assertEquals("4.0000", stats.getValue("buffertime_avg"));
+		assertEquals("NaN", stats.getValue("rtt_avg"));
+
+		/* messages created before the range are left out */
+		q = new EventLogQuery(100, 150, System.out);
+		stats = q.getMessageStats(log);
+		assertEquals("6", stats.getValue("created")); // 100, 110, ..., 150
+		assertEquals("5", stats.getValue("delivered")); // not M15
+		log.close();
+	}
+
+	public void testCounts() {
+		writeLog();
+		ColumnarEventLogReader log = new ColumnarEventLogReader(logFile);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		EventLogQuery q = new EventLogQuery(51, 73, new PrintStream(bytes));
+		q.printCounts(log);
+		String counts = bytes.toString();
+		/* M5: DE 51, DE 53, R 55; M6: C, CONN, S 60, DE 61, DE 63, R 65;
+		 * M7: C, CONN, S 70, DE 71, DE 73 */
+		assertTrue(counts, counts.contains("C: 2\n"));
+		assertTrue(counts, counts.contains("CONN up: 2\n"));
+		assertTrue(counts, counts.contains("DE R: 3\n"));
+		assertTrue(counts, counts.contains("DE D: 3\n"));
+		assertTrue(counts, counts.contains("R: 2\n"));
+		log.close();
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.community.ContactEpochs;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.MessageListener;
+
+/**
+ * Tests for the incrementally updated epoch degrees of the centrality
+ * algorithms
+ */
+public class ContactEpochsTest extends TestCase {
+	private static final int EPOCH = 100;
+	private static final int NROF_HOSTS = 10;
+
+	private List<DTNHost> hosts;
+	/* contacts added so far */
+	private List<DTNHost> peers;
+	private List<Double> ends;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts.add(utils.createHost());
+		}
+		peers = new ArrayList<DTNHost>();
+		ends = new ArrayList<Double>();
+	}
+
+	private void add(ContactEpochs ce, DTNHost peer, double end) {
+		ce.addContact(peer, end);
+		peers.add(peer);
+		ends.add(end);
+	}
+
+	/**
+	 * Computes the degree sum from all the contacts
+	 */
+	private int degreeSum(int first, int last, Set<DTNHost> community) {
+		int sum = 0;
+		for (int e = first; e <= last; e++) {
+			Set<DTNHost> met = new HashSet<DTNHost>();
+			for (int i=0; i<peers.size(); i++) {
+				if ((int)(ends.get(i) / EPOCH) == e &&
+						(community == null || community.contains(peers.get(i)))) {
+					met.add(peers.get(i));
+				}
+			}
+			sum += met.size();
+		}
+		return sum;
+	}
+
+	private int recentPeers(double since, Set<DTNHost> community) {
+		Set<DTNHost> met = new HashSet<DTNHost>();
+		for (int i=0; i<peers.size(); i++) {
+			if (ends.get(i) > since &&
+					(community == null || community.contains(peers.get(i)))) {
+				met.add(peers.get(i));
+			}
+		}
+		return met.size();
+	}
+
+	public void testDegrees() {
+		ContactEpochs ce = new ContactEpochs(EPOCH, false);
+		assertEquals(-1, ce.getFirstEpoch());
+		assertEquals(0, ce.getDegreeSum(0, 10));
+
+		add(ce, hosts.get(0), 150);
+		add(ce, hosts.get(1), 160);
+		add(ce, hosts.get(0), 170); // same peer, same epoch
+		add(ce, hosts.get(0), 420);
+
+		assertEquals(1, ce.getFirstEpoch());
+		assertEquals(0, ce.getDegreeSum(0, 0));
+		assertEquals(2, ce.getDegreeSum(1, 1));
+		assertEquals(0, ce.getDegreeSum(2, 3));
+		assertEquals(1, ce.getDegreeSum(4, 4));
+		assertEquals(3, ce.getDegreeSum(0, 100));
+
+		Set<DTNHost> community = new HashSet<DTNHost>();
+		community.add(hosts.get(0));
+		assertEquals(1, ce.getFirstEpoch(community));
+		assertEquals(2, ce.getDegreeSum(0, 4, community));
+		assertEquals(1, ce.getDegreeSum(2, 4, community));
+	}
+
+	public void testRandomContacts() {
+		Random rng = new Random(1);
+		ContactEpochs ce = new ContactEpochs(EPOCH, true);
+		Set<DTNHost> community = new HashSet<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i+=3) {
+			community.add(hosts.get(i));
+		}
+
+		double time = 0;
+		for (int i=0; i<500; i++) {
+			time += rng.nextDouble() * 30;
+			add(ce, hosts.get(rng.nextInt(NROF_HOSTS)), time);
+
+			if (i % 25 == 0) {
+				int current = (int)(time / EPOCH);
+				for (int first = 0; first <= current; first += 3) {
+					assertEquals(degreeSum(first, current, null),
+							ce.getDegreeSum(first, current));
+					assertEquals(degreeSum(first, current, community),
+							ce.getDegreeSum(first, current, community));
+				}
+				double since = time - EPOCH;
+				assertEquals(recentPeers(since, null), 
+						ce.getNrofRecentPeers(since));
+				assertEquals(recentPeers(since, community), 
+						ce.getNrofRecentPeers(since, community));
+			}
+		}
+	}
+}
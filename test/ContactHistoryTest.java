@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.community.ContactHistory;
+import routing.community.Duration;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.MessageListener;
+import core.SettingsError;
+
+/**
+ * Tests for the ring buffer based contact history
+ */
+public class ContactHistoryTest extends TestCase {
+	private static final double DELTA = 0.00001;
+
+	private DTNHost h1;
+	private DTNHost h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+	}
+
+	private ContactHistory create(String size, String age) {
+		TestSettings ts = new TestSettings();
+		if (size != null) {
+			ts.putSetting(ContactHistory.HISTORY_SIZE_SETTING, size);
+		}
+		if (age != null) {
+			ts.putSetting(ContactHistory.HISTORY_AGE_SETTING, age);
+		}
+		return new ContactHistory(ts);
+	}
+
+	public void testUnbounded() {
+		ContactHistory ch = create(null, null);
+		assertNull(ch.getHistory(h1, false));
+		assertFalse(ch.contains(h1));
+
+		ch.getHistory(h1, true);
+		assertTrue(ch.contains(h1));
+		assertEquals(0, ch.getHistory(h1, false).size());
+		assertTrue(Double.isNaN(ch.getHistory(h1, false).getMean()));
+
+		for (int i=0; i<100; i++) {
+			ch.add(h2, i * 10, i * 10 + 5);
+		}
+		ContactHistory.PeerHistory h = ch.getHistory(h2, false);
+		assertEquals(100, h.size());
+		assertEquals(500, h.getTotalDuration(), DELTA);
+		assertEquals(5, h.getMean(), DELTA);
+		assertEquals(0, h.getVariance(), DELTA);
+		assertEquals(995, h.getLastEnd(), DELTA);
+		assertEquals(990, h.get(99).start, DELTA);
+		assertEquals(0, h.getStart(0), DELTA);
+	}
+
+	public void testSizeLimit() {
+		ContactHistory ch = create("3", null);
+		for (int i=1; i<=5; i++) {
+			ch.add(h1, i * 10, i * 10 + i);
+		}
+		ContactHistory.PeerHistory h = ch.getHistory(h1, false);
+		assertEquals(3, h.size());
+		assertEquals(30, h.getStart(0), DELTA);
+		assertEquals(55, h.getEnd(2), DELTA);
+		assertEquals(3 + 4 + 5, h.getTotalDuration(), DELTA);
+		assertEquals(9 + 16 + 25, h.getSumOfSquares(), DELTA);
+		assertEquals(55, h.getLastEnd(), DELTA);
+
+		/* prototype copies the retention but not the contents */
+		ContactHistory copy = new ContactHistory(ch);
+		assertFalse(copy.contains(h1));
+		for (int i=0; i<10; i++) {
+			copy.add(h1, i, i + 1);
+		}
+		assertEquals(3, copy.getHistory(h1, false).size());
+	}
+
+	public void testAgeLimit() {
+		ContactHistory ch = create(null, "100");
+		ch.add(h1, 0, 10);
+		ch.add(h1, 50, 60);
+		ch.add(h1, 100, 110);
+		assertEquals(3, ch.getHistory(h1, false).size());
+		ch.add(h1, 150, 170); // first one ended 160s before this
+		ContactHistory.PeerHistory h = ch.getHistory(h1, false);
+		assertEquals(2, h.size());
+		assertEquals(100, h.getStart(0), DELTA);
+		assertEquals(30, h.getTotalDuration(), DELTA);
+	}
+
+	public void testInvalidSize() {
+		try {
+			create("0", null);
+			fail("Size 0 should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	public void testStatistics() {
+		Random rng = new Random(2);
+		ContactHistory ch = create("50", null);
+		List<Duration> all = new ArrayList<Duration>();
+		double time = 0;
+		for (int i=0; i<500; i++) {
+			double start = time + rng.nextDouble() * 100;
+			time = start + rng.nextDouble() * 100;
+			ch.add(h1, start, time);
+			all.add(new Duration(start, time));
+
+			List<Duration> kept = all.subList(Math.max(0, all.size() - 50),
+					all.size());
+			double sum = 0;
+			for (Duration d : kept) {
+				sum += d.end - d.start;
+			}
+			double mean = sum / kept.size();
+			double var = 0;
+			for (Duration d : kept) {
+				var += Math.pow((d.end - d.start) - mean, 2);
+			}
+			var /= kept.size();
+
+			ContactHistory.PeerHistory h = ch.getHistory(h1, false);
+			assertEquals(kept.size(), h.size());
+			assertEquals(sum, h.getTotalDuration(), DELTA);
+			assertEquals(mean, h.getMean(), DELTA);
+			assertEquals(var, h.getVariance(), DELTA);
+		}
+	}
+
+	public void testMapView() {
+		ContactHistory ch = create("2", null);
+		ch.add(h1, 0, 1);
+		ch.add(h1, 2, 4);
+		ch.add(h1, 5, 8);
+		ch.getHistory(h2, true);
+
+		Map<DTNHost, List<Duration>> map = ch.asMap();
+		assertEquals(2, map.size());
+		assertEquals(0, map.get(h2).size());
+		List<Duration> l = map.get(h1);
+		assertEquals(2, l.size());
+		assertEquals(2, l.get(0).start, DELTA);
+		assertEquals(8, l.get(1).end, DELTA);
+
+		try {
+			map.remove(h1);
+			fail("The view should be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import routing.DecisionEngineRouter;
+import routing.MessageRouter;
+import routing.ProphetDecisionEngine;
+import routing.RoutingDecisionEngine;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Tests for the utility cache of DecisionEngineRouter (using the PRoPHET
+ * decision engine)
+ */
+public class DecisionEngineRouterTest extends AbstractRouterTest {
+	private static final double DELTA = 0.00001;
+	private static final double P_INIT = 0.75;
+	private static final double GAMMA = 0.92;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." +
+				DecisionEngineRouter.ENGINE_SETTING, "ProphetDecisionEngine");
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + ".secondsInTimeUnit",
+				"60");
+		setRouterProto(new CountingRouter(ts));
+		super.setUp();
+	}
+
+	public void testCaching() {
+		DecisionEngineRouter r0 = (DecisionEngineRouter)h0.getRouter();
+		CountingEngine e0 = (CountingEngine)r0.getDecisionEngine();
+		h0.connect(h1);
+		int calls = e0.calls;
+
+		/* computed once per destination in the same generation */
+		double u = r0.getUtility(h1);
+		assertEquals(calls + 1, e0.calls);
+		assertEquals(u, r0.getUtility(h1), 0);
+		assertEquals(calls + 1, e0.calls);
+		r0.getUtility(h2);
+		assertEquals(calls + 2, e0.calls);
+		r0.getUtility(h2);
+		assertEquals(calls + 2, e0.calls);
+
+		/* invalidation forces re-evaluation */
+		r0.invalidateUtilities();
+		assertEquals(u, r0.getUtility(h1), 0);
+		assertEquals(calls + 3, e0.calls);
+		r0.getUtility(h1);
+		assertEquals(calls + 3, e0.calls);
+
+		/* so does a change of the simulation time */
+		clock.advance(1);
+		r0.getUtility(h1);
+		assertEquals(calls + 4, e0.calls);
+	}
+
+	public void testInvalidation() {
+		DecisionEngineRouter r0 = (DecisionEngineRouter)h0.getRouter();
+		assertEquals(0, r0.getUtility(h1), DELTA);
+
+		/* connection at the same time as the cached value */
+		h0.connect(h1);
+		assertEquals(P_INIT, r0.getUtility(h1), DELTA);
+
+		/* aging */
+		clock.advance(60);
+		assertEquals(P_INIT * GAMMA, r0.getUtility(h1), DELTA);
+
+		/* exchange initiated by the peer */
+		disconnect(h1);
+		h1.connect(h0);
+		double p = P_INIT * GAMMA;
+		assertEquals(p + (1 - p) * P_INIT, r0.getUtility(h1), DELTA);
+	}
+
+	public void testForwarding() {
+		h1.connect(h2);
+		disconnect(h2);
+
+		for (int i=0; i<10; i++) {
+			h0.createNewMessage(new Message(h0, h2, "toH2_" + i, 1));
+		}
+		h0.createNewMessage(new Message(h0, h3, "toH3", 1));
+		checkCreates(11);
+
+		h0.connect(h1);
+		for (int i=0; i<30; i++) {
+			clock.advance(1);
+			updateAllNodes();
+		}
+
+		Set<String> ids = new HashSet<String>();
+		for (Message m : h1.getMessageCollection()) {
+			ids.add(m.getId());
+		}
+		for (int i=0; i<10; i++) {
+			assertTrue(ids.contains("toH2_" + i));
+		}
+		assertFalse(ids.contains("toH3"));
+	}
+
+	/**
+	 * PRoPHET decision engine that counts the utility computations
+	 */
+	private static class CountingEngine extends ProphetDecisionEngine {
+		private int calls;
+
+		public CountingEngine(ProphetDecisionEngine de) {
+			super(de);
+		}
+
+		@Override
+		public RoutingDecisionEngine replicate() {
+			return new CountingEngine(this);
+		}
+
+		@Override
+		public double getUtility(DTNHost dest, DTNHost thisHost) {
+			calls++;
+			return super.getUtility(dest, thisHost);
+		}
+	}
+
+	/**
+	 * Router that uses the counting decision engine
+	 */
+	private static class CountingRouter extends DecisionEngineRouter {
+		public CountingRouter(Settings s) {
+			super(s);
+			decider = new CountingEngine((ProphetDecisionEngine)decider);
+		}
+
+		public CountingRouter(CountingRouter r) {
+			super(r);
+		}
+
+		@Override
+		public MessageRouter replicate() {
+			return new CountingRouter(this);
+		}
+	}
+}
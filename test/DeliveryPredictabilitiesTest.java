@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+import routing.DeliveryPredictabilities;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.MessageListener;
+import core.SimClock;
+
+/**
+ * Tests for the lazily aged PRoPHET delivery predictabilities
+ */
+public class DeliveryPredictabilitiesTest extends TestCase {
+	private static final double DELTA = 0.0000001;
+	private static final double GAMMA = 0.98;
+
+	private SimClock clock;
+	private DTNHost[] hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		hosts = new DTNHost[40];
+		for (int i=0; i<hosts.length; i++) {
+			hosts[i] = utils.createHost();
+		}
+	}
+
+	public void testAging() {
+		DeliveryPredictabilities p = new DeliveryPredictabilities(GAMMA, 30);
+		assertEquals(0, p.get(hosts[0]), 0);
+		assertFalse(p.contains(hosts[0]));
+
+		p.set(hosts[0], 0.75);
+		clock.advance(10);
+		p.set(hosts[1], 0.5);
+		assertEquals(0.75 * Math.pow(GAMMA, 10.0 / 30), p.get(hosts[0]), DELTA);
+
+		clock.advance(50);
+		/* same result whether the value was read in between or not */
+		assertEquals(0.75 * Math.pow(GAMMA, 2), p.get(hosts[0]), DELTA);
+		assertEquals(0.5 * Math.pow(GAMMA, 50.0 / 30), p.get(hosts[1]), DELTA);
+
+		p.set(hosts[0], 0.9);
+		assertEquals(0.9, p.get(hosts[0]), 0);
+		assertEquals(2, p.size());
+	}
+
+	public void testAddresses() {
+		DeliveryPredictabilities p = new DeliveryPredictabilities(GAMMA, 1);
+		p.set(hosts[35], 0.1);
+		p.set(hosts[3], 0.2);
+
+		assertEquals(2, p.size());
+		assertTrue(p.getCapacity() > hosts[35].getAddress());
+		double sum = 0;
+		int count = 0;
+		for (int i=0, n=p.getCapacity(); i<n; i++) {
+			if (p.getHost(i) != null) {
+				assertEquals(i, p.getHost(i).getAddress());
+				sum += p.get(i);
+				count++;
+			}
+		}
+		assertEquals(2, count);
+		assertEquals(0.3, sum, DELTA);
+		assertNull(p.getHost(p.getCapacity() + 10));
+		assertEquals(0, p.get(p.getCapacity() + 10), 0);
+	}
+}
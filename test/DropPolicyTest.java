@@ -0,0 +1,235 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.drop.DropPolicy;
+import routing.drop.FuzzyPriorityDropPolicy;
+import routing.drop.LargestFirstDropPolicy;
+import routing.drop.MostForwardedDropPolicy;
+import routing.drop.OldestFirstDropPolicy;
+import routing.drop.ShortestTtlDropPolicy;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the buffer drop policies
+ */
+public class DropPolicyTest extends TestCase {
+	/** Priority rules: a short TTL or a large FTC give a high output, i.e.,
+	 * a low priority */
+	private static final String PRIORITY_FCL =
+		"FUNCTION_BLOCK priority\n" +
+		"VAR_INPUT\n" +
+		"  ftc : REAL;\n" +
+		"  ttl : REAL;\n" +
+		"END_VAR\n" +
+		"VAR_OUTPUT\n" +
+		"  priority : REAL;\n" +
+		"END_VAR\n" +
+		"FUZZIFY ftc\n" +
+		"  TERM low := (0, 1) (10, 0);\n" +
+		"  TERM high := (0, 0) (10, 1);\n" +
+		"END_FUZZIFY\n" +
+		"FUZZIFY ttl\n" +
+		"  TERM short := (0, 1) (100, 0);\n" +
+		"  TERM long := (0, 0) (100, 1);\n" +
+		"END_FUZZIFY\n" +
+		"DEFUZZIFY priority\n" +
+		"  TERM lo := (0, 1) (0.5, 0);\n" +
+		"  TERM hi := (0.5, 0) (1, 1);\n" +
+		"  METHOD : COA;\n" +
+		"  DEFAULT := 0;\n" +
+		"END_DEFUZZIFY\n" +
+		"RULEBLOCK rb\n" +
+		"  AND : MIN;\n" +
+		"  ACT : MIN;\n" +
+		"  ACCU : MAX;\n" +
+		"  RULE 1 : IF ttl IS short THEN priority IS hi;\n" +
+		"  RULE 2 : IF ttl IS long THEN priority IS lo;\n" +
+		"  RULE 3 : IF ftc IS high THEN priority IS hi;\n" +
+		"END_RULEBLOCK\n" +
+		"END_FUNCTION_BLOCK\n";
+
+	private Message m1;
+	private Message m2;
+	private Message m3;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		
+		m1 = new Message(null, null, "M1", 300);
+		m1.setTtl(30);
+		m1.setReceiveTime(20);
+		m2 = new Message(null, null, "M2", 100);
+		m2.setTtl(10);
+		m2.setReceiveTime(10);
+		m3 = new Message(null, null, "M3", 200);
+		m3.setTtl(Message.INFINITE_TTL);
+		m3.setReceiveTime(10);
+	}
+	
+	private List<Message> dropOrder(DropPolicy p) {
+		List<Message> order = new ArrayList<Message>();
+		for (Message m : p.getDropOrder()) {
+			order.add(m);
+		}
+		return order;
+	}
+	
+	/**
+	 * Adds hops to the message's path so that its FTC is the given value
+	 */
+	private void setFtc(Message m, int ftc) {
+		while (m.getHopCount() < ftc) {
+			m.addNodeOnPath(null);
+		}
+		assertEquals(ftc, m.getFtc());
+	}
+
+	private void addAll(DropPolicy p) {
+		p.messageAdded(m1);
+		p.messageAdded(m2);
+		p.messageAdded(m3);
+	}
+	
+	public void testOldestFirst() {
+		DropPolicy p = new OldestFirstDropPolicy(new TestSettings());
+		addAll(p);
+		List<Message> order = dropOrder(p);
+		assertEquals(3, order.size());
+		/* m2 and m3 have the same receive time -> creation order */
+		assertEquals(m2, order.get(0));
+		assertEquals(m3, order.get(1));
+		assertEquals(m1, order.get(2));
+		
+		p.messageRemoved(m2);
+		assertEquals(m3, dropOrder(p).get(0));
+	}
+	
+	public void testShortestTtl() {
+		DropPolicy p = new ShortestTtlDropPolicy(new TestSettings());
+		addAll(p);
+		List<Message> order = dropOrder(p);
+		assertEquals(m2, order.get(0));
+		assertEquals(m1, order.get(1));
+		assertEquals(m3, order.get(2)); // infinite TTL is dropped last
+	}
+	
+	public void testLargestFirst() {
+		DropPolicy p = new LargestFirstDropPolicy(new TestSettings());
+		addAll(p);
+		List<Message> order = dropOrder(p);
+		assertEquals(m1, order.get(0));
+		assertEquals(m3, order.get(1));
+		assertEquals(m2, order.get(2));
+	}
+	
+	public void testReplicateHasNoMessages() {
+		DropPolicy p = new LargestFirstDropPolicy(new TestSettings());
+		addAll(p);
+		DropPolicy r = p.replicate();
+		assertEquals(0, dropOrder(r).size());
+		assertEquals(3, dropOrder(p).size());
+	}
+
+	public void testMostForwarded() {
+		setFtc(m1, 2);
+		setFtc(m2, 5);
+		setFtc(m3, 2);
+		DropPolicy p = new MostForwardedDropPolicy(new TestSettings());
+		addAll(p);
+		List<Message> order = dropOrder(p);
+		assertEquals(m2, order.get(0));
+		/* m1 and m3 have the same FTC -> creation order */
+		assertEquals(m1, order.get(1));
+		assertEquals(m3, order.get(2));
+
+		p.messageRemoved(m2);
+		assertEquals(m1, dropOrder(p).get(0));
+		assertEquals(0, dropOrder(p.replicate()).size());
+	}
+
+	private DropPolicy createFuzzyPolicy() throws Exception {
+		File f = File.createTempFile("droptest", ".fcl");
+		f.deleteOnExit();
+		FileWriter w = new FileWriter(f);
+		w.write(PRIORITY_FCL);
+		w.close();
+		TestSettings s = new TestSettings();
+		s.putSetting(FuzzyPriorityDropPolicy.FCL_S, f.getPath());
+		return new FuzzyPriorityDropPolicy(s);
+	}
+
+	public void testFuzzyPriority() throws Exception {
+		DropPolicy p = createFuzzyPolicy();
+		Message a = new Message(null, null, "A", 100);
+		a.setTtl(100);
+		Message b = new Message(null, null, "B", 100);
+		b.setTtl(100);
+		setFtc(b, 8);
+		Message c = new Message(null, null, "C", 100);
+		c.setTtl(Message.INFINITE_TTL);
+		p.messageAdded(a);
+		p.messageAdded(b);
+		p.messageAdded(c);
+
+		/* the largest FTC is dropped first; infinite TTL counts as long */
+		List<Message> order = dropOrder(p);
+		assertEquals(3, order.size());
+		assertEquals(b, order.get(0));
+		assertEquals(a, order.get(1));
+		assertEquals(c, order.get(2));
+
+		p.messageRemoved(b);
+		assertEquals(a, dropOrder(p).get(0));
+		assertEquals(0, dropOrder(p.replicate()).size());
+	}
+
+	public void testFuzzyPriorityRekeyOnTtlChange() throws Exception {
+		DropPolicy p = createFuzzyPolicy();
+		Message a = new Message(null, null, "A", 100);
+		a.setTtl(100);
+		Message b = new Message(null, null, "B", 100);
+		b.setTtl(Message.INFINITE_TTL);
+		setFtc(b, 5);
+		p.messageAdded(a);
+		p.messageAdded(b);
+		assertEquals(b, dropOrder(p).get(0));
+
+		/* TTL changes only at full minutes -> no re-evaluation yet */
+		SimClock.getInstance().setTime(59);
+		assertEquals(b, dropOrder(p).get(0));
+
+		/* a's TTL is now short and its priority has to be re-evaluated */
+		SimClock.getInstance().setTime(95 * 60);
+		assertEquals(5, a.getTtl());
+		List<Message> order = dropOrder(p);
+		assertEquals(a, order.get(0));
+		assertEquals(b, order.get(1));
+	}
+
+	public void testDropOrderIsReusable() throws Exception {
+		for (DropPolicy p : new DropPolicy[] {createFuzzyPolicy(),
+				new MostForwardedDropPolicy(new TestSettings())}) {
+			addAll(p);
+			Iterable<Message> order = p.getDropOrder();
+			int n = 0;
+			for (Message m : order) {
+				n++;
+			}
+			for (Message m : order) {
+				n++;
+			}
+			assertEquals(6, n);
+		}
+	}
+}
@@ -4,6 +4,7 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
 import core.DTNHost;
@@ -619,4 +620,39 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertNotSame(orderedIds, runMessageExchange(true));
 		assertNotSame(orderedIds, runMessageExchange(false));
 	}
+
+	public void testDropPolicyEviction() throws Exception {
+		ts.putSetting(ActiveRouter.DROP_POLICY_S, "LargestFirstDropPolicy");
+		try {
+			this.setUp();
+		} finally {
+			ts.putSetting(ActiveRouter.DROP_POLICY_S, ""); // back to default
+		}
+
+		h1.createNewMessage(new Message(h1, h3, msgId1, BUFFER_SIZE/5));
+		clock.advance(10);
+		h1.createNewMessage(new Message(h1, h3, msgId2, BUFFER_SIZE/2));
+		clock.advance(10);
+		h1.createNewMessage(new Message(h1, h3, msgId3, 3*BUFFER_SIZE/10));
+		checkCreates(3);
+
+		/* the largest message is dropped instead of the oldest one */
+		clock.advance(10);
+		h1.createNewMessage(new Message(h1, h3, msgId4, BUFFER_SIZE/5));
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+		assertTrue(mc.getLastDropped());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_CREATE, mc.getLastType());
+		assertFalse(mc.next());
+
+		/* the next largest one makes room for the next message */
+		h1.createNewMessage(new Message(h1, h3, msgId5, BUFFER_SIZE/2));
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId3, mc.getLastMsg().getId());
+		assertTrue(mc.getLastDropped());
+		assertEquals(3, h1.getNrofMessages());
+	}
 }
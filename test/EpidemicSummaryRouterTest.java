@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.EpidemicSummaryRouter;
+import routing.MessageRouter;
+import routing.SummaryVector;
+import core.Message;
+
+/**
+ * Tests for the summary vector exchange of EpidemicSummaryRouter
+ */
+public class EpidemicSummaryRouterTest extends AbstractRouterTest {
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		setRouterProto(new EpidemicSummaryRouter(ts));
+		super.setUp();
+	}
+
+	public void testSummaryVector() {
+		SummaryVector sv = new SummaryVector(100, 16);
+		for (int i=0; i<100; i++) {
+			sv.add("M" + i);
+		}
+		int falsePositives = 0;
+		for (int i=0; i<1000; i++) {
+			assertTrue(sv.mightContain("M" + (i % 100)));
+			if (sv.mightContain("X" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 10);
+		assertEquals(200, sv.getSize());
+	}
+
+	private void run(int seconds) {
+		for (int i=0; i<seconds; i++) {
+			clock.advance(1);
+			updateAllNodes();
+		}
+	}
+
+	public void testOnlyMissingMessagesOffered() {
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		h1.createNewMessage(new Message(h1, h3, msgId2, 1));
+		h2.createNewMessage(new Message(h2, h3, msgId3, 1));
+		checkCreates(3);
+
+		h1.connect(h2);
+		run(10);
+		assertEquals(3, h1.getNrofMessages());
+		assertEquals(3, h2.getNrofMessages());
+
+		EpidemicSummaryRouter r1 = (EpidemicSummaryRouter)h1.getRouter();
+		EpidemicSummaryRouter r2 = (EpidemicSummaryRouter)h2.getRouter();
+		/* received messages are not offered back */
+		assertEquals(0, r1.getNrofDeniedOld());
+		assertEquals(0, r2.getNrofDeniedOld());
+		assertEquals(0, r1.getNrofFiltered());
+
+		/* new contact: both have all the messages -> nothing is offered */
+		disconnect(h2);
+		mc.reset();
+		h1.connect(h2);
+		run(10);
+		assertFalse(mc.next());
+		assertEquals(0, r1.getNrofDeniedOld());
+		assertEquals(3, r1.getNrofFiltered());
+		assertEquals(3, r2.getNrofFiltered());
+		assertEquals(2, r1.getNrofSummaries());
+	}
+}
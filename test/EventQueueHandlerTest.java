@@ -0,0 +1,158 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.ConnectionEvent;
+import input.ContactTraceQueue;
+import input.ContactTraceWriter;
+import input.EventQueue;
+import input.EventQueueHandler;
+import input.ExternalEventsQueue;
+import input.MappedContactTraceReader;
+import input.MessageEventGenerator;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for loading the event queues from settings
+ */
+public class EventQueueHandlerTest extends TestCase {
+	private static final String[] TRACE = {
+		"10 CONN 1 2 up",
+		"20 CONN 1 2 down",
+		"30 CONN 2 3 up",
+		"40 CONN 2 3 down"};
+	
+	private TestSettings ts;
+	private File traceFile;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		traceFile = File.createTempFile("eqhTest", ".txt");
+		traceFile.deleteOnExit();
+		PrintWriter out = new PrintWriter(traceFile);
+		for (String s : TRACE) {
+			out.println(s);
+		}
+		out.close();
+	}
+	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		traceFile.delete();
+	}
+	
+	private void putQueueSetting(int index, String key, String value) {
+		ts.putSetting(EventQueueHandler.SETTINGS_NAMESPACE + index + "." +
+				key, value);
+	}
+	
+	private List<EventQueue> loadQueues(int nrof) {
+		ts.putSetting(EventQueueHandler.SETTINGS_NAMESPACE + "." + 
+				EventQueueHandler.NROF_SETTING, "" + nrof);
+		List<EventQueue> queues = new EventQueueHandler().getEventQueues();
+		assertEquals(nrof, queues.size());
+		return queues;
+	}
+	
+	public void testContactTraceQueue() {
+		putQueueSetting(1, EventQueueHandler.CLASS_SETTING, 
+				"ContactTraceQueue");
+		putQueueSetting(1, EventQueueHandler.PATH_SETTING, 
+				traceFile.getAbsolutePath());
+		EventQueue eq = loadQueues(1).get(0);
+		assertTrue(eq instanceof ContactTraceQueue);
+		assertEquals(10.0, eq.nextEventsTime());
+	}
+	
+	public void testFilePathOnly() {
+		putQueueSetting(1, EventQueueHandler.PATH_SETTING, 
+				traceFile.getAbsolutePath());
+		EventQueue eq = loadQueues(1).get(0);
+		assertTrue(eq instanceof ExternalEventsQueue);
+		assertEquals(10.0, eq.nextEventsTime());
+	}
+	
+	public void testExternalEventsQueueClass() {
+		putQueueSetting(1, EventQueueHandler.CLASS_SETTING, 
+				"ExternalEventsQueue");
+		putQueueSetting(1, EventQueueHandler.PATH_SETTING, 
+				traceFile.getAbsolutePath());
+		EventQueue eq = loadQueues(1).get(0);
+		assertTrue(eq instanceof ExternalEventsQueue);
+		assertEquals(10.0, eq.nextEventsTime());
+	}
+	
+	public void testReaderClassWithPath() {
+		/* a class that is not an event queue falls back to the file */
+		putQueueSetting(1, EventQueueHandler.CLASS_SETTING, 
+				"StandardEventsReader");
+		putQueueSetting(1, EventQueueHandler.PATH_SETTING, 
+				traceFile.getAbsolutePath());
+		EventQueue eq = loadQueues(1).get(0);
+		assertTrue(eq instanceof ExternalEventsQueue);
+	}
+	
+	public void testStartTime() throws Exception {
+		File bctFile = File.createTempFile("eqhTest",
+				MappedContactTraceReader.CONTACT_TRACE_EXT);
+		bctFile.deleteOnExit();
+		ContactTraceWriter w = new ContactTraceWriter(bctFile);
+		for (int i=0; i<10000; i++) { // more than one time index block
+			w.write(new ConnectionEvent(1, 2, null, i % 2 == 0, i));
+		}
+		w.close();
+		
+		/* text and binary contact trace files, with and without the class */
+		String[] paths = {traceFile.getAbsolutePath(), 
+				traceFile.getAbsolutePath(), bctFile.getAbsolutePath(), 
+				bctFile.getAbsolutePath()};
+		String[] classes = {null, "ExternalEventsQueue", null, 
+				"ExternalEventsQueue"};
+		double[] startTimes = {25, 25, 5000.5, 5000.5};
+		double[] expected = {30, 30, 5001, 5001};
+		for (int i=0; i<paths.length; i++) {
+			int n = i + 1;
+			if (classes[i] != null) {
+				putQueueSetting(n, EventQueueHandler.CLASS_SETTING, 
+						classes[i]);
+			}
+			putQueueSetting(n, EventQueueHandler.PATH_SETTING, paths[i]);
+			putQueueSetting(n, ExternalEventsQueue.START_TIME_SETTING,
+					"" + startTimes[i]);
+		}
+		List<EventQueue> queues = loadQueues(paths.length);
+		for (int i=0; i<paths.length; i++) {
+			assertEquals(paths[i], expected[i], 
+					queues.get(i).nextEventsTime());
+		}
+		bctFile.delete();
+	}
+	
+	public void testGeneratorClass() {
+		putQueueSetting(2, EventQueueHandler.CLASS_SETTING, 
+				"MessageEventGenerator");
+		putQueueSetting(2, MessageEventGenerator.MESSAGE_INTERVAL_S,
+				"1,2");
+		putQueueSetting(2, MessageEventGenerator.MESSAGE_SIZE_S,
+				"10,20");
+		putQueueSetting(2, MessageEventGenerator.HOST_RANGE_S,
+				"0,3");
+		putQueueSetting(2, MessageEventGenerator.MESSAGE_ID_PREFIX_S,
+				"M");
+		putQueueSetting(1, EventQueueHandler.CLASS_SETTING, 
+				"ContactTraceQueue");
+		putQueueSetting(1, EventQueueHandler.PATH_SETTING, 
+				traceFile.getAbsolutePath());
+		List<EventQueue> queues = loadQueues(2);
+		assertTrue(queues.get(0) instanceof ContactTraceQueue);
+		assertTrue(queues.get(1) instanceof MessageEventGenerator);
+	}
+}
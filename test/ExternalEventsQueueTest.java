@@ -5,9 +5,12 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.ConnectionEvent;
+import input.ContactTraceWriter;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
+import input.MappedContactTraceReader;
 import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
@@ -66,6 +69,25 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 	
+	public void testPrefetchingEEQ() {
+		for (int preload = 1; preload <= 10; preload++) {
+			eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(),preload);
+			eeq.startPrefetching();
+			checkEeq(eeq, preload);
+			assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+			assertEquals(Double.MAX_VALUE, eeq.nextEvent().getTime());
+			eeq.close();
+		}
+		
+		/* closing while the background reader is still running */
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), 1);
+		eeq.startPrefetching();
+		assertEquals(msgTimes[0], eeq.nextEvent().getTime());
+		eeq.close();
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertTrue(tempFile.delete()); // make sure all locks are gone
+	}
+	
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest", 
@@ -82,6 +104,40 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 	
 	
+	public void testContactTraceEEQ() throws Exception {
+		File tmpFile = File.createTempFile("TempTraceTest", 
+				MappedContactTraceReader.CONTACT_TRACE_EXT);
+		ContactTraceWriter w = new ContactTraceWriter(tmpFile);
+		int nrof = 10000; // more than one time index block
+		for (int i=0; i < nrof; i++) {
+			w.write(new ConnectionEvent(i % 7, i % 7 + 1, 
+					i % 3 == 0 ? null : "if" + (i % 3), i % 2 == 0, i * 0.5));
+		}
+		w.close();
+		
+		eeq = new ExternalEventsQueue(tmpFile.getAbsolutePath(), 1);
+		assertEquals(nrof, eeq.eventsLeftInBuffer());
+		for (int i=0; i < nrof; i++) {
+			assertEquals(i * 0.5, eeq.nextEventsTime());
+			ConnectionEvent ce = (ConnectionEvent)eeq.nextEvent();
+			assertEquals(i % 7, ce.getFromAddr());
+			assertEquals(i % 7 + 1, ce.getToAddr());
+			assertEquals(i % 2 == 0, ce.isUp());
+			assertEquals(i % 3 == 0 ? null : "if" + (i % 3), 
+					ce.getInterfaceId());
+		}
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		
+		eeq.skipUntil(3000.2);
+		assertEquals(3000.5, eeq.nextEventsTime());
+		eeq.skipUntil(0);
+		assertEquals(0.0, eeq.nextEventsTime());
+		eeq.skipUntil(nrof);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		
+		tmpFile.delete();
+	}
+	
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
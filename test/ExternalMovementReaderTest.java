@@ -62,6 +62,13 @@ public class ExternalMovementReaderTest extends TestCase {
 		assertEquals(0, list.size());
 	}
 
+	public void testPrefetchingReader() {
+		r.startPrefetching(1);
+		testReader();
+		assertEquals(0, r.readNextMovements().size());
+		r.close();
+	}
+
 	private void checkTuples(List<Tuple<String, Coord>> list, String[] ids,
 			Coord[] coords) {
 		
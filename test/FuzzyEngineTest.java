@@ -0,0 +1,266 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.fuzzy.FuzzyEngine;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Tests for the compiled fuzzy inference engine
+ */
+public class FuzzyEngineTest extends TestCase {
+	private static final double DELTA = 0.01;
+
+	private static final String SIMPLE =
+		"FUNCTION_BLOCK simple\n" +
+		"VAR_INPUT x : REAL; z : REAL; END_VAR\n" +
+		"VAR_OUTPUT y : REAL; END_VAR\n" +
+		"FUZZIFY x\n" +
+		"  TERM a := trian -1 0 1;\n" +
+		"  TERM b := (0, 0) (1, 1) (2, 1);\n" +
+		"END_FUZZIFY\n" +
+		"FUZZIFY z\n" +
+		"  TERM c := trape 0 1 2 3;\n" +
+		"END_FUZZIFY\n" +
+		"(* comment *)\n" +
+		"DEFUZZIFY y\n" +
+		"  TERM lo := trian 0 0.25 0.5;\n" +
+		"  TERM hi := trian 0.5 0.75 1;\n" +
+		"  METHOD : COG;\n" +
+		"  DEFAULT := -1;\n" +
+		"END_DEFUZZIFY\n" +
+		"RULEBLOCK rb\n" +
+		"  AND : MIN;\n" +
+		"  ACT : MIN;\n" +
+		"  ACCU : MAX;\n" +
+		"  RULE 1 : IF x IS a AND z IS c THEN y IS lo;\n" +
+		"  RULE 2 : IF (x IS b OR x IS NOT a) AND z IS c THEN y IS hi;\n" +
+		"  RULE 3 : IF x IS b AND NOT z IS c THEN y IS hi WITH 0.5;\n" +
+		"END_RULEBLOCK\n" +
+		"END_FUNCTION_BLOCK\n";
+
+	/** SIMPLE with a second output */
+	private static final String TWO_OUTPUTS = SIMPLE
+		.replace("VAR_OUTPUT y : REAL;", "VAR_OUTPUT y : REAL; w : REAL;")
+		.replace("RULEBLOCK rb\n",
+			"DEFUZZIFY w\n" +
+			"  TERM lo := trian 0 0 1;\n" +
+			"  TERM hi := trian 0 1 1;\n" +
+			"  METHOD : COG;\n" +
+			"  DEFAULT := 0;\n" +
+			"END_DEFUZZIFY\n" +
+			"RULEBLOCK rb\n")
+		.replace("END_RULEBLOCK\n",
+			"  RULE 4 : IF z IS c THEN w IS hi;\n" +
+			"  RULE 5 : IF NOT z IS c THEN w IS lo;\n" +
+			"END_RULEBLOCK\n");
+
+	private FuzzyEngine load(String fcl) throws IOException {
+		File f = File.createTempFile("fuzzytest", ".fcl");
+		f.deleteOnExit();
+		FileWriter w = new FileWriter(f);
+		w.write(fcl);
+		w.close();
+		return FuzzyEngine.load(f.getPath());
+	}
+
+	private double eval(FuzzyEngine e, double x, double z) {
+		double[] in = e.getInputBuffer();
+		in[e.getInputIndex("x")] = x;
+		in[e.getInputIndex("z")] = z;
+		return e.evaluate(in);
+	}
+
+	public void testInference() throws IOException {
+		FuzzyEngine e = load(SIMPLE);
+		assertEquals("simple", e.getName());
+		assertEquals(2, e.getNrofInputs());
+		assertEquals(0, e.requireOutput("y"));
+		assertEquals(-1, e.getInputIndex("y"));
+
+		/* only rule 1 */
+		assertEquals(0.25, eval(e, 0, 1.5), DELTA);
+		/* rules 1 and 2 with the same strength */
+		assertEquals(0.5, eval(e, 0.5, 1.5), DELTA);
+		/* only rule 2 */
+		assertEquals(0.75, eval(e, 1.5, 1.5), DELTA);
+		/* only rule 3 (z is outside term c) */
+		assertEquals(0.75, eval(e, 1.5, 5), DELTA);
+		/* no rules activate */
+		assertEquals(-1.0, eval(e, -1, 5), 0);
+		/* NaN belongs to no term (but to NOT a) */
+		assertEquals(0.75, eval(e, Double.NaN, 1.5), DELTA);
+		assertEquals(-1.0, eval(e, Double.NaN, Double.NaN), 0);
+	}
+
+	public void testFclFiles() {
+		FuzzyEngine e = FuzzyEngine.load("fcl/Reality.fcl");
+		assertSame(e, FuzzyEngine.load("fcl/Reality.fcl"));
+		double[] in = e.getInputBuffer();
+		in[e.requireInput("closeness")] = 1;
+		in[e.requireInput("variance")] = 0;
+		/* only "su is high" activates; center of area of its triangle */
+		assertEquals(0.75, e.evaluate(in, e.requireOutput("su")), DELTA);
+
+		FuzzyEngine p = FuzzyEngine.load("priority.fcl");
+		in = p.getInputBuffer();
+		in[p.requireInput("ftc")] = 8;
+		in[p.requireInput("ttl")] = 250;
+		/* only "priority is BS4" activates */
+		assertEquals(0.5, p.evaluate(in), DELTA);
+	}
+
+	public void testErrors() throws IOException {
+		try {
+			load(SIMPLE.replace("trian -1 0 1", "foo -1 0 1"));
+			fail("Unknown membership function should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+		try {
+			load(SIMPLE.replace("y IS lo", "y IS medium"));
+			fail("Unknown term should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+		try {
+			FuzzyEngine.load("no/such/file.fcl");
+			fail("Missing file should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+		try {
+			load(SIMPLE).requireInput("w");
+			fail("Unknown input should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	public void testGrid() throws IOException {
+		FuzzyEngine e = load(SIMPLE);
+		FuzzyEngine g = e.withGrid(0, 17, 0.15);
+		assertTrue(g.getGridValueCount() >= 17 * 17);
+		assertTrue(g.getGridError() <= 0.15);
+		assertEquals(0, e.getGridValueCount());
+
+		/* the error is only measured at the points halfway between the
+		 * grid points, so check that the interpolation is close on average */
+		Random rng = new Random(1);
+		double[] in = new double[2];
+		double error = 0;
+		for (int i=0; i<1000; i++) {
+			in[0] = -1 + rng.nextDouble() * 3;
+			in[1] = rng.nextDouble() * 3;
+			error += Math.abs(e.evaluateExact(in, 0) - g.evaluate(in));
+		}
+		assertTrue(error / 1000 < 0.01);
+
+		/* outside the grid and NaN are evaluated exactly */
+		in[0] = 5;
+		in[1] = 1.5;
+		assertEquals(e.evaluate(in), g.evaluate(in), 0);
+		in[0] = Double.NaN;
+		assertEquals(e.evaluate(in), g.evaluate(in), 0);
+		/* next to a point where no rule activates */
+		in[0] = -0.99;
+		in[1] = 2.99;
+		assertEquals(e.evaluate(in), g.evaluate(in), 0);
+	}
+
+	public void testGridErrorCoversEdges() throws IOException {
+		FuzzyEngine e = load(SIMPLE);
+		FuzzyEngine g = e.withGrid(0, 5, 1);
+		int size = (int)Math.round(Math.sqrt(g.getGridValueCount()));
+		assertEquals(size * size, g.getGridValueCount());
+
+		/* both inputs' terms range over an interval of length 3; the error
+		 * at every point halfway between the grid points (including the
+		 * midpoints of the cell edges) is within the reported error */
+		double halfStep = 3.0 / (size - 1) / 2;
+		double[] in = new double[2];
+		double max = 0;
+		for (int i=0; i<2*size-1; i++) {
+			for (int j=0; j<2*size-1; j++) {
+				in[0] = -1 + i * halfStep;
+				in[1] = j * halfStep;
+				max = Math.max(max, Math.abs(e.evaluateExact(in, 0) -
+						g.evaluate(in, 0)));
+			}
+		}
+		assertEquals(max, g.getGridError(), 1e-12);
+	}
+
+	public void testGridAllOutputs() throws IOException {
+		FuzzyEngine e = load(TWO_OUTPUTS);
+		int w = e.requireOutput("w");
+		assertEquals(1, w);
+
+		FuzzyEngine g = e.withGrid(17, 0.15);
+		assertTrue(g.getGridError() <= 0.15);
+		FuzzyEngine g1 = e.withGrid(w, 17, 0.15);
+		assertTrue(g.getGridValueCount() >= 2 * g1.getGridValueCount());
+
+		Random rng = new Random(1);
+		double[] in = new double[2];
+		double error0 = 0;
+		double error1 = 0;
+		for (int i=0; i<1000; i++) {
+			in[0] = -1 + rng.nextDouble() * 3;
+			in[1] = rng.nextDouble() * 3;
+			error0 += Math.abs(e.evaluateExact(in, 0) - g.evaluate(in, 0));
+			error1 += Math.abs(e.evaluateExact(in, w) - g.evaluate(in, w));
+			/* output without a grid is evaluated exactly */
+			assertEquals(e.evaluateExact(in, 0), g1.evaluate(in, 0), 0);
+		}
+		assertTrue(error0 / 1000 < 0.01);
+		assertTrue(error1 / 1000 < 0.01);
+
+		try {
+			e.withGrid(2, 17, 0.15);
+			fail("Invalid output index should not be accepted");
+		} catch (SimError ex) {
+			// expected
+		}
+	}
+
+	public void testThreads() throws Exception {
+		final FuzzyEngine e = load(SIMPLE);
+		final double[] expected = new double[500];
+		for (int i=0; i<expected.length; i++) {
+			expected[i] = eval(e, -1 + i * 0.006, i * 0.006);
+		}
+
+		final boolean[] ok = new boolean[4];
+		Thread[] threads = new Thread[ok.length];
+		for (int t=0; t<threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				public void run() {
+					boolean same = true;
+					for (int round=0; round<20; round++) {
+						for (int i=0; i<expected.length; i++) {
+							same &= expected[i] ==
+								eval(e, -1 + i * 0.006, i * 0.006);
+						}
+					}
+					ok[id] = same;
+				}
+			};
+			threads[t].start();
+		}
+		for (int t=0; t<threads.length; t++) {
+			threads[t].join();
+			assertTrue(ok[t]);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.maxprop.MaxPropCostEngine;
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Tests for the cached MaxProp path cost calculation
+ */
+public class MaxPropCostEngineTest extends TestCase {
+	private static final int NROF_NODES = 30;
+	private static final double DELTA = 0.0000001;
+
+	private Map<Integer, MeetingProbabilitySet> mapping;
+	private MaxPropCostEngine engine;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		mapping = new HashMap<Integer, MeetingProbabilitySet>();
+		engine = new MaxPropCostEngine(mapping);
+	}
+
+	private MeetingProbabilitySet set(int node) {
+		MeetingProbabilitySet mps = mapping.get(node);
+		if (mps == null) {
+			mps = new MeetingProbabilitySet();
+			mapping.put(node, mps);
+		}
+		return mps;
+	}
+
+	public void testCachedCosts() {
+		set(0).updateMeetingProbFor(1);
+		set(1).updateMeetingProbFor(2);
+		set(1).updateMeetingProbFor(3); // P(1->2) = P(1->3) = 0.5
+
+		assertEquals(0.0, engine.getCost(0, 0), 0);
+		assertEquals(0.5, engine.getCost(0, 3), DELTA);
+		assertEquals(MaxPropCostEngine.INFINITY, engine.getCost(0, 4), 0);
+		assertEquals(MaxPropCostEngine.INFINITY, engine.getCost(2, 0), 0);
+
+		/* the change isn't seen before the engine is told about it */
+		set(1).updateMeetingProbFor(3);
+		assertEquals(0.5, engine.getCost(0, 2), DELTA);
+		engine.probsChanged(1);
+		assertEquals(0.75, engine.getCost(0, 2), DELTA);
+		assertEquals(0.25, engine.getCost(0, 3), DELTA);
+
+		/* new links of a node that wasn't reached before */
+		set(3).updateMeetingProbFor(4);
+		engine.probsChanged(3);
+		assertEquals(0.25, engine.getCost(0, 4), DELTA);
+	}
+
+	/**
+	 * Textbook O(n^2) Dijkstra over the meeting probabilities, independent of
+	 * the implementations under test. The cost of a link from a to b is
+	 * 1 - P_a(b).
+	 * @param from The source node
+	 * @return Cost to each node (INFINITY for unreachable nodes)
+	 */
+	private double[] referenceCosts(int from) {
+		double[] dist = new double[NROF_NODES];
+		boolean[] done = new boolean[NROF_NODES];
+		for (int i=0; i<NROF_NODES; i++) {
+			dist[i] = MaxPropCostEngine.INFINITY;
+		}
+		dist[from] = 0;
+
+		for (int round=0; round<NROF_NODES; round++) {
+			int node = -1;
+			for (int i=0; i<NROF_NODES; i++) {
+				if (!done[i] && dist[i] < MaxPropCostEngine.INFINITY &&
+						(node == -1 || dist[i] < dist[node])) {
+					node = i;
+				}
+			}
+			if (node == -1) {
+				break; // rest of the nodes are unreachable
+			}
+			done[node] = true;
+			MeetingProbabilitySet mps = mapping.get(node);
+			if (mps == null) {
+				continue;
+			}
+			for (Map.Entry<Integer, Double> e : mps.getAllProbs().entrySet()) {
+				int n = e.getKey();
+				double d = dist[node] + (1 - e.getValue());
+				if (!done[n] && d < dist[n]) {
+					dist[n] = d;
+				}
+			}
+		}
+		return dist;
+	}
+
+	public void testSameAsDijkstra() {
+		Random rng = new Random(1);
+		MaxPropDijkstra dijkstra = new MaxPropDijkstra(mapping);
+		Set<Integer> targets = new HashSet<Integer>();
+		for (int i=0; i<NROF_NODES; i++) {
+			targets.add(i);
+		}
+
+		for (int round=0; round<20; round++) {
+			for (int i=0; i<10; i++) {
+				int n1 = rng.nextInt(NROF_NODES);
+				int n2 = rng.nextInt(NROF_NODES);
+				if (n1 != n2) {
+					set(n1).updateMeetingProbFor(n2);
+					engine.probsChanged(n1);
+				}
+			}
+			int from = rng.nextInt(NROF_NODES);
+			double[] expected = referenceCosts(from);
+			Map<Integer, Double> costs = dijkstra.getCosts(from, targets);
+			for (int to=0; to<NROF_NODES; to++) {
+				assertEquals(expected[to], engine.getCost(from, to), DELTA);
+				Double cost = costs.get(to);
+				assertEquals(expected[to], cost == null ?
+						MaxPropCostEngine.INFINITY : cost, DELTA);
+			}
+		}
+	}
+}
@@ -154,4 +154,43 @@ public class MaxPropDijkstraTest extends TestCase {
 		
 	}
 	
+	public void testSetSizeLimit() {
+		MeetingProbabilitySet mps = new MeetingProbabilitySet(3, 1.0);
+		mps.updateMeetingProbFor(1);
+		mps.updateMeetingProbFor(2);
+		mps.updateMeetingProbFor(1); // P(1) = 0.75, P(2) = 0.25
+		mps.updateMeetingProbFor(3); // full -> smallest value is dropped
+
+		assertEquals(2, mps.size());
+		assertEquals(0.0, mps.getProbFor(2));
+		assertEquals(0.375, mps.getProbFor(1));
+		assertEquals(0.5, mps.getProbFor(3));
+	}
+
+	public void testReplicate() {
+		MeetingProbabilitySet mps = mapping.get(0);
+		mps.updateMeetingProbFor(1);
+		mps.updateMeetingProbFor(2);
+		MeetingProbabilitySet replica = mps.replicate();
+
+		mps.updateMeetingProbFor(3);
+		assertEquals(0.5, replica.getProbFor(1));
+		assertEquals(0.0, replica.getProbFor(3));
+		assertEquals(2, replica.size());
+
+		replica.updateMeetingProbFor(1);
+		assertEquals(0.25, mps.getProbFor(1));
+		assertEquals(0.75, replica.getProbFor(1));
+		
+		/* many updates must not lose precision */
+		for (int i=0; i<5000; i++) {
+			mps.updateMeetingProbFor(4 + i % 2);
+		}
+		double total = 0;
+		for (int i=0; i<mps.size(); i++) {
+			total += mps.getProbAt(i);
+		}
+		assertEquals(1.0, total, DELTA);
+	}
+	
 }
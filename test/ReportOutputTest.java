@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+import report.AsyncReportWriter;
+import report.EventLogReport;
+import report.Report;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Tests that the asynchronous and compressed report output produce the same
+ * lines as the plain output (using EventLogReport)
+ */
+public class ReportOutputTest extends TestCase {
+	private static final int NROF_EVENTS = 5000;
+	private TestSettings ts;
+	private File outFile;
+
+	@Override
+	public void setUp() throws IOException {
+		ts = new TestSettings();
+		outFile = File.createTempFile("reportouttest", ".tmp");
+		outFile.deleteOnExit();
+		ts.putSetting("EventLogReport.output", outFile.getAbsolutePath());
+		SimClock.reset();
+	}
+
+	/**
+	 * Writes events to a new report and returns the lines of the report file
+	 */
+	private List<String> writeEvents(boolean compressed) throws IOException {
+		EventLogReport r = new EventLogReport();
+		TestUtils utils = new TestUtils(null, null, ts);
+		DTNHost h1 = utils.createHost(new Coord(0,0), "h1");
+		DTNHost h2 = utils.createHost(new Coord(0,0), "h2");
+
+		for (int i=0; i<NROF_EVENTS; i++) {
+			SimClock.getInstance().setTime(i * 0.1);
+			Message m = new Message(h1, h2, "M" + i, 1);
+			r.newMessage(m);
+			r.hostsConnected(h1, h2);
+			r.messageTransferred(m, h1, h2, i % 2 == 0);
+			r.messageDeleted(m, h1, false);
+		}
+		r.done();
+
+		Reader reader;
+		if (compressed) {
+			File gzFile = new File(outFile.getAbsolutePath() + Report.GZ_SUFFIX);
+			gzFile.deleteOnExit();
+			reader = new InputStreamReader(new GZIPInputStream(
+					new FileInputStream(gzFile)));
+		}
+		else {
+			reader = new FileReader(outFile);
+		}
+
+		BufferedReader in = new BufferedReader(reader);
+		List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = in.readLine()) != null) {
+			lines.add(line);
+		}
+		in.close();
+		return lines;
+	}
+
+	public void testAsyncOutput() throws IOException {
+		List<String> expected = writeEvents(false);
+		assertEquals(4 * NROF_EVENTS, expected.size());
+		assertEquals("0.1 C h1 M1", expected.get(4));
+		assertEquals("0.1 DE h1 h2 M1 A", expected.get(6));
+
+		/* small buffer so that the report has to wait for the writer */
+		ts.putSetting("EventLogReport." + Report.ASYNC_OUTPUT_S, "true");
+		ts.putSetting("EventLogReport." + Report.ASYNC_BUFFER_S, "16");
+		assertEquals(expected, writeEvents(false));
+	}
+
+	public void testCompressedOutput() throws IOException {
+		List<String> expected = writeEvents(false);
+
+		ts.putSetting("EventLogReport." + Report.COMPRESS_OUTPUT_S, "true");
+		assertEquals(expected, writeEvents(true));
+
+		ts.putSetting("EventLogReport." + Report.ASYNC_OUTPUT_S, "true");
+		assertEquals(expected, writeEvents(true));
+	}
+
+	public void testWriterError() {
+		AsyncReportWriter w = new AsyncReportWriter(new StringWriter(), 4,
+				"test writer");
+		Object failing = new Object() {
+			@Override
+			public String toString() {
+				throw new IllegalStateException("can't format");
+			}
+		};
+		try {
+			/* more records than fit into the buffer: without the error,
+			 * claim() would wait for the dead writer thread forever */
+			for (int i=0; i<100; i++) {
+				w.claim("").add(failing);
+				w.publish();
+			}
+			w.close();
+			fail("The error of the writer thread was not reported");
+		} catch (SimError e) {
+			assertTrue(e.getException() instanceof IllegalStateException);
+		}
+	}
+
+	public void testWriteAfterDone() throws IOException {
+		ts.putSetting("EventLogReport." + Report.ASYNC_OUTPUT_S, "true");
+		EventLogReport r = new EventLogReport();
+		TestUtils utils = new TestUtils(null, null, ts);
+		DTNHost h1 = utils.createHost(new Coord(0,0), "h1");
+		r.newMessage(new Message(h1, h1, "M1", 1));
+		r.done();
+		/* ignored as in the synchronous mode (doesn't reopen the file) */
+		r.newMessage(new Message(h1, h1, "M2", 1));
+
+		BufferedReader in = new BufferedReader(new FileReader(outFile));
+		assertEquals("0.0 C h1 M1", in.readLine());
+		assertNull(in.readLine());
+		in.close();
+	}
+}
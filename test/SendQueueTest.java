@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import junit.framework.TestCase;
+import routing.SendQueue;
+import core.Connection;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.Tuple;
+
+/**
+ * Tests for the indexed send queue of DecisionEngineRouter
+ */
+public class SendQueueTest extends TestCase {
+	private SendQueue q;
+	private Connection c1;
+	private Connection c2;
+	private Message[] msgs;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		Coord c0 = new Coord(0,0);
+		DTNHost h0 = utils.createHost(c0);
+		DTNHost h1 = utils.createHost(c0);
+		DTNHost h2 = utils.createHost(c0);
+		h0.connect(h1);
+		h0.connect(h2);
+		c1 = h0.getConnections().get(0);
+		c2 = h0.getConnections().get(1);
+
+		msgs = new Message[4];
+		for (int i=0; i<msgs.length; i++) {
+			msgs[i] = new Message(h0, h1, "M" + i, 1);
+		}
+		q = new SendQueue();
+		q.add(msgs[0], c1);
+		q.add(msgs[0], c2);
+		q.add(msgs[1], c2);
+		q.add(msgs[2], c1);
+		q.add(msgs[3], c1);
+	}
+
+	private String order() {
+		String s = "";
+		for (Tuple<Message, Connection> t : q) {
+			s += t.getKey().getId() + (t.getValue() == c1 ? "a " : "b ");
+		}
+		return s.trim();
+	}
+
+	public void testOrder() {
+		assertEquals(5, q.size());
+		assertEquals("M0a M0b M1b M2a M3a", order());
+		assertFalse(q.add(msgs[1], c2));
+		assertEquals(5, q.size());
+		assertEquals(3, q.size(c1));
+		assertEquals(2, q.getNrofConnections());
+		assertTrue(q.contains("M1", c2));
+		assertFalse(q.contains("M1", c1));
+		assertEquals("M1", q.get(2).getKey().getId());
+	}
+
+	public void testRemove() {
+		assertTrue(q.remove("M2", c1));
+		assertFalse(q.remove("M2", c1));
+		assertEquals("M0a M0b M1b M3a", order());
+
+		assertEquals(2, q.removeMessage("M0"));
+		assertEquals("M1b M3a", order());
+
+		assertEquals(1, q.removeConnection(c2));
+		assertEquals(1, q.getNrofConnections());
+		assertEquals("M3a", order());
+
+		q.add(msgs[0], c2);
+		assertEquals("M3a M0b", order());
+		assertEquals(2, q.size());
+
+		q.clear();
+		assertEquals(0, q.size());
+		assertEquals("", order());
+	}
+
+	public void testModifyWhileIterating() {
+		Iterator<Tuple<Message, Connection>> i = q.iterator();
+		List<String> seen = new ArrayList<String>();
+
+		seen.add(i.next().getKey().getId()); // M0a
+		q.removeMessage("M0"); // removes the current and the next entry
+		q.remove("M2", c1);
+		while (i.hasNext()) {
+			Tuple<Message, Connection> t = i.next();
+			seen.add(t.getKey().getId());
+			i.remove();
+		}
+
+		assertEquals(3, seen.size());
+		assertEquals("M1", seen.get(1));
+		assertEquals("M3", seen.get(2));
+		assertEquals(0, q.size());
+		assertEquals(0, q.getNrofConnections());
+	}
+
+	public void testAppendAfterRemovingTail() {
+		Iterator<Tuple<Message, Connection>> i = q.iterator();
+		while (i.hasNext()) {
+			i.next(); // ends at the tail, M3a
+		}
+		q.remove("M3", c1);
+		assertFalse(i.hasNext());
+
+		q.add(msgs[3], c2);
+		assertTrue(i.hasNext());
+		assertEquals("M3", i.next().getKey().getId());
+		assertFalse(i.hasNext());
+
+		/* all entries up to the iterator's position removed */
+		q.clear();
+		q.add(msgs[1], c1);
+		assertTrue(i.hasNext());
+		assertEquals("M1", i.next().getKey().getId());
+	}
+
+	public void testBackwards() {
+		ListIterator<Tuple<Message, Connection>> i = q.listIterator(q.size());
+		String s = "";
+		while (i.hasPrevious()) {
+			s += i.previous().getKey().getId() + " ";
+		}
+		assertEquals("M3 M2 M1 M0 M0", s.trim());
+		assertEquals(0, i.nextIndex());
+
+		i = q.listIterator(3);
+		assertEquals("M2", i.next().getKey().getId());
+		assertEquals("M2", i.previous().getKey().getId());
+		assertEquals("M1", i.previous().getKey().getId());
+		i.remove(); // M1b
+		assertEquals(1, i.previousIndex());
+		assertEquals("M0", i.previous().getKey().getId());
+		assertEquals("M0a M0b M2a M3a", order());
+
+		Tuple<Message, Connection> last = q.get(3);
+		assertEquals(3, q.lastIndexOf(last));
+		assertEquals("M3", last.getKey().getId());
+
+		/* the position is kept when the previous entry is removed */
+		i = q.listIterator(2); // between M0b and M2a
+		q.remove("M0", c2);
+		assertEquals("M0", i.previous().getKey().getId());
+		assertEquals(c1, q.get(0).getValue());
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.SimProfiler;
+
+/**
+ * Tests for the simulation loop profiler
+ */
+public class SimProfilerTest extends TestCase {
+	private TestSettings ts;
+
+	@Override
+	public void setUp() {
+		SimProfiler.reset();
+		ts = new TestSettings();
+	}
+
+	@Override
+	public void tearDown() {
+		SimProfiler.reset();
+	}
+
+	public void testDisabled() {
+		SimProfiler.init();
+		assertFalse(SimProfiler.isEnabled());
+		SimProfiler.Span span = SimProfiler.span("test.disabled");
+		long start = SimProfiler.start();
+		assertEquals(0, start);
+		span.end(start);
+		span.end(start, 10);
+		SimProfiler.countEvent();
+		assertEquals(0, span.getCalls());
+		assertEquals(0, span.getNanos());
+		assertEquals(0, SimProfiler.getNrofEvents());
+	}
+
+	public void testSpans() {
+		ts.putSetting(SimProfiler.PROFILER_NS + "." + SimProfiler.ENABLED_S,
+				"true");
+		SimProfiler.init();
+		assertTrue(SimProfiler.isEnabled());
+		SimProfiler.Span span = SimProfiler.span("test.enabled");
+		assertSame(span, SimProfiler.span("test.enabled"));
+		assertTrue(SimProfiler.getSpans().contains(span));
+
+		span.end(SimProfiler.start());
+		span.end(SimProfiler.start(), 10);
+		SimProfiler.countEvent();
+		SimProfiler.countEvent();
+		assertEquals(11, span.getCalls());
+		assertTrue(span.getNanos() >= span.getMaxNanos());
+		assertEquals(2, SimProfiler.getNrofEvents());
+
+		SimProfiler.reset();
+		assertFalse(SimProfiler.isEnabled());
+		assertEquals(0, span.getCalls());
+		assertEquals(0, span.getNanos());
+		assertEquals(0, SimProfiler.getNrofEvents());
+	}
+}
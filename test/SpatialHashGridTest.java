@@ -0,0 +1,88 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import interfaces.SpatialHashGrid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import junit.framework.TestCase;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Tests for the spatial hash connectivity optimizer
+ */
+public class SpatialHashGridTest extends TestCase {
+	private static final double RANGE = 10;
+	private static int nextKey = 1;
+	
+	private TestUtils utils;
+	private SpatialHashGrid grid;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		utils.setTransmitRange(RANGE);
+		/* use a new key for every test to get an empty grid */
+		grid = SpatialHashGrid.SpatialHashGridFactory(
+				"SpatialHashGridTest".hashCode() + nextKey++, RANGE);
+	}
+	
+	private NetworkInterface createInterface(Coord loc) {
+		DTNHost h = utils.createHost(loc);
+		NetworkInterface ni = h.getInterfaces().get(0);
+		grid.addInterface(ni);
+		return ni;
+	}
+	
+	public void testNearInterfaces() {
+		NetworkInterface n1 = createInterface(new Coord(100, 100));
+		NetworkInterface n2 = createInterface(new Coord(105, 100));
+		NetworkInterface n3 = createInterface(new Coord(119, 119));
+		NetworkInterface n4 = createInterface(new Coord(500, 500));
+		
+		Collection<NetworkInterface> near = grid.getNearInterfaces(n1);
+		assertTrue(near.contains(n1));
+		assertTrue(near.contains(n2));
+		assertTrue(near.contains(n3));
+		assertFalse(near.contains(n4));
+		
+		near = grid.getNearInterfaces(n4);
+		assertEquals(1, near.size());
+		assertTrue(near.contains(n4));
+	}
+	
+	public void testUpdateLocation() {
+		NetworkInterface n1 = createInterface(new Coord(100, 100));
+		NetworkInterface n2 = createInterface(new Coord(500, 500));
+		assertFalse(grid.getNearInterfaces(n1).contains(n2));
+		
+		n2.getHost().setLocation(new Coord(102, 98));
+		grid.updateLocation(n2);
+		assertTrue(grid.getNearInterfaces(n1).contains(n2));
+		
+		n2.getHost().setLocation(new Coord(300, 300));
+		grid.updateLocation(n2);
+		assertFalse(grid.getNearInterfaces(n1).contains(n2));
+	}
+	
+	public void testEdgeCells() {
+		NetworkInterface n1 = createInterface(new Coord(0, 0));
+		NetworkInterface n2 = createInterface(new Coord(5, 0));
+		/* locations outside the world are clamped to the edge cells */
+		NetworkInterface n3 = createInterface(new Coord(-3, 2));
+		
+		Collection<NetworkInterface> near = grid.getNearInterfaces(n1);
+		assertEquals(3, near.size());
+		assertTrue(near.contains(n2));
+		assertTrue(near.contains(n3));
+	}
+}
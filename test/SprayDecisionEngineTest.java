@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.DecisionEngineRouter;
+import routing.MessageRouter;
+import routing.ProphetDecisionEngine;
+import routing.SprayDecisionEngine;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the copy quota handling of SprayDecisionEngine (binary spraying
+ * with PRoPHET as the focus engine)
+ */
+public class SprayDecisionEngineTest extends AbstractRouterTest {
+	private static final int NROF_COPIES = 4;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." +
+				DecisionEngineRouter.ENGINE_SETTING, "SprayDecisionEngine");
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." +
+				SprayDecisionEngine.NROF_COPIES_S, ""+NROF_COPIES);
+		ts.putSetting(DecisionEngineRouter.PUBSUB_NS + "." +
+				SprayDecisionEngine.FOCUS_ENGINE_S, "ProphetDecisionEngine");
+		setRouterProto(new DecisionEngineRouter(ts));
+		super.setUp();
+	}
+
+	private void run(int seconds) {
+		for (int i=0; i<seconds; i++) {
+			clock.advance(1);
+			updateAllNodes();
+		}
+	}
+
+	private int getCopies(DTNHost host) {
+		for (Message m : host.getMessageCollection()) {
+			if (m.getId().equals(msgId1)) {
+				return m.getCopies();
+			}
+		}
+		return 0;
+	}
+
+	public void testStateEngine() {
+		DecisionEngineRouter r0 = (DecisionEngineRouter)h0.getRouter();
+		assertTrue(r0.getDecisionEngine() instanceof ProphetDecisionEngine);
+
+		/* the utilities come from the focus engine */
+		h0.connect(h1);
+		assertTrue(r0.getUtility(h1) > 0);
+	}
+
+	public void testBinarySpray() {
+		h0.createNewMessage(new Message(h0, h6, msgId1, 1));
+		assertEquals(NROF_COPIES, getCopies(h0));
+
+		h0.connect(h1);
+		run(5);
+		assertEquals(2, getCopies(h0));
+		assertEquals(2, getCopies(h1));
+		disconnect(h0);
+
+		/* two peers were queued but only one copy was left to give */
+		h0.connect(h2);
+		h0.connect(h3);
+		run(5);
+		assertEquals(1, getCopies(h0));
+		assertEquals(1, getCopies(h2) + getCopies(h3));
+		disconnect(h0);
+
+		/* no copies to spare and the peer is no better -> wait */
+		h0.connect(h4);
+		run(5);
+		assertEquals(1, getCopies(h0));
+		assertEquals(0, getCopies(h4));
+	}
+
+	public void testFocus() {
+		h1.connect(h6);
+		disconnect(h1);
+		DecisionEngineRouter r1 = (DecisionEngineRouter)h1.getRouter();
+		assertTrue(r1.getUtility(h6) > 0);
+
+		h0.createNewMessage(new Message(h0, h6, msgId1, 1));
+		h0.connect(h2);
+		run(5);
+		disconnect(h0);
+		h0.connect(h3);
+		run(5);
+		disconnect(h0);
+		assertEquals(1, getCopies(h0));
+
+		/* the last copy is forwarded to a node closer to the destination */
+		h0.connect(h1);
+		run(5);
+		assertEquals(0, getCopies(h0));
+		assertEquals(1, getCopies(h1));
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.MessageCreateEvent;
+import input.MessageDeleteEvent;
+import input.MessageRelayEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+import benchmark.ScannerEventsReader;
+import core.SimError;
+
+/**
+ * Tests for the parsing of {@link StandardEventsReader}
+ */
+public class StandardEventsReaderTest extends TestCase {
+	private File tempFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tempFile = File.createTempFile("serTest", ".tmp");
+		tempFile.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		tempFile.delete();
+	}
+
+	/**
+	 * Writes the given lines to the temporary file and reads all the events
+	 * from it
+	 * @param lineEnd The line terminator to use
+	 * @param lines The lines of the file
+	 * @return The events read from the file
+	 */
+	private List<ExternalEvent> readWithLineEnd(String lineEnd,
+			String ... lines) throws Exception {
+		write(lineEnd, lines);
+		StandardEventsReader reader = new StandardEventsReader(tempFile);
+		List<ExternalEvent> events = reader.readEvents(100);
+		assertEquals(0, reader.readEvents(100).size());
+		reader.close();
+		return events;
+	}
+
+	private List<ExternalEvent> read(String ... lines) throws Exception {
+		return readWithLineEnd("\n", lines);
+	}
+
+	private void write(String lineEnd, String ... lines) throws Exception {
+		FileOutputStream out = new FileOutputStream(tempFile);
+		for (String s : lines) {
+			out.write((s + lineEnd).getBytes("US-ASCII"));
+		}
+		out.close();
+	}
+
+	private void assertCreate(ExternalEvent e, double time, String id,
+			int from, int to, int size, int respSize) {
+		assertTrue(e instanceof MessageCreateEvent);
+		MessageCreateEvent mce = (MessageCreateEvent)e;
+		assertEquals(time, mce.getTime());
+		assertEquals(id, mce.getId());
+		assertEquals(from, mce.getFromAddr());
+		assertEquals(to, mce.getToAddr());
+		assertEquals(size, mce.getSize());
+		assertEquals(respSize, mce.getResponseSize());
+	}
+
+	private void assertRelay(ExternalEvent e, double time, String id,
+			int from, int to, int stage) {
+		assertTrue(e instanceof MessageRelayEvent);
+		MessageRelayEvent mre = (MessageRelayEvent)e;
+		assertEquals(time, mre.getTime());
+		assertEquals(id, mre.getId());
+		assertEquals(from, mre.getFromAddr());
+		assertEquals(to, mre.getToAddr());
+		assertEquals(stage, mre.getStage());
+	}
+
+	private void assertDelete(ExternalEvent e, double time, String id,
+			int host, boolean drop) {
+		assertTrue(e instanceof MessageDeleteEvent);
+		MessageDeleteEvent mde = (MessageDeleteEvent)e;
+		assertEquals(time, mde.getTime());
+		assertEquals(id, mde.getId());
+		assertEquals(host, mde.getFromAddr());
+		assertEquals(drop, mde.isDrop());
+	}
+
+	private void assertConn(ExternalEvent e, double time, int from, int to,
+			boolean up, String interfaceId) {
+		assertTrue(e instanceof ConnectionEvent);
+		ConnectionEvent ce = (ConnectionEvent)e;
+		assertEquals(time, ce.getTime());
+		assertEquals(from, ce.getFromAddr());
+		assertEquals(to, ce.getToAddr());
+		assertEquals(up, ce.isUp());
+		assertEquals(interfaceId, ce.getInterfaceId());
+	}
+
+	public void testCreate() throws Exception {
+		List<ExternalEvent> events = read(
+				"10.5 C M1 1 2 500",
+				"11 C M2 3 4 600 20",
+				"12\tC\tM3\t5\t6\t700\tnotAnInt");
+		assertEquals(3, events.size());
+		assertCreate(events.get(0), 10.5, "M1", 1, 2, 500, 0);
+		assertCreate(events.get(1), 11, "M2", 3, 4, 600, 20);
+		assertCreate(events.get(2), 12, "M3", 5, 6, 700, 0);
+	}
+
+	public void testRelay() throws Exception {
+		List<ExternalEvent> events = read(
+				"1.0 S M1 1 2",
+				"2.0 DE M1 1 2",
+				"3.0 A M2 2 1");
+		assertEquals(3, events.size());
+		assertRelay(events.get(0), 1.0, "M1", 1, 2,
+				MessageRelayEvent.SENDING);
+		assertRelay(events.get(1), 2.0, "M1", 1, 2,
+				MessageRelayEvent.TRANSFERRED);
+		assertRelay(events.get(2), 3.0, "M2", 2, 1,
+				MessageRelayEvent.ABORTED);
+	}
+
+	public void testDelete() throws Exception {
+		List<ExternalEvent> events = read(
+				"5 DR M1 3",
+				"6 R M2 4",
+				"7 DR * 5",
+				"8 R * 6");
+		assertEquals(4, events.size());
+		assertDelete(events.get(0), 5, "M1", 3, true);
+		assertDelete(events.get(1), 6, "M2", 4, false);
+		assertDelete(events.get(2), 7, StandardEventsReader.ALL_MESSAGES_ID,
+				5, true);
+		assertDelete(events.get(3), 8, StandardEventsReader.ALL_MESSAGES_ID,
+				6, false);
+	}
+
+	public void testConnection() throws Exception {
+		List<ExternalEvent> events = read(
+				"100 CONN 1 2 up",
+				"200 CONN 1 2 down",
+				"300 CONN 3 4 UP bt0",
+				"400 CONN 3 4 Down bt0");
+		assertEquals(4, events.size());
+		assertConn(events.get(0), 100, 1, 2, true, null);
+		assertConn(events.get(1), 200, 1, 2, false, null);
+		assertConn(events.get(2), 300, 3, 4, true, "bt0");
+		assertConn(events.get(3), 400, 3, 4, false, "bt0");
+	}
+
+	public void testHostIdPrefixes() throws Exception {
+		List<ExternalEvent> events = read(
+				"1 CONN p1 c64 up",
+				"2 S MSG_1 node12 x3",
+				"3 DR M1 host07");
+		assertConn(events.get(0), 1, 1, 64, true, null);
+		assertRelay(events.get(1), 2, "MSG_1", 12, 3,
+				MessageRelayEvent.SENDING);
+		assertDelete(events.get(2), 3, "M1", 7, true);
+	}
+
+	public void testSkippedLines() throws Exception {
+		String[] lines = {
+				"# comment line",
+				"",
+				" \t ",
+				"1 CONN 1 2 up",
+				"#2 CONN 1 2 down",
+				"3 CONN 1 2 down"};
+		for (String lineEnd : new String[] {"\n", "\r\n", "\r"}) {
+			List<ExternalEvent> events = readWithLineEnd(lineEnd, lines);
+			assertEquals(2, events.size());
+			assertConn(events.get(0), 1, 1, 2, true, null);
+			assertConn(events.get(1), 3, 1, 2, false, null);
+		}
+	}
+
+	public void testCrlfLastToken() throws Exception {
+		/* the '\r' must not end up in the interface id or response size */
+		List<ExternalEvent> events = readWithLineEnd("\r\n",
+				"1 CONN 1 2 up bt0",
+				"2 C M1 1 2 100 50");
+		assertConn(events.get(0), 1, 1, 2, true, "bt0");
+		assertCreate(events.get(1), 2, "M1", 1, 2, 100, 50);
+	}
+
+	public void testNoLineEndAtEof() throws Exception {
+		List<ExternalEvent> events = readWithLineEnd("", "1 CONN 1 2 up");
+		assertEquals(1, events.size());
+		assertConn(events.get(0), 1, 1, 2, true, null);
+	}
+
+	public void testDoubles() throws Exception {
+		String[] times = {"0", "0.1", "1533.405", "100502.200", "1e3",
+				"2.5E-2", "123456789.123456789", "0.30000000000000004",
+				"9007199254740993", "-1.5", "+7.25"};
+		String[] lines = new String[times.length];
+		for (int i=0; i<times.length; i++) {
+			lines[i] = times[i] + " CONN 1 2 up";
+		}
+		List<ExternalEvent> events = read(lines);
+		assertEquals(times.length, events.size());
+		for (int i=0; i<times.length; i++) {
+			assertEquals(times[i], Double.parseDouble(times[i]),
+					events.get(i).getTime());
+		}
+	}
+
+	public void testBatches() throws Exception {
+		write("\n", "1 CONN 1 2 up", "# c", "2 CONN 1 2 down",
+				"3 CONN 1 2 up");
+		StandardEventsReader reader = new StandardEventsReader(tempFile);
+		assertEquals(2, reader.readEvents(2).size());
+		List<ExternalEvent> events = reader.readEvents(2);
+		assertEquals(1, events.size());
+		assertConn(events.get(0), 3, 1, 2, true, null);
+		assertEquals(0, reader.readEvents(2).size());
+		reader.close();
+	}
+
+	public void testMalformedLines() throws Exception {
+		assertError("Can't parse external event 2 from '2 C M1 1'",
+				"1 CONN 1 2 up", "2 C M1 1");
+		assertError("Can't parse external event 1 from 'x CONN 1 2 up'",
+				"x CONN 1 2 up");
+		assertError("Can't parse external event 1 from '1 C M1 1 2 big'",
+				"1 C M1 1 2 big");
+		assertError("Can't parse external event 1 from '1 CONN 1 2'",
+				"1 CONN 1 2");
+		assertError("Unknown action 'X' in external events", "1 X M1 1 2");
+		assertError("Unknown up/down value 'sideways'",
+				"1 CONN 1 2 sideways");
+		assertError("Invalid host ID 'h1x'", "1 S M1 h1x 2");
+		assertError("Invalid host ID '1a2'", "1 DR M1 1a2");
+	}
+
+	private void assertError(String expected, String ... lines)
+			throws Exception {
+		try {
+			read(lines);
+			fail("No error for " + lines[lines.length - 1]);
+		} catch (SimError e) {
+			assertEquals(expected, e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that the reader creates the same events as the Scanner based
+	 * reference implementation for the bundled external events file
+	 */
+	public void testSameAsScannerReader() throws Exception {
+		File file = new File("Haggle3-Infocom5.csv");
+		if (!file.exists()) {
+			return;
+		}
+		StandardEventsReader reader = new StandardEventsReader(file);
+		ScannerEventsReader reference = new ScannerEventsReader(file);
+		List<ExternalEvent> events;
+		do {
+			events = reader.readEvents(500);
+			List<ExternalEvent> expected = reference.readEvents(500);
+			assertEquals(expected.size(), events.size());
+			for (int i=0; i<events.size(); i++) {
+				ConnectionEvent e = (ConnectionEvent)expected.get(i);
+				assertConn(events.get(i), e.getTime(), e.getFromAddr(),
+						e.getToAddr(), e.isUp(), e.getInterfaceId());
+			}
+		} while (events.size() > 0);
+		reader.close();
+		reference.close();
+	}
+}
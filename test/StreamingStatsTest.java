@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.stats.Histogram;
+import report.stats.RunningStats;
+import report.stats.SampleQuantiles;
+import report.stats.TDigest;
+
+/**
+ * Tests for the streaming statistics of the reports
+ */
+public class StreamingStatsTest extends TestCase {
+	private static final double DELTA = 0.000001;
+	private static final int NROF_VALUES = 100000;
+	private Random rng;
+
+	@Override
+	public void setUp() {
+		rng = new Random(42);
+	}
+
+	public void testRunningStats() {
+		RunningStats stats = new RunningStats();
+		assertEquals(0, stats.getCount());
+		assertTrue(Double.isNaN(stats.getMean()));
+
+		double[] values = new double[1000];
+		double sum = 0;
+		for (int i=0; i<values.length; i++) {
+			values[i] = 1000 + rng.nextGaussian() * 10;
+			stats.add(values[i]);
+			sum += values[i];
+		}
+		double mean = sum / values.length;
+		double squares = 0;
+		for (double v : values) {
+			squares += (v - mean) * (v - mean);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, stats.getCount());
+		assertEquals(sum / values.length, stats.getMean()); // exactly
+		assertEquals(squares / values.length, stats.getVariance(), DELTA);
+		assertEquals(values[0], stats.getMin());
+		assertEquals(values[values.length - 1], stats.getMax());
+
+		stats.clear();
+		assertEquals(0, stats.getCount());
+		stats.add(5);
+		assertEquals(5.0, stats.getMean());
+		assertEquals(0.0, stats.getVariance());
+	}
+
+	public void testSampleQuantiles() {
+		SampleQuantiles q = new SampleQuantiles();
+		assertTrue(Double.isNaN(q.getQuantile(0.5)));
+		double[] values = {5, 1, 4, 2, 3, 6};
+		for (double v : values) {
+			q.add(v);
+		}
+		assertEquals(4.0, q.getQuantile(0.5)); // upper one of the middle
+		assertEquals(1.0, q.getQuantile(0));
+		assertEquals(6.0, q.getQuantile(1));
+		q.add(0);
+		assertEquals(0.0, q.get(0));
+		assertEquals(3.0, q.getQuantile(0.5));
+	}
+
+	public void testHistogramSmallIntegers() {
+		Histogram h = new Histogram(1, 3);
+		SampleQuantiles exact = new SampleQuantiles();
+		for (int i=0; i<1000; i++) {
+			int v = rng.nextInt(2048);
+			h.add(v);
+			exact.add(v);
+		}
+		for (double q = 0; q <= 1; q += 0.05) {
+			assertEquals(exact.getQuantile(q), h.getQuantile(q));
+		}
+
+		long total = 0;
+		for (int i=0; i<h.getNrofBuckets(); i++) {
+			total += h.getBucketCount(i);
+		}
+		assertEquals(1000, total);
+	}
+
+	public void testHistogramLargeValues() {
+		Histogram h = new Histogram(1, 3);
+		SampleQuantiles exact = new SampleQuantiles();
+		for (int i=0; i<NROF_VALUES; i++) {
+			double v = Math.exp(rng.nextDouble() * 20);
+			h.add(v);
+			exact.add(v);
+		}
+		for (double q = 0.01; q < 1; q += 0.01) {
+			double e = exact.getQuantile(q);
+			assertEquals(e, h.getQuantile(q), Math.max(1, e * 0.001));
+		}
+		assertEquals(exact.getQuantile(1), h.getMax());
+	}
+
+	public void testTDigestExactForFewValues() {
+		TDigest td = new TDigest();
+		SampleQuantiles exact = new SampleQuantiles();
+		for (int i=0; i<20; i++) {
+			double v = rng.nextDouble() * 100;
+			td.add(v);
+			exact.add(v);
+		}
+		for (double q = 0; q <= 1; q += 0.05) {
+			assertEquals(exact.getQuantile(q), td.getQuantile(q));
+		}
+	}
+
+	public void testTDigestAccuracy() {
+		TDigest td = new TDigest();
+		SampleQuantiles exact = new SampleQuantiles();
+		for (int i=0; i<NROF_VALUES; i++) {
+			double v = rng.nextDouble() * 1000 + rng.nextGaussian() * 100;
+			td.add(v);
+			exact.add(v);
+		}
+		assertTrue(td.getNrofCentroids() <= 2 * TDigest.DEF_COMPRESSION);
+
+		/* compare the rank of the estimate to the asked quantile */
+		double[] qs = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+		for (double q : qs) {
+			double estimate = td.getQuantile(q);
+			int rank = 0;
+			while (rank < NROF_VALUES && exact.get(rank) < estimate) {
+				rank++;
+			}
+			double qError = Math.abs((double)rank / NROF_VALUES - q);
+			assertTrue("q=" + q + " error " + qError, qError < 0.005);
+		}
+		assertEquals(exact.getQuantile(0), td.getMin());
+		assertEquals(exact.getQuantile(1), td.getMax());
+	}
+}
@@ -4,8 +4,12 @@
  */
 package test;
 
+import input.ContactTraceQueue;
 import input.EventQueue;
+import input.ExternalEventsQueue;
 
+import java.io.File;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -99,6 +103,123 @@ public class WorldTest extends TestCase {
 	}
 	
 
+	/** Contact trace for the trace replay tests */
+	private static final String[] TRACE = {
+		"1 CONN 0 1 up",
+		"1 CONN 2 3 up",
+		"2.5 CONN 0 1 down",
+		"2.5 CONN 0 4 up",
+		"4 CONN 2 3 down",
+		"4 CONN 0 4 down"};
+
+	/**
+	 * Host that records the time and the number of connections at every
+	 * update as "time/connections"
+	 */
+	private class RecordingHost extends TestDTNHost {
+		private List<String> updates = new ArrayList<String>();
+
+		public RecordingHost(List<NetworkInterface> li,
+				ModuleCommunicationBus comBus) {
+			super(li, comBus);
+		}
+
+		@Override
+		public void update(boolean up) {
+			super.update(up);
+			updates.add(SimClock.getTime() + "/" + getConnections().size());
+		}
+	}
+
+	/**
+	 * Runs the contact trace with six hosts
+	 * @param replay Is the trace replay mode on
+	 * @param contactQueue Is the trace read with a ContactTraceQueue (or
+	 * with an ExternalEventsQueue)
+	 * @param nrofUpdates How many world updates to run
+	 * @return The updates of each host
+	 */
+	private List<List<String>> runTrace(boolean replay, boolean contactQueue,
+			int nrofUpdates) throws Exception {
+		File traceFile = File.createTempFile("worldTest", ".txt");
+		traceFile.deleteOnExit();
+		PrintWriter out = new PrintWriter(traceFile);
+		for (String line : TRACE) {
+			out.println(line);
+		}
+		out.close();
+
+		SimClock.reset();
+		DTNHost.reset();
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		List<RecordingHost> recorders = new ArrayList<RecordingHost>();
+		for (int i=0; i<6; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new TestInterface(1.0, 1));
+			RecordingHost h = new RecordingHost(li,
+					new ModuleCommunicationBus());
+			hosts.add(h);
+			recorders.add(h);
+		}
+		/* after creating the hosts; their routers reset the settings */
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.TRACE_REPLAY_S,
+				"" + replay);
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		if (contactQueue) {
+			queues.add(new ContactTraceQueue(traceFile.getAbsolutePath()));
+		}
+		else {
+			queues.add(new ExternalEventsQueue(traceFile.getAbsolutePath(),
+					10));
+		}
+
+		World w = new World(hosts, worldSizeX, worldSizeY, 1.0,
+				new ArrayList<UpdateListener>(), false, queues);
+		ts.putSetting(World.SETTINGS_NS + "." + World.TRACE_REPLAY_S,
+				"false");
+		for (int i=0; i<nrofUpdates; i++) {
+			w.update();
+		}
+		assertEquals((double)nrofUpdates, SimClock.getTime());
+		traceFile.delete();
+
+		List<List<String>> updates = new ArrayList<List<String>>();
+		for (RecordingHost h : recorders) {
+			updates.add(h.updates);
+		}
+		return updates;
+	}
+
+	public void testTraceReplay() throws Exception {
+		List<List<String>> updates = runTrace(true, true, 5);
+
+		/* the events of a time are processed before updating only the end
+		 * points of the events and the hosts that have connections */
+		assertEquals("[1.0/1, 1.0/1, 2.0/1, 2.5/1, 3.0/1, 4.0/0]",
+				updates.get(0).toString());
+		assertEquals("[1.0/1, 1.0/1, 2.0/1, 2.5/0]",
+				updates.get(1).toString());
+		for (int i=2; i<=3; i++) {
+			assertEquals("[1.0/1, 1.0/1, 2.0/1, 2.5/1, 3.0/1, 4.0/0]",
+					updates.get(i).toString());
+		}
+		assertEquals("[2.5/1, 3.0/1, 4.0/0]", updates.get(4).toString());
+		assertEquals("[]", updates.get(5).toString());
+	}
+
+	public void testContactQueueWithoutReplay() throws Exception {
+		List<List<String>> updates = runTrace(false, true, 5);
+		assertEquals(runTrace(false, false, 5), updates);
+
+		/* all hosts are updated after every event and update interval */
+		assertEquals("[1.0/1, 1.0/1, 1.0/1, 2.0/1, 2.5/0, 2.5/1, 3.0/1, " +
+				"4.0/1, 4.0/0, 4.0/0, 5.0/0]", updates.get(0).toString());
+		assertEquals("[1.0/0, 1.0/1, 1.0/1, 2.0/1, 2.5/1, 2.5/1, 3.0/1, " +
+				"4.0/0, 4.0/0, 4.0/0, 5.0/0]", updates.get(2).toString());
+		assertEquals(11, updates.get(5).size());
+	}
+
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
 		public TestScenario() {	}
@@ -4,7 +4,9 @@
  */
 package ui;
 
+import core.Settings;
 import core.SimClock;
+import core.SimProfiler;
 
 /**
  * Simple text-based user interface.
@@ -12,6 +14,8 @@ import core.SimClock;
 public class DTNSimTextUI extends DTNSimUI {
 	private long lastUpdateRt;	// real time of last ui update
 	private long startTime; // simulation start time
+	private long lastEvents; // processed events at the last ui update
+	private long updateInterval = UI_UP_INTERVAL;
 	/** How often the UI view is updated (milliseconds) */
 	public static final long UI_UP_INTERVAL = 60000;
 
@@ -21,6 +25,14 @@ public class DTNSimTextUI extends DTNSimUI {
 	
 		print("Running simulation '" + scen.getName()+"'");
 
+		if (SimProfiler.isEnabled()) {
+			Settings s = new Settings(SimProfiler.PROFILER_NS);
+			if (s.contains(SimProfiler.LIVE_INTERVAL_S)) {
+				updateInterval = (long)(s.getDouble(
+						SimProfiler.LIVE_INTERVAL_S) * 1000);
+			}
+		}
+
 		startTime = System.currentTimeMillis();
 		lastUpdateRt = startTime;
 		
@@ -56,11 +68,20 @@ public class DTNSimTextUI extends DTNSimUI {
 		long now = System.currentTimeMillis();
 		long diff = now - this.lastUpdateRt;
 		double dur = (now - startTime)/1000.0;
-		if (forced || (diff > UI_UP_INTERVAL)) {
+		if (forced || (diff > updateInterval)) {
 			// simulated seconds/second calc
 			double ssps = ((SimClock.getTime() - lastUpdate)*1000) / diff;
-			print(String.format("%.1f %d: %.2f 1/s", dur, 
-					SimClock.getIntTime(),ssps));
+			if (SimProfiler.isEnabled()) {
+				long events = SimProfiler.getNrofEvents();
+				print(String.format("%.1f %d: %.2f 1/s, %.1f events/s", dur,
+						SimClock.getIntTime(), ssps,
+						((events - lastEvents)*1000.0) / diff));
+				this.lastEvents = events;
+			}
+			else {
+				print(String.format("%.1f %d: %.2f 1/s", dur, 
+						SimClock.getIntTime(),ssps));
+			}
 			
 			this.lastUpdateRt = System.currentTimeMillis();
 			this.lastUpdate = SimClock.getTime();
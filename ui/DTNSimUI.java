@@ -9,12 +9,15 @@ import java.util.Vector;
 import report.Report;
 import core.ApplicationListener;
 import core.ConnectionListener;
+import core.DTNSim;
 import core.MessageListener;
 import core.MovementListener;
+import core.ProfiledListener;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimProfiler;
 import core.SimScenario;
 import core.UpdateListener;
 import core.World;
@@ -114,12 +117,12 @@ public abstract class DTNSimUI {
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
 			System.err.println(se.getMessage());
-			System.exit(-1);			
+			DTNSim.exit(-1);			
 		}
 		catch (SimError er) {
 			System.err.println("Can't start: " + er.getMessage());
 			System.err.println("Caught at " + er.getStackTrace()[0]);
-			System.exit(-1);
+			DTNSim.exit(-1);
 		}		
 	}
 	
@@ -130,27 +133,35 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		if (this.world != null) {
+			this.world.shutdown();
+		}
 	}
 	
 	/**
-	 * Adds a new report for simulator
+	 * Adds a new report for simulator. If profiling is enabled, the report's
+	 * callbacks are measured through a {@link ProfiledListener}.
 	 * @param r Report to add
 	 */
 	protected void addReport(Report r) {
+		Object listener = r;
+		if (SimProfiler.isEnabled()) {
+			listener = new ProfiledListener(r);
+		}
 		if (r instanceof MessageListener) {
-			scen.addMessageListener((MessageListener)r);
+			scen.addMessageListener((MessageListener)listener);
 		}
 		if (r instanceof ConnectionListener) {
-			scen.addConnectionListener((ConnectionListener)r);
+			scen.addConnectionListener((ConnectionListener)listener);
 		}
 		if (r instanceof MovementListener) {
-			scen.addMovementListener((MovementListener)r);
+			scen.addMovementListener((MovementListener)listener);
 		}
 		if (r instanceof UpdateListener) {
-			scen.addUpdateListener((UpdateListener)r);
+			scen.addUpdateListener((UpdateListener)listener);
 		}
 		if (r instanceof ApplicationListener) {
-			scen.addApplicationListener((ApplicationListener)r);
+			scen.addApplicationListener((ApplicationListener)listener);
 		}
 
 		this.reports.add(r);